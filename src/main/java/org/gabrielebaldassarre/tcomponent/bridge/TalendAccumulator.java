@@ -0,0 +1,790 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * An accumulator computes an aggregate function over the values of a column for many groups of rows at once.<br />
+ * Groups are identified by dense integer ids and the state of each group is kept in primitive arrays indexed by group id,
+ * whose type is chosen from the type of the aggregated column (ie. sums of INTEGER columns are kept in a long[], sums of
+ * DOUBLE columns in a double[]), so that aggregating a row doesn't allocate anything.<br />
+ * The state of a group can be merged with the state of a group of another accumulator of the same kind, and it can be
+ * written to and read from a spill file, so that partial aggregations computed in parallel or spilled to disk can be combined.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendAggregationImpl
+ *
+ */
+abstract class TalendAccumulator {
+
+	/**
+	 * Supported aggregate functions
+	 */
+	enum Function { COUNT, COUNT_DISTINCT, SUM, AVG, MIN, MAX }
+
+	final TalendColumnImpl column;
+	final String name;
+	int capacity;
+
+	TalendAccumulator(TalendColumnImpl column, String name){
+		this.column = column;
+		this.name = name;
+	}
+
+	/**
+	 * Build an accumulator suitable for a function and a column
+	 * 
+	 * @param function the aggregate function
+	 * @param column the aggregated column, or null to count rows
+	 * @param name the name of the column holding the result
+	 * @return a new empty accumulator
+	 * @throws IllegalArgumentException if the function cannot be applied to the type of the column
+	 */
+	static TalendAccumulator of(Function function, TalendColumnImpl column, String name){
+		TalendType type = (column == null ? null : column.getType());
+		switch(function){
+		case COUNT:
+			return new Count(column, name);
+		case COUNT_DISTINCT:
+			return new Distinct(column, name);
+		case SUM:
+			if(isIntegral(type)) return new LongSum(column, name);
+			if(type == TalendType.FLOAT || type == TalendType.DOUBLE) return new DoubleSum(column, name);
+			if(type == TalendType.BIGDECIMAL) return new DecimalSum(column, name);
+			throw unsupported(function, column);
+		case AVG:
+			if(isIntegral(type) || type == TalendType.FLOAT || type == TalendType.DOUBLE || type == TalendType.BIGDECIMAL) return new Average(column, name);
+			throw unsupported(function, column);
+		default:
+			boolean max = (function == Function.MAX);
+			if(isIntegral(type)) return new LongExtreme(column, name, max);
+			if(type == TalendType.FLOAT || type == TalendType.DOUBLE) return new DoubleExtreme(column, name, max);
+			if(type == TalendType.STRING || type == TalendType.DATE || type == TalendType.BIGDECIMAL || type == TalendType.BOOLEAN || type == TalendType.CHARACTER) return new ObjectExtreme(column, name, max);
+			throw unsupported(function, column);
+		}
+	}
+
+	static boolean isIntegral(TalendType type){
+		return type == TalendType.BYTE || type == TalendType.SHORT || type == TalendType.INTEGER || type == TalendType.LONG;
+	}
+
+	private static IllegalArgumentException unsupported(Function function, TalendColumnImpl column){
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		return new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.unsupportedAggregate"), function, column.getName(), column.getType()));
+	}
+
+	/**
+	 * Check if a value is missing
+	 * 
+	 * @param value the value
+	 * @return true if the value is null or holds null
+	 */
+	static boolean isNull(TalendValue value){
+		return value == null || (value instanceof TalendValueImpl && value.getValue() == null);
+	}
+
+	/**
+	 * Make room for the given number of groups
+	 * 
+	 * @param groups the number of groups
+	 */
+	final void ensureCapacity(int groups){
+		if(groups <= capacity) return;
+		int size = Math.max(groups, Math.max(16, capacity * 2));
+		grow(size);
+		capacity = size;
+	}
+
+	/**
+	 * Grow the arrays holding the states of the groups
+	 * 
+	 * @param size the new size of the arrays
+	 */
+	abstract void grow(int size);
+
+	/**
+	 * Aggregate a value into a group
+	 * 
+	 * @param group the group id
+	 * @param value the value of the aggregated column, possibly null
+	 */
+	abstract void add(int group, TalendValue value);
+
+	/**
+	 * Check if the accumulator can aggregate the blocks of a {@link TalendColumnVector}
+	 * 
+	 * @return true if {@link #add(int, TalendColumnVector.Block, long[])} is supported
+	 */
+	boolean isVectorizable(){
+		return false;
+	}
+
+	/**
+	 * Aggregate the selected values of a block of the vector of the aggregated column into a group
+	 * 
+	 * @param group the group id
+	 * @param block the block, or null when counting rows
+	 * @param selection the selection of rows holding a value, as built by {@link TalendKernels}
+	 */
+	void add(int group, TalendColumnVector.Block block, long[] selection){
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Merge the state of a group of another accumulator of the same kind into a group of this one
+	 * 
+	 * @param group the group id in this accumulator
+	 * @param other the other accumulator
+	 * @param otherGroup the group id in the other accumulator
+	 */
+	abstract void merge(int group, TalendAccumulator other, int otherGroup);
+
+	/**
+	 * Write the state of a group
+	 * 
+	 * @param group the group id
+	 * @param out the stream to write to
+	 * @throws IOException if the state cannot be written
+	 */
+	abstract void write(int group, DataOutput out) throws IOException;
+
+	/**
+	 * Read a state written by {@link #write(int, DataOutput)} and merge it into a group
+	 * 
+	 * @param group the group id
+	 * @param in the stream to read from
+	 * @throws IOException if the state cannot be read
+	 */
+	abstract void read(int group, DataInput in) throws IOException;
+
+	/**
+	 * Get the result of the function for a group
+	 * 
+	 * @param group the group id
+	 * @return the result, as java type of {@link #getType()}
+	 */
+	abstract Object result(int group);
+
+	/**
+	 * Get the type of the results
+	 * 
+	 * @return the type
+	 */
+	abstract TalendType getType();
+
+	/**
+	 * Build a new empty accumulator of the same kind
+	 * 
+	 * @return the accumulator
+	 */
+	abstract TalendAccumulator newInstance();
+
+	/**
+	 * Convert a long back to the integral type of a column
+	 */
+	static Object box(TalendType type, long value){
+		switch(type){
+		case BYTE:
+			return (byte) value;
+		case SHORT:
+			return (short) value;
+		case INTEGER:
+			return (int) value;
+		default:
+			return value;
+		}
+	}
+
+	/**
+	 * COUNT(*) and COUNT(column)
+	 */
+	private static final class Count extends TalendAccumulator {
+
+		private long[] counts = new long[0];
+
+		Count(TalendColumnImpl column, String name){
+			super(column, name);
+		}
+
+		void grow(int size){
+			counts = Arrays.copyOf(counts, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(column == null || !isNull(value)) counts[group]++;
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			counts[group] += TalendKernels.count(selection);
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			counts[group] += ((Count) other).counts[otherGroup];
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			out.writeLong(counts[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			counts[group] += in.readLong();
+		}
+
+		Object result(int group){
+			return counts[group];
+		}
+
+		TalendType getType(){
+			return TalendType.LONG;
+		}
+
+		TalendAccumulator newInstance(){
+			return new Count(column, name);
+		}
+
+	}
+
+	/**
+	 * SUM of integral columns
+	 */
+	private static final class LongSum extends TalendAccumulator {
+
+		private long[] sums = new long[0];
+		private long[] counts = new long[0];
+
+		LongSum(TalendColumnImpl column, String name){
+			super(column, name);
+		}
+
+		void grow(int size){
+			sums = Arrays.copyOf(sums, size);
+			counts = Arrays.copyOf(counts, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			sums[group] += ((Number) value.getValue()).longValue();
+			counts[group]++;
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			sums[group] += TalendKernels.sum(block.longs, selection);
+			counts[group] += TalendKernels.count(selection);
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			sums[group] += ((LongSum) other).sums[otherGroup];
+			counts[group] += ((LongSum) other).counts[otherGroup];
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			out.writeLong(sums[group]);
+			out.writeLong(counts[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			sums[group] += in.readLong();
+			counts[group] += in.readLong();
+		}
+
+		Object result(int group){
+			return (counts[group] == 0 ? null : (Object) sums[group]);
+		}
+
+		TalendType getType(){
+			return TalendType.LONG;
+		}
+
+		TalendAccumulator newInstance(){
+			return new LongSum(column, name);
+		}
+
+	}
+
+	/**
+	 * SUM of floating point columns
+	 */
+	private static final class DoubleSum extends TalendAccumulator {
+
+		private double[] sums = new double[0];
+		private long[] counts = new long[0];
+
+		DoubleSum(TalendColumnImpl column, String name){
+			super(column, name);
+		}
+
+		void grow(int size){
+			sums = Arrays.copyOf(sums, size);
+			counts = Arrays.copyOf(counts, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			sums[group] += ((Number) value.getValue()).doubleValue();
+			counts[group]++;
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			sums[group] += TalendKernels.sum(block.doubles, selection);
+			counts[group] += TalendKernels.count(selection);
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			sums[group] += ((DoubleSum) other).sums[otherGroup];
+			counts[group] += ((DoubleSum) other).counts[otherGroup];
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			out.writeDouble(sums[group]);
+			out.writeLong(counts[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			sums[group] += in.readDouble();
+			counts[group] += in.readLong();
+		}
+
+		Object result(int group){
+			return (counts[group] == 0 ? null : (Object) sums[group]);
+		}
+
+		TalendType getType(){
+			return TalendType.DOUBLE;
+		}
+
+		TalendAccumulator newInstance(){
+			return new DoubleSum(column, name);
+		}
+
+	}
+
+	/**
+	 * SUM of BIGDECIMAL columns
+	 */
+	private static final class DecimalSum extends TalendAccumulator {
+
+		private BigDecimal[] sums = new BigDecimal[0];
+
+		DecimalSum(TalendColumnImpl column, String name){
+			super(column, name);
+		}
+
+		void grow(int size){
+			sums = Arrays.copyOf(sums, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			sums[group] = add(sums[group], (BigDecimal) value.getValue());
+		}
+
+		private static BigDecimal add(BigDecimal a, BigDecimal b){
+			return (a == null ? b : (b == null ? a : a.add(b)));
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			sums[group] = add(sums[group], ((DecimalSum) other).sums[otherGroup]);
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			TalendSpill.write(out, sums[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			sums[group] = add(sums[group], (BigDecimal) TalendSpill.read(in));
+		}
+
+		Object result(int group){
+			return sums[group];
+		}
+
+		TalendType getType(){
+			return TalendType.BIGDECIMAL;
+		}
+
+		TalendAccumulator newInstance(){
+			return new DecimalSum(column, name);
+		}
+
+	}
+
+	/**
+	 * AVG of numeric columns: values of integral columns are summed exactly, whether they are read from rows or from vectors
+	 */
+	private static final class Average extends TalendAccumulator {
+
+		private final boolean integral;
+		private long[] longSums = new long[0];
+		private double[] sums = new double[0];
+		private long[] counts = new long[0];
+
+		Average(TalendColumnImpl column, String name){
+			super(column, name);
+			this.integral = isIntegral(column.getType());
+		}
+
+		void grow(int size){
+			if(integral){
+				longSums = Arrays.copyOf(longSums, size);
+			} else {
+				sums = Arrays.copyOf(sums, size);
+			}
+			counts = Arrays.copyOf(counts, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			if(integral){
+				longSums[group] += ((Number) value.getValue()).longValue();
+			} else {
+				sums[group] += ((Number) value.getValue()).doubleValue();
+			}
+			counts[group]++;
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			if(integral){
+				longSums[group] += TalendKernels.sum(block.longs, selection);
+			} else {
+				sums[group] += TalendKernels.sum(block.doubles, selection);
+			}
+			counts[group] += TalendKernels.count(selection);
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			if(integral){
+				longSums[group] += ((Average) other).longSums[otherGroup];
+			} else {
+				sums[group] += ((Average) other).sums[otherGroup];
+			}
+			counts[group] += ((Average) other).counts[otherGroup];
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			if(integral){
+				out.writeLong(longSums[group]);
+			} else {
+				out.writeDouble(sums[group]);
+			}
+			out.writeLong(counts[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			if(integral){
+				longSums[group] += in.readLong();
+			} else {
+				sums[group] += in.readDouble();
+			}
+			counts[group] += in.readLong();
+		}
+
+		Object result(int group){
+			if(counts[group] == 0) return null;
+			return (integral ? (double) longSums[group] : sums[group]) / counts[group];
+		}
+
+		TalendType getType(){
+			return TalendType.DOUBLE;
+		}
+
+		TalendAccumulator newInstance(){
+			return new Average(column, name);
+		}
+
+	}
+
+	/**
+	 * MIN and MAX of integral columns
+	 */
+	private static final class LongExtreme extends TalendAccumulator {
+
+		private final boolean max;
+		private long[] values = new long[0];
+		private boolean[] seen = new boolean[0];
+
+		LongExtreme(TalendColumnImpl column, String name, boolean max){
+			super(column, name);
+			this.max = max;
+		}
+
+		void grow(int size){
+			values = Arrays.copyOf(values, size);
+			seen = Arrays.copyOf(seen, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			accept(group, ((Number) value.getValue()).longValue());
+		}
+
+		private void accept(int group, long value){
+			if(!seen[group] || (max ? value > values[group] : value < values[group])){
+				values[group] = value;
+				seen[group] = true;
+			}
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			if(TalendKernels.count(selection) > 0) accept(group, TalendKernels.extreme(block.longs, selection, max));
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			LongExtreme o = (LongExtreme) other;
+			if(o.seen[otherGroup]) accept(group, o.values[otherGroup]);
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			out.writeBoolean(seen[group]);
+			out.writeLong(values[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			boolean s = in.readBoolean();
+			long value = in.readLong();
+			if(s) accept(group, value);
+		}
+
+		Object result(int group){
+			return (seen[group] ? box(column.getType(), values[group]) : null);
+		}
+
+		TalendType getType(){
+			return column.getType();
+		}
+
+		TalendAccumulator newInstance(){
+			return new LongExtreme(column, name, max);
+		}
+
+	}
+
+	/**
+	 * MIN and MAX of floating point columns
+	 */
+	private static final class DoubleExtreme extends TalendAccumulator {
+
+		private final boolean max;
+		private double[] values = new double[0];
+		private boolean[] seen = new boolean[0];
+
+		DoubleExtreme(TalendColumnImpl column, String name, boolean max){
+			super(column, name);
+			this.max = max;
+		}
+
+		void grow(int size){
+			values = Arrays.copyOf(values, size);
+			seen = Arrays.copyOf(seen, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			accept(group, ((Number) value.getValue()).doubleValue());
+		}
+
+		private void accept(int group, double value){
+			if(!seen[group] || (max ? value > values[group] : value < values[group])){
+				values[group] = value;
+				seen[group] = true;
+			}
+		}
+
+		boolean isVectorizable(){
+			return true;
+		}
+
+		void add(int group, TalendColumnVector.Block block, long[] selection){
+			if(TalendKernels.count(selection) > 0) accept(group, TalendKernels.extreme(block.doubles, selection, max));
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			DoubleExtreme o = (DoubleExtreme) other;
+			if(o.seen[otherGroup]) accept(group, o.values[otherGroup]);
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			out.writeBoolean(seen[group]);
+			out.writeDouble(values[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			boolean s = in.readBoolean();
+			double value = in.readDouble();
+			if(s) accept(group, value);
+		}
+
+		Object result(int group){
+			if(!seen[group]) return null;
+			return (column.getType() == TalendType.FLOAT ? (Object) (float) values[group] : (Object) values[group]);
+		}
+
+		TalendType getType(){
+			return column.getType();
+		}
+
+		TalendAccumulator newInstance(){
+			return new DoubleExtreme(column, name, max);
+		}
+
+	}
+
+	/**
+	 * MIN and MAX of other comparable columns
+	 */
+	private static final class ObjectExtreme extends TalendAccumulator {
+
+		private final boolean max;
+		private Object[] values = new Object[0];
+
+		ObjectExtreme(TalendColumnImpl column, String name, boolean max){
+			super(column, name);
+			this.max = max;
+		}
+
+		void grow(int size){
+			values = Arrays.copyOf(values, size);
+		}
+
+		void add(int group, TalendValue value){
+			if(isNull(value)) return;
+			accept(group, value.getValue());
+		}
+
+		private void accept(int group, Object value){
+			if(value == null) return;
+			if(values[group] == null || (max ? TalendPredicate.compare(value, values[group]) > 0 : TalendPredicate.compare(value, values[group]) < 0)){
+				values[group] = value;
+			}
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			accept(group, ((ObjectExtreme) other).values[otherGroup]);
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			TalendSpill.write(out, values[group]);
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			accept(group, TalendSpill.read(in));
+		}
+
+		Object result(int group){
+			return values[group];
+		}
+
+		TalendType getType(){
+			return column.getType();
+		}
+
+		TalendAccumulator newInstance(){
+			return new ObjectExtreme(column, name, max);
+		}
+
+	}
+
+	/**
+	 * COUNT(DISTINCT column)
+	 */
+	private static final class Distinct extends TalendAccumulator {
+
+		private Set<?>[] sets = new Set<?>[0];
+
+		Distinct(TalendColumnImpl column, String name){
+			super(column, name);
+		}
+
+		void grow(int size){
+			sets = Arrays.copyOf(sets, size);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Set<Object> set(int group){
+			if(sets[group] == null) sets[group] = new HashSet<Object>();
+			return (Set<Object>) sets[group];
+		}
+
+		void add(int group, TalendValue value){
+			Object key = TalendIndex.keyOf(column, value);
+			if(key != null) set(group).add(key);
+		}
+
+		void merge(int group, TalendAccumulator other, int otherGroup){
+			Set<?> o = ((Distinct) other).sets[otherGroup];
+			if(o != null) set(group).addAll(o);
+		}
+
+		void write(int group, DataOutput out) throws IOException {
+			Set<?> set = sets[group];
+			out.writeInt(set == null ? 0 : set.size());
+			if(set == null) return;
+			for(Object key : set){
+				TalendSpill.write(out, key);
+			}
+		}
+
+		void read(int group, DataInput in) throws IOException {
+			int size = in.readInt();
+			for(int i = 0; i < size; i++){
+				set(group).add(TalendSpill.read(in));
+			}
+		}
+
+		Object result(int group){
+			return (long) (sets[group] == null ? 0 : sets[group].size());
+		}
+
+		TalendType getType(){
+			return TalendType.LONG;
+		}
+
+		TalendAccumulator newInstance(){
+			return new Distinct(column, name);
+		}
+
+	}
+
+}
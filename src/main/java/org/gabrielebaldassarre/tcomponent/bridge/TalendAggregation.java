@@ -0,0 +1,164 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * An aggregation groups the committed rows of a flow by the values of some columns and computes aggregate functions
+ * over each group, built using {@link TalendFlow#groupBy(String...)}.<br />
+ * Like queries, aggregations are designed using the builder pattern: each call to an aggregate method adds a column
+ * to the result, named after the given alias. Null values are ignored by all the functions but {@link #count(String)},
+ * while rows holding null in a grouping column make a group of their own.<br />
+ * Nothing is read from the flow until {@link #toFlow(String)} is called. Groups are kept in a hash table and each
+ * function keeps its partial results in arrays of primitive values, so aggregating a row allocates nothing but the new groups.
+ * Large flows are scanned in parallel, each thread aggregating a range of rows before partial results are merged.<br />
+ * When the number of groups exceeds the limit set by {@link #setMaximumGroups(Integer)}, partial results are spilled to
+ * temporary files, hash partitioned by group, and merged back one partition at a time; partitions still holding too
+ * many groups are partitioned again before being merged.<br />
+ * Aggregations without grouping columns always yield exactly one row, even when no row is aggregated: counts are
+ * then 0 and the results of the other functions are null.<br />
+ * <pre>
+ * {@code
+ * TalendFlow stats = flow.groupBy("country", "city")
+ *                        .where(TalendPredicate.ge("age", 18))
+ *                        .count("people")
+ *                        .countDistinct("surname", "surnames")
+ *                        .min("age", "youngest")
+ *                        .max("age", "eldest")
+ *                        .setMaximumGroups(100000)
+ *                        .toFlow("stats");
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#groupBy(String...)
+ *
+ */
+public interface TalendAggregation {
+
+	/**
+	 * Aggregate only the rows satisfying the given predicate, besides the ones already given
+	 * 
+	 * @param predicate the predicate the rows must satisfy
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the predicate is null
+	 */
+	public TalendAggregation where(TalendPredicate predicate);
+
+	/**
+	 * Count the rows of each group. The result is a LONG column.
+	 * 
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the name is null or empty
+	 */
+	public TalendAggregation count(String as);
+
+	/**
+	 * Count the non-null values of a column in each group. The result is a LONG column.
+	 * 
+	 * @param column the name of the column to count
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or the name is null or empty
+	 */
+	public TalendAggregation count(String column, String as);
+
+	/**
+	 * Count the distinct non-null values of a column in each group. The result is a LONG column.
+	 * 
+	 * @param column the name of the column to count
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or the name is null or empty
+	 */
+	public TalendAggregation countDistinct(String column, String as);
+
+	/**
+	 * Sum the values of a numeric column in each group.<br />
+	 * Sums of BYTE, SHORT, INTEGER and LONG columns are LONG columns, sums of FLOAT and DOUBLE columns are DOUBLE columns
+	 * and sums of BIGDECIMAL columns are BIGDECIMAL columns. Groups with no values sum to null.
+	 * 
+	 * @param column the name of the column to sum
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow, is not numeric or the name is null or empty
+	 */
+	public TalendAggregation sum(String column, String as);
+
+	/**
+	 * Average the values of a numeric column in each group. The result is a DOUBLE column.
+	 * 
+	 * @param column the name of the column to average
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow, is not numeric or the name is null or empty
+	 */
+	public TalendAggregation avg(String column, String as);
+
+	/**
+	 * Get the smallest value of a column in each group. The result column has the type of the original one.
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow, its values cannot be compared or the name is null or empty
+	 */
+	public TalendAggregation min(String column, String as);
+
+	/**
+	 * Get the biggest value of a column in each group. The result column has the type of the original one.
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the result column
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow, its values cannot be compared or the name is null or empty
+	 */
+	public TalendAggregation max(String column, String as);
+
+	/**
+	 * Set the maximum number of groups kept in memory before partial results are spilled to disk.
+	 * 
+	 * @param groups the maximum number of groups, or null for no limit (the default)
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the number of groups is not positive
+	 */
+	public TalendAggregation setMaximumGroups(Integer groups);
+
+	/**
+	 * Set the maximum number of threads scanning the flow. By default, all the available processors are used.
+	 * 
+	 * @param threads the maximum number of threads, 1 to aggregate in the calling thread only
+	 * @return a reference to the aggregation itself
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public TalendAggregation setParallelism(int threads);
+
+	/**
+	 * Compute the aggregation and save the results to a new flow of the same model.<br />
+	 * The new flow holds a row for each group, made of the grouping columns, defined like the original ones, followed by
+	 * the result columns in the order they were added. It has no maximum size and doesn't support transactions.
+	 * The order of the groups is not defined.
+	 * 
+	 * @param name the name of the new flow
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow, or a flow with the same name already exists in the model
+	 * @throws IllegalStateException if partial results cannot be spilled to disk
+	 * @throws java.util.ConcurrentModificationException if the flow is modified during the aggregation
+	 */
+	public TalendFlow toFlow(String name);
+
+}
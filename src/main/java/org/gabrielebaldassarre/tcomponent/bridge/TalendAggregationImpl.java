@@ -0,0 +1,520 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+
+/**
+ * This is the concrete implementation of an aggregation and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#groupBy(String...)} instead and interface with aggregations using {@link TalendAggregation} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendAggregation
+ */
+public class TalendAggregationImpl implements TalendAggregation {
+
+	/**
+	 * Number of partitions of the spill files
+	 */
+	static final int SPILL_PARTITIONS = 16;
+
+	/**
+	 * Maximum number of times a spilled partition holding too many groups is partitioned again
+	 */
+	static final int SPILL_LEVELS = 8;
+
+	private final TalendFlowImpl flow;
+	private final TalendColumnImpl[] columns;
+	private final List<TalendAccumulator> accumulators;
+	private TalendPredicate predicate;
+	private Integer maximumGroups;
+	private int parallelism;
+
+	/**
+	 * Build an aggregation on all the rows of a flow
+	 * 
+	 * @param flow the flow to aggregate
+	 * @param columns the columns to group by
+	 */
+	TalendAggregationImpl(TalendFlowImpl flow, TalendColumnImpl[] columns){
+		this.flow = flow;
+		this.columns = columns;
+		this.accumulators = new ArrayList<TalendAccumulator>();
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation where(TalendPredicate predicate) {
+		if(predicate == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "predicate"));
+		}
+		this.predicate = (this.predicate == null ? predicate : this.predicate.and(predicate));
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation count(String as) {
+		return add(TalendAccumulator.Function.COUNT, null, as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation count(String column, String as) {
+		return add(TalendAccumulator.Function.COUNT, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation countDistinct(String column, String as) {
+		return add(TalendAccumulator.Function.COUNT_DISTINCT, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation sum(String column, String as) {
+		return add(TalendAccumulator.Function.SUM, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation avg(String column, String as) {
+		return add(TalendAccumulator.Function.AVG, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation min(String column, String as) {
+		return add(TalendAccumulator.Function.MIN, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation max(String column, String as) {
+		return add(TalendAccumulator.Function.MAX, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation setMaximumGroups(Integer groups) {
+		if(groups != null && groups < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), groups));
+		}
+		this.maximumGroups = groups;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation setParallelism(int threads) {
+		if(threads < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), threads));
+		}
+		this.parallelism = threads;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		int expectedModCount = flow.modCount();
+		TalendCondition condition = (predicate == null ? null : predicate.compile(flow));
+		int rows = flow.countRows();
+		int threads = TalendWorkers.countThreads(rows, parallelism);
+		Integer budget = (maximumGroups == null ? null : Math.max(1, maximumGroups / threads));
+
+		TalendKernels.Filter kernel = (predicate == null ? null : predicate.vectorize(flow));
+		boolean vectorized = (rows > 0 && columns.length == 0 && (predicate == null || (kernel != null && kernel.exact)));
+		for(TalendAccumulator acc : accumulators){
+			vectorized &= acc.isVectorizable() && (acc.column == null || flow.vectorOf(acc.column) != null);
+		}
+		long firstSequence = (vectorized ? flow.committedRow(0).sequence : 0);
+
+		Worker[] workers = new Worker[threads];
+		for(int i = 0; i < threads; i++){
+			workers[i] = new Worker(condition, TalendWorkers.from(rows, threads, i), TalendWorkers.from(rows, threads, i + 1), budget);
+			if(vectorized) workers[i].vectorize(kernel, firstSequence);
+		}
+		try {
+			TalendWorkers.invokeAll(Arrays.asList(workers));
+			flow.checkForModification(expectedModCount);
+
+			TalendFlowImpl dest = flow.newFlow(name, columns);
+			for(TalendAccumulator acc : accumulators){
+				dest.addColumn(acc.name, acc.getType(), null, false, TalendEncoding.AUTO);
+			}
+			TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[dest.columnsList.size()]);
+
+			boolean spilled = false;
+			for(Worker w : workers){
+				spilled |= (w.partitions != null);
+			}
+
+			if(!spilled){
+				GroupTable result = workers[0].table;
+				for(int i = 1; i < workers.length; i++){
+					result.merge(workers[i].table);
+				}
+				if(columns.length == 0 && result.size() == 0) result.group(Collections.emptyList());
+				result.emit(dest, to);
+				return dest;
+			}
+
+			for(Worker w : workers){
+				w.spill();
+			}
+			for(int p = 0; p < SPILL_PARTITIONS; p++){
+				TalendSpill[] sources = new TalendSpill[workers.length];
+				for(int i = 0; i < workers.length; i++){
+					sources[i] = workers[i].partitions[p];
+				}
+				merge(sources, 0, dest, to);
+			}
+			return dest;
+		} finally {
+			for(Worker w : workers){
+				w.delete();
+			}
+		}
+	}
+
+	/**
+	 * Merge the partial results of a spilled partition and add its groups to the destination flow.<br />
+	 * If the partition holds more groups than the limit, they are partitioned again with a different hash function
+	 * and each sub-partition is merged in turn, up to {@link #SPILL_LEVELS} times: past that, the groups left are assumed
+	 * to share the same hash codes and are merged in memory.
+	 * 
+	 * @param sources the spill files of the partition, deleted once read
+	 * @param level the number of times the groups have already been partitioned, starting from 0
+	 */
+	private void merge(TalendSpill[] sources, int level, TalendFlowImpl dest, TalendColumnImpl[] to){
+		GroupTable table = new GroupTable();
+		TalendSpill[] partitions = null;
+		try {
+			for(TalendSpill source : sources){
+				long records = source.countRecords();
+				DataInput in = source.input();
+				for(long r = 0; r < records; r++){
+					table.read(in);
+					if(maximumGroups != null && table.size() > maximumGroups && level < SPILL_LEVELS){
+						if(partitions == null) partitions = newPartitions();
+						table.spill(partitions, level + 1);
+						table = new GroupTable();
+					}
+				}
+				source.delete();
+			}
+			if(partitions == null){
+				table.emit(dest, to);
+				return;
+			}
+			table.spill(partitions, level + 1);
+			table = null;
+			for(TalendSpill partition : partitions){
+				merge(new TalendSpill[]{ partition }, level + 1, dest, to);
+			}
+		} catch (IOException e) {
+			throw TalendSpill.failure(flow.getName(), e);
+		} finally {
+			if(partitions != null){
+				for(TalendSpill partition : partitions){
+					partition.delete();
+				}
+			}
+		}
+	}
+
+	private TalendSpill[] newPartitions(){
+		TalendSpill[] partitions = new TalendSpill[SPILL_PARTITIONS];
+		try {
+			for(int p = 0; p < SPILL_PARTITIONS; p++){
+				partitions[p] = new TalendSpill(flow.getName());
+			}
+		} catch (IllegalStateException e) {
+			// release the files already created, nobody else holds them yet
+			for(TalendSpill partition : partitions){
+				if(partition != null) partition.delete();
+			}
+			throw e;
+		}
+		return partitions;
+	}
+
+	/**
+	 * Get the spill partition of a group. Each level of partitioning mixes the hash code of the key with a different seed,
+	 * so that the groups of a partition are spread again over all the partitions of the next level.
+	 */
+	private static int partitionOf(Object key, int level){
+		int hash = (key == null ? 0 : key.hashCode());
+		if(level == 0) return ((hash ^ (hash >>> 16)) & 0x7fffffff) % SPILL_PARTITIONS;
+		hash ^= level * 0x9e3779b9;
+		hash = (hash ^ (hash >>> 16)) * 0x85ebca6b;
+		hash = (hash ^ (hash >>> 13)) * 0xc2b2ae35;
+		return ((hash ^ (hash >>> 16)) & 0x7fffffff) % SPILL_PARTITIONS;
+	}
+
+	private TalendAggregation add(TalendAccumulator.Function function, TalendColumnImpl column, String as){
+		if(as == null || as.isEmpty()){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "as"));
+		}
+		accumulators.add(TalendAccumulator.of(function, column, as));
+		return this;
+	}
+
+	/**
+	 * Build the key of the group a row belongs to
+	 */
+	private Object keyOf(TalendRowImpl row){
+		if(columns.length == 1) return TalendIndex.keyOf(columns[0], row.value(columns[0]));
+		Object[] parts = new Object[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			parts[i] = TalendIndex.keyOf(columns[i], row.value(columns[i]));
+		}
+		return Arrays.asList(parts);
+	}
+
+	/**
+	 * Aggregates a range of rows of the flow into a group table of its own, spilling it when it grows too big.<br />
+	 * Aggregations without grouping columns over vectorized columns read the blocks of the vectors instead of the rows,
+	 * the rows to aggregate being selected by the kernels of the predicate.
+	 */
+	private final class Worker implements Callable<Void> {
+
+		private final TalendCondition condition;
+		private final int from;
+		private final int to;
+		private final Integer budget;
+		private GroupTable table;
+		private TalendSpill[] partitions;
+		private TalendKernels.Filter kernel;
+		private TalendColumnVector[] vectors;
+		private long firstSequence;
+
+		Worker(TalendCondition condition, int from, int to, Integer budget){
+			this.condition = condition;
+			this.from = from;
+			this.to = to;
+			this.budget = budget;
+			this.table = new GroupTable();
+		}
+
+		/**
+		 * Aggregate the blocks of the column vectors instead of the rows
+		 * 
+		 * @param kernel the compiled predicate, or null to aggregate all the rows
+		 * @param firstSequence the sequence number of the first committed row of the flow
+		 */
+		void vectorize(TalendKernels.Filter kernel, long firstSequence){
+			this.kernel = kernel;
+			this.firstSequence = firstSequence;
+			this.vectors = new TalendColumnVector[accumulators.size()];
+			for(int i = 0; i < vectors.length; i++){
+				TalendColumnImpl column = accumulators.get(i).column;
+				vectors[i] = (column == null ? null : flow.vectorOf(column));
+			}
+		}
+
+		public Void call() {
+			if(vectors != null){
+				scanBlocks();
+				return null;
+			}
+			for(int i = from; i < to; i++){
+				TalendRowImpl row = flow.committedRow(i);
+				if(condition != null && !condition.test(row)) continue;
+				table.add(row);
+				if(budget != null && table.size() > budget) spill();
+			}
+			return null;
+		}
+
+		private void scanBlocks(){
+			if(from >= to) return;
+			long first = firstSequence + from;
+			long last = firstSequence + to;
+			long[] selection = new long[TalendColumnVector.WORDS];
+			long[] values = new long[TalendColumnVector.WORDS];
+			for(long block = first >>> TalendColumnStatisticsImpl.BLOCK_SHIFT; block <= (last - 1) >>> TalendColumnStatisticsImpl.BLOCK_SHIFT; block++){
+				if(kernel != null) kernel.select(block, selection);
+				else Arrays.fill(selection, -1L);
+				TalendKernels.clip(selection, block, first, last);
+				if(TalendKernels.count(selection) == 0) continue;
+
+				int group = table.group(Collections.emptyList());
+				for(int i = 0; i < vectors.length; i++){
+					if(vectors[i] == null){
+						table.accs[i].add(group, null, selection);
+						continue;
+					}
+					TalendColumnVector.Block b = vectors[i].block(block);
+					for(int w = 0; w < values.length; w++){
+						values[w] = selection[w] & b.valid[w];
+					}
+					table.accs[i].add(group, b, values);
+				}
+			}
+		}
+
+		/**
+		 * Write the groups of the table to the spill partitions and start again with an empty table
+		 */
+		void spill(){
+			if(partitions == null) partitions = newPartitions();
+			table.spill(partitions, 0);
+			table = new GroupTable();
+		}
+
+		void delete(){
+			if(partitions == null) return;
+			for(TalendSpill s : partitions){
+				s.delete();
+			}
+		}
+
+	}
+
+	/**
+	 * A hash table mapping the keys of the groups to dense ids, along with an accumulator for each aggregate function
+	 */
+	private final class GroupTable {
+
+		private final HashMap<Object, Integer> groups = new HashMap<Object, Integer>();
+		private final List<Object> keys = new ArrayList<Object>();
+		private final TalendAccumulator[] accs;
+
+		GroupTable(){
+			accs = new TalendAccumulator[accumulators.size()];
+			for(int i = 0; i < accs.length; i++){
+				accs[i] = accumulators.get(i).newInstance();
+			}
+		}
+
+		int size(){
+			return keys.size();
+		}
+
+		/**
+		 * Get the id of a group, adding the group if needed
+		 */
+		private int group(Object key){
+			Integer group = groups.get(key);
+			if(group != null) return group;
+			int id = keys.size();
+			groups.put(key, id);
+			keys.add(key);
+			for(TalendAccumulator acc : accs){
+				acc.ensureCapacity(id + 1);
+			}
+			return id;
+		}
+
+		void add(TalendRowImpl row){
+			int group = group(keyOf(row));
+			for(TalendAccumulator acc : accs){
+				acc.add(group, (acc.column == null ? null : row.value(acc.column)));
+			}
+		}
+
+		void merge(GroupTable other){
+			for(int g = 0; g < other.keys.size(); g++){
+				int group = group(other.keys.get(g));
+				for(int i = 0; i < accs.length; i++){
+					accs[i].merge(group, other.accs[i], g);
+				}
+			}
+		}
+
+		void spill(TalendSpill[] partitions, int level){
+			try {
+				for(int g = 0; g < keys.size(); g++){
+					Object key = keys.get(g);
+					DataOutput out = partitions[partitionOf(key, level)].output();
+					TalendSpill.write(out, key);
+					for(TalendAccumulator acc : accs){
+						acc.write(g, out);
+					}
+				}
+			} catch (IOException e) {
+				throw TalendSpill.failure(flow.getName(), e);
+			}
+		}
+
+		/**
+		 * Read the partial results of a group from a spill file and merge them
+		 */
+		void read(DataInput in) throws IOException {
+			int group = group(TalendSpill.read(in));
+			for(TalendAccumulator acc : accs){
+				acc.read(group, in);
+			}
+		}
+
+		/**
+		 * Add a row for each group to the destination flow
+		 */
+		void emit(TalendFlowImpl dest, TalendColumnImpl[] to){
+			for(int g = 0; g < keys.size(); g++){
+				TalendRowImpl row = dest.newRow();
+				Object key = keys.get(g);
+				for(int i = 0; i < columns.length; i++){
+					set(row, to[i], (columns.length == 1 ? key : ((List<?>) key).get(i)));
+				}
+				for(int i = 0; i < accs.length; i++){
+					set(row, to[columns.length + i], accs[i].result(g));
+				}
+			}
+		}
+
+		private void set(TalendRowImpl row, TalendColumnImpl column, Object value){
+			if(value instanceof ByteBuffer){
+				byte[] bytes = new byte[((ByteBuffer) value).remaining()];
+				((ByteBuffer) value).duplicate().get(bytes);
+				value = bytes;
+			}
+			row.put(column, (value == null ? null : column.newValue(value)));
+		}
+
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * This abstract class is the base of values whose content is a sequence of bytes packed in a shared chunk of a {@link TalendByteArena}.<br />
+ * Values only hold a reference to the chunk, the offset and the length of their bytes, so they can be moved between
+ * rows and flows without copying the bytes themselves. Hashing and equality are computed on the bytes.<br />
+ * Concrete subclasses decide how bytes are returned as java type by {@link #getValue()}.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendByteArena
+ *
+ */
+public abstract class TalendArenaValue implements TalendValue, Serializable {
+
+	private static final long serialVersionUID = -1733530593003826802L;
+	private final TalendColumnImpl column;
+	private transient byte[] chunk;
+	private transient int offset;
+	private final int length;
+	private transient int hash;
+
+	/**
+	 * Copy the given bytes into an arena and build a value referring to them
+	 *
+	 * @param column the column the value belongs
+	 * @param arena the arena to copy the bytes into
+	 * @param src the source array
+	 * @param offset the position of the first byte of the value in source array
+	 * @param length the number of bytes of the value
+	 */
+	TalendArenaValue(TalendColumnImpl column, TalendByteArena arena, byte[] src, int offset, int length){
+		this.column = column;
+		this.length = length;
+		synchronized(arena){
+			this.offset = arena.append(src, offset, length);
+			this.chunk = arena.chunk();
+		}
+	}
+
+	/**
+	 * Build a value sharing the bytes of another one
+	 *
+	 * @param column the column the value belongs
+	 * @param shared the value to share bytes with
+	 */
+	TalendArenaValue(TalendColumnImpl column, TalendArenaValue shared){
+		this.column = column;
+		this.chunk = shared.chunk;
+		this.offset = shared.offset;
+		this.length = shared.length;
+		this.hash = shared.hash;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn getColumn() {
+		return column;
+	}
+
+	/**
+	 * Get the number of bytes of this value
+	 *
+	 * @return the length of the value, in bytes
+	 */
+	public int length(){
+		return length;
+	}
+
+	/**
+	 * Get a read-only view of the bytes of this value. No bytes are copied.
+	 *
+	 * @return a read-only buffer whose position is zero and whose limit is the length of the value
+	 */
+	public ByteBuffer asByteBuffer(){
+		return ByteBuffer.wrap(chunk, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Get a copy of the bytes of this value
+	 *
+	 * @return a new array holding the bytes of the value
+	 */
+	public byte[] getBytes(){
+		byte[] bytes = new byte[length];
+		System.arraycopy(chunk, offset, bytes, 0, length);
+		return bytes;
+	}
+
+	/**
+	 * Get the byte at the given position
+	 *
+	 * @param index the position of the byte, starting from zero
+	 * @return the byte
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the length of the value
+	 */
+	public byte byteAt(int index){
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+		return chunk[offset + index];
+	}
+
+	/**
+	 * Return the chunk holding the bytes of this value
+	 */
+	final byte[] chunk(){
+		return chunk;
+	}
+
+	/**
+	 * Return the offset of the bytes of this value inside the chunk
+	 */
+	final int offset(){
+		return offset;
+	}
+
+	/**
+	 * Check if the bytes of this value are equal to the given ones
+	 *
+	 * @param bytes the array to compare to
+	 * @param from the position of the first byte to compare in the given array
+	 * @param len the number of bytes to compare
+	 * @return true if the bytes are the same, false otherwise
+	 */
+	final boolean contentEquals(byte[] bytes, int from, int len){
+		if(len != length) return false;
+		if(bytes == chunk && from == offset) return true;
+		for(int i = 0; i < length; i++){
+			if(chunk[offset + i] != bytes[from + i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isColumnDefault() {
+		return equals(column.getDefaultTalendValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode(){
+		int h = hash;
+		if(h == 0 && length > 0){
+			for(int i = offset; i < offset + length; i++){
+				h = 31 * h + chunk[i];
+			}
+			hash = h;
+		}
+		return h;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null)
+			return false;
+		if (obj == this)
+			return true;
+		if (obj.getClass() != getClass())
+			return false;
+		TalendArenaValue other = (TalendArenaValue) obj;
+		return other.contentEquals(chunk, offset, length);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.write(chunk, offset, length);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		chunk = new byte[length];
+		in.readFully(chunk);
+		offset = 0;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A Bloom filter summarizes the keys of an index of a flow in a compact bit array, added using {@link TalendFlow#addBloomFilter(String...)}.<br />
+ * Lookups into the index, ie. by queries, joins or the primary key check on commit, ask the filter first: when the filter
+ * tells that a key is surely missing, the index itself is not even touched. Filters never reject a key held by the index,
+ * but may let some missing keys through (false positives): this makes them worth for flows where most lookups miss.<br />
+ * Bits of removed keys are not cleared, so the filter is rebuilt from the keys of the index once they are outnumbered by removed keys,
+ * or once the index outgrows the filter. Truncating the flow just clears the bits.<br />
+ * The filter keeps counters of its own lookups, so that its actual false positive rate can be checked against the expected one:<br />
+ * <pre>
+ * {@code
+ * TalendBloomFilter filter = customers.addIndex("email").addBloomFilter("email");
+ * // ... lookups ...
+ * System.out.println(filter.getFalsePositiveRate() + " observed, " + filter.getExpectedFalsePositiveRate() + " expected");
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#addIndex(String...)
+ *
+ */
+public interface TalendBloomFilter {
+
+	/**
+	 * Get the columns making the keys of the filter
+	 * 
+	 * @return an array with references to the columns
+	 */
+	public TalendColumn[] getColumns();
+
+	/**
+	 * Get the number of bits of the filter
+	 * 
+	 * @return the size of the bit array
+	 */
+	public long countBits();
+
+	/**
+	 * Get the number of lookups made through the filter since it was built
+	 * 
+	 * @return the number of lookups
+	 */
+	public long countLookups();
+
+	/**
+	 * Get the number of lookups rejected by the filter without touching the index
+	 * 
+	 * @return the number of rejected lookups
+	 */
+	public long countRejections();
+
+	/**
+	 * Get the number of lookups let through by the filter for keys missing from the index
+	 * 
+	 * @return the number of false positives
+	 */
+	public long countFalsePositives();
+
+	/**
+	 * Get the observed false positive rate, ie. the fraction of the lookups of missing keys that were let through by the filter
+	 * 
+	 * @return the false positive rate, or NaN if no missing key has been looked up yet
+	 */
+	public double getFalsePositiveRate();
+
+	/**
+	 * Get the false positive rate expected from the current size and number of keys of the filter
+	 * 
+	 * @return the expected false positive rate
+	 */
+	public double getExpectedFalsePositiveRate();
+
+}
@@ -0,0 +1,237 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the concrete implementation of a Bloom filter and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#addBloomFilter(String...)} instead and interface with filters using {@link TalendBloomFilter} interface.<br />
+ * Bits are addressed by double hashing of a 64 bit hash of each key. With {@value #BITS_PER_KEY} bits for each key and
+ * {@value #HASHES} hashes, the false positive rate of a full filter is below 1%.<br />
+ * Lookups take no lock: the bits and their mask are published together in a single holder, read through a volatile field and replaced as a whole
+ * when the filter is rebuilt or cleared.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendBloomFilter
+ */
+public class TalendBloomFilterImpl implements TalendBloomFilter {
+
+	/**
+	 * Minimum number of bits allotted to each key
+	 */
+	static final int BITS_PER_KEY = 10;
+
+	/**
+	 * Number of bits set for each key
+	 */
+	static final int HASHES = 7;
+
+	private static final int MIN_CAPACITY = 1024;
+
+	private final TalendIndex index;
+	private volatile Bits bits;
+	private int capacity;
+	private int keys;
+
+	private final LongAdder lookups;
+	private final LongAdder rejections;
+	private final LongAdder falsePositives;
+
+	/**
+	 * Build a filter holding the keys of an index
+	 * 
+	 * @param index the index
+	 */
+	TalendBloomFilterImpl(TalendIndex index){
+		this.index = index;
+		this.lookups = new LongAdder();
+		this.rejections = new LongAdder();
+		this.falsePositives = new LongAdder();
+		rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn[] getColumns() {
+		return index.getColumns().clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long countBits() {
+		return bits.words.length * 64L;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long countLookups() {
+		return lookups.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long countRejections() {
+		return rejections.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long countFalsePositives() {
+		return falsePositives.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getFalsePositiveRate() {
+		long fp = falsePositives.sum();
+		long misses = fp + rejections.sum();
+		return (misses == 0 ? Double.NaN : (double) fp / misses);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized double getExpectedFalsePositiveRate() {
+		return Math.pow(1 - Math.exp(-(double) HASHES * keys / (bits.words.length * 64.0)), HASHES);
+	}
+
+	/**
+	 * Check if a key may be held by the index
+	 * 
+	 * @param key a non-null key
+	 * @return false if the key is surely missing, true if it may be held
+	 */
+	boolean mightContain(Object key){
+		lookups.increment();
+		long hash = hash(key);
+		long h1 = hash;
+		long h2 = (hash >>> 32) | 1;
+		Bits current = bits;
+		long[] b = current.words;
+		long m = current.mask;
+		for(int i = 0; i < HASHES; i++){
+			long bit = (h1 + i * h2) & m;
+			if((b[(int) (bit >>> 6)] & (1L << bit)) == 0){
+				rejections.increment();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Record that a key let through by the filter was missing from the index
+	 */
+	void falsePositive(){
+		falsePositives.increment();
+	}
+
+	/**
+	 * Add a key just added to the index
+	 * 
+	 * @param key a non-null key
+	 */
+	synchronized void add(Object key){
+		if(++keys > capacity){
+			rebuild();
+			return;
+		}
+		set(key);
+	}
+
+	/**
+	 * Follow the removal of a key from the index, rebuilding the filter once most of its bits belong to removed keys
+	 */
+	synchronized void removed(){
+		if(keys > 2 * index.countKeys() && keys > MIN_CAPACITY) rebuild();
+	}
+
+	/**
+	 * Forget all the keys, after the index has been cleared
+	 */
+	synchronized void clear(){
+		bits = new Bits(bits.words.length);
+		keys = 0;
+	}
+
+	/**
+	 * Size the filter for twice the keys of the index, and set their bits again
+	 */
+	private void rebuild(){
+		int count = index.countKeys();
+		capacity = Math.max(MIN_CAPACITY, 2 * count);
+		long size = Long.highestOneBit((long) capacity * BITS_PER_KEY - 1) << 1;
+		Bits rebuilt = new Bits((int) Math.max(1, size >>> 6));
+		keys = 0;
+		for(Object key : index.keys()){
+			rebuilt.set(key);
+			keys++;
+		}
+		bits = rebuilt;
+	}
+
+	private void set(Object key){
+		bits.set(key);
+	}
+
+	/**
+	 * Compute a 64 bit hash of a key: integral numbers and strings are hashed on all their bits, rather than on their 32 bit hash code,
+	 * and the parts of composite keys are combined
+	 */
+	private static long hash(Object key){
+		if(!(key instanceof List)) return TalendDedupImpl.mix(TalendDedupImpl.hash64(key));
+		long hash = 0;
+		for(Object part : (List<?>) key){
+			hash = (hash ^ (part == null ? 0x5bd1e995L : TalendDedupImpl.hash64(part))) * 0x9e3779b97f4a7c15L;
+		}
+		return TalendDedupImpl.mix(hash);
+	}
+
+	/**
+	 * The bits of the filter along with the mask addressing them, published together
+	 */
+	private static final class Bits {
+
+		private final long[] words;
+		private final long mask;
+
+		Bits(int words){
+			this.words = new long[words];
+			this.mask = words * 64L - 1;
+		}
+
+		void set(Object key){
+			long hash = hash(key);
+			long h1 = hash;
+			long h2 = (hash >>> 32) | 1;
+			for(int i = 0; i < HASHES; i++){
+				long bit = (h1 + i * h2) & mask;
+				words[(int) (bit >>> 6)] |= (1L << bit);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * An arena is an append-only area of memory where the bytes of many values are packed together,
+ * in large shared chunks, instead of being held by a byte array each.<br />
+ * Values stored in an arena only keep a reference to the chunk, the offset and the length of their bytes. Since chunks
+ * are never written twice at the same position, values can be shared between rows and flows without copying them.<br />
+ * The arena only retains the chunk it is currently filling: filled chunks are garbage collected as soon as
+ * no value refers to them anymore.<br />
+ * Values bigger than a quarter of a chunk are stored in a dedicated chunk of their own size, to avoid wasting space.<br />
+ * Since the position of the last stored value is kept by the arena itself, callers must hold the lock of the arena
+ * between a call to {@link #append(byte[], int, int)} and the following call to {@link #chunk()}.
+ *
+ * @author Gabriele Baldassarre
+ *
+ */
+final class TalendByteArena {
+
+	/**
+	 * Default size of each chunk, in bytes
+	 */
+	static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Size of each chunk, in bytes, for arenas holding binary payloads of some kilobytes
+	 */
+	static final int LARGE_CHUNK_SIZE = 1024 * 1024;
+
+	private final int chunkSize;
+	private byte[] current;
+	private int position;
+	private byte[] last;
+
+	/**
+	 * Build an empty arena with default chunk size
+	 */
+	TalendByteArena(){
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Build an empty arena
+	 *
+	 * @param chunkSize the size of each shared chunk, in bytes
+	 */
+	TalendByteArena(int chunkSize){
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Copy some bytes into the arena.
+	 *
+	 * @param src the source array
+	 * @param offset the position of the first byte to copy from source array
+	 * @param length the number of bytes to copy
+	 * @return the offset of the copied bytes inside the chunk returned by the next call to {@link #chunk()}
+	 */
+	synchronized int append(byte[] src, int offset, int length){
+		if(length > chunkSize / 4){
+			last = new byte[length];
+			System.arraycopy(src, offset, last, 0, length);
+			return 0;
+		}
+		if(current == null || position + length > current.length){
+			current = new byte[chunkSize];
+			position = 0;
+		}
+		System.arraycopy(src, offset, current, position, length);
+		last = current;
+		position += length;
+		return position - length;
+	}
+
+	/**
+	 * Get the chunk holding the bytes copied by the last call to {@link #append(byte[], int, int)}
+	 *
+	 * @return a reference to the chunk
+	 */
+	synchronized byte[] chunk(){
+		return last;
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This is the value of a BYTE_ARRAY column with {@link TalendEncoding#ARENA} encoding.<br />
+ * Bytes are kept in the arena of the column and shared with every row or flow the value is copied to.
+ * Since arenas must never be written twice, {@link #getValue()} returns a copy of the bytes: use {@link #asByteBuffer()}
+ * or {@link TalendRow#getByteBuffer(String)} to read them without copying.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendEncoding
+ *
+ */
+public final class TalendByteArrayValue extends TalendArenaValue {
+
+	private static final long serialVersionUID = -3310914530880212745L;
+
+	/**
+	 * Copy the given bytes into an arena and build a value referring to them
+	 *
+	 * @param column the column the value belongs
+	 * @param arena the arena to copy the bytes into
+	 * @param src the source array
+	 * @param offset the position of the first byte of the value in source array
+	 * @param length the number of bytes of the value
+	 */
+	TalendByteArrayValue(TalendColumnImpl column, TalendByteArena arena, byte[] src, int offset, int length){
+		super(column, arena, src, offset, length);
+	}
+
+	/**
+	 * Build a value sharing the bytes of another one
+	 *
+	 * @param column the column the value belongs
+	 * @param shared the value to share bytes with
+	 */
+	TalendByteArrayValue(TalendColumnImpl column, TalendArenaValue shared){
+		super(column, shared);
+	}
+
+	/**
+	 * Return a copy of the bytes of the value
+	 *
+	 * @return a new byte array
+	 */
+	public Object getValue() {
+		return getBytes();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString(){
+		return "byte[" + length() + "]";
+	}
+
+}
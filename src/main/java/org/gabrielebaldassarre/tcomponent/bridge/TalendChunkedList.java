@@ -0,0 +1,208 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * This list stores its elements in fixed-size chunks instead of a single array or a chain of nodes.<br />
+ * It is designed to be the delegate of flow storages, which are mostly appended at the tail and, when limited in size,
+ * kicked out at the head:<br />
+ * <ul>
+ * <li>elements are appended in constant time, without ever copying the elements already held when the list grows;</li>
+ * <li>the first element is removed in constant time, releasing chunks as soon as they are emptied;</li>
+ * <li>any element is read by position in constant time, so the list can be split in balanced ranges to be processed in parallel.</li>
+ * </ul>
+ * Inserting or removing elements in any other position is supported, but it costs a copy of the following elements, like {@link java.util.ArrayList} does.<br />
+ * Like most java collections, this list is not synchronized.
+ * 
+ * <pre>
+ * {@code
+ * TalendListFactory<TalendRowImpl> factory = TalendListFactory.getInstance(TalendRowImpl.class);
+ * List<TalendRowImpl> rowList = factory.newTalendList(new TalendChunkedList<TalendRowImpl>(), 1000);
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @param <T> the type of elements held in this collection
+ * @see TalendListFactory
+ */
+public class TalendChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+	/**
+	 * Number of elements of each chunk, as a power of two
+	 */
+	static final int CHUNK_SHIFT = 10;
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private Object[][] chunks;
+	private int first;
+	private int head;
+	private int size;
+
+	/**
+	 * Create a new empty list
+	 */
+	public TalendChunkedList(){
+		this.chunks = new Object[4][];
+	}
+
+	/**
+	 * Create a new list holding the elements of the given collection, in the order they are returned by its iterator
+	 * 
+	 * @param c the collection whose elements are to be placed into this list
+	 */
+	public TalendChunkedList(Collection<? extends T> c){
+		this();
+		addAll(c);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		checkIndex(index);
+		int p = head + index;
+		return (T) chunks[first + (p >>> CHUNK_SHIFT)][p & CHUNK_MASK];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T set(int index, T element) {
+		checkIndex(index);
+		int p = head + index;
+		Object[] chunk = chunks[first + (p >>> CHUNK_SHIFT)];
+		@SuppressWarnings("unchecked")
+		T previous = (T) chunk[p & CHUNK_MASK];
+		chunk[p & CHUNK_MASK] = element;
+		return previous;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(T e) {
+		int p = head + size;
+		int c = first + (p >>> CHUNK_SHIFT);
+		if(c == chunks.length){
+			c = ensureChunkSlot();
+		}
+		if(chunks[c] == null){
+			chunks[c] = new Object[CHUNK_SIZE];
+		}
+		chunks[c][p & CHUNK_MASK] = e;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(int index, T element) {
+		if(index == size){
+			add(element);
+			return;
+		}
+		checkIndex(index);
+		add(get(size - 1));
+		for(int i = size - 2; i > index; i--){
+			set(i, get(i - 1));
+		}
+		set(index, element);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T remove(int index) {
+		checkIndex(index);
+		T removed = get(index);
+		if(index == 0){
+			chunks[first][head] = null;
+			if(++head == CHUNK_SIZE){
+				chunks[first++] = null;
+				head = 0;
+			}
+		} else {
+			for(int i = index; i < size - 1; i++){
+				set(i, get(i + 1));
+			}
+			set(size - 1, null);
+		}
+		if(--size == 0){
+			clear();
+		}
+		modCount++;
+		return removed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(chunks, null);
+		first = 0;
+		head = 0;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Make room for a new chunk at the tail, reusing the room left by the chunks released at the head if any
+	 * 
+	 * @return the position of the new chunk
+	 */
+	private int ensureChunkSlot(){
+		int used = chunks.length - first;
+		if(first > 0 && first >= used){
+			System.arraycopy(chunks, first, chunks, 0, used);
+			Arrays.fill(chunks, used, chunks.length, null);
+		} else {
+			Object[][] grown = new Object[chunks.length * 2][];
+			System.arraycopy(chunks, first, grown, 0, used);
+			chunks = grown;
+		}
+		first = 0;
+		return used;
+	}
+
+	private void checkIndex(int index){
+		if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+}
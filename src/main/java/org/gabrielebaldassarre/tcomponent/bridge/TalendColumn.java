@@ -47,6 +47,28 @@ public interface TalendColumn {
 	 */
 	public TalendType getType();
 	
+	/**
+	 * Get the encoding used to store the values of the current column
+	 * 
+	 * @return encoding of the column
+	 */
+	public TalendEncoding getEncoding();
+	
+	/**
+	 * Get the type of the elements of a typed LIST column
+	 * 
+	 * @return the type of the elements or null if the column is not a typed LIST column
+	 */
+	public TalendType getElementType();
+	
+	/**
+	 * Get the expression the values of a derived column are computed from
+	 * 
+	 * @return the expression or null if the column is not a derived column
+	 * @see TalendFlow#addDerivedColumn(String, String)
+	 */
+	public String getExpression();
+	
 	/**
 	 * Get the numerical index of the column, as the position inside the TalendFlow which the column
 	 * belongs. Indexes start from zero.
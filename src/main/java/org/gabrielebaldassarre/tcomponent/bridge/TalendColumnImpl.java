@@ -17,7 +17,11 @@
 package org.gabrielebaldassarre.tcomponent.bridge;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
 
 /**
  * This is a memory-based concrete implementation of a {@link TalendColumn} and should never be used
@@ -31,17 +35,52 @@ public final class TalendColumnImpl implements Serializable, TalendColumn{
 	private static final long serialVersionUID = 8383916163449740885L;
 	private TalendFlowImpl table;
 	private String name;
-	private TalendValueImpl defaultValue;
+	private TalendValue defaultValue;
 	int index;
+	final int slot;
 	private TalendType type;
+	private TalendEncoding encoding;
+	private TalendDictionary dictionary;
+	private TalendByteArena arena;
+	private TalendType elementType;
+	private TalendListVector vector;
+	private String expression;
+	transient TalendEvaluator derivation;
 
 	public TalendColumnImpl(TalendFlowImpl table, int index, String name, TalendType type, Object defaultValue){
+		this(table, index, name, type, defaultValue, TalendEncoding.AUTO);
+	}
+
+	public TalendColumnImpl(TalendFlowImpl table, int index, String name, TalendType type, Object defaultValue, TalendEncoding encoding){
+		this(table, index, name, type, null, defaultValue, encoding);
+	}
+
+	public TalendColumnImpl(TalendFlowImpl table, int index, String name, TalendType type, TalendType elementType, Object defaultValue, TalendEncoding encoding){
 		this.table = table;
 		this.name = name;
 		this.index = index;
+		this.slot = table.allocateSlot();
 		this.type = type;
+		this.elementType = elementType;
+		if(elementType != null){
+			this.vector = new TalendListVector(elementType);
+		}
+		if(encoding == TalendEncoding.AUTO){
+			this.encoding = (TalendEncoding.DICTIONARY.supports(type) ? TalendEncoding.DICTIONARY : TalendEncoding.PLAIN);
+		} else {
+			this.encoding = encoding;
+		}
+		if(this.encoding == TalendEncoding.DICTIONARY){
+			this.dictionary = new TalendDictionary(this, encoding == TalendEncoding.AUTO);
+		}
+		if(this.encoding == TalendEncoding.UTF8){
+			this.arena = new TalendByteArena();
+		}
+		if(this.encoding == TalendEncoding.ARENA){
+			this.arena = new TalendByteArena(TalendByteArena.LARGE_CHUNK_SIZE);
+		}
 		if(defaultValue != null){
-			this.defaultValue = new TalendValueImpl(this, defaultValue);
+			this.defaultValue = newValue(defaultValue);
 		}
 
 	}
@@ -67,6 +106,134 @@ public final class TalendColumnImpl implements Serializable, TalendColumn{
 		return type;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendEncoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendType getElementType() {
+		return elementType;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Make this column a derived column
+	 * 
+	 * @param expression the expression the values are computed from
+	 * @param derivation the compiled expression
+	 */
+	void derive(String expression, TalendEvaluator derivation){
+		this.expression = expression;
+		this.derivation = derivation;
+	}
+
+	/**
+	 * Compute the value of this derived column for a row
+	 * 
+	 * @param row the row
+	 * @return the value or null if the expression evaluates to null
+	 */
+	TalendValue derive(TalendRowImpl row){
+		Object value = derivation.value(row);
+		return (value == null ? null : newValue(value));
+	}
+
+	/**
+	 * Get the dictionary used to encode the values of this column
+	 * 
+	 * @return the dictionary or null if the column is not dictionary-encoded
+	 */
+	public TalendDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Build a new value for this column, using the encoding of the column.<br />
+	 * Dictionary-encoded columns return the canonical value shared by all the rows holding the same data.<br />
+	 * If a {@link TalendValue} is given to a column not of OBJECT type, the value is copied like {@link #newValue(TalendValue)} does,
+	 * so values can be moved between flows without decoding them.
+	 * 
+	 * @param value the value, expressed as java type
+	 * @return the value
+	 * @throws IllegalArgumentException if the value cannot be cast to the type of the column
+	 */
+	public TalendValue newValue(Object value) throws IllegalArgumentException {
+		if(value instanceof TalendValue && type != TalendType.OBJECT){
+			return newValue((TalendValue) value);
+		}
+		if(dictionary != null && value instanceof String){
+			TalendValueImpl canonical = dictionary.encode(value);
+			if(canonical != null) return canonical;
+		}
+		if(vector != null && value instanceof List){
+			return new TalendListValue(this, vector, (List<?>) value);
+		}
+		if(arena != null && value != null){
+			if(value instanceof byte[]) return newArenaValue((byte[]) value, 0, ((byte[]) value).length);
+			if(value instanceof ByteBuffer) return newArenaValue((ByteBuffer) value);
+			if(value instanceof String && encoding == TalendEncoding.UTF8){
+				byte[] utf8 = ((String) value).getBytes(TalendUtf8Value.UTF8);
+				return newArenaValue(utf8, 0, utf8.length);
+			}
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidTalendParameter"), value, type.getType().getSimpleName()));
+		}
+		return new TalendValueImpl(this, value);
+	}
+
+	private TalendArenaValue newArenaValue(byte[] src, int offset, int length){
+		if(encoding == TalendEncoding.UTF8) return new TalendUtf8Value(this, arena, src, offset, length);
+		return new TalendByteArrayValue(this, arena, src, offset, length);
+	}
+
+	private TalendArenaValue newArenaValue(ByteBuffer buffer){
+		if(buffer.hasArray()) return newArenaValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return newArenaValue(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Build a new value for this column, holding the same data of the given value.<br />
+	 * Values already belonging to this column are returned as they are, while bytes of values stored in arenas are shared whenever possible.
+	 * 
+	 * @param value the value to copy
+	 * @return the value
+	 * @throws IllegalArgumentException if the value cannot be cast to the type of the column
+	 */
+	public TalendValue newValue(TalendValue value) throws IllegalArgumentException {
+		if(value.getColumn() == this) return value;
+		if(value instanceof TalendListValue && vector != null && elementType == ((TalendListValue) value).getElementType()){
+			return new TalendListValue(this, (TalendListValue) value);
+		}
+		if(value instanceof TalendArenaValue){
+			if(encoding == TalendEncoding.UTF8) return new TalendUtf8Value(this, (TalendArenaValue) value);
+			if(encoding == TalendEncoding.ARENA) return new TalendByteArrayValue(this, (TalendArenaValue) value);
+			if(type == TalendType.BYTE_ARRAY) return newValue(((TalendArenaValue) value).getBytes());
+		}
+		return newValue(value.getValue());
+	}
+
+	/**
+	 * Get the default value of this column, as a value shared by all the rows
+	 * 
+	 * @return the default value or null if the column has no default value
+	 */
+	TalendValue getDefaultTalendValue() {
+		return defaultValue;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -101,11 +268,10 @@ public final class TalendColumnImpl implements Serializable, TalendColumn{
 	 * {@inheritDoc}
 	 */
 	public int hashCode(){
-		int hash = (index == 0 ? 1 : index);
+		int hash = 1;
 		hash = hash * 11 + table.getName().hashCode();
 		hash = hash * 7 + name.hashCode();
 		hash = hash * 3 + type.hashCode();
-		hash = hash * 13 + (defaultValue == null ? 0 : defaultValue.hashCode());
 		return hash;
 
 	}
@@ -0,0 +1,85 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * Statistics of the values of a column over the committed rows of a flow, kept up to date as rows are saved, evicted, truncated or changed.
+ * They are collected using {@link TalendFlow#collectStatistics(String...)}.<br />
+ * Besides the statistics of the whole flow, the same statistics are kept for each block of consecutive rows (a <i>zone map</i>),
+ * so that queries can skip the blocks whose values cannot satisfy their predicates without reading their rows.<br />
+ * To keep updates cheap, bounds are never shrunk: no committed value is outside them, but they can be wider than the actual values
+ * after rows have been evicted or values changed. The number of distinct values is estimated using HyperLogLog sketches,
+ * with a typical error of about 3%. Example of use:<br />
+ * <pre>
+ * {@code
+ * flow.collectStatistics("customerId");
+ * // ... add rows ...
+ * TalendColumnStatistics stats = flow.getStatistics("customerId");
+ * Map<Object, Object> lookup = new HashMap<Object, Object>((int) (stats.estimateDistinct() / 0.75) + 1);
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#getStatistics(String)
+ *
+ */
+public interface TalendColumnStatistics {
+
+	/**
+	 * Get the column the statistics are about
+	 * 
+	 * @return a reference to the column
+	 */
+	public TalendColumn getColumn();
+
+	/**
+	 * Get a lower bound of the non-null values of the column
+	 * 
+	 * @return the lower bound, or null if the column has no non-null value or its values cannot be compared
+	 */
+	public Object getMinimum();
+
+	/**
+	 * Get an upper bound of the non-null values of the column
+	 * 
+	 * @return the upper bound, or null if the column has no non-null value or its values cannot be compared
+	 */
+	public Object getMaximum();
+
+	/**
+	 * Count the committed rows holding a null value for the column
+	 * 
+	 * @return the number of null values
+	 */
+	public long countNulls();
+
+	/**
+	 * Count the committed rows holding a non-null value for the column
+	 * 
+	 * @return the number of non-null values
+	 */
+	public long countValues();
+
+	/**
+	 * Estimate the number of distinct non-null values of the column. Values changed or evicted may still be counted until the
+	 * whole block of rows holding them is evicted.
+	 * 
+	 * @return the estimated number of distinct values
+	 */
+	public long estimateDistinct();
+
+}
@@ -0,0 +1,267 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This is the concrete implementation of the statistics of a column and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#collectStatistics(String...)} instead and interface with them using {@link TalendColumnStatistics} interface.<br />
+ * Rows are split into blocks of {@value #BLOCK_SIZE} rows by their sequence number, so that the block of a row never changes
+ * while the row belongs to the flow. Each block holds the bounds, the counts and a HyperLogLog sketch of its own values. The
+ * statistics of the whole flow are computed merging the blocks, and cached until the next change.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendColumnStatistics
+ */
+public class TalendColumnStatisticsImpl implements TalendColumnStatistics {
+
+	/**
+	 * Number of bits of the sequence number of the rows addressing their position in a block
+	 */
+	static final int BLOCK_SHIFT = TalendChunkedList.CHUNK_SHIFT;
+
+	/**
+	 * Number of rows of each block
+	 */
+	static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	// number of bits of the hashes selecting a register of the sketches
+	private static final int PRECISION = 10;
+	private static final int REGISTERS = 1 << PRECISION;
+
+	private final TalendColumnImpl column;
+	private final boolean comparable;
+	private final TalendChunkedList<Zone> zones;
+	private long firstBlock;
+
+	private Zone summary;
+	private long estimate;
+
+	/**
+	 * Build the statistics of a column over the committed rows of its flow
+	 * 
+	 * @param flow the flow
+	 * @param column the column
+	 */
+	TalendColumnStatisticsImpl(TalendFlowImpl flow, TalendColumnImpl column){
+		this.column = column;
+		this.comparable = TalendSortImpl.isComparable(column.getType());
+		this.zones = new TalendChunkedList<Zone>();
+		for(int i = 0; i < flow.countRows(); i++){
+			added(flow.committedRow(i));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn getColumn() {
+		return column;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized Object getMinimum() {
+		return summary().min;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized Object getMaximum() {
+		return summary().max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long countNulls() {
+		return summary().nulls;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long countValues() {
+		return summary().values;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long estimateDistinct() {
+		summary();
+		return estimate;
+	}
+
+	/**
+	 * Get the statistics of a block of rows
+	 * 
+	 * @param block the block, ie. the sequence number of its rows shifted right by {@link #BLOCK_SHIFT} bits
+	 * @return the statistics of the block, or null if the block holds no row
+	 */
+	synchronized Zone zone(long block){
+		long i = block - firstBlock;
+		return (i < 0 || i >= zones.size() ? null : zones.get((int) i));
+	}
+
+	/**
+	 * Count a row just saved to the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void added(TalendRowImpl row){
+		long block = row.sequence >>> BLOCK_SHIFT;
+		if(zones.isEmpty()) firstBlock = block;
+		while(firstBlock + zones.size() <= block){
+			zones.add(new Zone());
+		}
+		Zone zone = zones.get((int) (block - firstBlock));
+		zone.rows++;
+		add(zone, row.value(column));
+		summary = null;
+	}
+
+	/**
+	 * Forget a row evicted from the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void removed(TalendRowImpl row){
+		Zone zone = zone(row.sequence >>> BLOCK_SHIFT);
+		if(zone == null) return;
+		zone.rows--;
+		if(TalendAccumulator.isNull(row.value(column))){
+			zone.nulls--;
+		} else {
+			zone.values--;
+		}
+		while(!zones.isEmpty() && zones.get(0).rows == 0){
+			zones.remove(0);
+			firstBlock++;
+		}
+		summary = null;
+	}
+
+	/**
+	 * Follow a change of a value of a saved row
+	 * 
+	 * @param row the row, already holding the new value
+	 * @param previous the value held by the column before the change
+	 */
+	synchronized void updated(TalendRowImpl row, TalendValue previous){
+		Zone zone = zone(row.sequence >>> BLOCK_SHIFT);
+		if(zone == null) return;
+		if(TalendAccumulator.isNull(previous)){
+			zone.nulls--;
+		} else {
+			zone.values--;
+		}
+		add(zone, row.value(column));
+		summary = null;
+	}
+
+	/**
+	 * Forget all the rows, after the flow has been truncated
+	 */
+	synchronized void clear(){
+		zones.clear();
+		summary = null;
+	}
+
+	private void add(Zone zone, TalendValue value){
+		Object key = TalendIndex.keyOf(column, value);
+		if(key == null){
+			zone.nulls++;
+			return;
+		}
+		zone.values++;
+		if(comparable){
+			if(zone.min == null || TalendPredicate.compare(key, zone.min) < 0) zone.min = key;
+			if(zone.max == null || TalendPredicate.compare(key, zone.max) > 0) zone.max = key;
+		}
+		if(zone.registers == null) zone.registers = new byte[REGISTERS];
+		long hash = hash(key.hashCode());
+		int register = (int) (hash >>> (64 - PRECISION));
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+		if(rank > zone.registers[register]) zone.registers[register] = rank;
+	}
+
+	/**
+	 * Merge the statistics of all the blocks, unless the cached ones are still valid
+	 */
+	private Zone summary(){
+		if(summary != null) return summary;
+		Zone s = new Zone();
+		byte[] registers = new byte[REGISTERS];
+		for(Zone zone : zones){
+			s.rows += zone.rows;
+			s.nulls += zone.nulls;
+			s.values += zone.values;
+			if(zone.values == 0) continue;
+			if(zone.min != null && (s.min == null || TalendPredicate.compare(zone.min, s.min) < 0)) s.min = zone.min;
+			if(zone.max != null && (s.max == null || TalendPredicate.compare(zone.max, s.max) > 0)) s.max = zone.max;
+			for(int r = 0; r < REGISTERS; r++){
+				if(zone.registers[r] > registers[r]) registers[r] = zone.registers[r];
+			}
+		}
+		estimate = (s.values == 0 ? 0 : Math.min(s.values, estimate(registers)));
+		summary = s;
+		return s;
+	}
+
+	/**
+	 * Estimate the cardinality of a HyperLogLog sketch, using linear counting for small cardinalities
+	 */
+	private static long estimate(byte[] registers){
+		double sum = 0;
+		int zeros = 0;
+		for(byte r : registers){
+			sum += 1.0 / (1L << r);
+			if(r == 0) zeros++;
+		}
+		double m = registers.length;
+		double e = (0.7213 / (1 + 1.079 / m)) * m * m / sum;
+		if(e <= 2.5 * m && zeros > 0) e = m * Math.log(m / zeros);
+		return Math.round(e);
+	}
+
+	/**
+	 * Spread the bits of a hash code over 64 bits
+	 */
+	private static long hash(int hashCode){
+		long z = hashCode * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * The statistics of a block of rows
+	 */
+	static final class Zone {
+
+		long rows;
+		long nulls;
+		long values;
+		Object min;
+		Object max;
+		byte[] registers;
+
+	}
+
+}
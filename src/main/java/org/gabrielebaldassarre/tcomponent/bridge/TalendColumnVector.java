@@ -0,0 +1,201 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * A column vector is a primitive copy of the values of a numeric column, kept up to date by the flow like indexes are,
+ * so that filters and aggregates can run over plain arrays through {@link TalendKernels} instead of reading rows one at a time.<br />
+ * Like {@link TalendColumnStatisticsImpl}, rows are split into blocks of {@value TalendColumnStatisticsImpl#BLOCK_SIZE} rows by their
+ * sequence number. Each block holds the values of its rows in a long[] (integral and DATE columns, the latter as milliseconds since the epoch)
+ * or in a double[] (FLOAT and DOUBLE columns), along with a bitmap flagging the rows holding a value.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#vectorize(String...)
+ *
+ */
+final class TalendColumnVector {
+
+	/**
+	 * Number of 64 bits words of the bitmaps of a block
+	 */
+	static final int WORDS = TalendColumnStatisticsImpl.BLOCK_SIZE >>> 6;
+
+	private final TalendColumnImpl column;
+	private final boolean floating;
+	private final TalendChunkedList<Block> blocks;
+	private long firstBlock;
+
+	/**
+	 * Build the vector of a column over the committed rows of its flow
+	 * 
+	 * @param flow the flow
+	 * @param column the column
+	 * @throws IllegalArgumentException if the column is not numeric or is a derived column
+	 */
+	TalendColumnVector(TalendFlowImpl flow, TalendColumnImpl column){
+		if(!supports(column.getType()) || column.getExpression() != null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.notVectorizable"), column.getName(), column.getType()));
+		}
+		this.column = column;
+		this.floating = isFloating(column.getType());
+		this.blocks = new TalendChunkedList<Block>();
+		for(int i = 0; i < flow.countRows(); i++){
+			added(flow.committedRow(i));
+		}
+	}
+
+	/**
+	 * Check if the values of a type can be kept in a vector
+	 * 
+	 * @param type the type
+	 * @return true for integral, floating point and DATE types
+	 */
+	static boolean supports(TalendType type){
+		return TalendAccumulator.isIntegral(type) || isFloating(type) || type == TalendType.DATE;
+	}
+
+	private static boolean isFloating(TalendType type){
+		return type == TalendType.FLOAT || type == TalendType.DOUBLE;
+	}
+
+	/**
+	 * Get the column held by this vector
+	 * 
+	 * @return the column
+	 */
+	TalendColumnImpl getColumn(){
+		return column;
+	}
+
+	/**
+	 * Check if the values are held as doubles
+	 * 
+	 * @return true if blocks hold double[] values, false if they hold long[] values
+	 */
+	boolean isFloating(){
+		return floating;
+	}
+
+	/**
+	 * Convert a non-null value of the column to the long it is held as
+	 * 
+	 * @param value the value, as java type
+	 * @return the value as a long
+	 */
+	static long toLong(Object value){
+		if(value instanceof Date) return ((Date) value).getTime();
+		return ((Number) value).longValue();
+	}
+
+	/**
+	 * Get a block of rows
+	 * 
+	 * @param block the block, ie. the sequence number of its rows shifted right by {@link TalendColumnStatisticsImpl#BLOCK_SHIFT} bits
+	 * @return the block, or null if the block holds no row
+	 */
+	synchronized Block block(long block){
+		long i = block - firstBlock;
+		return (i < 0 || i >= blocks.size() ? null : blocks.get((int) i));
+	}
+
+	/**
+	 * Copy the value of a row just saved to the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void added(TalendRowImpl row){
+		long block = row.sequence >>> TalendColumnStatisticsImpl.BLOCK_SHIFT;
+		if(blocks.isEmpty()) firstBlock = block;
+		while(firstBlock + blocks.size() <= block){
+			blocks.add(new Block(floating));
+		}
+		Block b = blocks.get((int) (block - firstBlock));
+		b.rows++;
+		set(b, (int) (row.sequence & (TalendColumnStatisticsImpl.BLOCK_SIZE - 1)), row.value(column));
+	}
+
+	/**
+	 * Forget a row evicted from the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void removed(TalendRowImpl row){
+		Block b = block(row.sequence >>> TalendColumnStatisticsImpl.BLOCK_SHIFT);
+		if(b == null) return;
+		b.rows--;
+		set(b, (int) (row.sequence & (TalendColumnStatisticsImpl.BLOCK_SIZE - 1)), null);
+		while(!blocks.isEmpty() && blocks.get(0).rows == 0){
+			blocks.remove(0);
+			firstBlock++;
+		}
+	}
+
+	/**
+	 * Follow a change of a value of a saved row
+	 * 
+	 * @param row the row, already holding the new value
+	 */
+	synchronized void updated(TalendRowImpl row){
+		Block b = block(row.sequence >>> TalendColumnStatisticsImpl.BLOCK_SHIFT);
+		if(b == null) return;
+		set(b, (int) (row.sequence & (TalendColumnStatisticsImpl.BLOCK_SIZE - 1)), row.value(column));
+	}
+
+	/**
+	 * Forget all the rows, after the flow has been truncated
+	 */
+	synchronized void clear(){
+		blocks.clear();
+	}
+
+	private void set(Block b, int i, TalendValue value){
+		if(TalendAccumulator.isNull(value)){
+			b.valid[i >>> 6] &= ~(1L << i);
+			return;
+		}
+		if(floating){
+			b.doubles[i] = ((Number) value.getValue()).doubleValue();
+		} else {
+			b.longs[i] = toLong(value.getValue());
+		}
+		b.valid[i >>> 6] |= (1L << i);
+	}
+
+	/**
+	 * The values of a block of rows
+	 */
+	static final class Block {
+
+		final long[] longs;
+		final double[] doubles;
+		final long[] valid;
+		int rows;
+
+		Block(boolean floating){
+			this.longs = (floating ? null : new long[TalendColumnStatisticsImpl.BLOCK_SIZE]);
+			this.doubles = (floating ? new double[TalendColumnStatisticsImpl.BLOCK_SIZE] : null);
+			this.valid = new long[WORDS];
+		}
+
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A condition is a {@link TalendPredicate} compiled against the columns of a flow: column names are already resolved to columns
+ * and constants are already converted to the types of the columns, so testing a row doesn't involve any lookup by name.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendPredicate
+ *
+ */
+interface TalendCondition {
+
+	/**
+	 * Check if a row satisfies the condition, reading its committed values
+	 * 
+	 * @param row the row to test
+	 * @return true if the row satisfies the condition, false otherwise
+	 */
+	public boolean test(TalendRowImpl row);
+
+}
@@ -0,0 +1,107 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A deduplicator splits the committed rows of a flow into unique rows and duplicates, according to the values of some columns,
+ * built using {@link TalendFlow#deduplicate(String...)}.<br />
+ * Unlike primary keys, which reject a whole transaction holding a duplicate key, deduplicators never fail: rows are copied to a flow of
+ * unique rows or to a flow of duplicates as they come. Deduplication is incremental: each call to {@link #update()} only reads the rows
+ * committed to the source flow since the previous call, so it can run after each commit of a streaming flow.<br />
+ * Keys are not stored: the deduplicator only keeps a compact hash table mapping a 64 bit hash of each key to the position of the
+ * kept row in the flow of unique rows, and compares the values of the rows whose hashes match, so that hash collisions never lose a row.
+ * Null values are considered equal to each other.<br />
+ * Example of use:<br />
+ * <pre>
+ * {@code
+ * TalendDedup dedup = flow.deduplicate("customerId", "day").keep(TalendDedupPolicy.KEEP_LAST).into("uniques", "duplicates");
+ * 
+ * // After each commit to the source flow
+ * flow.commit();
+ * dedup.update();
+ * }
+ * </pre>
+ * The flows of unique rows and duplicates are owned by the deduplicator: they must not be modified by anyone else.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendDedupPolicy
+ *
+ */
+public interface TalendDedup {
+
+	/**
+	 * Set which row is kept for each key. The default policy is {@link TalendDedupPolicy#KEEP_FIRST}.
+	 * 
+	 * @param policy the policy
+	 * @return a reference to the deduplicator itself
+	 * @throws IllegalArgumentException if the policy is null
+	 * @throws IllegalStateException if the deduplication has already started
+	 */
+	public TalendDedup keep(TalendDedupPolicy policy);
+
+	/**
+	 * Start the deduplication, creating the flows of unique rows and duplicates in the same model of the source flow and
+	 * splitting the rows already committed to the source flow.<br />
+	 * Both flows have the same columns of the source flow, no maximum size and don't support transactions.
+	 * 
+	 * @param uniques the name of the flow of unique rows
+	 * @param duplicates the name of the flow of duplicates, or null to discard them
+	 * @return a reference to the deduplicator itself
+	 * @throws IllegalArgumentException if any of the names is not valid or already used by a flow of the model
+	 * @throws IllegalStateException if the deduplication has already started
+	 */
+	public TalendDedup into(String uniques, String duplicates);
+
+	/**
+	 * Split the rows committed to the source flow since the previous call. Rows that have been evicted from a
+	 * bounded source flow before being read are lost.
+	 * 
+	 * @return the number of rows read from the source flow
+	 * @throws IllegalStateException if the deduplication has not started yet
+	 * @throws java.util.ConcurrentModificationException if the flow of unique rows has been modified by someone else
+	 */
+	public int update();
+
+	/**
+	 * Get the deduplicated flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Get the columns making the key of the rows
+	 * 
+	 * @return an array with references to the columns of the deduplicated flow
+	 */
+	public TalendColumn[] getColumns();
+
+	/**
+	 * Get the flow of unique rows
+	 * 
+	 * @return a reference to the flow, or null if the deduplication has not started yet
+	 */
+	public TalendFlow getUniques();
+
+	/**
+	 * Get the flow of duplicates
+	 * 
+	 * @return a reference to the flow, or null if the deduplication has not started yet or duplicates are discarded
+	 */
+	public TalendFlow getDuplicates();
+
+}
@@ -0,0 +1,307 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a deduplicator and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#deduplicate(String...)} instead and interface with deduplicators using {@link TalendDedup} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendDedup
+ */
+public class TalendDedupImpl implements TalendDedup {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final TalendFlowImpl flow;
+	private final TalendColumnImpl[] columns;
+	private TalendDedupPolicy policy;
+	private TalendFlowImpl uniques;
+	private TalendFlowImpl duplicates;
+	private TalendColumnImpl[] from;
+	private TalendColumnImpl[] toUniques;
+	private TalendColumnImpl[] toDuplicates;
+	private TalendColumnImpl[] uniqueKey;
+	private int uniquesModCount;
+	private long nextSequence;
+
+	// open addressing hash table: hash of the key and position of the kept row in the flow of unique rows, -1 for empty slots
+	private long[] hashes;
+	private int[] positions;
+	private int size;
+
+	/**
+	 * Build a deduplicator of a flow
+	 * 
+	 * @param flow the flow to deduplicate
+	 * @param columns the columns making the key
+	 */
+	TalendDedupImpl(TalendFlowImpl flow, TalendColumnImpl[] columns){
+		this.flow = flow;
+		this.columns = columns;
+		this.policy = TalendDedupPolicy.KEEP_FIRST;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendDedup keep(TalendDedupPolicy policy) {
+		checkStarted(false);
+		if(policy == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "policy"));
+		}
+		this.policy = policy;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendDedup into(String uniques, String duplicates) {
+		checkStarted(false);
+		from = flow.columnsList.toArray(new TalendColumnImpl[flow.columnsList.size()]);
+		TalendFlowImpl u = flow.newFlow(uniques, from);
+		TalendFlowImpl d = (duplicates == null ? null : flow.newFlow(duplicates, from));
+		this.toUniques = u.columnsList.toArray(new TalendColumnImpl[from.length]);
+		this.toDuplicates = (d == null ? null : d.columnsList.toArray(new TalendColumnImpl[from.length]));
+		this.uniqueKey = new TalendColumnImpl[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			uniqueKey[i] = toUniques[Arrays.asList(from).indexOf(columns[i])];
+		}
+		this.hashes = new long[INITIAL_CAPACITY];
+		this.positions = new int[INITIAL_CAPACITY];
+		Arrays.fill(positions, -1);
+		this.uniques = u;
+		this.duplicates = d;
+		this.uniquesModCount = u.modCount();
+		update();
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized int update() {
+		checkStarted(true);
+		uniques.checkForModification(uniquesModCount);
+		int rows = flow.countRows();
+		if(rows == 0) return 0;
+		long first = flow.committedRow(0).sequence;
+		int start = (int) Math.max(0, Math.min(rows, nextSequence - first));
+		for(int i = start; i < rows; i++){
+			add(flow.committedRow(i));
+		}
+		nextSequence = flow.committedRow(rows - 1).sequence + 1;
+		uniquesModCount = uniques.modCount();
+		return rows - start;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn[] getColumns() {
+		return columns.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getUniques() {
+		return uniques;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getDuplicates() {
+		return duplicates;
+	}
+
+	private void checkStarted(boolean started){
+		if((uniques != null) == started) return;
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString(started ? "exception.dedupNotStarted" : "exception.dedupStarted"), flow.getName()));
+	}
+
+	/**
+	 * Route a row of the source flow either to the unique rows or to the duplicates
+	 */
+	private void add(TalendRowImpl row){
+		long hash = hashOf(row);
+		int mask = hashes.length - 1;
+		int slot = (int) hash & mask;
+		while(positions[slot] >= 0){
+			if(hashes[slot] == hash){
+				TalendRowImpl kept = uniques.committedRow(positions[slot]);
+				if(sameKey(row, kept)){
+					duplicate(row, kept);
+					return;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		TalendRowImpl unique = uniques.newRow();
+		TalendFlowImpl.copyValues(row, from, unique, toUniques);
+		hashes[slot] = hash;
+		positions[slot] = uniques.countRows() - 1;
+		if(++size * 2 > hashes.length) rehash();
+	}
+
+	private void duplicate(TalendRowImpl row, TalendRowImpl kept){
+		if(policy == TalendDedupPolicy.KEEP_FIRST){
+			if(duplicates != null) TalendFlowImpl.copyValues(row, from, duplicates.newRow(), toDuplicates);
+			return;
+		}
+		if(duplicates != null) TalendFlowImpl.copyValues(kept, toUniques, duplicates.newRow(), toDuplicates);
+		for(int i = 0; i < from.length; i++){
+			TalendValue value = row.value(from[i]);
+			kept.put(toUniques[i], (value == null ? null : toUniques[i].newValue(value)));
+		}
+	}
+
+	private void rehash(){
+		long[] oldHashes = hashes;
+		int[] oldPositions = positions;
+		hashes = new long[oldHashes.length * 2];
+		positions = new int[oldPositions.length * 2];
+		Arrays.fill(positions, -1);
+		int mask = hashes.length - 1;
+		for(int i = 0; i < oldPositions.length; i++){
+			if(oldPositions[i] < 0) continue;
+			int slot = (int) oldHashes[i] & mask;
+			while(positions[slot] >= 0){
+				slot = (slot + 1) & mask;
+			}
+			hashes[slot] = oldHashes[i];
+			positions[slot] = oldPositions[i];
+		}
+	}
+
+	private boolean sameKey(TalendRowImpl row, TalendRowImpl kept){
+		for(int i = 0; i < columns.length; i++){
+			TalendValue x = row.value(columns[i]);
+			TalendValue y = kept.value(uniqueKey[i]);
+			if(x instanceof TalendArenaValue && y != null && x.getClass() == y.getClass()){
+				// compare raw bytes without decoding them
+				if(!x.equals(y)) return false;
+				continue;
+			}
+			Object a = TalendIndex.keyOf(columns[i], x);
+			Object b = TalendIndex.keyOf(uniqueKey[i], y);
+			if(a == null ? b != null : (b == null || !TalendPredicate.equal(a, b))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compute a 64 bit hash of the key of a row, without building a list of its parts.<br />
+	 * Values are hashed as they are stored, without decoding them: dictionary-encoded values are hashed by their code and
+	 * arena values by their raw bytes. Only the rows of the source flow are hashed, so codes always come from the same dictionary.
+	 */
+	private long hashOf(TalendRowImpl row){
+		long hash = 0;
+		for(TalendColumnImpl col : columns){
+			TalendValue value = row.value(col);
+			long h;
+			if(TalendAccumulator.isNull(value)){
+				h = 0x5bd1e995L;
+			} else if(value instanceof TalendArenaValue){
+				TalendArenaValue v = (TalendArenaValue) value;
+				h = hashBytes(v.chunk(), v.offset(), v.length());
+			} else if(value instanceof TalendValueImpl && ((TalendValueImpl) value).getCode() >= 0){
+				h = mix(((TalendValueImpl) value).getCode());
+			} else {
+				Object key = TalendIndex.keyOf(col, value);
+				if(key instanceof String && col.getEncoding() == TalendEncoding.UTF8){
+					// hash like the encoded values of the column
+					byte[] utf8 = ((String) key).getBytes(TalendUtf8Value.UTF8);
+					h = hashBytes(utf8, 0, utf8.length);
+				} else if(key instanceof ByteBuffer){
+					ByteBuffer bytes = (ByteBuffer) key;
+					byte[] copy = new byte[bytes.remaining()];
+					bytes.duplicate().get(copy);
+					h = hashBytes(copy, 0, copy.length);
+				} else {
+					h = hash64(key);
+				}
+			}
+			hash = (hash ^ h) * 0x9e3779b97f4a7c15L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Compute a 64 bit FNV-1a hash of a range of bytes
+	 */
+	private static long hashBytes(byte[] bytes, int offset, int length){
+		long h = 0xcbf29ce484222325L;
+		for(int i = offset; i < offset + length; i++){
+			h = (h ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Compute a 64 bit hash of a part of a key
+	 * 
+	 * @param part the part of the key
+	 * @return the hash
+	 */
+	static long hash64(Object part){
+		if(part instanceof Long || part instanceof Integer || part instanceof Short || part instanceof Byte){
+			return mix(((Number) part).longValue());
+		}
+		if(part instanceof Double || part instanceof Float){
+			return mix(Double.doubleToLongBits(((Number) part).doubleValue()));
+		}
+		if(part instanceof String){
+			String s = (String) part;
+			long h = 0xcbf29ce484222325L;
+			for(int i = 0; i < s.length(); i++){
+				h = (h ^ s.charAt(i)) * 0x100000001b3L;
+			}
+			return h;
+		}
+		return mix(part.hashCode());
+	}
+
+	/**
+	 * Finalize a hash spreading its bits, like the finalizer of MurmurHash3
+	 */
+	static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
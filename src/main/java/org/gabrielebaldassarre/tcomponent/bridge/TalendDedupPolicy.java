@@ -0,0 +1,38 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents which row {@link TalendDedup} keeps when many rows share the same key.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendDedup#keep(TalendDedupPolicy)
+ *
+ */
+public enum TalendDedupPolicy {
+
+	/**
+	 * Keep the first row seen for each key, and route the following ones to the duplicates
+	 */
+	KEEP_FIRST,
+
+	/**
+	 * Keep the last row seen for each key: each new row replaces the values of the kept one, whose previous values are routed to the duplicates
+	 */
+	KEEP_LAST
+
+}
@@ -0,0 +1,200 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A dictionary holds the distinct values of a dictionary-encoded column.<br />
+ * Each distinct value is stored exactly once, as a canonical {@link TalendValueImpl} identified by a dense integer code
+ * (starting from zero, in order of first appearance). All the rows holding the same value share the same canonical instance,
+ * so comparing two values of the same column means comparing two integers.<br />
+ * Codes are never reused nor reassigned during the life of a column, so they can be safely used as keys in hash tables,
+ * filters and groupings.<br />
+ * Codes are stable only between truncates, though: once the flow of the column is emptied by a truncate, leaving no rows behind,
+ * the dictionary forgets all its values and an automatic dictionary starts accepting new values again, so that flows refilled
+ * at every batch don't keep every value they have ever seen. Values encoded before are not decoded anymore, and new values get
+ * new codes, greater than any code given before.<br />
+ * Dictionaries are built and fed by columns with {@link TalendEncoding#DICTIONARY} or {@link TalendEncoding#AUTO} encoding
+ * and should never be instantiated directly.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendEncoding
+ *
+ */
+public final class TalendDictionary implements Serializable {
+
+	private static final long serialVersionUID = -4620372871163473016L;
+
+	/**
+	 * Number of encoded values after which an automatic dictionary checks its own effectiveness
+	 */
+	static final int AUTO_SAMPLE_SIZE = 4096;
+
+	/**
+	 * Maximum number of entries of an automatic dictionary
+	 */
+	static final int AUTO_MAXIMUM_SIZE = 65536;
+
+	private final TalendColumnImpl column;
+	private final Map<Object, TalendValueImpl> codes;
+	private final List<TalendValueImpl> values;
+	private final boolean automatic;
+	private volatile boolean open;
+	private final AtomicLong encoded;
+	private volatile int base;
+
+	/**
+	 * Build an empty dictionary for the given column
+	 *
+	 * @param column the column whose values will be encoded
+	 * @param automatic true if the dictionary must stop growing by itself when the column proves to have too many distinct values
+	 */
+	TalendDictionary(TalendColumnImpl column, boolean automatic){
+		this.column = column;
+		this.automatic = automatic;
+		this.open = true;
+		this.encoded = new AtomicLong();
+		this.codes = new ConcurrentHashMap<Object, TalendValueImpl>();
+		this.values = new ArrayList<TalendValueImpl>();
+	}
+
+	/**
+	 * Return the canonical value for the given java object, adding it to the dictionary if needed.
+	 *
+	 * @param value the value to encode
+	 * @return the canonical value, or null if the value is not in the dictionary and the dictionary doesn't accept new entries anymore
+	 */
+	TalendValueImpl encode(Object value){
+		TalendValueImpl canonical = codes.get(value);
+		if(automatic && open){
+			long n = encoded.incrementAndGet();
+			if(n % AUTO_SAMPLE_SIZE == 0 && (codes.size() >= AUTO_MAXIMUM_SIZE || codes.size() * 2L > n)) open = false;
+		}
+		if(canonical != null || !open) return canonical;
+
+		synchronized(this){
+			canonical = codes.get(value);
+			if(canonical == null){
+				// codes are never reused, even across resets: stop growing once they are exhausted
+				if(values.size() >= Integer.MAX_VALUE - base){
+					open = false;
+					return null;
+				}
+				canonical = new TalendValueImpl(column, value, base + values.size());
+				values.add(canonical);
+				codes.put(value, canonical);
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Get the code of the given value
+	 *
+	 * @param value the value to look for, expressed as java type
+	 * @return the code of the value or -1 if the value is not in the dictionary
+	 */
+	public int lookup(Object value){
+		if(value == null) return -1;
+		TalendValueImpl canonical = codes.get(value);
+		return (canonical == null ? -1 : canonical.getCode());
+	}
+
+	/**
+	 * Get the value with the given code
+	 *
+	 * @param code the code of the value
+	 * @return the value, as java type
+	 * @throws IndexOutOfBoundsException if no value exists in the dictionary with the given code
+	 */
+	public Object decode(int code){
+		return getTalendValue(code).getValue();
+	}
+
+	/**
+	 * Get the canonical value with the given code
+	 *
+	 * @param code the code of the value
+	 * @return the canonical value shared by all the rows holding it
+	 * @throws IndexOutOfBoundsException if no value exists in the dictionary with the given code
+	 */
+	public synchronized TalendValue getTalendValue(int code){
+		if(code < base) throw new IndexOutOfBoundsException(String.valueOf(code));
+		return values.get(code - base);
+	}
+
+	/**
+	 * Return the number of distinct values held by the dictionary
+	 *
+	 * @return the number of distinct values
+	 */
+	public synchronized int size(){
+		return values.size();
+	}
+
+	/**
+	 * Forget all the values of the dictionary, once no row of the flow holds them anymore.<br />
+	 * Codes given so far are not reused: new values get codes greater than all of them. Automatic dictionaries start accepting new values again.
+	 */
+	synchronized void reset(){
+		if(values.isEmpty() && open) return;
+		long next = (long) base + values.size();
+		codes.clear();
+		values.clear();
+		encoded.set(0);
+		base = (int) next;
+		open = (next < Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Check if a code was given since the last reset of the dictionary.<br />
+	 * Different codes given since the same reset always belong to different values.
+	 *
+	 * @param code the code to check
+	 * @return true if the code belongs to a value currently held by the dictionary
+	 */
+	boolean isCurrent(int code){
+		return code >= base;
+	}
+
+	/**
+	 * Check if the dictionary still accepts new values.<br />
+	 * Automatic dictionaries stop accepting new values when the column has too many distinct ones; from that moment on,
+	 * only the values already in the dictionary are encoded, while new ones are stored as plain values.
+	 *
+	 * @return true if new values are added to the dictionary, false otherwise
+	 */
+	public boolean isOpen(){
+		return open;
+	}
+
+	/**
+	 * Get the column which the dictionary belongs
+	 *
+	 * @return a reference to the column
+	 */
+	public TalendColumn getColumn(){
+		return column;
+	}
+
+}
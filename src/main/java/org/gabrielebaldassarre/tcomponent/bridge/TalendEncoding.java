@@ -0,0 +1,99 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents the way values of a column are stored in memory.<br />
+ * Encodings are transparent to users of {@link TalendRow} and {@link TalendValue}: values are always
+ * returned as regular java types, whatever the encoding of their column is. Encodings only change
+ * the memory footprint of the data and the cost of comparing values.<br />
+ * Example of use:<br />
+ * <pre>
+ * {@code
+ * // Assuming a valid TalendFlow instance in table
+ *
+ * // Country codes repeat a few hundreds distinct values across all the rows: force a dictionary on them
+ * table.addColumn("country", TalendType.STRING, null, false, TalendEncoding.DICTIONARY);
+ *
+ * // Let the flow choose the best encoding for the column
+ * table.addColumn("city", TalendType.STRING);
+ *
+ * // Long descriptions are only passed through: keep them as UTF-8 bytes
+ * table.addColumn("description", TalendType.STRING, null, false, TalendEncoding.UTF8);
+ *
+ * // Documents of some kilobytes are routed through several flows: share their bytes instead of copying them
+ * table.addColumn("payload", TalendType.BYTE_ARRAY, null, false, TalendEncoding.ARENA);
+ * }
+ * </pre>
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendFlow
+ * @see TalendDictionary
+ *
+ */
+public enum TalendEncoding {
+
+	/**
+	 * Let the column choose the encoding. STRING columns start dictionary-encoded and fall back to plain values
+	 * as soon as the dictionary proves to be ineffective; other types are stored as plain values.
+	 */
+	AUTO,
+
+	/**
+	 * Each cell holds its own java object.
+	 */
+	PLAIN,
+
+	/**
+	 * Distinct values are stored once in a dictionary shared by the whole column and cells only refer to them by an integer code.
+	 * Only supported by STRING columns.
+	 */
+	DICTIONARY,
+
+	/**
+	 * Text is kept as raw UTF-8 bytes packed in large chunks shared by the whole column, and a java String is only
+	 * built when the value is read. Byte arrays set to the column are taken as already UTF-8 encoded text and stored without decoding.
+	 * Only supported by STRING columns.
+	 */
+	UTF8,
+
+	/**
+	 * Bytes are packed in large chunks shared by the whole column, each cell only referring to its offset and length.
+	 * Values can be read as read-only ByteBuffer slices without copying them, and are shared, not copied, when moved to other rows or flows.
+	 * Only supported by BYTE_ARRAY columns.
+	 */
+	ARENA;
+
+	/**
+	 * Check if a column of the given type can be stored using this encoding
+	 *
+	 * @param type the type of the column
+	 * @return true if the encoding is supported by the type, false otherwise
+	 */
+	public boolean supports(TalendType type){
+		switch(this){
+		case DICTIONARY:
+		case UTF8:
+			return TalendType.STRING.equals(type);
+		case ARENA:
+			return TalendType.BYTE_ARRAY.equals(type);
+		default:
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,1029 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * An evaluator is the compiled form of an expression of a derived column, as built by {@link TalendExpressionParser}.<br />
+ * Expressions are compiled once into a tree of typed nodes: each node knows the type of its result in advance, so numbers flow between nodes
+ * as java primitives and are never boxed until the final result is stored into a value. Integral types are evaluated as long, FLOAT and DOUBLE
+ * as double and BIGDECIMAL as BigDecimal, while CHARACTER is evaluated as a STRING.<br />
+ * Nodes can be evaluated one row at a time, when a derived column is read, or over a batch of rows at once, writing results and null flags
+ * into primitive arrays: arithmetic, comparisons, logical operators and column references evaluate their children batch by batch in tight loops.<br />
+ * Callers must check {@link #isNull(TalendRowImpl)} before asking for the result of a row.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#addDerivedColumn(String, String)
+ *
+ */
+abstract class TalendEvaluator {
+
+	/**
+	 * Comparison operators
+	 */
+	enum Operator { EQ, NE, LT, LE, GT, GE }
+
+	/**
+	 * The type of the result
+	 */
+	final TalendType type;
+
+	TalendEvaluator(TalendType type){
+		this.type = type;
+	}
+
+	/**
+	 * Get the type a column is evaluated as
+	 * 
+	 * @param type the type of the column
+	 * @return LONG, DOUBLE, BIGDECIMAL, BOOLEAN, STRING, DATE or the type itself for the other types
+	 */
+	static TalendType kindOf(TalendType type){
+		switch(type){
+		case BYTE:
+		case SHORT:
+		case INTEGER:
+		case LONG:
+			return TalendType.LONG;
+		case FLOAT:
+		case DOUBLE:
+			return TalendType.DOUBLE;
+		case CHARACTER:
+		case STRING:
+			return TalendType.STRING;
+		default:
+			return type;
+		}
+	}
+
+	/**
+	 * Check if a type is evaluated as a number
+	 * 
+	 * @param kind the type, as returned by {@link #kindOf(TalendType)}
+	 * @return true for LONG, DOUBLE and BIGDECIMAL
+	 */
+	static boolean isNumeric(TalendType kind){
+		return kind == TalendType.LONG || kind == TalendType.DOUBLE || kind == TalendType.BIGDECIMAL;
+	}
+
+	/**
+	 * Get the type two numbers are promoted to when they are combined
+	 * 
+	 * @param a the type of the first number
+	 * @param b the type of the second number
+	 * @return BIGDECIMAL if any is BIGDECIMAL, DOUBLE if any is DOUBLE, LONG otherwise
+	 */
+	static TalendType widest(TalendType a, TalendType b){
+		if(a == TalendType.BIGDECIMAL || b == TalendType.BIGDECIMAL) return TalendType.BIGDECIMAL;
+		if(a == TalendType.DOUBLE || b == TalendType.DOUBLE) return TalendType.DOUBLE;
+		return TalendType.LONG;
+	}
+
+	/**
+	 * Check if the result for a row is null
+	 * 
+	 * @param row the row
+	 * @return true if the result is null
+	 */
+	abstract boolean isNull(TalendRowImpl row);
+
+	/**
+	 * Evaluate a LONG result
+	 * 
+	 * @param row the row
+	 * @return the result
+	 */
+	long evalLong(TalendRowImpl row){
+		throw new UnsupportedOperationException(type.toString());
+	}
+
+	/**
+	 * Evaluate a numeric result as a double
+	 * 
+	 * @param row the row
+	 * @return the result
+	 */
+	double evalDouble(TalendRowImpl row){
+		if(type == TalendType.LONG) return evalLong(row);
+		return evalDecimal(row).doubleValue();
+	}
+
+	/**
+	 * Evaluate a numeric result as a BigDecimal
+	 * 
+	 * @param row the row
+	 * @return the result
+	 */
+	BigDecimal evalDecimal(TalendRowImpl row){
+		if(type == TalendType.LONG) return BigDecimal.valueOf(evalLong(row));
+		if(type == TalendType.DOUBLE) return BigDecimal.valueOf(evalDouble(row));
+		throw new UnsupportedOperationException(type.toString());
+	}
+
+	/**
+	 * Evaluate a BOOLEAN result
+	 * 
+	 * @param row the row
+	 * @return the result
+	 */
+	boolean evalBoolean(TalendRowImpl row){
+		throw new UnsupportedOperationException(type.toString());
+	}
+
+	/**
+	 * Evaluate the result as an object of the java class of its type
+	 * 
+	 * @param row the row
+	 * @return the result
+	 */
+	Object evalObject(TalendRowImpl row){
+		switch(type){
+		case LONG:
+			return Long.valueOf(evalLong(row));
+		case DOUBLE:
+			return Double.valueOf(evalDouble(row));
+		case BIGDECIMAL:
+			return evalDecimal(row);
+		case BOOLEAN:
+			return Boolean.valueOf(evalBoolean(row));
+		default:
+			throw new UnsupportedOperationException(type.toString());
+		}
+	}
+
+	/**
+	 * Evaluate the result for a row
+	 * 
+	 * @param row the row
+	 * @return the result as an object of the java class of its type or null
+	 */
+	final Object value(TalendRowImpl row){
+		return (isNull(row) ? null : evalObject(row));
+	}
+
+	/**
+	 * Evaluate a condition, null results being false
+	 * 
+	 * @param row the row
+	 * @return true if the result is not null and true
+	 */
+	final boolean test(TalendRowImpl row){
+		return !isNull(row) && evalBoolean(row);
+	}
+
+	/**
+	 * Evaluate a LONG result for a batch of rows
+	 * 
+	 * @param rows the rows
+	 * @param n the number of rows to evaluate
+	 * @param out where to write the results
+	 * @param nulls where to write the null flags of the results
+	 */
+	void evalLongs(TalendRowImpl[] rows, int n, long[] out, boolean[] nulls){
+		for(int i = 0; i < n; i++){
+			nulls[i] = isNull(rows[i]);
+			if(!nulls[i]) out[i] = evalLong(rows[i]);
+		}
+	}
+
+	/**
+	 * Evaluate a numeric result as a double for a batch of rows
+	 * 
+	 * @param rows the rows
+	 * @param n the number of rows to evaluate
+	 * @param out where to write the results
+	 * @param nulls where to write the null flags of the results
+	 */
+	void evalDoubles(TalendRowImpl[] rows, int n, double[] out, boolean[] nulls){
+		if(type == TalendType.LONG){
+			long[] longs = new long[n];
+			evalLongs(rows, n, longs, nulls);
+			for(int i = 0; i < n; i++) out[i] = longs[i];
+			return;
+		}
+		for(int i = 0; i < n; i++){
+			nulls[i] = isNull(rows[i]);
+			if(!nulls[i]) out[i] = evalDouble(rows[i]);
+		}
+	}
+
+	/**
+	 * Evaluate a BOOLEAN result for a batch of rows
+	 * 
+	 * @param rows the rows
+	 * @param n the number of rows to evaluate
+	 * @param out where to write the results
+	 * @param nulls where to write the null flags of the results
+	 */
+	void evalBooleans(TalendRowImpl[] rows, int n, boolean[] out, boolean[] nulls){
+		for(int i = 0; i < n; i++){
+			nulls[i] = isNull(rows[i]);
+			if(!nulls[i]) out[i] = evalBoolean(rows[i]);
+		}
+	}
+
+	/**
+	 * Evaluate a batch of rows and store the results as values of a column of the same rows
+	 * 
+	 * @param column the column to store results into
+	 * @param rows the rows
+	 * @param n the number of rows to evaluate
+	 */
+	final void store(TalendColumnImpl column, TalendRowImpl[] rows, int n){
+		boolean[] nulls = new boolean[n];
+		switch(type){
+		case LONG:
+			long[] longs = new long[n];
+			evalLongs(rows, n, longs, nulls);
+			for(int i = 0; i < n; i++) rows[i].put(column, (nulls[i] ? null : column.newValue(Long.valueOf(longs[i]))));
+			break;
+		case DOUBLE:
+			double[] doubles = new double[n];
+			evalDoubles(rows, n, doubles, nulls);
+			for(int i = 0; i < n; i++) rows[i].put(column, (nulls[i] ? null : column.newValue(Double.valueOf(doubles[i]))));
+			break;
+		case BOOLEAN:
+			boolean[] booleans = new boolean[n];
+			evalBooleans(rows, n, booleans, nulls);
+			for(int i = 0; i < n; i++) rows[i].put(column, (nulls[i] ? null : column.newValue(Boolean.valueOf(booleans[i]))));
+			break;
+		default:
+			for(int i = 0; i < n; i++){
+				Object value = value(rows[i]);
+				rows[i].put(column, (value == null ? null : column.newValue(value)));
+			}
+		}
+	}
+
+	/**
+	 * Evaluate the result as text, like string concatenation of java does
+	 * 
+	 * @param node the node to evaluate
+	 * @param row the row
+	 * @return the text
+	 */
+	static String text(TalendEvaluator node, TalendRowImpl row){
+		switch(node.type){
+		case LONG:
+			return Long.toString(node.evalLong(row));
+		case DOUBLE:
+			return Double.toString(node.evalDouble(row));
+		case BOOLEAN:
+			return Boolean.toString(node.evalBoolean(row));
+		default:
+			return String.valueOf(node.evalObject(row));
+		}
+	}
+
+	/**
+	 * Check the outcome of a comparison
+	 * 
+	 * @param operator the operator
+	 * @param c the result of the comparison, as returned by {@link Comparable#compareTo(Object)}
+	 * @return true if the comparison is satisfied
+	 */
+	static boolean test(Operator operator, int c){
+		switch(operator){
+		case EQ:
+			return c == 0;
+		case NE:
+			return c != 0;
+		case LT:
+			return c < 0;
+		case LE:
+			return c <= 0;
+		case GT:
+			return c > 0;
+		default:
+			return c >= 0;
+		}
+	}
+
+	/**
+	 * A reference to a column of the flow
+	 */
+	static final class Column extends TalendEvaluator {
+
+		private final TalendColumnImpl column;
+
+		Column(TalendColumnImpl column){
+			super(kindOf(column.getType()));
+			this.column = column;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return TalendAccumulator.isNull(row.value(column));
+		}
+
+		/**
+		 * Get a non-null number of the column, converted to the type of the column when the row holds a number of another type
+		 */
+		private Number number(TalendValue value){
+			return (Number) TalendPredicate.convert(column, value.getValue());
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			return number(row.value(column)).longValue();
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			return number(row.value(column)).doubleValue();
+		}
+
+		@Override
+		BigDecimal evalDecimal(TalendRowImpl row){
+			if(type == TalendType.BIGDECIMAL) return (BigDecimal) number(row.value(column));
+			return super.evalDecimal(row);
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			return ((Boolean) row.value(column).getValue()).booleanValue();
+		}
+
+		@Override
+		Object evalObject(TalendRowImpl row){
+			switch(type){
+			case LONG:
+			case DOUBLE:
+			case BOOLEAN:
+				return super.evalObject(row);
+			case STRING:
+				return row.value(column).getValue().toString();
+			default:
+				return row.value(column).getValue();
+			}
+		}
+
+		@Override
+		void evalLongs(TalendRowImpl[] rows, int n, long[] out, boolean[] nulls){
+			for(int i = 0; i < n; i++){
+				TalendValue value = rows[i].value(column);
+				nulls[i] = TalendAccumulator.isNull(value);
+				if(!nulls[i]) out[i] = number(value).longValue();
+			}
+		}
+
+		@Override
+		void evalDoubles(TalendRowImpl[] rows, int n, double[] out, boolean[] nulls){
+			if(type == TalendType.BIGDECIMAL){
+				super.evalDoubles(rows, n, out, nulls);
+				return;
+			}
+			for(int i = 0; i < n; i++){
+				TalendValue value = rows[i].value(column);
+				nulls[i] = TalendAccumulator.isNull(value);
+				if(!nulls[i]) out[i] = number(value).doubleValue();
+			}
+		}
+
+		@Override
+		void evalBooleans(TalendRowImpl[] rows, int n, boolean[] out, boolean[] nulls){
+			for(int i = 0; i < n; i++){
+				TalendValue value = rows[i].value(column);
+				nulls[i] = TalendAccumulator.isNull(value);
+				if(!nulls[i]) out[i] = ((Boolean) value.getValue()).booleanValue();
+			}
+		}
+
+	}
+
+	/**
+	 * A literal value
+	 */
+	static final class Constant extends TalendEvaluator {
+
+		private final Object value;
+
+		Constant(TalendType type, Object value){
+			super(type);
+			this.value = value;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return false;
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			return ((Long) value).longValue();
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			return ((Number) value).doubleValue();
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			return ((Boolean) value).booleanValue();
+		}
+
+		@Override
+		Object evalObject(TalendRowImpl row){
+			return value;
+		}
+
+		@Override
+		void evalLongs(TalendRowImpl[] rows, int n, long[] out, boolean[] nulls){
+			long constant = evalLong(null);
+			for(int i = 0; i < n; i++){
+				out[i] = constant;
+				nulls[i] = false;
+			}
+		}
+
+		@Override
+		void evalDoubles(TalendRowImpl[] rows, int n, double[] out, boolean[] nulls){
+			double constant = evalDouble(null);
+			for(int i = 0; i < n; i++){
+				out[i] = constant;
+				nulls[i] = false;
+			}
+		}
+
+	}
+
+	/**
+	 * Arithmetic operators on numbers: division and remainder of LONG and BIGDECIMAL numbers by zero are null
+	 */
+	static final class Arithmetic extends TalendEvaluator {
+
+		private final char operator;
+		private final TalendEvaluator left;
+		private final TalendEvaluator right;
+
+		Arithmetic(char operator, TalendEvaluator left, TalendEvaluator right){
+			super(widest(left.type, right.type));
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			if(left.isNull(row) || right.isNull(row)) return true;
+			if(operator != '/' && operator != '%') return false;
+			if(type == TalendType.LONG) return right.evalLong(row) == 0;
+			if(type == TalendType.BIGDECIMAL) return right.evalDecimal(row).signum() == 0;
+			return false;
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			long a = left.evalLong(row);
+			long b = right.evalLong(row);
+			switch(operator){
+			case '+':
+				return a + b;
+			case '-':
+				return a - b;
+			case '*':
+				return a * b;
+			case '/':
+				return a / b;
+			default:
+				return a % b;
+			}
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			if(type != TalendType.DOUBLE) return super.evalDouble(row);
+			double a = left.evalDouble(row);
+			double b = right.evalDouble(row);
+			switch(operator){
+			case '+':
+				return a + b;
+			case '-':
+				return a - b;
+			case '*':
+				return a * b;
+			case '/':
+				return a / b;
+			default:
+				return a % b;
+			}
+		}
+
+		@Override
+		BigDecimal evalDecimal(TalendRowImpl row){
+			if(type != TalendType.BIGDECIMAL) return super.evalDecimal(row);
+			BigDecimal a = left.evalDecimal(row);
+			BigDecimal b = right.evalDecimal(row);
+			switch(operator){
+			case '+':
+				return a.add(b);
+			case '-':
+				return a.subtract(b);
+			case '*':
+				return a.multiply(b);
+			case '/':
+				return a.divide(b, MathContext.DECIMAL128);
+			default:
+				return a.remainder(b);
+			}
+		}
+
+		@Override
+		void evalLongs(TalendRowImpl[] rows, int n, long[] out, boolean[] nulls){
+			if(type != TalendType.LONG){
+				super.evalLongs(rows, n, out, nulls);
+				return;
+			}
+			long[] b = new long[n];
+			boolean[] bNulls = new boolean[n];
+			left.evalLongs(rows, n, out, nulls);
+			right.evalLongs(rows, n, b, bNulls);
+			for(int i = 0; i < n; i++) nulls[i] |= bNulls[i];
+			switch(operator){
+			case '+':
+				for(int i = 0; i < n; i++) out[i] += b[i];
+				break;
+			case '-':
+				for(int i = 0; i < n; i++) out[i] -= b[i];
+				break;
+			case '*':
+				for(int i = 0; i < n; i++) out[i] *= b[i];
+				break;
+			case '/':
+				for(int i = 0; i < n; i++){
+					if(b[i] == 0) nulls[i] = true;
+					else out[i] /= b[i];
+				}
+				break;
+			default:
+				for(int i = 0; i < n; i++){
+					if(b[i] == 0) nulls[i] = true;
+					else out[i] %= b[i];
+				}
+			}
+		}
+
+		@Override
+		void evalDoubles(TalendRowImpl[] rows, int n, double[] out, boolean[] nulls){
+			if(type != TalendType.DOUBLE){
+				super.evalDoubles(rows, n, out, nulls);
+				return;
+			}
+			double[] b = new double[n];
+			boolean[] bNulls = new boolean[n];
+			left.evalDoubles(rows, n, out, nulls);
+			right.evalDoubles(rows, n, b, bNulls);
+			switch(operator){
+			case '+':
+				for(int i = 0; i < n; i++) out[i] += b[i];
+				break;
+			case '-':
+				for(int i = 0; i < n; i++) out[i] -= b[i];
+				break;
+			case '*':
+				for(int i = 0; i < n; i++) out[i] *= b[i];
+				break;
+			case '/':
+				for(int i = 0; i < n; i++) out[i] /= b[i];
+				break;
+			default:
+				for(int i = 0; i < n; i++) out[i] %= b[i];
+			}
+			for(int i = 0; i < n; i++) nulls[i] |= bNulls[i];
+		}
+
+	}
+
+	/**
+	 * Unary minus
+	 */
+	static final class Negate extends TalendEvaluator {
+
+		private final TalendEvaluator operand;
+
+		Negate(TalendEvaluator operand){
+			super(operand.type);
+			this.operand = operand;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return operand.isNull(row);
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			return -operand.evalLong(row);
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			if(type != TalendType.DOUBLE) return super.evalDouble(row);
+			return -operand.evalDouble(row);
+		}
+
+		@Override
+		BigDecimal evalDecimal(TalendRowImpl row){
+			if(type != TalendType.BIGDECIMAL) return super.evalDecimal(row);
+			return operand.evalDecimal(row).negate();
+		}
+
+		@Override
+		void evalLongs(TalendRowImpl[] rows, int n, long[] out, boolean[] nulls){
+			operand.evalLongs(rows, n, out, nulls);
+			for(int i = 0; i < n; i++) out[i] = -out[i];
+		}
+
+		@Override
+		void evalDoubles(TalendRowImpl[] rows, int n, double[] out, boolean[] nulls){
+			operand.evalDoubles(rows, n, out, nulls);
+			for(int i = 0; i < n; i++) out[i] = -out[i];
+		}
+
+	}
+
+	/**
+	 * String concatenation
+	 */
+	static final class Concat extends TalendEvaluator {
+
+		private final TalendEvaluator left;
+		private final TalendEvaluator right;
+
+		Concat(TalendEvaluator left, TalendEvaluator right){
+			super(TalendType.STRING);
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return left.isNull(row) || right.isNull(row);
+		}
+
+		@Override
+		Object evalObject(TalendRowImpl row){
+			return text(left, row).concat(text(right, row));
+		}
+
+	}
+
+	/**
+	 * Comparison of two values: comparisons involving null values are false
+	 */
+	static final class Comparison extends TalendEvaluator {
+
+		private final Operator operator;
+		private final TalendEvaluator left;
+		private final TalendEvaluator right;
+		private final TalendType mode;
+
+		Comparison(Operator operator, TalendEvaluator left, TalendEvaluator right){
+			super(TalendType.BOOLEAN);
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+			this.mode = (isNumeric(left.type) ? widest(left.type, right.type) : left.type);
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return false;
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		boolean evalBoolean(TalendRowImpl row){
+			if(left.isNull(row) || right.isNull(row)) return false;
+			switch(mode){
+			case LONG:
+				return test(operator, Long.compare(left.evalLong(row), right.evalLong(row)));
+			case DOUBLE:
+				return test(operator, Double.compare(left.evalDouble(row), right.evalDouble(row)));
+			case BIGDECIMAL:
+				return test(operator, left.evalDecimal(row).compareTo(right.evalDecimal(row)));
+			default:
+				Object a = left.evalObject(row);
+				Object b = right.evalObject(row);
+				if(operator == Operator.EQ || operator == Operator.NE) return test(operator, (a.equals(b) ? 0 : 1));
+				return test(operator, ((Comparable) a).compareTo(b));
+			}
+		}
+
+		@Override
+		void evalBooleans(TalendRowImpl[] rows, int n, boolean[] out, boolean[] nulls){
+			boolean[] aNulls = new boolean[n];
+			boolean[] bNulls = new boolean[n];
+			switch(mode){
+			case LONG:
+				long[] a = new long[n];
+				long[] b = new long[n];
+				left.evalLongs(rows, n, a, aNulls);
+				right.evalLongs(rows, n, b, bNulls);
+				for(int i = 0; i < n; i++) out[i] = test(operator, Long.compare(a[i], b[i]));
+				break;
+			case DOUBLE:
+				double[] x = new double[n];
+				double[] y = new double[n];
+				left.evalDoubles(rows, n, x, aNulls);
+				right.evalDoubles(rows, n, y, bNulls);
+				for(int i = 0; i < n; i++) out[i] = test(operator, Double.compare(x[i], y[i]));
+				break;
+			default:
+				super.evalBooleans(rows, n, out, nulls);
+				return;
+			}
+			for(int i = 0; i < n; i++){
+				out[i] &= !(aNulls[i] | bNulls[i]);
+				nulls[i] = false;
+			}
+		}
+
+	}
+
+	/**
+	 * Logical AND and OR: null operands are false
+	 */
+	static final class Logic extends TalendEvaluator {
+
+		private final boolean and;
+		private final TalendEvaluator left;
+		private final TalendEvaluator right;
+
+		Logic(boolean and, TalendEvaluator left, TalendEvaluator right){
+			super(TalendType.BOOLEAN);
+			this.and = and;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return false;
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			if(and) return left.test(row) && right.test(row);
+			return left.test(row) || right.test(row);
+		}
+
+		@Override
+		void evalBooleans(TalendRowImpl[] rows, int n, boolean[] out, boolean[] nulls){
+			boolean[] b = new boolean[n];
+			boolean[] bNulls = new boolean[n];
+			left.evalBooleans(rows, n, out, nulls);
+			right.evalBooleans(rows, n, b, bNulls);
+			for(int i = 0; i < n; i++){
+				boolean x = out[i] & !nulls[i];
+				boolean y = b[i] & !bNulls[i];
+				out[i] = (and ? x & y : x | y);
+				nulls[i] = false;
+			}
+		}
+
+	}
+
+	/**
+	 * Logical NOT: the negation of null is null
+	 */
+	static final class Not extends TalendEvaluator {
+
+		private final TalendEvaluator operand;
+
+		Not(TalendEvaluator operand){
+			super(TalendType.BOOLEAN);
+			this.operand = operand;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return operand.isNull(row);
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			return !operand.evalBoolean(row);
+		}
+
+		@Override
+		void evalBooleans(TalendRowImpl[] rows, int n, boolean[] out, boolean[] nulls){
+			operand.evalBooleans(rows, n, out, nulls);
+			for(int i = 0; i < n; i++) out[i] = !out[i];
+		}
+
+	}
+
+	/**
+	 * The isNull() function
+	 */
+	static final class IsNull extends TalendEvaluator {
+
+		private final TalendEvaluator operand;
+
+		IsNull(TalendEvaluator operand){
+			super(TalendType.BOOLEAN);
+			this.operand = operand;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return false;
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			return operand.isNull(row);
+		}
+
+	}
+
+	/**
+	 * Nodes whose result is the result of one of their operands, chosen row by row
+	 */
+	abstract static class Choice extends TalendEvaluator {
+
+		Choice(TalendType type){
+			super(type);
+		}
+
+		/**
+		 * Choose the operand giving the result for a row
+		 * 
+		 * @param row the row
+		 * @return the operand
+		 */
+		abstract TalendEvaluator choose(TalendRowImpl row);
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return choose(row).isNull(row);
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			return choose(row).evalLong(row);
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			return choose(row).evalDouble(row);
+		}
+
+		@Override
+		BigDecimal evalDecimal(TalendRowImpl row){
+			return choose(row).evalDecimal(row);
+		}
+
+		@Override
+		boolean evalBoolean(TalendRowImpl row){
+			return choose(row).evalBoolean(row);
+		}
+
+		@Override
+		Object evalObject(TalendRowImpl row){
+			switch(type){
+			case LONG:
+			case DOUBLE:
+			case BIGDECIMAL:
+			case BOOLEAN:
+				return super.evalObject(row);
+			default:
+				return choose(row).evalObject(row);
+			}
+		}
+
+	}
+
+	/**
+	 * The if(condition, then, else) function: null conditions are false
+	 */
+	static final class Conditional extends Choice {
+
+		private final TalendEvaluator condition;
+		private final TalendEvaluator then;
+		private final TalendEvaluator otherwise;
+
+		Conditional(TalendType type, TalendEvaluator condition, TalendEvaluator then, TalendEvaluator otherwise){
+			super(type);
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		@Override
+		TalendEvaluator choose(TalendRowImpl row) {
+			return (condition.test(row) ? then : otherwise);
+		}
+
+	}
+
+	/**
+	 * The coalesce(value, ...) function
+	 */
+	static final class Coalesce extends Choice {
+
+		private final TalendEvaluator[] operands;
+
+		Coalesce(TalendType type, TalendEvaluator[] operands){
+			super(type);
+			this.operands = operands;
+		}
+
+		@Override
+		TalendEvaluator choose(TalendRowImpl row) {
+			int last = operands.length - 1;
+			for(int i = 0; i < last; i++){
+				if(!operands[i].isNull(row)) return operands[i];
+			}
+			return operands[last];
+		}
+
+	}
+
+	/**
+	 * Functions of a single operand
+	 */
+	static final class Function extends TalendEvaluator {
+
+		/**
+		 * Supported functions
+		 */
+		enum Name { UPPER, LOWER, TRIM, LENGTH, ABS, ROUND }
+
+		private final Name name;
+		private final TalendEvaluator operand;
+
+		Function(Name name, TalendType type, TalendEvaluator operand){
+			super(type);
+			this.name = name;
+			this.operand = operand;
+		}
+
+		@Override
+		boolean isNull(TalendRowImpl row) {
+			return operand.isNull(row);
+		}
+
+		@Override
+		long evalLong(TalendRowImpl row){
+			switch(name){
+			case LENGTH:
+				return ((String) operand.evalObject(row)).length();
+			case ABS:
+				return Math.abs(operand.evalLong(row));
+			default:
+				if(operand.type == TalendType.LONG) return operand.evalLong(row);
+				if(operand.type == TalendType.DOUBLE) return Math.round(operand.evalDouble(row));
+				return operand.evalDecimal(row).setScale(0, RoundingMode.HALF_UP).longValue();
+			}
+		}
+
+		@Override
+		double evalDouble(TalendRowImpl row){
+			if(type != TalendType.DOUBLE) return super.evalDouble(row);
+			return Math.abs(operand.evalDouble(row));
+		}
+
+		@Override
+		BigDecimal evalDecimal(TalendRowImpl row){
+			if(type != TalendType.BIGDECIMAL) return super.evalDecimal(row);
+			return operand.evalDecimal(row).abs();
+		}
+
+		@Override
+		Object evalObject(TalendRowImpl row){
+			if(type != TalendType.STRING) return super.evalObject(row);
+			String text = (String) operand.evalObject(row);
+			switch(name){
+			case UPPER:
+				return text.toUpperCase(Locale.getDefault());
+			case LOWER:
+				return text.toLowerCase(Locale.getDefault());
+			default:
+				return text.trim();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,385 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * This is a recursive descent parser for the expressions of derived columns, compiling them into {@link TalendEvaluator} trees.<br />
+ * The grammar, from the lowest to the highest precedence, is:<br />
+ * <pre>
+ * {@code
+ * or             := and ( ('||' | 'or') and )*
+ * and            := not ( ('&&' | 'and') not )*
+ * not            := ('!' | 'not') not | comparison
+ * comparison     := additive ( ('==' | '=' | '!=' | '<>' | '<' | '<=' | '>' | '>=') additive )?
+ * additive       := multiplicative ( ('+' | '-') multiplicative )*
+ * multiplicative := unary ( ('*' | '/' | '%') unary )*
+ * unary          := '-' unary | primary
+ * primary        := number | string | 'true' | 'false' | column | function '(' or ( ',' or )* ')' | '(' or ')'
+ * }
+ * </pre>
+ * Columns are referred by name, or by name enclosed in backticks when the name is not a valid java identifier. Strings are enclosed
+ * in single or double quotes and accept java escapes. Keywords are not case sensitive.<br />
+ * Expressions are type-checked while they are parsed, so an expression is never compiled unless it can be evaluated for every row.
+ * 
+ * @author Gabriele Baldassarre
+ *
+ */
+final class TalendExpressionParser {
+
+	private final TalendFlowImpl flow;
+	private final String text;
+	private int position;
+
+	private TalendExpressionParser(TalendFlowImpl flow, String text){
+		this.flow = flow;
+		this.text = text;
+	}
+
+	/**
+	 * Compile an expression over the columns of a flow
+	 * 
+	 * @param flow the flow
+	 * @param expression the expression
+	 * @return the root of the compiled tree
+	 * @throws IllegalArgumentException if the expression is null, not valid, refers to unknown columns or mixes incompatible types
+	 */
+	static TalendEvaluator compile(TalendFlowImpl flow, String expression){
+		if(expression == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "expression"));
+		}
+		TalendExpressionParser parser = new TalendExpressionParser(flow, expression);
+		TalendEvaluator root = parser.or();
+		parser.skipSpaces();
+		if(parser.position < expression.length()) throw parser.syntaxError();
+		return root;
+	}
+
+	private TalendEvaluator or(){
+		TalendEvaluator left = and();
+		while(accept("||") || acceptWord("or")){
+			TalendEvaluator right = and();
+			checkBoolean("or", left, right);
+			left = new TalendEvaluator.Logic(false, left, right);
+		}
+		return left;
+	}
+
+	private TalendEvaluator and(){
+		TalendEvaluator left = not();
+		while(accept("&&") || acceptWord("and")){
+			TalendEvaluator right = not();
+			checkBoolean("and", left, right);
+			left = new TalendEvaluator.Logic(true, left, right);
+		}
+		return left;
+	}
+
+	private TalendEvaluator not(){
+		if(acceptWord("not") || (!peek("!=") && accept("!"))){
+			TalendEvaluator operand = not();
+			checkBoolean("not", operand);
+			return new TalendEvaluator.Not(operand);
+		}
+		return comparison();
+	}
+
+	private TalendEvaluator comparison(){
+		TalendEvaluator left = additive();
+		String symbol;
+		TalendEvaluator.Operator operator;
+		if(accept("==") || accept("=")){
+			symbol = "=";
+			operator = TalendEvaluator.Operator.EQ;
+		} else if(accept("!=") || accept("<>")){
+			symbol = "!=";
+			operator = TalendEvaluator.Operator.NE;
+		} else if(accept("<=")){
+			symbol = "<=";
+			operator = TalendEvaluator.Operator.LE;
+		} else if(accept(">=")){
+			symbol = ">=";
+			operator = TalendEvaluator.Operator.GE;
+		} else if(accept("<")){
+			symbol = "<";
+			operator = TalendEvaluator.Operator.LT;
+		} else if(accept(">")){
+			symbol = ">";
+			operator = TalendEvaluator.Operator.GT;
+		} else {
+			return left;
+		}
+		TalendEvaluator right = additive();
+		boolean numeric = TalendEvaluator.isNumeric(left.type) && TalendEvaluator.isNumeric(right.type);
+		boolean comparable = left.type == right.type && (operator == TalendEvaluator.Operator.EQ || operator == TalendEvaluator.Operator.NE || Comparable.class.isAssignableFrom(left.type.getType()));
+		if(!numeric && !comparable) throw typeError(symbol, left, right);
+		return new TalendEvaluator.Comparison(operator, left, right);
+	}
+
+	private TalendEvaluator additive(){
+		TalendEvaluator left = multiplicative();
+		while(true){
+			char operator;
+			if(accept("+")) operator = '+';
+			else if(accept("-")) operator = '-';
+			else return left;
+			TalendEvaluator right = multiplicative();
+			if(operator == '+' && (left.type == TalendType.STRING || right.type == TalendType.STRING)){
+				left = new TalendEvaluator.Concat(left, right);
+			} else {
+				checkNumeric(String.valueOf(operator), left, right);
+				left = new TalendEvaluator.Arithmetic(operator, left, right);
+			}
+		}
+	}
+
+	private TalendEvaluator multiplicative(){
+		TalendEvaluator left = unary();
+		while(true){
+			char operator;
+			if(accept("*")) operator = '*';
+			else if(accept("/")) operator = '/';
+			else if(accept("%")) operator = '%';
+			else return left;
+			TalendEvaluator right = unary();
+			checkNumeric(String.valueOf(operator), left, right);
+			left = new TalendEvaluator.Arithmetic(operator, left, right);
+		}
+	}
+
+	private TalendEvaluator unary(){
+		if(accept("-")){
+			TalendEvaluator operand = unary();
+			checkNumeric("-", operand);
+			return new TalendEvaluator.Negate(operand);
+		}
+		return primary();
+	}
+
+	private TalendEvaluator primary(){
+		skipSpaces();
+		if(position >= text.length()) throw syntaxError();
+		char c = text.charAt(position);
+
+		if(c == '('){
+			position++;
+			TalendEvaluator inner = or();
+			expect(")");
+			return inner;
+		}
+		if(c == '\'' || c == '"'){
+			return new TalendEvaluator.Constant(TalendType.STRING, string(c));
+		}
+		if(Character.isDigit(c) || (c == '.' && position + 1 < text.length() && Character.isDigit(text.charAt(position + 1)))){
+			return number();
+		}
+		if(c == '`'){
+			int end = text.indexOf('`', position + 1);
+			if(end < 0) throw syntaxError();
+			String name = text.substring(position + 1, end);
+			position = end + 1;
+			return new TalendEvaluator.Column(TalendPredicate.resolve(flow, name));
+		}
+		if(Character.isJavaIdentifierStart(c)){
+			int start = position;
+			String name = identifier();
+			if(name.equalsIgnoreCase("true")) return new TalendEvaluator.Constant(TalendType.BOOLEAN, Boolean.TRUE);
+			if(name.equalsIgnoreCase("false")) return new TalendEvaluator.Constant(TalendType.BOOLEAN, Boolean.FALSE);
+			if(accept("(")) return function(name, start);
+			return new TalendEvaluator.Column(TalendPredicate.resolve(flow, name));
+		}
+		throw syntaxError();
+	}
+
+	private TalendEvaluator function(String name, int start){
+		List<TalendEvaluator> arguments = new ArrayList<TalendEvaluator>();
+		if(!accept(")")){
+			do {
+				arguments.add(or());
+			} while(accept(","));
+			expect(")");
+		}
+		TalendEvaluator[] args = arguments.toArray(new TalendEvaluator[arguments.size()]);
+		String function = name.toLowerCase(Locale.ENGLISH);
+
+		if(function.equals("if") && args.length == 3){
+			checkBoolean(name, args[0]);
+			return new TalendEvaluator.Conditional(common(name, args[1], args[2]), args[0], args[1], args[2]);
+		}
+		if(function.equals("coalesce") && args.length > 0){
+			return new TalendEvaluator.Coalesce(common(name, args), args);
+		}
+		if(function.equals("isnull") && args.length == 1){
+			return new TalendEvaluator.IsNull(args[0]);
+		}
+		TalendEvaluator.Function.Name f = null;
+		for(TalendEvaluator.Function.Name candidate : TalendEvaluator.Function.Name.values()){
+			if(candidate.name().equalsIgnoreCase(function)) f = candidate;
+		}
+		if(f != null && args.length == 1){
+			switch(f){
+			case UPPER:
+			case LOWER:
+			case TRIM:
+				if(args[0].type != TalendType.STRING) throw typeError(name, args);
+				return new TalendEvaluator.Function(f, TalendType.STRING, args[0]);
+			case LENGTH:
+				if(args[0].type != TalendType.STRING) throw typeError(name, args);
+				return new TalendEvaluator.Function(f, TalendType.LONG, args[0]);
+			case ABS:
+				checkNumeric(name, args);
+				return new TalendEvaluator.Function(f, args[0].type, args[0]);
+			default:
+				checkNumeric(name, args);
+				return new TalendEvaluator.Function(f, TalendType.LONG, args[0]);
+			}
+		}
+		position = start;
+		throw syntaxError();
+	}
+
+	private TalendType common(String function, TalendEvaluator... operands){
+		TalendType type = operands[0].type;
+		for(TalendEvaluator operand : operands){
+			if(operand.type == type) continue;
+			if(!TalendEvaluator.isNumeric(type) || !TalendEvaluator.isNumeric(operand.type)) throw typeError(function, operands);
+			type = TalendEvaluator.widest(type, operand.type);
+		}
+		return type;
+	}
+
+	private TalendEvaluator number(){
+		int start = position;
+		boolean floating = false;
+		while(position < text.length()){
+			char c = text.charAt(position);
+			if(Character.isDigit(c)){
+				position++;
+			} else if(c == '.' && !floating){
+				floating = true;
+				position++;
+			} else if((c == 'e' || c == 'E') && position > start){
+				floating = true;
+				position++;
+				if(position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) position++;
+			} else {
+				break;
+			}
+		}
+		String literal = text.substring(start, position);
+		try {
+			if(floating) return new TalendEvaluator.Constant(TalendType.DOUBLE, Double.valueOf(literal));
+			return new TalendEvaluator.Constant(TalendType.LONG, Long.valueOf(literal));
+		} catch(NumberFormatException e){
+			position = start;
+			throw syntaxError();
+		}
+	}
+
+	private String string(char quote){
+		StringBuilder sb = new StringBuilder();
+		position++;
+		while(position < text.length()){
+			char c = text.charAt(position++);
+			if(c == quote) return sb.toString();
+			if(c == '\\' && position < text.length()){
+				c = text.charAt(position++);
+				switch(c){
+				case 'n':
+					c = '\n';
+					break;
+				case 't':
+					c = '\t';
+					break;
+				case 'r':
+					c = '\r';
+					break;
+				default:
+					break;
+				}
+			}
+			sb.append(c);
+		}
+		throw syntaxError();
+	}
+
+	private String identifier(){
+		int start = position;
+		position++;
+		while(position < text.length() && Character.isJavaIdentifierPart(text.charAt(position))) position++;
+		return text.substring(start, position);
+	}
+
+	private void skipSpaces(){
+		while(position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+	}
+
+	private boolean peek(String symbol){
+		skipSpaces();
+		return text.startsWith(symbol, position);
+	}
+
+	private boolean accept(String symbol){
+		if(!peek(symbol)) return false;
+		position += symbol.length();
+		return true;
+	}
+
+	private boolean acceptWord(String word){
+		skipSpaces();
+		int end = position + word.length();
+		if(!text.regionMatches(true, position, word, 0, word.length())) return false;
+		if(end < text.length() && Character.isJavaIdentifierPart(text.charAt(end))) return false;
+		position = end;
+		return true;
+	}
+
+	private void expect(String symbol){
+		if(!accept(symbol)) throw syntaxError();
+	}
+
+	private void checkBoolean(String operator, TalendEvaluator... operands){
+		for(TalendEvaluator operand : operands){
+			if(operand.type != TalendType.BOOLEAN) throw typeError(operator, operands);
+		}
+	}
+
+	private void checkNumeric(String operator, TalendEvaluator... operands){
+		for(TalendEvaluator operand : operands){
+			if(!TalendEvaluator.isNumeric(operand.type)) throw typeError(operator, operands);
+		}
+	}
+
+	private IllegalArgumentException syntaxError(){
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		return new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.expressionSyntax"), text, position));
+	}
+
+	private IllegalArgumentException typeError(String operator, TalendEvaluator... operands){
+		TalendType[] types = new TalendType[operands.length];
+		for(int i = 0; i < operands.length; i++) types[i] = operands[i].type;
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		return new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.expressionType"), operator, Arrays.toString(types), text));
+	}
+
+}
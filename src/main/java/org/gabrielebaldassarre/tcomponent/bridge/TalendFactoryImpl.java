@@ -74,7 +74,7 @@ public class TalendFactoryImpl implements TalendFlowFactory, TalendRowFactory, T
 	 * {@inheritDoc}
 	 */
 	public TalendValue newValue(TalendColumn column, Object value) {
-		return new TalendValueImpl((TalendColumnImpl) column, value);
+		return ((TalendColumnImpl) column).newValue(value);
 	}
 	
 	/**
@@ -16,6 +16,11 @@
  */
 package org.gabrielebaldassarre.tcomponent.bridge;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
 /**
  * Flows are data structures that can hold data in tabular-format, like tables in typical
  * RDBMS, but whit some neat additional features.<br />
@@ -49,10 +54,18 @@ package org.gabrielebaldassarre.tcomponent.bridge;
  * endlessPit.addColumn("col1", TalendType.STRING, "foo");
  * }
  * </pre>
+ * Committed rows can be read without copying them, as flows are iterable:<br />
+ * <pre>
+ * {@code
+ * for(TalendRow row : endlessPit){
+ *     System.out.println(row.getValue("col1"));
+ * }
+ * }
+ * </pre>
  * @author Gabriele Baldassarre
  *
  */
-public interface TalendFlow {
+public interface TalendFlow extends Iterable<TalendRow> {
 	/**
 	 * Return the name of the current flow
 	 * 
@@ -167,6 +180,109 @@ public interface TalendFlow {
 	 */	
 	public TalendFlow addColumn(String name, TalendType type, Object defaultValue, boolean isKey);
 
+	/**
+	 * Add a column to current flow, specifying the default value, if it will be part of the primary key of the flow and how its values are stored in memory<br />
+	 * Encodings don't change the values returned by rows, only their memory footprint. For example, STRING columns holding few distinct values
+	 * repeated across many rows (country codes, status values...) take great advantage of a {@link TalendEncoding#DICTIONARY} encoding: each distinct
+	 * value is stored only once and comparisons between values are made on integer codes.<br />
+	 * Other overloads of this method use {@link TalendEncoding#AUTO}, letting the column choose the encoding.
+	 * Example of use:<br>
+	 * <pre>
+	 * {@code
+	 * // Assuming a valid TalendFlowFactory instance in tablefactory
+	 *  
+	 * // Create a new endless flow supporting transactions
+	 * TalendFlow table = tablefactory.newFlow("table1", null, true);
+	 * 
+	 * // Add a dictionary-encoded String column with default value 'IT' that is not part of the primary key
+	 * table.addColumn("country", TalendType.STRING, "IT", false, TalendEncoding.DICTIONARY);
+	 * }
+	 * </pre>
+	 * 
+	 * @param name the name of the column; must be unique
+	 * @param type the type for the column, from supported types
+	 * @param defaultValue default type for rows of that column; must be of the same type (or parseable, if a string) of the column
+	 * @param isKey true if the column will be part of the primary key for this flow
+	 * @param encoding the encoding used to store the values of the column
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if name is null, empty, invalid or already present in the flow
+	 * @throws IllegalArgumentException if trying to add a key column to a flow not supporting transactions
+	 * @throws IllegalArgumentException if trying to add a key column to a non-empty flow
+	 * @throws IllegalArgumentException if the encoding is not supported by the type of the column
+	 */	
+	public TalendFlow addColumn(String name, TalendType type, Object defaultValue, boolean isKey, TalendEncoding encoding);
+
+	/**
+	 * Add a typed LIST column to current flow<br />
+	 * Unlike generic LIST columns, which hold a java List for each row, the elements of a typed LIST column are converted to the given element type
+	 * and stored in a flat vector shared by the whole column (made of primitive arrays, when the element type allows it).
+	 * Values of the column are {@link TalendListValue} instances, providing typed accessors to iterate the elements of a row without materializing any List.<br />
+	 * Typed LIST columns have no default value and cannot be part of the primary key.<br />
+	 * Example of use:<br>
+	 * <pre>
+	 * {@code
+	 * // Assuming a valid TalendFlowFactory instance in tablefactory and a valid TalendRowFactory in rowFactory
+	 *  
+	 * TalendFlow table = tablefactory.newFlow("table1", null, false);
+	 * 
+	 * // Add a list column holding Long elements
+	 * table.addListColumn("scores", TalendType.LONG);
+	 * 
+	 * // Set its value from any java List
+	 * rowFactory.newRow(table).setValue("scores", Arrays.asList(1L, 2L, 3L));
+	 * }
+	 * </pre>
+	 * 
+	 * @param name the name of the column; must be unique
+	 * @param elementType the type of the elements of the lists
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if name is null, empty, invalid or already present in the flow
+	 * @throws IllegalArgumentException if elementType is null
+	 */	
+	public TalendFlow addListColumn(String name, TalendType elementType);
+
+	/**
+	 * Add a derived column to current flow, whose values are computed from the other columns of the same row<br />
+	 * The expression is written in a small language made of column names, literals, arithmetic operators (+ - * / %),
+	 * string concatenation (+), comparisons (= != &lt; &lt;= &gt; &gt;=), logical operators (&amp;&amp; || ! or and, or, not)
+	 * and the functions if, coalesce, isNull, upper, lower, trim, length, abs and round. Column names which are not valid java identifiers
+	 * can be enclosed in backticks.<br />
+	 * The expression is type-checked and compiled once, when the column is added: the type of the column is the type of the expression,
+	 * where integral types are promoted to LONG and FLOAT to DOUBLE. Like SQL, expressions involving null values are null
+	 * and integral division by zero is null too.<br />
+	 * Values are computed on the fly each time they are read, so they always reflect the current values of the row, and they cannot be set.
+	 * Use {@link #materialize(String)} to compute them once for all the rows.<br />
+	 * Example of use:<br>
+	 * <pre>
+	 * {@code
+	 * // Assuming a valid TalendFlow instance in table, holding the columns 'name', 'surname', 'price' and 'quantity'
+	 * 
+	 * table.addDerivedColumn("fullName", "upper(surname) + ' ' + name")
+	 *      .addDerivedColumn("total", "if(quantity > 10, price * quantity * 0.9, price * quantity)");
+	 * }
+	 * </pre>
+	 * 
+	 * @param name the name of the column; must be unique
+	 * @param expression the expression the values are computed from
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if name is null, empty, invalid or already present in the flow
+	 * @throws IllegalArgumentException if the expression is null, not valid, refers to unknown columns or mixes incompatible types
+	 */
+	public TalendFlow addDerivedColumn(String name, String expression);
+
+	/**
+	 * Compute the values of a derived column for all the rows of the flow at once, and store them into the rows<br />
+	 * Rows are evaluated in batches, numeric and boolean expressions writing their results into primitive arrays, which is much faster
+	 * than reading the values one row at a time.
+	 * Stored values are snapshots: they don't follow later changes of the columns they were computed from,
+	 * until the column is materialized again. Rows added after this call are still computed on the fly.
+	 * 
+	 * @param column the name of the derived column
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or is not a derived column
+	 */
+	public TalendFlow materialize(String column);
+
 	/**
 	 * Check if the column with the given name exists in the flow.
 	 * 
@@ -235,6 +351,357 @@ public interface TalendFlow {
 	 */
 	public TalendRow[] getRows();
 
+	/**
+	 * Add a hash index on one or more columns of the flow.<br />
+	 * Indexes are used by queries to find the rows matching equality predicates on all the indexed columns
+	 * without scanning the whole flow, and they are kept up to date as rows are committed, changed or kicked out of the flow.
+	 * Flows supporting transactions always have an index on their primary key.<br />
+	 * Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * flow.addIndex("country", "city");
+	 * 
+	 * // This query is answered by the index
+	 * TalendQuery romans = flow.select().where(TalendPredicate.eq("country", "IT").and(TalendPredicate.eq("city", "Rome")));
+	 * }
+	 * </pre>
+	 * Adding an index already defined on the same columns has no effect.
+	 * 
+	 * @param columns the names of the columns to index
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if no column is given or any of them doesn't belong to the flow
+	 */
+	public TalendFlow addIndex(String... columns);
+
+	/**
+	 * Add a Bloom filter to the primary key or to an index of the flow, so that lookups of missing keys are rejected without touching the index.
+	 * Filters are dropped along with their indexes.
+	 * 
+	 * @param columns the names of the columns the index is defined on, in any order
+	 * @return the filter of the index, already holding its keys. If the index already has a filter, it's returned as is
+	 * @throws IllegalArgumentException if no column is given, any of them doesn't belong to the flow or no index is defined on exactly those columns
+	 * @see TalendBloomFilter
+	 */
+	public TalendBloomFilter addBloomFilter(String... columns);
+
+	/**
+	 * Start collecting statistics of the values of some columns, kept up to date as rows are saved, evicted, truncated or changed.<br />
+	 * Besides being available through {@link #getStatistics(String)}, statistics are kept for each block of rows and let queries skip
+	 * the blocks whose values cannot satisfy their predicates. Columns whose statistics are already collected are left untouched.
+	 * 
+	 * @param columns the names of the columns, or none for all the columns of the flow
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to the flow
+	 * @see TalendColumnStatistics
+	 */
+	public TalendFlow collectStatistics(String... columns);
+
+	/**
+	 * Get the statistics of the values of a column
+	 * 
+	 * @param column the name of the column
+	 * @return the statistics, or null if they are not collected
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow
+	 * @see #collectStatistics(String...)
+	 */
+	public TalendColumnStatistics getStatistics(String column);
+
+	/**
+	 * Keep a primitive copy of the values of some numeric columns, updated as rows are saved, evicted, truncated or changed.<br />
+	 * Values of vectorized columns are also held in blocks of long[] or double[] arrays, so that queries and aggregations can run
+	 * comparison, range and IN-list filters and count, sum, avg, min and max aggregates as loops over arrays instead of reading every row:<br />
+	 * <pre>
+	 * {@code
+	 * flow.vectorize("latency", "timestamp");
+	 * 
+	 * // Both are computed without reading rows
+	 * int slow = flow.select().where(TalendPredicate.between("latency", 500, 2000)).count();
+	 * TalendFlow totals = flow.groupBy().where(TalendPredicate.ge("timestamp", since)).sum("latency", "total").max("latency", "worst").toFlow("totals");
+	 * }
+	 * </pre>
+	 * Kernels are used by queries whose predicates only involve vectorized columns (any other predicate in conjunction
+	 * is still tested row by row, on the rows selected by the kernels) and by aggregations without grouping columns whose functions all apply to vectorized columns.
+	 * Columns already vectorized are left untouched.
+	 * 
+	 * @param columns the names of the columns
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if no column is given, any of them doesn't belong to the flow, is not of an integral, floating point or DATE type or is a derived column
+	 */
+	public TalendFlow vectorize(String... columns);
+
+	/**
+	 * Add an aggregate function computed over the committed rows of the flow and kept up to date as rows are saved, evicted or changed.<br />
+	 * Over flows with a maximum size, this is a sliding window aggregate updated in constant amortized time. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * // Moving average of the last 1000 prices
+	 * TalendFlow prices = factory.newFlow("prices", 1000, false).addColumn("price", TalendType.DOUBLE);
+	 * TalendWindowAggregate average = prices.addWindowAggregate(TalendWindowFunction.AVG, "price");
+	 * }
+	 * </pre>
+	 * 
+	 * @param function the aggregate function
+	 * @param column the name of the column to aggregate, or null to count rows
+	 * @return the aggregate
+	 * @throws IllegalArgumentException if the function is null, the column doesn't belong to the flow or the function cannot be computed over it
+	 * @see TalendWindowAggregate
+	 */
+	public TalendWindowAggregate addWindowAggregate(TalendWindowFunction function, String column);
+
+	/**
+	 * Stop updating a window aggregate. Aggregates over a column are also removed when the column is removed.
+	 * 
+	 * @param aggregate the aggregate to remove
+	 */
+	public void removeWindowAggregate(TalendWindowAggregate aggregate);
+
+	/**
+	 * Start a query on the committed rows of the flow, projecting the given columns.<br />
+	 * Queries are lazy: rows are filtered only when the query is iterated, and they can be saved to a new flow using {@link TalendQuery#toFlow(String)}.<br />
+	 * Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * // Get the names of the first ten adult italians in a new flow
+	 * TalendFlow adults = flow.select("name").where(TalendPredicate.eq("country", "IT")).where(TalendPredicate.ge("age", 18)).limit(10).toFlow("adults");
+	 * }
+	 * </pre>
+	 * 
+	 * @param columns the names of the columns to project, or none to project all the columns of the flow
+	 * @return a new query
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to the flow
+	 */
+	public TalendQuery select(String... columns);
+
+	/**
+	 * Start an aggregation of the committed rows of the flow, grouping them by the values of the given columns.<br />
+	 * Aggregate functions are added using the builder methods of {@link TalendAggregation} and computed only when
+	 * {@link TalendAggregation#toFlow(String)} is called. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * // Total and average amount of the orders of each customer
+	 * TalendFlow totals = flow.groupBy("customer").count("orders").sum("amount", "total").avg("amount", "average").toFlow("totals");
+	 * }
+	 * </pre>
+	 * 
+	 * @param columns the names of the columns to group by, or none to aggregate all the rows in a single group
+	 * @return a new aggregation
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to the flow
+	 */
+	public TalendAggregation groupBy(String... columns);
+
+	/**
+	 * Start a join between the committed rows of this flow, on the left, and the ones of another flow of the same model, on the right.<br />
+	 * The columns whose values must match are given using {@link TalendJoin#on(String, String)}. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * TalendFlow enriched = orders.join(customers, TalendJoinType.INNER).on("customerId", "id").toFlow("enriched");
+	 * }
+	 * </pre>
+	 * 
+	 * @param right the right flow
+	 * @param type the kind of join
+	 * @return a new join
+	 * @throws IllegalArgumentException if the right flow or the type is null, or the right flow doesn't belong to the same model
+	 */
+	public TalendJoin join(TalendFlow right, TalendJoinType type);
+
+	/**
+	 * Sort the committed rows of the flow by the values of the given columns.<br />
+	 * Sorts are lazy: rows are sorted only when the sort is iterated, and they can be saved to a new flow using {@link TalendSort#toFlow(String)}.<br />
+	 * Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * // Newest orders first, in a bounded amount of memory
+	 * TalendFlow newest = flow.sort(new String[]{"date"}, new TalendSortOrder[]{TalendSortOrder.DESCENDING}).setMaximumRows(100000).toFlow("newest");
+	 * }
+	 * </pre>
+	 * 
+	 * @param columns the names of the columns to sort by, most significant first
+	 * @param orders the directions the columns are sorted in, in the same order, or null to sort all of them in ascending order
+	 * @return a new sort
+	 * @throws IllegalArgumentException if no column is given, any of them doesn't belong to the flow or cannot be sorted, or the number of directions doesn't match the number of columns
+	 */
+	public TalendSort sort(String[] columns, TalendSortOrder[] orders);
+
+	/**
+	 * Sort the committed rows of the flow by the values of the given columns, in ascending order
+	 * 
+	 * @param columns the names of the columns to sort by, most significant first
+	 * @return a new sort
+	 * @throws IllegalArgumentException if no column is given or any of them doesn't belong to the flow or cannot be sorted
+	 * @see #sort(String[], TalendSortOrder[])
+	 */
+	public TalendSort sort(String... columns);
+
+	/**
+	 * Select the first rows of the flow in the order given by some columns, without sorting the whole flow. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * TalendFlow latest = orders.top(10, new String[]{"orderDate"}, new TalendSortOrder[]{TalendSortOrder.DESCENDING}).toFlow("latestOrders");
+	 * }
+	 * </pre>
+	 * 
+	 * @param n the maximum number of rows to select, for each group if the operator is grouped
+	 * @param columns the names of the columns to order by, most significant first
+	 * @param orders the directions of the columns, in the same order, or null to order all of them ascending
+	 * @return a new top-N operator
+	 * @throws IllegalArgumentException if n is less than one, no column is given, any of them doesn't belong to the flow or cannot be sorted, or the number of directions doesn't match the number of columns
+	 * @see TalendTopN
+	 */
+	public TalendTopN top(int n, String[] columns, TalendSortOrder[] orders);
+
+	/**
+	 * Select the rows of the flow with the smallest values of the given columns, without sorting the whole flow
+	 * 
+	 * @param n the maximum number of rows to select, for each group if the operator is grouped
+	 * @param columns the names of the columns to order by, most significant first
+	 * @return a new top-N operator
+	 * @throws IllegalArgumentException if n is less than one, no column is given or any of them doesn't belong to the flow or cannot be sorted
+	 * @see #top(int, String[], TalendSortOrder[])
+	 */
+	public TalendTopN top(int n, String... columns);
+
+	/**
+	 * Start a random sampling of the committed rows of the flow. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * TalendFlow sample = flow.sample().reservoir(10000).setSeed(1L).toFlow("sample");
+	 * }
+	 * </pre>
+	 * 
+	 * @return a new sampling, selecting {@value TalendSampling#DEFAULT_SIZE} rows by reservoir sampling unless configured otherwise
+	 * @see TalendSampling
+	 */
+	public TalendSampling sample();
+
+	/**
+	 * Split the committed rows of the flow into n shards by hashing the values of some columns, so that rows sharing the same values
+	 * always end up in the same shard. Shards are new flows of the same model, named after this flow followed by an underscore and
+	 * the number of the shard (ie. 'orders_0', 'orders_1'...), holding columns defined like the ones of this flow and the rows in flow order.<br />
+	 * Rows are hashed and copied in parallel. Flows partitioned by columns of the same types with the same number of shards are
+	 * co-partitioned, so that they can be joined or aggregated shard by shard, each in a thread of its own. Numbers are hashed
+	 * by value, so numeric columns of different types (ie. INTEGER and LONG) are co-partitioned as well:<br />
+	 * <pre>
+	 * {@code
+	 * TalendFlow[] orders = ordersFlow.partition(new String[]{"customerId"}, 8);
+	 * TalendFlow[] customers = customersFlow.partition(new String[]{"id"}, 8);
+	 * 
+	 * // orders[i] only refers to customers in customers[i]
+	 * }
+	 * </pre>
+	 * 
+	 * @param columns the names of the columns to hash
+	 * @param n the number of shards
+	 * @return the shards, in order
+	 * @throws IllegalArgumentException if n is less than one, no column is given, any of them doesn't belong to the flow or a flow with the name of a shard already exists in the model
+	 * @throws java.util.ConcurrentModificationException if the flow is modified while it's split
+	 */
+	public TalendFlow[] partition(String[] columns, int n);
+
+	/**
+	 * Start a deduplication of the committed rows of the flow, keyed on the values of the given columns.<br />
+	 * Rows are split into unique rows and duplicates once {@link TalendDedup#into(String, String)} is called, and then again
+	 * each time {@link TalendDedup#update()} is called. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * TalendDedup dedup = flow.deduplicate("email").into("customers", "rejected");
+	 * }
+	 * </pre>
+	 * 
+	 * @param columns the names of the columns making the key, or none to compare whole rows
+	 * @return a new deduplicator
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to the flow
+	 */
+	public TalendDedup deduplicate(String... columns);
+
+	/**
+	 * Start assigning the committed rows of the flow to windows of event time, according to the values of a DATE column.<br />
+	 * Windows are emitted into an output flow once {@link TalendTimeWindow#into(String)} is called, and then again
+	 * each time {@link TalendTimeWindow#update()} is called. Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * TalendTimeWindow hourly = orders.window("orderDate").hopping(1, 15, TimeUnit.MINUTES).sum("amount", "total").into("hourlyTotals");
+	 * }
+	 * </pre>
+	 * 
+	 * @param column the name of the DATE column holding the event time
+	 * @return a new time window operator
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or is not a DATE column
+	 */
+	public TalendTimeWindow window(String column);
+
+	/**
+	 * Return an iterator over the committed rows of the flow, in the order they were saved.<br />
+	 * Rows are read directly from the storage of the flow, without copying them.<br />
+	 * The iterator is fail-fast: if rows are added, committed or truncated while iterating, the next call to the iterator
+	 * throws a {@link java.util.ConcurrentModificationException}. Changes to the values of rows already saved are not
+	 * considered modifications of the flow.
+	 * 
+	 * @return an iterator over rows
+	 */
+	public Iterator<TalendRow> iterator();
+
+	/**
+	 * Visit all the committed rows of the flow, in the order they were saved, with the given behaviour.<br />
+	 * Like {@link #iterator()}, rows are not copied and a {@link java.util.ConcurrentModificationException}
+	 * is thrown if the flow is modified during the visit.
+	 * 
+	 * @param behaviour the behaviour visiting the rows
+	 * @return a reference to the flow itself
+	 */
+	public TalendFlow forEach(TalendRowBehaviour behaviour);
+
+	/**
+	 * Return a spliterator over the committed rows of the flow.<br />
+	 * The spliterator reports {@link Spliterator#SIZED} and {@link Spliterator#SUBSIZED} characteristics and splits
+	 * the rows in balanced halves, so it can be used by fork/join tasks and parallel streams.<br />
+	 * It is late-binding, and fail-fast once bound, like {@link #iterator()}.
+	 * 
+	 * @return a spliterator over rows
+	 */
+	public Spliterator<TalendRow> spliterator();
+
+	/**
+	 * Return a sequential stream over the committed rows of the flow
+	 * 
+	 * @return a stream of rows
+	 * @see #spliterator()
+	 */
+	public Stream<TalendRow> stream();
+
+	/**
+	 * Return a parallel stream over the committed rows of the flow.<br />
+	 * Example of use:<br />
+	 * <pre>
+	 * {@code
+	 * // Sum the 'amount' column of a flow using all the available cores
+	 * long total = flow.parallelStream().mapToLong(row -> (Long) row.getValue("amount")).sum();
+	 * }
+	 * </pre>
+	 * Rows must not be committed, added or truncated while the stream is consumed.
+	 * 
+	 * @return a parallel stream of rows
+	 * @see #spliterator()
+	 */
+	public Stream<TalendRow> parallelStream();
+
+	/**
+	 * Open a cursor over the committed rows of the flow.<br />
+	 * Cursors are positioned before the first row and moved forward calling {@link TalendRowCursor#next()}:<br />
+	 * <pre>
+	 * {@code
+	 * TalendRowCursor cursor = flow.cursor();
+	 * while(cursor.next()){
+	 *     TalendRow row = cursor.getRow();
+	 * }
+	 * }
+	 * </pre>
+	 * Cursors have the same fail-fast semantics of {@link #iterator()}.
+	 * 
+	 * @return a new cursor
+	 */
+	public TalendRowCursor cursor();
+
 	/**
 	 * Get the row at specified position
 	 * 
@@ -244,6 +711,45 @@ public interface TalendFlow {
 	 */
 	public TalendRow getRow(int rownum) throws IndexOutOfBoundsException;
 
+	/**
+	 * Update the row having the same primary key of the given values, or add a new row if no row has that key.<br />
+	 * The row is looked up in the primary key index of the flow in constant time, instead of scanning all the rows. Values of non-key columns
+	 * missing from the map are left untouched on existing rows and set to their defaults on new rows.<br />
+	 * Like any other change, both updates and new rows only become visible when the flow is committed, and are discarded by a rollback.
+	 * Commits and rollbacks only save or discard the columns of existing rows changed by upserts: other changes staged on the same rows
+	 * are left pending, and changes staged on the same columns before the upsert are restored by a rollback.
+	 * Rows added by a previous call in the same transaction are found as well, so the same key can be merged many times before committing:<br />
+	 * <pre>
+	 * {@code
+	 * // Assuming a dimension flow with primary key 'id'
+	 * Map<String, Object> values = new HashMap<String, Object>();
+	 * values.put("id", 42);
+	 * values.put("name", "foo");
+	 * dimension.upsert(values);
+	 * dimension.commit();
+	 * }
+	 * </pre>
+	 * 
+	 * @param values the values of the row by column name, holding a value for each column of the primary key
+	 * @return a reference to the updated or added row
+	 * @throws IllegalArgumentException if the map is null, any column is not part of the flow, a value of the primary key is missing
+	 * or any value cannot be converted to the type of its column
+	 * @throws IllegalStateException if the flow has no primary key, or any column is a derived column
+	 */
+	public TalendRow upsert(Map<String, Object> values);
+
+	/**
+	 * Update or add many rows by primary key, like {@link #upsert(Map)} does for each of them, in order.<br />
+	 * When many maps have the same key, the last values given for each column win.
+	 * 
+	 * @param rows the values of each row by column name
+	 * @return a reference to the flow itself
+	 * @throws IllegalArgumentException if the rows are null, or any of them is not valid
+	 * @throws IllegalStateException if the flow has no primary key, or any column is a derived column
+	 * @see #upsert(Map)
+	 */
+	public TalendFlow upsertAll(Iterable<? extends Map<String, Object>> rows);
+
 	/**
 	 * Return an array with references to all key columns of the table
 	 * 
@@ -17,12 +17,22 @@
 package org.gabrielebaldassarre.tcomponent.bridge;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This is the concrete implementation of a flow and therefore should not be used in normal circumnstances.
@@ -39,21 +49,28 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	protected Map<TalendColumnImpl, TalendColumnImpl> columnImpls;
 	protected List<TalendColumnImpl> columnsList;
 	protected List<TalendColumnImpl> keyList;
+	private int slots;
 	protected final String name;
 	protected List<TalendRowImpl> rowList;
+	private final TalendChunkedList<TalendRowImpl> rowStore;
 	protected List<TalendRowImpl> rowdraft;
 	protected final Integer maximumSize;
 	protected boolean supportTransactions;
 	private boolean waitToTruncate;
-	
-	//protected Map<Map<TalendColumn, TalendValue>> index;
-	@SuppressWarnings("rawtypes")
-	protected List<Map> index;
+	private volatile int modCount;
+	private TalendColumnImpl[] slotColumns;
+	private long sequence;
+	private TalendIndex primaryIndex;
+	private final List<TalendIndex> indexes;
+	private final List<TalendWindowAggregateImpl> windows;
+	private final List<TalendColumnStatisticsImpl> statistics;
+	private final List<TalendColumnVector> vectors;
+	private final Map<TalendRowImpl, Map<TalendColumnImpl, TalendValue[]>> updatedRows;
+	private final Map<Object, TalendRowImpl> upsertedRows;
 	
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("rawtypes")
 	public TalendFlowImpl(TalendFlowModelImpl model, final String name, final Integer maximumSize, boolean supportTransactions){
 		
 		this.waitToTruncate = false;
@@ -65,17 +82,22 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 		this.columnsList = TalendListFactory.getInstance(TalendColumnImpl.class).newTalendList(new ArrayList<TalendColumnImpl>());
 		if(supportTransactions) {
 			this.keyList = TalendListFactory.getInstance(TalendColumnImpl.class).newTalendList(new ArrayList<TalendColumnImpl>());
-			//this.index = new ConcurrentHashMap<Map<TalendColumn, TalendValue>, Integer>();
 		}
+		this.slotColumns = new TalendColumnImpl[8];
+		this.indexes = new CopyOnWriteArrayList<TalendIndex>();
+		this.windows = new CopyOnWriteArrayList<TalendWindowAggregateImpl>();
+		this.statistics = new CopyOnWriteArrayList<TalendColumnStatisticsImpl>();
+		this.vectors = new CopyOnWriteArrayList<TalendColumnVector>();
+		this.updatedRows = new HashMap<TalendRowImpl, Map<TalendColumnImpl, TalendValue[]>>();
+		this.upsertedRows = new HashMap<Object, TalendRowImpl>();
 		this.maximumSize = maximumSize;
+		this.rowStore = new TalendChunkedList<TalendRowImpl>();
 		if(maximumSize == null){
-			this.rowList = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new LinkedList<TalendRowImpl>());
-			this.rowdraft = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new LinkedList<TalendRowImpl>());
-			this.index = TalendListFactory.getInstance(Map.class).newTalendList(new LinkedList<Map>());
+			this.rowList = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(rowStore);
+			this.rowdraft = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new TalendChunkedList<TalendRowImpl>());
 		} else {
-			this.rowList = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new LinkedList<TalendRowImpl>(), maximumSize + 1);
-			this.rowdraft = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new LinkedList<TalendRowImpl>(), maximumSize + 1);
-			this.index = TalendListFactory.getInstance(Map.class).newTalendList(new LinkedList<Map>(), maximumSize + 1);
+			this.rowList = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(rowStore, maximumSize + 1);
+			this.rowdraft = TalendListFactory.getInstance(TalendRowImpl.class).newTalendList(new TalendChunkedList<TalendRowImpl>(), maximumSize + 1);
 		}
 
 	}
@@ -106,6 +128,57 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	 * {@inheritDoc}
 	 */
 	public TalendFlow addColumn(String name, TalendType type, Object defaultValue, boolean isKey) throws IllegalArgumentException {
+		return addColumn(name, type, defaultValue, isKey, TalendEncoding.AUTO);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow addColumn(String name, TalendType type, Object defaultValue, boolean isKey, TalendEncoding encoding) throws IllegalArgumentException {
+		return addColumn(name, type, null, defaultValue, isKey, encoding);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow addListColumn(String name, TalendType elementType) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if (elementType == null) {
+            throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "elementType"));
+		}
+		return addColumn(name, TalendType.LIST, elementType, null, false, TalendEncoding.PLAIN);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow addDerivedColumn(String name, String expression) throws IllegalArgumentException {
+		TalendEvaluator derivation = TalendExpressionParser.compile(this, expression);
+		addColumn(name, derivation.type, null, null, false, TalendEncoding.PLAIN);
+		((TalendColumnImpl) getColumn(name)).derive(expression, derivation);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow materialize(String column) throws IllegalArgumentException {
+		TalendColumnImpl col = TalendPredicate.resolve(this, column);
+		if(col.derivation == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.notDerivedColumn"), column, getName()));
+		}
+		int count = countRows();
+		TalendRowImpl[] batch = new TalendRowImpl[TalendChunkedList.CHUNK_SIZE];
+		for(int from = 0; from < count; from += batch.length){
+			int n = Math.min(batch.length, count - from);
+			for(int i = 0; i < n; i++) batch[i] = committedRow(from + i);
+			col.derivation.store(col, batch, n);
+		}
+		return this;
+	}
+
+	private TalendFlow addColumn(String name, TalendType type, TalendType elementType, Object defaultValue, boolean isKey, TalendEncoding encoding) throws IllegalArgumentException {
 		
 		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 		if (name == null || name.isEmpty() || hasColumn(name)) {
@@ -124,6 +197,10 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
             throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.keyForNotEmptyTable"), this.getName()));			
 		}
 
+		if(encoding == null || !encoding.supports(type)) {
+            throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidEncoding"), encoding, type));			
+		}
+
 		if (defaultValue != null) {
             if (defaultValue.getClass() != type.getType()) {
                 if (defaultValue.getClass() == String.class) {
@@ -134,13 +211,18 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
             }
 		}
  
-        TalendColumnImpl col = new TalendColumnImpl(this, columns.size(), name, type, defaultValue);
+        TalendColumnImpl col = new TalendColumnImpl(this, columns.size(), name, type, elementType, defaultValue, encoding);
         
         columns.put(name, col);
         columnImpls.put(col, col);
         columnsList.add(col);
+        if(slotColumns.length <= col.slot){
+        	slotColumns = Arrays.copyOf(slotColumns, Math.max(slotColumns.length * 2, col.slot + 1));
+        }
+        slotColumns[col.slot] = col;
         if(isKey == true){
         	keyList.add(col);
+        	rebuildPrimaryIndex();
         }
         
         return this;
@@ -190,9 +272,30 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
         }
 
         for(TalendRowImpl row : rowList){
-        	row.setValue(column, null, true);
+        	row.removeColumn(columnImpls.get(column));
+        }
+        for(TalendRowImpl row : rowdraft){
+        	row.removeColumn(columnImpls.get(column));
         }
         
+        TalendColumnImpl removed = columnImpls.get(column);
+        for(TalendIndex i : indexes){
+        	if(i != primaryIndex && i.covers(removed)) indexes.remove(i);
+        }
+        for(TalendWindowAggregateImpl w : windows){
+        	if(w.getColumn() == removed) windows.remove(w);
+        }
+        for(TalendColumnStatisticsImpl s : statistics){
+        	if(s.getColumn() == removed) statistics.remove(s);
+        }
+        for(TalendColumnVector v : vectors){
+        	if(v.getColumn() == removed) vectors.remove(v);
+        }
+        if(keyList != null && keyList.remove(removed)){
+        	rebuildPrimaryIndex();
+        }
+        slotColumns[removed.slot] = null;
+
         columnsList.remove((TalendColumnImpl) column);
         columns.remove(column.getName());
         columnImpls.remove(column);
@@ -219,8 +322,27 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	 * {@inheritDoc}
 	 */
 	public TalendColumnImpl getColumn(int index) {
-		if(index > columnsList.size()) return null;
-		return columnImpls.get(columnsList.get(index));
+		if(index < 0 || index >= columnsList.size()) return null;
+		return columnsList.get(index);
+	}
+
+	/**
+	 * Reserve the slot of a new column, ie. the position of its values inside the storage of rows.<br />
+	 * Unlike column indexes, slots never change and are never reused, even if columns are removed.
+	 * 
+	 * @return the slot of the new column
+	 */
+	synchronized int allocateSlot(){
+		return slots++;
+	}
+
+	/**
+	 * Get the number of slots reserved so far
+	 * 
+	 * @return the number of slots
+	 */
+	synchronized int countSlots(){
+		return slots;
 	}
 
 	/**
@@ -244,8 +366,484 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 		if(supportsTransactions() == true){
 			rowdraft.add(row);
 		} else {
+			TalendRowImpl evicted = (maximumSize != null && rowStore.size() == maximumSize + 1 ? rowStore.get(0) : null);
+			row.sequence = sequence++;
 			rowList.add(row);
+			if(evicted != null) detach(evicted);
+			for(TalendIndex i : indexes){
+				i.add(row);
+			}
+			for(TalendWindowAggregateImpl w : windows){
+				w.added(row);
+			}
+			for(TalendColumnStatisticsImpl s : statistics){
+				s.added(row);
+			}
+			for(TalendColumnVector v : vectors){
+				v.added(row);
+			}
+			modCount++;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow addIndex(String... columns) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(columns == null || columns.length == 0){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			cols[i] = TalendPredicate.resolve(this, columns[i]);
+		}
+		if(getIndex(cols) != null) return this;
+
+		TalendIndex index = new TalendIndex(cols, false);
+		for(TalendRowImpl row : rowStore){
+			index.add(row);
+		}
+		indexes.add(index);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendBloomFilter addBloomFilter(String... columns) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(columns == null || columns.length == 0){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			cols[i] = TalendPredicate.resolve(this, columns[i]);
+		}
+		TalendIndex index = getIndex(cols);
+		if(index == null){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.missingIndex"), Arrays.toString(columns), getName()));
+		}
+		return index.filter();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow window(String column) throws IllegalArgumentException {
+		TalendColumnImpl col = TalendPredicate.resolve(this, column);
+		if(col.getType() != TalendType.DATE){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.notDateColumn"), column, getName()));
+		}
+		return new TalendTimeWindowImpl(this, col);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow collectStatistics(String... columns) throws IllegalArgumentException {
+		List<TalendColumnImpl> cols = new ArrayList<TalendColumnImpl>();
+		if(columns == null || columns.length == 0){
+			cols.addAll(columnsList);
+		} else {
+			for(String column : columns){
+				cols.add(TalendPredicate.resolve(this, column));
+			}
 		}
+		for(TalendColumnImpl col : cols){
+			if(statisticsOf(col) == null) statistics.add(new TalendColumnStatisticsImpl(this, col));
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumnStatistics getStatistics(String column) throws IllegalArgumentException {
+		return statisticsOf(TalendPredicate.resolve(this, column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow vectorize(String... columns) throws IllegalArgumentException {
+		if(columns == null || columns.length == 0){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		for(String column : columns){
+			TalendColumnImpl col = TalendPredicate.resolve(this, column);
+			if(vectorOf(col) == null) vectors.add(new TalendColumnVector(this, col));
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendWindowAggregate addWindowAggregate(TalendWindowFunction function, String column) throws IllegalArgumentException {
+		if(function == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "function"));
+		}
+		TalendWindowAggregateImpl window = new TalendWindowAggregateImpl(this, function, (column == null ? null : TalendPredicate.resolve(this, column)));
+		windows.add(window);
+		return window;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeWindowAggregate(TalendWindowAggregate aggregate) {
+		windows.remove(aggregate);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendQuery select(String... columns) throws IllegalArgumentException {
+		TalendColumnImpl[] cols;
+		if(columns == null || columns.length == 0){
+			cols = columnsList.toArray(new TalendColumnImpl[columnsList.size()]);
+		} else {
+			cols = new TalendColumnImpl[columns.length];
+			for(int i = 0; i < columns.length; i++){
+				cols[i] = TalendPredicate.resolve(this, columns[i]);
+			}
+		}
+		return new TalendQueryImpl(this, cols);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendAggregation groupBy(String... columns) throws IllegalArgumentException {
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns == null ? 0 : columns.length];
+		for(int i = 0; i < cols.length; i++){
+			cols[i] = TalendPredicate.resolve(this, columns[i]);
+		}
+		return new TalendAggregationImpl(this, cols);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin join(TalendFlow right, TalendJoinType type) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(right == null){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "right"));
+		}
+		if(type == null){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "type"));
+		}
+		if(!(right instanceof TalendFlowImpl) || ((TalendFlowImpl) right).model != model){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.differentModels"), right.getName(), getName()));
+		}
+		return new TalendJoinImpl(this, (TalendFlowImpl) right, type);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSort sort(String[] columns, TalendSortOrder[] orders) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(columns == null || columns.length == 0){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		if(orders != null && orders.length != columns.length){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidSortOrders"), orders.length, columns.length));
+		}
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns.length];
+		TalendSortOrder[] dirs = new TalendSortOrder[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			cols[i] = TalendPredicate.resolve(this, columns[i]);
+			dirs[i] = (orders == null || orders[i] == null ? TalendSortOrder.ASCENDING : orders[i]);
+		}
+		return new TalendSortImpl(this, cols, dirs);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSort sort(String... columns) throws IllegalArgumentException {
+		return sort(columns, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTopN top(int n, String[] columns, TalendSortOrder[] orders) throws IllegalArgumentException {
+		if(n < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), n));
+		}
+		return new TalendTopNImpl(this, n, (TalendSortImpl) sort(columns, orders));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTopN top(int n, String... columns) throws IllegalArgumentException {
+		return top(n, columns, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling sample() {
+		return new TalendSamplingImpl(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow[] partition(String[] columns, int n) throws IllegalArgumentException {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(columns == null || columns.length == 0){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		if(n < 1){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), n));
+		}
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns.length];
+		for(int i = 0; i < cols.length; i++){
+			cols[i] = TalendPredicate.resolve(this, columns[i]);
+		}
+		return TalendPartitioner.partition(this, cols, n, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendDedup deduplicate(String... columns) throws IllegalArgumentException {
+		TalendColumnImpl[] cols;
+		if(columns == null || columns.length == 0){
+			cols = columnsList.toArray(new TalendColumnImpl[columnsList.size()]);
+		} else {
+			cols = new TalendColumnImpl[columns.length];
+			for(int i = 0; i < columns.length; i++){
+				cols[i] = TalendPredicate.resolve(this, columns[i]);
+			}
+		}
+		return new TalendDedupImpl(this, cols);
+	}
+
+	/**
+	 * Get the index defined on the given columns, in any order
+	 * 
+	 * @param cols the columns
+	 * @return the index or null if there's no index on exactly those columns
+	 */
+	TalendIndex getIndex(TalendColumnImpl[] cols){
+		for(TalendIndex i : indexes){
+			if(i.isOn(cols)) return i;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the indexes of the flow, the primary key index being the first one if any
+	 * 
+	 * @return the indexes
+	 */
+	List<TalendIndex> getIndexes(){
+		return indexes;
+	}
+
+	/**
+	 * Get the statistics collected for a column
+	 * 
+	 * @param column the column
+	 * @return the statistics, or null if they are not collected
+	 */
+	TalendColumnStatisticsImpl statisticsOf(TalendColumnImpl column){
+		for(TalendColumnStatisticsImpl s : statistics){
+			if(s.getColumn() == column) return s;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the vector holding the values of a column
+	 * 
+	 * @param column the column
+	 * @return the vector, or null if the column is not vectorized
+	 */
+	TalendColumnVector vectorOf(TalendColumnImpl column){
+		for(TalendColumnVector v : vectors){
+			if(v.getColumn() == column) return v;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if statistics are collected for any column of the flow
+	 * 
+	 * @return true if blocks of rows may be skipped according to their statistics
+	 */
+	boolean hasStatistics(){
+		return !statistics.isEmpty();
+	}
+
+	/**
+	 * Get the column owning a slot
+	 * 
+	 * @param slot the slot
+	 * @return the column, or null if the column was removed
+	 */
+	TalendColumnImpl columnAt(int slot){
+		TalendColumnImpl[] cols = slotColumns;
+		return (slot < cols.length ? cols[slot] : null);
+	}
+
+	/**
+	 * Check if saved rows must notify the flow when their values change
+	 * 
+	 * @return true if there's something to keep up to date, like indexes
+	 */
+	boolean isTracked(){
+		return !indexes.isEmpty() || !windows.isEmpty() || !statistics.isEmpty() || !vectors.isEmpty();
+	}
+
+	/**
+	 * Update indexes, window aggregates, statistics and vectors after a value of a saved row has been changed
+	 * 
+	 * @param row the row, already holding the new value
+	 * @param column the changed column
+	 * @param previous the value held by the column before the change
+	 */
+	void rowUpdated(TalendRowImpl row, TalendColumnImpl column, TalendValue previous){
+		for(TalendIndex i : indexes){
+			if(i.covers(column)) i.update(row, column, previous);
+		}
+		for(TalendWindowAggregateImpl w : windows){
+			if(w.getColumn() == column) w.updated(row, previous);
+		}
+		for(TalendColumnStatisticsImpl s : statistics){
+			if(s.getColumn() == column) s.updated(row, previous);
+		}
+		for(TalendColumnVector v : vectors){
+			if(v.getColumn() == column) v.updated(row);
+		}
+	}
+
+	/**
+	 * Get the position of a committed row in the flow
+	 * 
+	 * @param row the row
+	 * @return the position of the row
+	 */
+	int positionOf(TalendRowImpl row){
+		return (int) (row.sequence - rowStore.get(0).sequence);
+	}
+
+	/**
+	 * Build a new flow in the same model of this one, holding columns defined like the given ones.<br />
+	 * The new flow has no maximum size and doesn't support transactions.
+	 * 
+	 * @param name the name of the new flow
+	 * @param columns the columns whose definitions are copied, in order
+	 * @return the new flow
+	 * @throws IllegalArgumentException if the name is not valid or a flow with the same name already exists in the model
+	 */
+	TalendFlowImpl newFlow(String name, TalendColumnImpl[] columns){
+		return newFlow(name, columns, null);
+	}
+
+	/**
+	 * Build a new bounded flow in the same model of this one, holding columns defined like the given ones.<br />
+	 * The new flow doesn't support transactions.
+	 * 
+	 * @param name the name of the new flow
+	 * @param columns the columns whose definitions are copied, in order
+	 * @param maximumSize the maximum number of rows of the new flow, or null for no limit
+	 * @return the new flow
+	 * @throws IllegalArgumentException if the name is not valid or a flow with the same name already exists in the model
+	 */
+	TalendFlowImpl newFlow(String name, TalendColumnImpl[] columns, Integer maximumSize){
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(name == null || name.isEmpty()){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "name"));
+		}
+		if(model.hasFlow(name)){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.flowAlreadyExists"), name));
+		}
+		TalendFlowImpl flow = (TalendFlowImpl) model.getFactory().newFlow(name, maximumSize, false);
+		for(TalendColumnImpl col : columns){
+			flow.addColumnLike(col, col.getName());
+		}
+		return flow;
+	}
+
+	/**
+	 * Add a column defined like the given one, with the same type, default value and encoding
+	 * 
+	 * @param column the column whose definition is copied
+	 * @param name the name of the new column
+	 * @throws IllegalArgumentException if the name is null, empty, invalid or already present in the flow
+	 */
+	void addColumnLike(TalendColumnImpl column, String name){
+		if(column.getElementType() != null){
+			addListColumn(name, column.getElementType());
+		} else {
+			addColumn(name, column.getType(), column.getDefaultValue(), false, (column.getEncoding() == TalendEncoding.DICTIONARY ? TalendEncoding.AUTO : column.getEncoding()));
+		}
+	}
+
+	/**
+	 * Build a new row and add it to the flow
+	 * 
+	 * @return the new row
+	 */
+	TalendRowImpl newRow(){
+		TalendRowImpl row = new TalendRowImpl(this, !supportsTransactions());
+		addRow(row);
+		return row;
+	}
+
+	/**
+	 * Copy some values from a row to another one, possibly belonging to different flows.<br />
+	 * Only values differing from the defaults of the source columns are copied, assuming the target columns have the same defaults.
+	 * 
+	 * @param src the row to copy from
+	 * @param from the columns to copy from
+	 * @param dest the row to copy to
+	 * @param to the columns to copy to, in the same order
+	 */
+	static void copyValues(TalendRowImpl src, TalendColumnImpl[] from, TalendRowImpl dest, TalendColumnImpl[] to){
+		for(int i = 0; i < from.length; i++){
+			TalendValue value = src.value(from[i]);
+			if(value == from[i].getDefaultTalendValue()) continue;
+			dest.put(to[i], (value == null ? null : to[i].newValue(value)));
+		}
+	}
+
+	/**
+	 * Forget a row that has been kicked out of the flow, either because of eviction or truncation
+	 * 
+	 * @param row the row
+	 */
+	private void detach(TalendRowImpl row){
+		for(TalendIndex i : indexes){
+			i.remove(row);
+		}
+		for(TalendWindowAggregateImpl w : windows){
+			w.removed(row);
+		}
+		for(TalendColumnStatisticsImpl s : statistics){
+			s.removed(row);
+		}
+		for(TalendColumnVector v : vectors){
+			v.removed(row);
+		}
+		row.presentInTable = false;
+	}
+
+	private void rebuildPrimaryIndex(){
+		if(primaryIndex != null) indexes.remove(primaryIndex);
+		primaryIndex = (keyList.isEmpty() ? null : new TalendIndex(keyList.toArray(new TalendColumnImpl[keyList.size()]), true));
+		if(primaryIndex != null) indexes.add(0, primaryIndex);
 	}
 
 
@@ -271,6 +869,108 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 		return rowList.toArray(new TalendRow[rowList.size()]);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public Iterator<TalendRow> iterator() {
+		final Iterator<TalendRowImpl> rows = rowIterator();
+		return new Iterator<TalendRow>(){
+
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			public TalendRow next() {
+				return rows.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow forEach(TalendRowBehaviour behaviour) {
+		Iterator<TalendRowImpl> rows = rowIterator();
+		while(rows.hasNext()){
+			behaviour.visit(rows.next());
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRowCursor cursor() {
+		return new TalendRowCursorImpl(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Spliterator<TalendRow> spliterator() {
+		return new RowSpliterator(0, -1, 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Stream<TalendRow> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Stream<TalendRow> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Return a fail-fast iterator over the committed rows of the flow
+	 * 
+	 * @return an iterator over rows
+	 */
+	Iterator<TalendRowImpl> rowIterator() {
+		return new RowIterator();
+	}
+
+	/**
+	 * Get a committed row by position, without checking bounds against the flow
+	 * 
+	 * @param position the position of the row
+	 * @return the row
+	 */
+	TalendRowImpl committedRow(int position) {
+		return rowStore.get(position);
+	}
+
+	/**
+	 * Get the modification counter of the flow, which changes whenever rows are appended, committed or truncated
+	 * 
+	 * @return the modification counter
+	 */
+	int modCount() {
+		return modCount;
+	}
+
+	/**
+	 * Check that the flow was not modified since an iterator or a cursor was opened
+	 * 
+	 * @param expectedModCount the modification counter of the flow when the iterator was opened
+	 * @throws ConcurrentModificationException if the flow was modified
+	 */
+	void checkForModification(int expectedModCount) {
+		if(modCount != expectedModCount){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new ConcurrentModificationException(String.format(Locale.getDefault(), rb.getString("exception.concurrentModification"), name));
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @return 
@@ -316,30 +1016,194 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	 * {@inheritDoc}
 	 */
 	public void commit() {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		
 		if(waitToTruncate == true) {
-			rowList.clear();
+			clearRows();
+			waitToTruncate = false;
+		}
+		if(rowdraft.isEmpty()){
+			saveUpdatedRows();
+			upsertedRows.clear();
 			return;
 		}
 		
-		for(TalendRowImpl row : rowdraft){
-			if((index.size()-1) > 0 && index.contains(row.getKeySet())) {
-				throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.duplicateKey"), name));
+		if(primaryIndex != null){
+			Set<Object> keys = new HashSet<Object>();
+			for(TalendRowImpl row : rowdraft){
+				Object key = primaryIndex.pendingKeyOf(row);
+				if(key == null){
+					ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+					throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.cannotSaveRow"), name));
+				}
+				if(primaryIndex.contains(key) || !keys.add(key)) {
+					ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+					throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.duplicateKey"), name));
+				}
 			}
 		}
+		
+		saveUpdatedRows();
+		
+		int overflow = (maximumSize == null ? 0 : Math.max(0, rowStore.size() + rowdraft.size() - (maximumSize + 1)));
+		List<TalendRowImpl> evicted = new ArrayList<TalendRowImpl>(Math.min(overflow, rowStore.size()));
+		for(int i = 0; i < overflow && i < rowStore.size(); i++){
+			evicted.add(rowStore.get(i));
+		}
+		
 		rowList.addAll(rowdraft);
-		for(TalendRowImpl row : rowdraft){
-			if(row.presentInTable == false) {
-				//index.put(row.getKeySet(), 1);
-				index.add(row.getKeySet());
-			}
-			row.presentInTable = true;
+		for(TalendRowImpl row : evicted){
+			detach(row);
+		}
+		// drafts exceeding the maximum size of the flow are evicted by the list itself as soon as they are added
+		int firstKept = rowdraft.size() - Math.min(rowdraft.size(), rowStore.size());
+		for(int d = 0; d < rowdraft.size(); d++){
+			TalendRowImpl row = rowdraft.get(d);
 			row.save();
+			row.sequence = sequence++;
+			if(d < firstKept) continue;
+			row.presentInTable = true;
+			for(TalendIndex i : indexes){
+				i.add(row);
+			}
+			for(TalendWindowAggregateImpl w : windows){
+				w.added(row);
+			}
+			for(TalendColumnStatisticsImpl s : statistics){
+				s.added(row);
+			}
+			for(TalendColumnVector v : vectors){
+				v.added(row);
+			}
 		}
 		rowdraft.clear();
+		upsertedRows.clear();
+		modCount++;
+	}
+
+	/**
+	 * Save the values staged by upserts on committed rows in the current transaction, leaving any other pending change of those rows pending
+	 */
+	private void saveUpdatedRows(){
+		for(Map.Entry<TalendRowImpl, Map<TalendColumnImpl, TalendValue[]>> entry : updatedRows.entrySet()){
+			for(TalendColumnImpl col : entry.getValue().keySet()){
+				entry.getKey().savePending(col);
+			}
+		}
+		updatedRows.clear();
+	}
+
+	/**
+	 * Discard the values staged by upserts in the current transaction, restoring the changes that were pending on the same
+	 * columns of committed rows before the upserts
+	 */
+	private void discardUpserts(){
+		for(Map.Entry<TalendRowImpl, Map<TalendColumnImpl, TalendValue[]>> entry : updatedRows.entrySet()){
+			TalendRowImpl row = entry.getKey();
+			for(Map.Entry<TalendColumnImpl, TalendValue[]> staged : entry.getValue().entrySet()){
+				row.discardPending(staged.getKey());
+				if(staged.getValue() != null) row.putPending(staged.getKey(), staged.getValue()[0]);
+			}
+		}
+		updatedRows.clear();
+		upsertedRows.clear();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRow upsert(Map<String, Object> values) {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(values == null){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "values"));
+		}
+		if(primaryIndex == null){
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.noPrimaryKey"), name));
+		}
+		return upsert(values, rb);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow upsertAll(Iterable<? extends Map<String, Object>> rows) {
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		if(rows == null){
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "rows"));
+		}
+		if(primaryIndex == null){
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.noPrimaryKey"), name));
+		}
+		for(Map<String, Object> values : rows){
+			if(values == null){
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "values"));
+			}
+			upsert(values, rb);
+		}
+		return this;
+	}
+
+	/**
+	 * Update or add a row by primary key, once the flow is known to have one.<br />
+	 * All the values are checked and converted before any row is changed, so that invalid values leave the flow untouched.
+	 * 
+	 * @param values the values of the row by column name
+	 * @param rb the bundle of the messages of the exceptions
+	 * @return the updated or added row
+	 */
+	private TalendRowImpl upsert(Map<String, Object> values, ResourceBundle rb){
+		TalendColumnImpl[] keyCols = primaryIndex.getColumns();
+		Object[] parts = new Object[keyCols.length];
+		for(int i = 0; i < keyCols.length; i++){
+			parts[i] = TalendPredicate.convert(keyCols[i], values.get(keyCols[i].getName()));
+			if(parts[i] == null){
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.missingKeyValue"), keyCols[i].getName(), name));
+			}
+		}
+		Object key = primaryIndex.keyOf(parts);
+
+		TalendColumnImpl[] cols = new TalendColumnImpl[values.size()];
+		TalendValue[] vals = new TalendValue[cols.length];
+		int n = 0;
+		for(Map.Entry<String, Object> entry : values.entrySet()){
+			TalendColumnImpl col = (entry.getKey() == null ? null : (TalendColumnImpl) columns.get(entry.getKey()));
+			if(col == null){
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), entry.getKey(), name));
+			}
+			if(col.derivation != null){
+				throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.derivedColumn"), col.getName(), name));
+			}
+			TalendValue val = col.newValue(entry.getValue());
+			cols[n] = col;
+			vals[n++] = (val instanceof TalendValueImpl && val.getValue() == null ? null : val);
+		}
+
+		// rows waiting for a truncate are gone as soon as the flow is committed
+		TalendRowImpl row = (waitToTruncate ? null : primaryIndex.getUnique(key));
+		if(row != null){
+			// remember the changes the caller had already staged on the same columns, to restore them on rollback
+			Map<TalendColumnImpl, TalendValue[]> staged = updatedRows.get(row);
+			if(staged == null){
+				staged = new HashMap<TalendColumnImpl, TalendValue[]>();
+				updatedRows.put(row, staged);
+			}
+			for(int i = 0; i < n; i++){
+				if(cols[i].isKey()) continue;
+				if(!staged.containsKey(cols[i])) staged.put(cols[i], (row.isPending(cols[i]) ? new TalendValue[]{ row.pending(cols[i]) } : null));
+				row.putPending(cols[i], vals[i]);
+			}
+			return row;
+		}
+
+		row = upsertedRows.get(key);
+		if(row == null){
+			row = newRow();
+			upsertedRows.put(key, row);
+		}
+		for(int i = 0; i < n; i++){
+			row.putPending(cols[i], vals[i]);
+		}
+		return row;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -360,14 +1224,11 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	 */
 	public void rollback() {
 		for(TalendRowImpl row : rowdraft){
-			if(row.presentInTable == false) {
-				//index.put(row.getKeySet(), 1);
-				index.add(row.getKeySet());
-			}
-			row.presentInTable = true;
 			row.discardChanges();
 		}
 		rowdraft.clear();
+		discardUpserts();
+		waitToTruncate = false;
 	}
 
 	public TalendFlowModel getModel() {
@@ -377,10 +1238,151 @@ public class TalendFlowImpl implements TalendFlow, TalendBehaviourableFlow {
 	public void truncate() {
 		if(supportsTransactions() == true){
 			rowdraft.clear();
+			discardUpserts();
 			waitToTruncate = true;
 		} else {
-			rowList.clear();
+			clearRows();
 		}
 	}
 
+	private void clearRows(){
+		if(isTracked()){
+			for(TalendRowImpl row : rowStore){
+				row.presentInTable = false;
+			}
+			for(TalendIndex i : indexes){
+				i.clear();
+			}
+			for(TalendWindowAggregateImpl w : windows){
+				w.clear();
+			}
+			for(TalendColumnStatisticsImpl s : statistics){
+				s.clear();
+			}
+			for(TalendColumnVector v : vectors){
+				v.clear();
+			}
+		}
+		rowList.clear();
+		// no committed row holds the values of the dictionaries anymore: rows waiting to be committed are encoded again
+		for(TalendColumnImpl col : columnsList){
+			if(col.getDictionary() == null) continue;
+			col.getDictionary().reset();
+			for(TalendRowImpl row : rowdraft){
+				row.encodeAgain(col);
+			}
+		}
+		modCount++;
+	}
+
+	/**
+	 * Balanced spliterator over a range of committed rows.<br />
+	 * Since rows are held by a chunked list, any range is split in two halves in constant time; the range and the modification
+	 * counter are bound to the flow on first use, so that a stream can be built before the flow is filled.
+	 */
+	private final class RowSpliterator implements Spliterator<TalendRow> {
+
+		private static final int MINIMUM_SPLIT_SIZE = 256;
+
+		/**
+		 * Number of rows passed to the action by {@link #forEachRemaining(Consumer)} between two checks of the modification counter
+		 */
+		private static final int CHECK_INTERVAL = 1024;
+
+		private int from;
+		private int to;
+		private int expectedModCount;
+
+		/**
+		 * Build a spliterator over a range of rows
+		 * 
+		 * @param from the position of the first row
+		 * @param to the position following the last row, or -1 to bind the range to the whole flow on first use
+		 * @param expectedModCount the modification counter of the flow when the range was bound
+		 */
+		RowSpliterator(int from, int to, int expectedModCount) {
+			this.from = from;
+			this.to = to;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int bind() {
+			if(to < 0){
+				expectedModCount = modCount;
+				to = rowStore.size();
+			}
+			return to;
+		}
+
+		public boolean tryAdvance(Consumer<? super TalendRow> action) {
+			int end = bind();
+			if(from >= end) return false;
+			checkForModification(expectedModCount);
+			action.accept(rowStore.get(from++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super TalendRow> action) {
+			int end = bind();
+			while(from < end){
+				checkForModification(expectedModCount);
+				int last = Math.min(end, from + CHECK_INTERVAL);
+				try {
+					for(int i = from; i < last; i++){
+						action.accept(rowStore.get(i));
+					}
+				} catch (IndexOutOfBoundsException e) {
+					// the flow has been truncated by the action itself
+					checkForModification(expectedModCount);
+					throw e;
+				}
+				from = last;
+			}
+			checkForModification(expectedModCount);
+		}
+
+		public Spliterator<TalendRow> trySplit() {
+			int end = bind();
+			int middle = (from + end) >>> 1;
+			if(middle - from < MINIMUM_SPLIT_SIZE) return null;
+			RowSpliterator prefix = new RowSpliterator(from, middle, expectedModCount);
+			from = middle;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return bind() - from;
+		}
+
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+		}
+
+	}
+
+	/**
+	 * Fail-fast iterator over committed rows
+	 */
+	private final class RowIterator implements Iterator<TalendRowImpl> {
+
+		private final int expectedModCount = modCount;
+		private final Iterator<TalendRowImpl> rows = rowList.iterator();
+
+		public boolean hasNext() {
+			checkForModification(expectedModCount);
+			return rows.hasNext();
+		}
+
+		public TalendRowImpl next() {
+			checkForModification(expectedModCount);
+			return rows.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
 }
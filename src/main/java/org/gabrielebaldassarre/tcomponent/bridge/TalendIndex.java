@@ -0,0 +1,324 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hash index over one or more columns of a flow, mapping the key of each committed row to the row itself.<br />
+ * Flows supporting transactions keep a unique index on their primary key, which is used to detect duplicate keys on commit
+ * in constant time; more non-unique indexes can be added using {@link TalendFlow#addIndex(String...)}.<br />
+ * Keys are built from the java values of the columns, so that values stored with different encodings
+ * (ie. plain and dictionary encoded text) share the same keys: single-column keys are the values themselves,
+ * multi-column keys are lists of values. Binary values are wrapped into read-only {@link ByteBuffer}s so that they are compared by content.
+ * Rows having a null value in any of the indexed columns are not indexed.<br />
+ * Indexes are maintained by the flow on commit, eviction, truncation and whenever a value of a saved row changes.
+ * An index may own a {@link TalendBloomFilterImpl} which is asked before any lookup.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlowImpl
+ *
+ */
+final class TalendIndex {
+
+	private final TalendColumnImpl[] columns;
+	private final boolean unique;
+	private final Map<Object, Object> entries;
+	private TalendBloomFilterImpl filter;
+
+	/**
+	 * Build an empty index
+	 * 
+	 * @param columns the indexed columns
+	 * @param unique true if at most one row can be held for each key
+	 */
+	TalendIndex(TalendColumnImpl[] columns, boolean unique){
+		this.columns = columns;
+		this.unique = unique;
+		this.entries = new HashMap<Object, Object>();
+	}
+
+	/**
+	 * Get the indexed columns
+	 * 
+	 * @return the columns, in key order
+	 */
+	TalendColumnImpl[] getColumns(){
+		return columns;
+	}
+
+	/**
+	 * Check if the index covers the given column
+	 * 
+	 * @param column the column to check
+	 * @return true if the column is part of the key
+	 */
+	boolean covers(TalendColumnImpl column){
+		for(TalendColumnImpl c : columns){
+			if(c == column) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the index is defined exactly on the given columns, in any order
+	 * 
+	 * @param cols the columns to check
+	 * @return true if the key is made of the given columns
+	 */
+	boolean isOn(TalendColumnImpl[] cols){
+		if(cols.length != columns.length) return false;
+		for(TalendColumnImpl c : cols){
+			if(!covers(c)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of distinct keys held by the index
+	 * 
+	 * @return the number of keys
+	 */
+	int countKeys(){
+		return entries.size();
+	}
+
+	/**
+	 * Get the distinct keys held by the index
+	 * 
+	 * @return a view of the keys
+	 */
+	Collection<Object> keys(){
+		return entries.keySet();
+	}
+
+	/**
+	 * Get the Bloom filter of the index, building it if needed
+	 * 
+	 * @return the filter
+	 */
+	TalendBloomFilterImpl filter(){
+		if(filter == null) filter = new TalendBloomFilterImpl(this);
+		return filter;
+	}
+
+	/**
+	 * Build the key of a row, reading its committed values
+	 * 
+	 * @param row the row
+	 * @return the key or null if any of the indexed values is null
+	 */
+	Object keyOf(TalendRowImpl row){
+		return keyOf(row, false, null, null);
+	}
+
+	/**
+	 * Build the key of a row, reading its values as they will be once the pending changes are saved
+	 * 
+	 * @param row the row
+	 * @return the key or null if any of the indexed values is null
+	 */
+	Object pendingKeyOf(TalendRowImpl row){
+		return keyOf(row, true, null, null);
+	}
+
+	private Object keyOf(TalendRowImpl row, boolean pending, TalendColumnImpl replaced, TalendValue replacement){
+		if(columns.length == 1){
+			TalendColumnImpl c = columns[0];
+			return keyOf(c, (c == replaced ? replacement : (pending ? row.pending(c) : row.value(c))));
+		}
+		Object[] parts = new Object[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			TalendColumnImpl c = columns[i];
+			parts[i] = keyOf(c, (c == replaced ? replacement : (pending ? row.pending(c) : row.value(c))));
+			if(parts[i] == null) return null;
+		}
+		return Arrays.asList(parts);
+	}
+
+	/**
+	 * Build a key from constant values, in the same order of the indexed columns
+	 * 
+	 * @param values the values, already converted to the types of the columns
+	 * @return the key or null if any of the values is null
+	 */
+	Object keyOf(Object[] values){
+		if(columns.length == 1) return keyOf(values[0]);
+		Object[] parts = new Object[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			parts[i] = keyOf(values[i]);
+			if(parts[i] == null) return null;
+		}
+		return Arrays.asList(parts);
+	}
+
+	/**
+	 * Get the part of a key matching a value of a column
+	 * 
+	 * @param column the column of the value
+	 * @param value the value
+	 * @return the part of the key, or null if the value is null
+	 */
+	static Object keyOf(TalendColumnImpl column, TalendValue value){
+		if(value == null) return null;
+		if(value instanceof TalendArenaValue && column.getType() == TalendType.BYTE_ARRAY) return ((TalendArenaValue) value).asByteBuffer();
+		return keyOf(TalendPredicate.convert(column, value.getValue()));
+	}
+
+	/**
+	 * Get the part of a key matching a java value
+	 * 
+	 * @param value the value
+	 * @return the part of the key, or null if the value is null
+	 */
+	static Object keyOf(Object value){
+		if(value instanceof byte[]) return ByteBuffer.wrap((byte[]) value).asReadOnlyBuffer();
+		return value;
+	}
+
+	/**
+	 * Check if the index holds the given key
+	 * 
+	 * @param key the key
+	 * @return true if at least one row has the given key
+	 */
+	boolean contains(Object key){
+		return lookup(key) != null;
+	}
+
+	/**
+	 * Get the rows having the given key, in the order they were indexed
+	 * 
+	 * @param key the key
+	 * @return the rows, or an empty list
+	 */
+	@SuppressWarnings("unchecked")
+	List<TalendRowImpl> get(Object key){
+		Object entry = lookup(key);
+		if(entry == null) return Collections.emptyList();
+		if(entry instanceof TalendRowImpl) return Collections.singletonList((TalendRowImpl) entry);
+		return Collections.unmodifiableList((List<TalendRowImpl>) entry);
+	}
+
+	/**
+	 * Get the row having the given key in a unique index
+	 * 
+	 * @param key the key
+	 * @return the row, or null if no row has the key
+	 */
+	TalendRowImpl getUnique(Object key){
+		Object entry = lookup(key);
+		return (entry instanceof TalendRowImpl ? (TalendRowImpl) entry : null);
+	}
+
+	/**
+	 * Get the entry of a key, asking the Bloom filter first if any
+	 */
+	private Object lookup(Object key){
+		if(key == null) return null;
+		TalendBloomFilterImpl f = filter;
+		if(f != null && !f.mightContain(key)) return null;
+		Object entry = entries.get(key);
+		if(entry == null && f != null) f.falsePositive();
+		return entry;
+	}
+
+	/**
+	 * Add a committed row to the index
+	 * 
+	 * @param row the row
+	 */
+	void add(TalendRowImpl row){
+		add(keyOf(row), row);
+	}
+
+	/**
+	 * Remove a committed row from the index
+	 * 
+	 * @param row the row
+	 */
+	void remove(TalendRowImpl row){
+		remove(keyOf(row), row);
+	}
+
+	/**
+	 * Move a row to its new key, after one of its values has been changed
+	 * 
+	 * @param row the row, already holding the new value
+	 * @param column the changed column
+	 * @param previous the value held by the column before the change
+	 */
+	void update(TalendRowImpl row, TalendColumnImpl column, TalendValue previous){
+		Object before = keyOf(row, false, column, previous);
+		Object after = keyOf(row);
+		if(before == null ? after == null : before.equals(after)) return;
+		remove(before, row);
+		add(after, row);
+	}
+
+	/**
+	 * Remove all the rows from the index
+	 */
+	void clear(){
+		entries.clear();
+		if(filter != null) filter.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void add(Object key, TalendRowImpl row){
+		if(key == null) return;
+		Object entry = entries.get(key);
+		if(entry == null || unique){
+			entries.put(key, row);
+			if(entry == null && filter != null) filter.add(key);
+		} else if(entry instanceof TalendRowImpl){
+			List<TalendRowImpl> rows = new ArrayList<TalendRowImpl>(2);
+			rows.add((TalendRowImpl) entry);
+			rows.add(row);
+			entries.put(key, rows);
+		} else {
+			((List<TalendRowImpl>) entry).add(row);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void remove(Object key, TalendRowImpl row){
+		if(key == null) return;
+		Object entry = entries.get(key);
+		if(entry == row){
+			entries.remove(key);
+			if(filter != null) filter.removed();
+		} else if(entry instanceof List){
+			List<TalendRowImpl> rows = (List<TalendRowImpl>) entry;
+			for(int i = 0; i < rows.size(); i++){
+				if(rows.get(i) == row){
+					rows.remove(i);
+					break;
+				}
+			}
+			if(rows.size() == 1) entries.put(key, rows.get(0));
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A join pairs the committed rows of two flows of the same model having equal values on some columns, built using {@link TalendFlow#join(TalendFlow, TalendJoinType)}.<br />
+ * Like queries, joins are designed using the builder pattern: each call to {@link #on(String, String)} adds a pair of columns
+ * whose values must be equal for two rows to match. Null values never match.<br />
+ * Nothing is read from the flows until the join is run, either saving the pairs to a new flow with {@link #toFlow(String)}
+ * or visiting them with {@link #forEach(TalendJoinBehaviour)}, or lazily with {@link #select()}, keeping only the positions of the paired rows. By default, a hash table is built on the join columns of the smaller flow,
+ * or an index of that flow is used if it is defined on exactly the join columns (ie. its primary key); the rows of the
+ * other flow are then looked up in the hash table, in parallel for large flows. When both flows are too large for a hash table,
+ * a merge join can be chosen using {@link #setStrategy(TalendJoinStrategy)}: rows of both flows are streamed in the order
+ * of the join columns, either sorting them with the external sort of {@link TalendSort} or relying on flows already sorted.<br />
+ * This replaces hand-written nested loops between flows:<br />
+ * <pre>
+ * {@code
+ * // Attach the customer data to each order, keeping the orders with an unknown customer
+ * TalendFlow enriched = orders.join(customers, TalendJoinType.LEFT_OUTER).on("customerId", "id").toFlow("enriched");
+ * 
+ * // Find the orders whose customer is unknown
+ * TalendFlow orphans = orders.join(customers, TalendJoinType.ANTI).on("customerId", "id").toFlow("orphans");
+ * 
+ * // Reconcile two large extracts in a bounded amount of memory
+ * TalendFlow diff = today.join(yesterday, TalendJoinType.FULL_OUTER).on("id", "id").setStrategy(TalendJoinStrategy.SORT_MERGE).toFlow("diff");
+ * }
+ * </pre>
+ * Columns of different numeric types can be joined (ie. INTEGER and DOUBLE columns): values are matched by their exact numeric value,
+ * so 17 matches 17.0 but not 17.5, and 0 doesn't match -0.0 like for {@link Double#equals(Object)}, whatever the strategy and the flow the hash table is built on. Columns of other different types cannot be joined.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendJoinType
+ *
+ */
+public interface TalendJoin {
+
+	/**
+	 * Require the values of a column of the left flow to be equal to the values of a column of the right flow,
+	 * besides the pairs of columns already given
+	 * 
+	 * @param leftColumn the name of the column of the left flow
+	 * @param rightColumn the name of the column of the right flow
+	 * @return a reference to the join itself
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to its flow, or the columns have different types not both numeric
+	 */
+	public TalendJoin on(String leftColumn, String rightColumn);
+
+	/**
+	 * Set the maximum number of threads looking up rows. By default, all the available processors are used.
+	 * 
+	 * @param threads the maximum number of threads, 1 to join in the calling thread only
+	 * @return a reference to the join itself
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public TalendJoin setParallelism(int threads);
+
+	/**
+	 * Set the algorithm used to match the rows. The default strategy is {@link TalendJoinStrategy#HASH}.
+	 * 
+	 * @param strategy the algorithm
+	 * @return a reference to the join itself
+	 * @throws IllegalArgumentException if the strategy is null
+	 */
+	public TalendJoin setStrategy(TalendJoinStrategy strategy);
+
+	/**
+	 * Set the maximum number of rows whose keys are sorted in memory at once by the {@link TalendJoinStrategy#SORT_MERGE} strategy.
+	 * 
+	 * @param rows the maximum number of rows, or null to always sort the whole flows in memory
+	 * @return a reference to the join itself
+	 * @throws IllegalArgumentException if the number of rows is not positive
+	 * @see TalendSort#setMaximumRows(Integer)
+	 */
+	public TalendJoin setMaximumRows(Integer rows);
+
+	/**
+	 * Get the left flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getLeft();
+
+	/**
+	 * Get the right flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getRight();
+
+	/**
+	 * Get the kind of join
+	 * 
+	 * @return the type of the join
+	 */
+	public TalendJoinType getType();
+
+	/**
+	 * Run the join and visit each resulting pair of rows with the given behaviour, in the calling thread.<br />
+	 * Rows are not copied. The order of the pairs is not defined for hash joins, while merge joins return them in the order of the join columns.
+	 * 
+	 * @param behaviour the behaviour visiting the pairs
+	 * @return a reference to the join itself
+	 * @throws IllegalArgumentException if no pair of columns has been given, or the values of the join columns cannot be sorted by a merge join
+	 * @throws IllegalStateException if a flow is not sorted as required by the {@link TalendJoinStrategy#MERGE} strategy, or sort keys cannot be spilled to disk
+	 * @throws java.util.ConcurrentModificationException if any of the flows is modified during the join
+	 */
+	public TalendJoin forEach(TalendJoinBehaviour behaviour);
+
+	/**
+	 * Run the join and keep the resulting pairs of rows as selection vectors over the joined flows, without copying any value.<br />
+	 * Values are read from the joined flows only when the columns of a pair are accessed, and saving the pairs to a new flow is left to
+	 * {@link TalendJoinResult#toFlow(String, TalendColumn...)}. The pairs are in the same order {@link #forEach(TalendJoinBehaviour)} visits them.
+	 * 
+	 * @return the result of the join
+	 * @throws IllegalArgumentException if no pair of columns has been given, or the values of the join columns cannot be sorted by a merge join
+	 * @throws IllegalStateException if a flow is not sorted as required by the {@link TalendJoinStrategy#MERGE} strategy, or sort keys cannot be spilled to disk
+	 * @throws java.util.ConcurrentModificationException if any of the flows is modified during the join
+	 * @see TalendJoinResult
+	 */
+	public TalendJoinResult select();
+
+	/**
+	 * Run the join and save the resulting pairs of rows to a new flow of the same model.<br />
+	 * The new flow holds the columns of the left flow followed by the columns of the right flow, defined like the original ones;
+	 * right columns whose name is already used by a left column are prefixed with the name of the right flow and an underscore
+	 * (ie. 'customers_id'). Anti joins only return the columns of the left flow. Columns of rows missing in outer joins are null.<br />
+	 * The new flow has no maximum size and doesn't support transactions. Its rows are in the same order {@link #forEach(TalendJoinBehaviour)} visits them.
+	 * 
+	 * @param name the name of the new flow
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if no pair of columns has been given, a flow with the same name already exists in the model,
+	 * or the values of the join columns cannot be sorted by a merge join
+	 * @throws IllegalStateException if a flow is not sorted as required by the {@link TalendJoinStrategy#MERGE} strategy, or sort keys cannot be spilled to disk
+	 * @throws java.util.ConcurrentModificationException if any of the flows is modified during the join
+	 */
+	public TalendFlow toFlow(String name);
+
+}
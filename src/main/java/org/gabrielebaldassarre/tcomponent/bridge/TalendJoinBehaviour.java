@@ -0,0 +1,46 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * Classes implementing this interface can visit the pairs of rows returned by a join
+ * between two TalendFlow, as they are produced, and add a particular behaviour to them
+ * (ie. write them to an external system) without saving them to a new flow.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendJoin#forEach(TalendJoinBehaviour)
+ *
+ */
+public interface TalendJoinBehaviour {
+	/**
+	 * Visit a pair of rows and eventually perform an action on them. The action
+	 * that is made is implemented in classes implementing this interface
+	 * 
+	 * @param left the row of the left flow, or null if the right row matches no row in a full outer join
+	 * @param right the matching row of the right flow, or null if the left row matches no row
+	 */
+	public void visit(TalendRow left, TalendRow right);
+	
+	/**
+	 * Based upon the concrete implementation of the class implementing this
+	 * interface, return true if the pairs just visited are valid for the purpose
+	 * of the behaviour/visitor.
+	 * 
+	 * @return true if the already-visited pairs are valid for the purpose of the visitor, false otherwise
+	 */
+	public Boolean isValid();
+}
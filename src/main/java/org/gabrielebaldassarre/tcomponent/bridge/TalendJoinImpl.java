@@ -0,0 +1,523 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+
+/**
+ * This is the concrete implementation of a join and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#join(TalendFlow, TalendJoinType)} instead and interface with joins using {@link TalendJoin} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendJoin
+ */
+public class TalendJoinImpl implements TalendJoin {
+
+	/**
+	 * Number of rows looked up before the resulting pairs are handed to the caller
+	 */
+	static final int BATCH_SIZE = 64 * 1024;
+
+	private final TalendFlowImpl left;
+	private final TalendFlowImpl right;
+	private final TalendJoinType type;
+	private final List<TalendColumnImpl> leftColumns;
+	private final List<TalendColumnImpl> rightColumns;
+	private int parallelism;
+	private TalendJoinStrategy strategy;
+	private Integer maximumRows;
+
+	/**
+	 * Build a join between two flows of the same model
+	 * 
+	 * @param left the left flow
+	 * @param right the right flow
+	 * @param type the kind of join
+	 */
+	TalendJoinImpl(TalendFlowImpl left, TalendFlowImpl right, TalendJoinType type){
+		this.left = left;
+		this.right = right;
+		this.type = type;
+		this.leftColumns = new ArrayList<TalendColumnImpl>();
+		this.rightColumns = new ArrayList<TalendColumnImpl>();
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.strategy = TalendJoinStrategy.HASH;
+		this.maximumRows = TalendSortImpl.DEFAULT_MAXIMUM_ROWS;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin on(String leftColumn, String rightColumn) {
+		TalendColumnImpl l = TalendPredicate.resolve(left, leftColumn);
+		TalendColumnImpl r = TalendPredicate.resolve(right, rightColumn);
+		if(l.getType() != r.getType() && !(TalendPredicate.isNumeric(l.getType()) && TalendPredicate.isNumeric(r.getType()))){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.incompatibleJoinColumns"), l.getName(), l.getType(), r.getName(), r.getType()));
+		}
+		leftColumns.add(l);
+		rightColumns.add(r);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin setParallelism(int threads) {
+		if(threads < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), threads));
+		}
+		this.parallelism = threads;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin setStrategy(TalendJoinStrategy strategy) {
+		if(strategy == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "strategy"));
+		}
+		this.strategy = strategy;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin setMaximumRows(Integer rows) {
+		if(rows != null && rows < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), rows));
+		}
+		this.maximumRows = rows;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getLeft() {
+		return left;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getRight() {
+		return right;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoinType getType() {
+		return type;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin forEach(final TalendJoinBehaviour behaviour) {
+		run(new Sink(){
+			public void accept(TalendRowImpl l, TalendRowImpl r) {
+				behaviour.visit(l, r);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoinResult select() {
+		final TalendJoinResultImpl result = new TalendJoinResultImpl(this, left, right);
+		run(new Sink(){
+			public void accept(TalendRowImpl l, TalendRowImpl r) {
+				result.add(l, r);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		checkColumns();
+		final TalendColumnImpl[] lcols = left.columnsList.toArray(new TalendColumnImpl[left.columnsList.size()]);
+		final TalendColumnImpl[] rcols = (type == TalendJoinType.ANTI ? new TalendColumnImpl[0] : right.columnsList.toArray(new TalendColumnImpl[right.columnsList.size()]));
+		final TalendFlowImpl dest = left.newFlow(name, lcols);
+		for(TalendColumnImpl col : rcols){
+			dest.addColumnLike(col, (dest.getColumn(col.getName()) == null ? col.getName() : right.getName() + "_" + col.getName()));
+		}
+		TalendColumnImpl[] all = dest.columnsList.toArray(new TalendColumnImpl[dest.columnsList.size()]);
+		final TalendColumnImpl[] toLeft = Arrays.copyOfRange(all, 0, lcols.length);
+		final TalendColumnImpl[] toRight = Arrays.copyOfRange(all, lcols.length, all.length);
+
+		run(new Sink(){
+			public void accept(TalendRowImpl l, TalendRowImpl r) {
+				TalendRowImpl row = dest.newRow();
+				copy(l, lcols, row, toLeft);
+				copy(r, rcols, row, toRight);
+			}
+		});
+		return dest;
+	}
+
+	/**
+	 * Copy the values of a row of a joined flow to a row of the result, or set them to null if the row is missing
+	 */
+	static void copy(TalendRowImpl src, TalendColumnImpl[] from, TalendRowImpl dest, TalendColumnImpl[] to){
+		if(src != null){
+			TalendFlowImpl.copyValues(src, from, dest, to);
+			return;
+		}
+		for(TalendColumnImpl col : to){
+			if(col.getDefaultTalendValue() != null) dest.put(col, null);
+		}
+	}
+
+	private void checkColumns(){
+		if(leftColumns.isEmpty()){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+	}
+
+	/**
+	 * Run the join, handing the resulting pairs to a sink in the calling thread
+	 * 
+	 * @param sink the receiver of the pairs
+	 */
+	private void run(Sink sink){
+		checkColumns();
+		if(strategy == TalendJoinStrategy.HASH){
+			hashJoin(sink);
+		} else {
+			mergeJoin(sink);
+		}
+	}
+
+	/**
+	 * Build a hash table on the smaller flow and look up the rows of the other one in it
+	 * 
+	 * @param sink the receiver of the pairs
+	 */
+	private void hashJoin(Sink sink){
+		int leftModCount = left.modCount();
+		int rightModCount = right.modCount();
+
+		boolean buildLeft = left.countRows() < right.countRows();
+		TalendFlowImpl build = (buildLeft ? left : right);
+		TalendFlowImpl probe = (buildLeft ? right : left);
+		TalendColumnImpl[] buildCols = (buildLeft ? leftColumns : rightColumns).toArray(new TalendColumnImpl[leftColumns.size()]);
+		TalendColumnImpl[] probeCols = (buildLeft ? rightColumns : leftColumns).toArray(new TalendColumnImpl[leftColumns.size()]);
+
+		TalendIndex index = build.getIndex(buildCols);
+		TalendColumnImpl[] keyCols = null;
+		if(index != null){
+			keyCols = new TalendColumnImpl[buildCols.length];
+			for(int j = 0; keyCols != null && j < keyCols.length; j++){
+				for(int i = 0; i < buildCols.length; i++){
+					if(buildCols[i] == index.getColumns()[j]) keyCols[j] = probeCols[i];
+				}
+				if(keyCols[j] == null) keyCols = null;
+			}
+		}
+		if(keyCols == null){
+			index = new TalendIndex(buildCols, false);
+			for(int i = 0; i < build.countRows(); i++){
+				index.add(build.committedRow(i));
+			}
+			keyCols = probeCols;
+		}
+
+		BitSet matched = (tracksMatches(buildLeft) ? new BitSet(build.countRows()) : null);
+		int rows = probe.countRows();
+		for(int start = 0; start < rows; start += BATCH_SIZE){
+			int size = Math.min(BATCH_SIZE, rows - start);
+			int threads = TalendWorkers.countThreads(size, parallelism);
+			List<Probe> tasks = new ArrayList<Probe>(threads);
+			for(int i = 0; i < threads; i++){
+				tasks.add(new Probe(build, probe, index, keyCols, buildLeft, start + TalendWorkers.from(size, threads, i), start + TalendWorkers.from(size, threads, i + 1)));
+			}
+			List<List<TalendRowImpl>> results = TalendWorkers.invokeAll(tasks);
+			left.checkForModification(leftModCount);
+			right.checkForModification(rightModCount);
+
+			for(Probe task : tasks){
+				if(matched != null) matched.or(task.matched);
+			}
+			for(List<TalendRowImpl> pairs : results){
+				for(int i = 0; i < pairs.size(); i += 2){
+					sink.accept(pairs.get(i), pairs.get(i + 1));
+				}
+			}
+		}
+
+		if(matched == null) return;
+		for(int i = matched.nextClearBit(0); i < build.countRows(); i = matched.nextClearBit(i + 1)){
+			if(buildLeft){
+				sink.accept(build.committedRow(i), null);
+			} else {
+				sink.accept(null, build.committedRow(i));
+			}
+		}
+	}
+
+	/**
+	 * Check if the rows of the build side matching some row must be tracked, to return the other ones
+	 */
+	private boolean tracksMatches(boolean buildLeft){
+		return (buildLeft ? type != TalendJoinType.INNER : type == TalendJoinType.FULL_OUTER);
+	}
+
+	/**
+	 * Stream the rows of both flows in the order of the join columns, sorting them if needed, and merge them
+	 * 
+	 * @param sink the receiver of the pairs
+	 */
+	private void mergeJoin(Sink sink){
+		TalendColumnImpl[] lcols = leftColumns.toArray(new TalendColumnImpl[leftColumns.size()]);
+		TalendColumnImpl[] rcols = rightColumns.toArray(new TalendColumnImpl[rightColumns.size()]);
+		MergeInput l = new MergeInput(left, lcols);
+		MergeInput r = null;
+		try {
+			r = new MergeInput(right, rcols);
+			boolean leftOuter = (type != TalendJoinType.INNER);
+			boolean rightOuter = (type == TalendJoinType.FULL_OUTER);
+			List<TalendRowImpl> run = new ArrayList<TalendRowImpl>();
+
+			while(l.row != null || r.row != null){
+				// null keys match nothing and come first in both flows
+				int c;
+				if(l.row != null && l.key == null){
+					c = -1;
+				} else if(r.row != null && r.key == null){
+					c = 1;
+				} else if(r.row == null){
+					c = -1;
+				} else if(l.row == null){
+					c = 1;
+				} else {
+					c = compareKeys(l.key, r.key);
+				}
+
+				if(c < 0){
+					if(leftOuter) sink.accept(l.row, null);
+					l.advance();
+				} else if(c > 0){
+					if(rightOuter) sink.accept(null, r.row);
+					r.advance();
+				} else {
+					Object[] key = r.key;
+					run.clear();
+					while(r.row != null && r.key != null && compareKeys(r.key, key) == 0){
+						run.add(r.row);
+						r.advance();
+					}
+					while(l.row != null && l.key != null && compareKeys(l.key, key) == 0){
+						if(type != TalendJoinType.ANTI){
+							for(TalendRowImpl match : run){
+								sink.accept(l.row, match);
+							}
+						}
+						l.advance();
+					}
+				}
+			}
+		} finally {
+			// release the spill files of sorted inputs not read until the end
+			l.close();
+			if(r != null) r.close();
+		}
+	}
+
+	private static int compareKeys(Object[] a, Object[] b){
+		for(int i = 0; i < a.length; i++){
+			int c = TalendPredicate.compare(a[i], b[i]);
+			if(c != 0) return c;
+		}
+		return 0;
+	}
+
+	/**
+	 * The rows of one of the flows of a merge join, in the order of the join columns, along with the key of the current one
+	 */
+	private final class MergeInput {
+
+		private final TalendFlowImpl flow;
+		private final TalendColumnImpl[] columns;
+		private final Iterator<TalendRowImpl> rows;
+		private Object[] previous;
+		TalendRowImpl row;
+		Object[] key;
+
+		MergeInput(TalendFlowImpl flow, TalendColumnImpl[] columns){
+			this.flow = flow;
+			this.columns = columns;
+			if(strategy == TalendJoinStrategy.MERGE){
+				this.rows = flow.rowIterator();
+			} else {
+				TalendSortOrder[] orders = new TalendSortOrder[columns.length];
+				Arrays.fill(orders, TalendSortOrder.ASCENDING);
+				TalendSortImpl sort = new TalendSortImpl(flow, columns, orders);
+				sort.setMaximumRows(maximumRows);
+				this.rows = sort.rowIterator();
+			}
+			advance();
+		}
+
+		/**
+		 * Move to the next row, checking that rows are sorted. Rows with null keys match nothing, so their position is not checked.
+		 * 
+		 * @throws IllegalStateException if the key of the next row is smaller than the one of the previous row
+		 */
+		void advance(){
+			if(!rows.hasNext()){
+				row = null;
+				key = null;
+				return;
+			}
+			row = rows.next();
+			key = new Object[columns.length];
+			for(int i = 0; i < columns.length && key != null; i++){
+				key[i] = TalendIndex.keyOf(columns[i], row.value(columns[i]));
+				if(key[i] == null) key = null;
+			}
+			if(key == null) return;
+			if(previous != null && compareKeys(previous, key) > 0) unsorted();
+			previous = key;
+		}
+
+		void close(){
+			if(rows instanceof TalendSortImpl.SortedIterator) ((TalendSortImpl.SortedIterator) rows).close();
+		}
+
+		private void unsorted(){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.flowNotSorted"), flow.getName()));
+		}
+
+	}
+
+	/**
+	 * Receives the pairs of rows resulting from a join
+	 */
+	private interface Sink {
+
+		/**
+		 * Receive a pair of rows
+		 * 
+		 * @param l the left row
+		 * @param r the right row, or null if the left row matches no row
+		 */
+		void accept(TalendRowImpl l, TalendRowImpl r);
+
+	}
+
+	/**
+	 * Looks up a range of rows of the probed flow in the hash table of the other one, collecting the resulting pairs
+	 */
+	private final class Probe implements Callable<List<TalendRowImpl>> {
+
+		private final TalendFlowImpl build;
+		private final TalendFlowImpl probe;
+		private final TalendIndex index;
+		private final TalendColumnImpl[] keyCols;
+		private final boolean buildLeft;
+		private final int from;
+		private final int to;
+		private final BitSet matched;
+
+		Probe(TalendFlowImpl build, TalendFlowImpl probe, TalendIndex index, TalendColumnImpl[] keyCols, boolean buildLeft, int from, int to){
+			this.build = build;
+			this.probe = probe;
+			this.index = index;
+			this.keyCols = keyCols;
+			this.buildLeft = buildLeft;
+			this.from = from;
+			this.to = to;
+			this.matched = (tracksMatches(buildLeft) ? new BitSet() : null);
+		}
+
+		public List<TalendRowImpl> call() {
+			List<TalendRowImpl> pairs = new ArrayList<TalendRowImpl>();
+			for(int i = from; i < to; i++){
+				TalendRowImpl row = probe.committedRow(i);
+				List<TalendRowImpl> found = index.get(keyOf(row));
+				if(buildLeft){
+					if(found.isEmpty() && type == TalendJoinType.FULL_OUTER){
+						pairs.add(null);
+						pairs.add(row);
+					}
+					for(TalendRowImpl l : found){
+						if(matched != null) matched.set(build.positionOf(l));
+						if(type == TalendJoinType.ANTI) continue;
+						pairs.add(l);
+						pairs.add(row);
+					}
+				} else if(found.isEmpty()){
+					if(type == TalendJoinType.INNER) continue;
+					pairs.add(row);
+					pairs.add(null);
+				} else if(type != TalendJoinType.ANTI){
+					for(TalendRowImpl r : found){
+						if(matched != null) matched.set(build.positionOf(r));
+						pairs.add(row);
+						pairs.add(r);
+					}
+				}
+			}
+			return pairs;
+		}
+
+		/**
+		 * Build the key of a probed row, converting its values to the types of the indexed columns without narrowing them
+		 * 
+		 * @param row the row
+		 * @return the key, or null if the row cannot match any row
+		 */
+		private Object keyOf(TalendRowImpl row){
+			TalendColumnImpl[] indexed = index.getColumns();
+			Object[] parts = new Object[keyCols.length];
+			for(int j = 0; j < keyCols.length; j++){
+				Object part = TalendIndex.keyOf(keyCols[j], row.value(keyCols[j]));
+				if(part == null) return null;
+				if(keyCols[j].getType() != indexed[j].getType()){
+					// numbers the indexed column cannot hold exactly match no row, whatever the side the hash table is built on
+					part = TalendPredicate.convertKey(indexed[j], part);
+					if(part == null) return null;
+				}
+				parts[j] = part;
+			}
+			return (parts.length == 1 ? parts[0] : Arrays.asList(parts));
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A join result holds the pairs of rows resulting from a join as two selection vectors, ie. the positions of the left and right rows
+ * of each pair within their flows, built using {@link TalendJoin#select()}.<br />
+ * Nothing is copied when the result is built: values are read from the rows of the joined flows only when a column of a pair
+ * is accessed, so results consumed partially or reading few columns are much cheaper than flows built by {@link TalendJoin#toFlow(String)}.
+ * Saving the pairs to a standalone flow is an explicit step, optionally restricted to the columns actually needed:<br />
+ * <pre>
+ * {@code
+ * TalendJoinResult result = orders.join(customers, TalendJoinType.INNER).on("customerId", "id").select();
+ * TalendColumn amount = orders.getColumn("amount");
+ * TalendColumn country = customers.getColumn("country");
+ * 
+ * // Only the two columns are read, and only for the first pairs
+ * for(int i = 0; i < Math.min(10, result.size()); i++){
+ *     System.out.println(result.getValue(i, country) + ": " + result.getValue(i, amount));
+ * }
+ * 
+ * // Copy the needed columns to a new flow of the same model
+ * TalendFlow byCountry = result.toFlow("byCountry", country, amount);
+ * }
+ * </pre>
+ * Results are fail-fast: accessing a result after any of the joined flows has been modified throws a {@link java.util.ConcurrentModificationException}.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendJoin
+ *
+ */
+public interface TalendJoinResult {
+
+	/**
+	 * Get the join the result was built from
+	 * 
+	 * @return a reference to the join
+	 */
+	public TalendJoin getJoin();
+
+	/**
+	 * Get the number of pairs of the result
+	 * 
+	 * @return the number of pairs
+	 */
+	public int size();
+
+	/**
+	 * Get the row of the left flow of a pair
+	 * 
+	 * @param pair the position of the pair, starting from zero
+	 * @return a reference to the row, or null if the right row matches no row in a full outer join
+	 * @throws IndexOutOfBoundsException if there's no pair at the given position
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendRow getLeft(int pair);
+
+	/**
+	 * Get the row of the right flow of a pair
+	 * 
+	 * @param pair the position of the pair, starting from zero
+	 * @return a reference to the row, or null if the left row matches no row
+	 * @throws IndexOutOfBoundsException if there's no pair at the given position
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendRow getRight(int pair);
+
+	/**
+	 * Read the value of a column of a pair from the row of the flow the column belongs.<br />
+	 * When a flow is joined to itself, columns are read from the left row: use {@link #getRight(int)} to read the right one.
+	 * 
+	 * @param pair the position of the pair, starting from zero
+	 * @param column a column of any of the joined flows
+	 * @return the value, or null if the row of that flow is missing from the pair
+	 * @throws IllegalArgumentException if the column doesn't belong to any of the joined flows
+	 * @throws IndexOutOfBoundsException if there's no pair at the given position
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendValue getTalendValue(int pair, TalendColumn column);
+
+	/**
+	 * Read the value of a column of a pair, as java type
+	 * 
+	 * @param pair the position of the pair, starting from zero
+	 * @param column a column of any of the joined flows
+	 * @return the value, or null if the value is null or the row of that flow is missing from the pair
+	 * @throws IllegalArgumentException if the column doesn't belong to any of the joined flows
+	 * @throws IndexOutOfBoundsException if there's no pair at the given position
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 * @see #getTalendValue(int, TalendColumn)
+	 */
+	public Object getValue(int pair, TalendColumn column);
+
+	/**
+	 * Visit each pair of the result with the given behaviour, in order
+	 * 
+	 * @param behaviour the behaviour visiting the pairs
+	 * @return a reference to the result itself
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendJoinResult forEach(TalendJoinBehaviour behaviour);
+
+	/**
+	 * Save all the pairs to a new flow of the same model, with the same columns of a flow built by {@link TalendJoin#toFlow(String)}
+	 * 
+	 * @param name the name of the new flow
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if a flow with the same name already exists in the model
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendFlow toFlow(String name);
+
+	/**
+	 * Save some columns of all the pairs to a new flow of the same model, in the given order.<br />
+	 * Columns are defined like the original ones; columns whose name is already used by a previous column are prefixed with the name of
+	 * their flow and an underscore (ie. 'customers_id'). Columns of rows missing in outer joins are null.
+	 * 
+	 * @param name the name of the new flow
+	 * @param columns the columns to copy, belonging to any of the joined flows
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if no column is given, a column doesn't belong to any of the joined flows
+	 * or a flow with the same name already exists in the model
+	 * @throws java.util.ConcurrentModificationException if any of the joined flows has been modified since the result was built
+	 */
+	public TalendFlow toFlow(String name, TalendColumn... columns);
+
+}
@@ -0,0 +1,244 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a join result and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendJoin#select()} instead and interface with results using {@link TalendJoinResult} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendJoinResult
+ */
+public class TalendJoinResultImpl implements TalendJoinResult {
+
+	private final TalendJoinImpl join;
+	private final TalendFlowImpl left;
+	private final TalendFlowImpl right;
+	private final int leftModCount;
+	private final int rightModCount;
+	private int[] lefts;
+	private int[] rights;
+	private int size;
+
+	/**
+	 * Build an empty result of a join, recording the state of the joined flows
+	 * 
+	 * @param join the join
+	 * @param left the left flow
+	 * @param right the right flow
+	 */
+	TalendJoinResultImpl(TalendJoinImpl join, TalendFlowImpl left, TalendFlowImpl right){
+		this.join = join;
+		this.left = left;
+		this.right = right;
+		this.leftModCount = left.modCount();
+		this.rightModCount = right.modCount();
+		this.lefts = new int[16];
+		this.rights = new int[16];
+	}
+
+	/**
+	 * Append a pair to the result
+	 * 
+	 * @param l the left row, or null if it's missing
+	 * @param r the right row, or null if it's missing
+	 */
+	void add(TalendRowImpl l, TalendRowImpl r){
+		if(size == lefts.length){
+			lefts = Arrays.copyOf(lefts, size * 2);
+			rights = Arrays.copyOf(rights, size * 2);
+		}
+		lefts[size] = (l == null ? -1 : left.positionOf(l));
+		rights[size] = (r == null ? -1 : right.positionOf(r));
+		size++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoin getJoin() {
+		return join;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRow getLeft(int pair) {
+		checkPair(pair);
+		return row(left, lefts[pair]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRow getRight(int pair) {
+		checkPair(pair);
+		return row(right, rights[pair]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendValue getTalendValue(int pair, TalendColumn column) {
+		TalendColumnImpl col = handle(column);
+		checkPair(pair);
+		TalendRowImpl row = (col.getFlow() == left ? row(left, lefts[pair]) : row(right, rights[pair]));
+		return (row == null ? null : row.value(col));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object getValue(int pair, TalendColumn column) {
+		TalendValue val = getTalendValue(pair, column);
+		return (val == null ? null : val.getValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendJoinResult forEach(TalendJoinBehaviour behaviour) {
+		for(int i = 0; i < size; i++){
+			checkForModification();
+			behaviour.visit(row(left, lefts[i]), row(right, rights[i]));
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		TalendColumnImpl[] lcols = left.columnsList.toArray(new TalendColumnImpl[left.columnsList.size()]);
+		TalendColumnImpl[] rcols = (join.getType() == TalendJoinType.ANTI ? new TalendColumnImpl[0] : right.columnsList.toArray(new TalendColumnImpl[right.columnsList.size()]));
+		TalendColumnImpl[] columns = Arrays.copyOf(lcols, lcols.length + rcols.length);
+		System.arraycopy(rcols, 0, columns, lcols.length, rcols.length);
+		boolean[] fromRight = new boolean[columns.length];
+		Arrays.fill(fromRight, lcols.length, columns.length, true);
+		return copy(name, columns, fromRight);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name, TalendColumn... columns) {
+		if(columns == null || columns.length == 0){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "columns"));
+		}
+		TalendColumnImpl[] cols = new TalendColumnImpl[columns.length];
+		boolean[] fromRight = new boolean[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			cols[i] = handle(columns[i]);
+			fromRight[i] = (cols[i].getFlow() != left);
+		}
+		return copy(name, cols, fromRight);
+	}
+
+	/**
+	 * Copy some columns of all the pairs to a new flow
+	 * 
+	 * @param name the name of the new flow
+	 * @param columns the columns to copy
+	 * @param fromRight whether each column is read from the right row of the pairs
+	 * @return the new flow
+	 */
+	private TalendFlowImpl copy(String name, TalendColumnImpl[] columns, boolean[] fromRight){
+		checkForModification();
+		TalendFlowImpl dest = left.newFlow(name, new TalendColumnImpl[0]);
+		int nright = 0;
+		for(boolean r : fromRight){
+			if(r) nright++;
+		}
+		TalendColumnImpl[] lfrom = new TalendColumnImpl[columns.length - nright];
+		TalendColumnImpl[] lto = new TalendColumnImpl[lfrom.length];
+		TalendColumnImpl[] rfrom = new TalendColumnImpl[nright];
+		TalendColumnImpl[] rto = new TalendColumnImpl[nright];
+		int l = 0, r = 0;
+		for(int i = 0; i < columns.length; i++){
+			String colName = columns[i].getName();
+			if(dest.getColumn(colName) != null) colName = columns[i].getFlow().getName() + "_" + colName;
+			dest.addColumnLike(columns[i], colName);
+			TalendColumnImpl to = dest.columnsList.get(i);
+			if(fromRight[i]){
+				rfrom[r] = columns[i];
+				rto[r++] = to;
+			} else {
+				lfrom[l] = columns[i];
+				lto[l++] = to;
+			}
+		}
+
+		for(int i = 0; i < size; i++){
+			TalendRowImpl row = dest.newRow();
+			if(lfrom.length > 0) TalendJoinImpl.copy(row(left, lefts[i]), lfrom, row, lto);
+			if(rfrom.length > 0) TalendJoinImpl.copy(row(right, rights[i]), rfrom, row, rto);
+		}
+		return dest;
+	}
+
+	/**
+	 * Get a row of a joined flow by position, checking that the flows were not modified
+	 * 
+	 * @param flow the flow
+	 * @param position the position of the row, or a negative number if the row is missing
+	 * @return the row, or null if it's missing
+	 */
+	private TalendRowImpl row(TalendFlowImpl flow, int position){
+		checkForModification();
+		return (position < 0 ? null : flow.committedRow(position));
+	}
+
+	private void checkForModification(){
+		left.checkForModification(leftModCount);
+		right.checkForModification(rightModCount);
+	}
+
+	private void checkPair(int pair){
+		if(pair < 0 || pair >= size){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IndexOutOfBoundsException(String.format(Locale.getDefault(), rb.getString("exception.invalidPair"), left.getName(), right.getName(), pair));
+		}
+	}
+
+	/**
+	 * Check that a column handle belongs to any of the joined flows
+	 * 
+	 * @param column the column handle
+	 * @return the column
+	 * @throws IllegalArgumentException if the column doesn't belong to the joined flows
+	 */
+	private TalendColumnImpl handle(TalendColumn column){
+		if(!(column instanceof TalendColumnImpl) || (column.getFlow() != left && column.getFlow() != right)){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidJoinColumn"), (column == null ? null : column.getName()), left.getName(), right.getName()));
+		}
+		return (TalendColumnImpl) column;
+	}
+
+}
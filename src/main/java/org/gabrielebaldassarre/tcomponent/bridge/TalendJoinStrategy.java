@@ -0,0 +1,47 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents the algorithms {@link TalendJoin} can use to match the rows of two flows.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendJoin#setStrategy(TalendJoinStrategy)
+ *
+ */
+public enum TalendJoinStrategy {
+
+	/**
+	 * Build a hash table on the join columns of the smaller flow, or use one of its indexes, and look up the rows of the other flow in it.
+	 * This is the fastest strategy, but the hash table grows with the smaller flow.
+	 */
+	HASH,
+
+	/**
+	 * Sort both flows on the join columns using {@link TalendSort}, then merge them.
+	 * Memory is bounded by the sort budget and by the longest run of rows sharing the same key in the right flow.
+	 */
+	SORT_MERGE,
+
+	/**
+	 * Merge flows whose rows are already sorted in ascending order on the join columns, in the order they are given
+	 * to {@link TalendJoin#on(String, String)}, with null values first. Memory is bounded by the longest run
+	 * of rows sharing the same key in the right flow.
+	 */
+	MERGE
+
+}
@@ -0,0 +1,50 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents the kinds of join between two flows supported by {@link TalendJoin}.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#join(TalendFlow, TalendJoinType)
+ *
+ */
+public enum TalendJoinType {
+
+	/**
+	 * Only pairs of matching rows are returned.
+	 */
+	INNER,
+
+	/**
+	 * Pairs of matching rows are returned, along with the rows of the left flow matching no row of the right one,
+	 * paired with a null right row.
+	 */
+	LEFT_OUTER,
+
+	/**
+	 * Pairs of matching rows are returned, along with the rows of either flow matching no row of the other one,
+	 * paired with a null row.
+	 */
+	FULL_OUTER,
+
+	/**
+	 * Only the rows of the left flow matching no row of the right one are returned, paired with a null right row.
+	 */
+	ANTI
+
+}
@@ -0,0 +1,358 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Arrays;
+
+/**
+ * Kernels are the loops filtering and aggregating the blocks of {@link TalendColumnVector} instances.<br />
+ * Filters turn a block of values into a selection, a bitmap of {@link TalendColumnVector#WORDS} words flagging the matching rows,
+ * which selections of other filters are combined with using plain bitwise operators. Aggregates read the values flagged by a selection:
+ * whole words of selected rows are read with straight counted loops over the arrays, the other words by walking their bits.<br />
+ * Loops are kept free of calls and data-dependent branches where possible, so that the JIT compiler can unroll them.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendColumnVector
+ *
+ */
+final class TalendKernels {
+
+	private static final int SMALL_IN_LIST = 8;
+
+	private TalendKernels(){
+	}
+
+	/**
+	 * A predicate compiled to kernels, selecting the matching rows of a block at once
+	 */
+	abstract static class Filter {
+
+		/**
+		 * True if the selected rows satisfy the whole predicate, false if they must still be tested one by one
+		 */
+		final boolean exact;
+
+		Filter(boolean exact){
+			this.exact = exact;
+		}
+
+		/**
+		 * Select the rows of a block. Bits of the rows the block doesn't hold are undefined and must be cleared using {@link TalendKernels#clip(long[], long, long, long)}
+		 * 
+		 * @param block the block
+		 * @param selection where to write the selection
+		 */
+		abstract void select(long block, long[] selection);
+
+	}
+
+	/**
+	 * Clear the bits of a selection out of a range of rows
+	 * 
+	 * @param selection the selection of a block
+	 * @param block the block
+	 * @param from the sequence number of the first row of the range
+	 * @param to the sequence number following the last row of the range
+	 */
+	static void clip(long[] selection, long block, long from, long to){
+		long first = block << TalendColumnStatisticsImpl.BLOCK_SHIFT;
+		for(int w = 0; w < selection.length; w++){
+			long start = first + (w << 6);
+			if(start + 64 <= from || start >= to){
+				selection[w] = 0;
+				continue;
+			}
+			if(start < from) selection[w] &= (-1L << (from - start));
+			if(start + 64 > to) selection[w] &= (-1L >>> (start + 64 - to));
+		}
+	}
+
+	/**
+	 * Count the rows of a selection
+	 * 
+	 * @param selection the selection
+	 * @return the number of selected rows
+	 */
+	static int count(long[] selection){
+		int count = 0;
+		for(long word : selection){
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Select the values satisfying a comparison with a constant
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param operator the comparison operator
+	 * @param constant the constant
+	 * @param selection where to write the selection
+	 */
+	static void compare(long[] values, long[] valid, TalendPredicate.Operator operator, long constant, long[] selection){
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			switch(operator){
+			case EQ:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] == constant ? 1L : 0L) << j;
+				break;
+			case NE:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] != constant ? 1L : 0L) << j;
+				break;
+			case LT:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] < constant ? 1L : 0L) << j;
+				break;
+			case LE:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] <= constant ? 1L : 0L) << j;
+				break;
+			case GT:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] > constant ? 1L : 0L) << j;
+				break;
+			default:
+				for(int j = 0; j < 64; j++) bits |= (values[base + j] >= constant ? 1L : 0L) << j;
+			}
+			selection[w] = bits & valid[w];
+		}
+	}
+
+	/**
+	 * Select the values satisfying a comparison with a constant. Doubles are compared like {@link Double#compare(double, double)} does.
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param operator the comparison operator
+	 * @param constant the constant
+	 * @param selection where to write the selection
+	 */
+	static void compare(double[] values, long[] valid, TalendPredicate.Operator operator, double constant, long[] selection){
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			switch(operator){
+			case EQ:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) == 0 ? 1L : 0L) << j;
+				break;
+			case NE:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) != 0 ? 1L : 0L) << j;
+				break;
+			case LT:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) < 0 ? 1L : 0L) << j;
+				break;
+			case LE:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) <= 0 ? 1L : 0L) << j;
+				break;
+			case GT:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) > 0 ? 1L : 0L) << j;
+				break;
+			default:
+				for(int j = 0; j < 64; j++) bits |= (Double.compare(values[base + j], constant) >= 0 ? 1L : 0L) << j;
+			}
+			selection[w] = bits & valid[w];
+		}
+	}
+
+	/**
+	 * Select the values between two bounds, both included
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param from the lowest bound
+	 * @param to the highest bound
+	 * @param selection where to write the selection
+	 */
+	static void range(long[] values, long[] valid, long from, long to, long[] selection){
+		// a single unsigned comparison checks both bounds
+		long width = to - from;
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			for(int j = 0; j < 64; j++) bits |= (values[base + j] - from + Long.MIN_VALUE <= width + Long.MIN_VALUE ? 1L : 0L) << j;
+			selection[w] = (from <= to ? bits & valid[w] : 0L);
+		}
+	}
+
+	/**
+	 * Select the values between two bounds, both included. Doubles are compared like {@link Double#compare(double, double)} does.
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param from the lowest bound
+	 * @param to the highest bound
+	 * @param selection where to write the selection
+	 */
+	static void range(double[] values, long[] valid, double from, double to, long[] selection){
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			for(int j = 0; j < 64; j++){
+				double v = values[base + j];
+				bits |= (Double.compare(v, from) >= 0 & Double.compare(v, to) <= 0 ? 1L : 0L) << j;
+			}
+			selection[w] = bits & valid[w];
+		}
+	}
+
+	/**
+	 * Select the values equal to any of the given constants
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param constants the constants, sorted
+	 * @param selection where to write the selection
+	 */
+	static void in(long[] values, long[] valid, long[] constants, long[] selection){
+		boolean small = constants.length <= SMALL_IN_LIST;
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			for(long live = valid[w]; live != 0; live &= live - 1){
+				int j = Long.numberOfTrailingZeros(live);
+				long v = values[base + j];
+				boolean found = false;
+				if(small){
+					for(long c : constants) found |= (v == c);
+				} else {
+					found = Arrays.binarySearch(constants, v) >= 0;
+				}
+				if(found) bits |= 1L << j;
+			}
+			selection[w] = bits;
+		}
+	}
+
+	/**
+	 * Select the values equal to any of the given constants. Doubles are compared like {@link Double#compare(double, double)} does.
+	 * 
+	 * @param values the values of a block
+	 * @param valid the bitmap of the non-null values
+	 * @param constants the constants, sorted
+	 * @param selection where to write the selection
+	 */
+	static void in(double[] values, long[] valid, double[] constants, long[] selection){
+		for(int w = 0; w < valid.length; w++){
+			int base = w << 6;
+			long bits = 0;
+			for(long live = valid[w]; live != 0; live &= live - 1){
+				int j = Long.numberOfTrailingZeros(live);
+				if(Arrays.binarySearch(constants, values[base + j]) >= 0) bits |= 1L << j;
+			}
+			selection[w] = bits;
+		}
+	}
+
+	/**
+	 * Sum the selected values
+	 * 
+	 * @param values the values of a block
+	 * @param selection the selection
+	 * @return the sum
+	 */
+	static long sum(long[] values, long[] selection){
+		long sum = 0;
+		for(int w = 0; w < selection.length; w++){
+			int base = w << 6;
+			long bits = selection[w];
+			if(bits == -1L){
+				for(int j = base; j < base + 64; j++) sum += values[j];
+				continue;
+			}
+			for(; bits != 0; bits &= bits - 1){
+				sum += values[base + Long.numberOfTrailingZeros(bits)];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Sum the selected values
+	 * 
+	 * @param values the values of a block
+	 * @param selection the selection
+	 * @return the sum
+	 */
+	static double sum(double[] values, long[] selection){
+		double sum = 0;
+		for(int w = 0; w < selection.length; w++){
+			int base = w << 6;
+			long bits = selection[w];
+			if(bits == -1L){
+				for(int j = base; j < base + 64; j++) sum += values[j];
+				continue;
+			}
+			for(; bits != 0; bits &= bits - 1){
+				sum += values[base + Long.numberOfTrailingZeros(bits)];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the smallest or the biggest of the selected values. The selection must not be empty.
+	 * 
+	 * @param values the values of a block
+	 * @param selection the selection
+	 * @param max true for the biggest value, false for the smallest one
+	 * @return the value
+	 */
+	static long extreme(long[] values, long[] selection, boolean max){
+		long result = (max ? Long.MIN_VALUE : Long.MAX_VALUE);
+		for(int w = 0; w < selection.length; w++){
+			int base = w << 6;
+			long bits = selection[w];
+			if(bits == -1L){
+				if(max){
+					for(int j = base; j < base + 64; j++) result = Math.max(result, values[j]);
+				} else {
+					for(int j = base; j < base + 64; j++) result = Math.min(result, values[j]);
+				}
+				continue;
+			}
+			for(; bits != 0; bits &= bits - 1){
+				long v = values[base + Long.numberOfTrailingZeros(bits)];
+				result = (max ? Math.max(result, v) : Math.min(result, v));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the smallest or the biggest of the selected values, comparing them with the &lt; and &gt; operators. The selection must not be empty.
+	 * 
+	 * @param values the values of a block
+	 * @param selection the selection
+	 * @param max true for the biggest value, false for the smallest one
+	 * @return the value
+	 */
+	static double extreme(double[] values, long[] selection, boolean max){
+		boolean seen = false;
+		double result = 0;
+		for(int w = 0; w < selection.length; w++){
+			int base = w << 6;
+			for(long bits = selection[w]; bits != 0; bits &= bits - 1){
+				double v = values[base + Long.numberOfTrailingZeros(bits)];
+				if(!seen || (max ? v > result : v < result)){
+					result = v;
+					seen = true;
+				}
+			}
+		}
+		return result;
+	}
+
+}
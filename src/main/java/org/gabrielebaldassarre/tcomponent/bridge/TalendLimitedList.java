@@ -105,7 +105,7 @@ public class TalendLimitedList<T> extends TalendList<T>{
 		}
 
 		if(maximumSize != null && (this.size() + c.size()) > maximumSize){
-			for(int i=0; i < c.size(); i++){
+			for(int i = this.size() + c.size() - maximumSize; i > 0; i--){
 				this.remove(0);
 			}
 		}
@@ -0,0 +1,308 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This is the value of a typed LIST column, ie. a column built using {@link TalendFlow#addListColumn(String, TalendType)}.<br />
+ * Elements are not held by a java List, but by a slice of the flat child vector of the column, so iterating them
+ * with the typed accessors of this class doesn't allocate anything:<br />
+ * <pre>
+ * {@code
+ * // Assuming a valid TalendRow instance in row, belonging to a flow with a list column 'scores' of LONG elements
+ * TalendListValue scores = (TalendListValue) row.getTalendValue("scores");
+ *
+ * long total = 0;
+ * for(int i = 0; i < scores.size(); i++){
+ *     total += scores.getLong(i);
+ * }
+ * }
+ * </pre>
+ * {@link #getValue()} returns a read-only List view over the same slice.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendListVector
+ *
+ */
+public final class TalendListValue implements TalendValue, Serializable {
+
+	private static final long serialVersionUID = -6094215627950599553L;
+	private final TalendColumnImpl column;
+	private transient Object chunk;
+	private transient int offset;
+	private final int length;
+
+	/**
+	 * Copy the elements of a list into the child vector of a column and build a value referring to them
+	 *
+	 * @param column the column the value belongs
+	 * @param vector the child vector of the column
+	 * @param list the list to copy
+	 * @throws IllegalArgumentException if an element cannot be converted to the element type of the column
+	 */
+	TalendListValue(TalendColumnImpl column, TalendListVector vector, List<?> list){
+		this.column = column;
+		this.length = list.size();
+		synchronized(vector){
+			this.offset = vector.append(list);
+			this.chunk = vector.chunk();
+		}
+	}
+
+	/**
+	 * Build a value sharing the elements of another one
+	 *
+	 * @param column the column the value belongs
+	 * @param shared the value to share elements with
+	 */
+	TalendListValue(TalendColumnImpl column, TalendListValue shared){
+		this.column = column;
+		this.chunk = shared.chunk;
+		this.offset = shared.offset;
+		this.length = shared.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn getColumn() {
+		return column;
+	}
+
+	/**
+	 * Get the type of the elements of the list
+	 *
+	 * @return the element type
+	 */
+	public TalendType getElementType(){
+		return column.getElementType();
+	}
+
+	/**
+	 * Get the number of elements of the list
+	 *
+	 * @return the number of elements
+	 */
+	public int size(){
+		return length;
+	}
+
+	/**
+	 * Get the element at the given position, as java type
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 */
+	public Object get(int index){
+		int i = position(index);
+		if(chunk instanceof Object[]) return ((Object[]) chunk)[i];
+		if(chunk instanceof long[]) return ((long[]) chunk)[i];
+		if(chunk instanceof int[]) return ((int[]) chunk)[i];
+		if(chunk instanceof double[]) return ((double[]) chunk)[i];
+		if(chunk instanceof float[]) return ((float[]) chunk)[i];
+		if(chunk instanceof short[]) return ((short[]) chunk)[i];
+		if(chunk instanceof byte[]) return ((byte[]) chunk)[i];
+		if(chunk instanceof char[]) return ((char[]) chunk)[i];
+		return ((boolean[]) chunk)[i];
+	}
+
+	/**
+	 * Check if the element at the given position is null
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return true if the element is null, false otherwise
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 */
+	public boolean isNull(int index){
+		int i = position(index);
+		return (chunk instanceof Object[] && ((Object[]) chunk)[i] == null);
+	}
+
+	/**
+	 * Get the element at the given position as a long.<br />
+	 * Elements of any numeric type are widened or narrowed like java casts do.
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 * @throws ClassCastException if the elements are not numeric
+	 * @throws NullPointerException if the element is null
+	 */
+	public long getLong(int index){
+		int i = position(index);
+		if(chunk instanceof long[]) return ((long[]) chunk)[i];
+		if(chunk instanceof int[]) return ((int[]) chunk)[i];
+		if(chunk instanceof short[]) return ((short[]) chunk)[i];
+		if(chunk instanceof byte[]) return ((byte[]) chunk)[i];
+		if(chunk instanceof double[]) return (long) ((double[]) chunk)[i];
+		if(chunk instanceof float[]) return (long) ((float[]) chunk)[i];
+		return ((Number) ((Object[]) chunk)[i]).longValue();
+	}
+
+	/**
+	 * Get the element at the given position as an int.<br />
+	 * Elements of any numeric type are widened or narrowed like java casts do.
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 * @throws ClassCastException if the elements are not numeric
+	 * @throws NullPointerException if the element is null
+	 */
+	public int getInt(int index){
+		if(chunk instanceof int[]) return ((int[]) chunk)[position(index)];
+		return (int) getLong(index);
+	}
+
+	/**
+	 * Get the element at the given position as a double.<br />
+	 * Elements of any numeric type are widened or narrowed like java casts do.
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 * @throws ClassCastException if the elements are not numeric
+	 * @throws NullPointerException if the element is null
+	 */
+	public double getDouble(int index){
+		int i = position(index);
+		if(chunk instanceof double[]) return ((double[]) chunk)[i];
+		if(chunk instanceof float[]) return ((float[]) chunk)[i];
+		if(chunk instanceof Object[]) return ((Number) ((Object[]) chunk)[i]).doubleValue();
+		return getLong(index);
+	}
+
+	/**
+	 * Get the element at the given position as a boolean.
+	 *
+	 * @param index the position of the element, starting from zero
+	 * @return the element
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size of the list
+	 * @throws ClassCastException if the elements are not booleans
+	 * @throws NullPointerException if the element is null
+	 */
+	public boolean getBoolean(int index){
+		int i = position(index);
+		if(chunk instanceof boolean[]) return ((boolean[]) chunk)[i];
+		return ((Boolean) ((Object[]) chunk)[i]).booleanValue();
+	}
+
+	/**
+	 * Return a read-only List view of the elements. No element is copied, but primitive elements are boxed
+	 * each time they are read from the view.
+	 *
+	 * @return a list view
+	 */
+	public Object getValue() {
+		return new ElementList();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isColumnDefault() {
+		return equals(column.getDefaultTalendValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString(){
+		return getValue().toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode(){
+		int hash = 1;
+		for(int i = 0; i < length; i++){
+			Object element = get(i);
+			hash = 31 * hash + (element == null ? 0 : element.hashCode());
+		}
+		return hash;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null)
+			return false;
+		if (obj == this)
+			return true;
+		if (obj.getClass() != getClass())
+			return false;
+		TalendListValue other = (TalendListValue) obj;
+		if (other.length != length)
+			return false;
+		if (other.chunk == chunk && other.offset == offset)
+			return true;
+		for(int i = 0; i < length; i++){
+			Object element = get(i);
+			if (element == null ? !other.isNull(i) : !element.equals(other.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private int position(int index){
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+		return offset + index;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(new ArrayList<Object>(new ElementList()));
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		chunk = ((List<?>) in.readObject()).toArray();
+		offset = 0;
+	}
+
+	/**
+	 * Read-only view of the elements of the value
+	 */
+	private final class ElementList extends AbstractList<Object> implements RandomAccess {
+
+		@Override
+		public Object get(int index) {
+			return TalendListValue.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return length;
+		}
+
+	}
+
+}
@@ -0,0 +1,210 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * A list vector is the flat child storage of a typed LIST column: the elements of all the cells of the column are
+ * appended one after the other in large shared chunks, each cell only referring to its own offset and length.<br />
+ * Chunks are arrays of the primitive type matching the element type of the column whenever possible
+ * (ie. a long[] for LONG elements), or Object[] for non-primitive types. Lists holding null elements are stored in
+ * Object[] chunks, whatever the element type is.<br />
+ * Like {@link TalendByteArena}, the vector only retains the chunk it is currently filling, and callers must hold the lock of the vector
+ * between a call to {@link #append(List)} and the following call to {@link #chunk()}.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendListValue
+ *
+ */
+final class TalendListVector {
+
+	/**
+	 * Default number of elements of each chunk
+	 */
+	static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private final TalendType elementType;
+	private final int chunkSize;
+	private Object current;
+	private Object[] currentObjects;
+	private int position;
+	private int objectPosition;
+	private Object last;
+
+	/**
+	 * Build an empty vector
+	 *
+	 * @param elementType the type of the elements of the lists
+	 */
+	TalendListVector(TalendType elementType){
+		this.elementType = elementType;
+		this.chunkSize = DEFAULT_CHUNK_SIZE;
+	}
+
+	/**
+	 * Copy the elements of a list into the vector, converting them to the element type.
+	 *
+	 * @param list the list to copy
+	 * @return the offset of the first element inside the chunk returned by the next call to {@link #chunk()}
+	 * @throws IllegalArgumentException if an element cannot be converted to the element type
+	 */
+	synchronized int append(List<?> list){
+		int length = list.size();
+		boolean primitive = isPrimitive(elementType) && !list.contains(null);
+
+		if(length > chunkSize / 4){
+			last = (primitive ? newChunk(length) : new Object[length]);
+			copy(list, last, 0);
+			return 0;
+		}
+
+		if(primitive){
+			if(current == null || position + length > chunkSize){
+				current = newChunk(chunkSize);
+				position = 0;
+			}
+			copy(list, current, position);
+			last = current;
+			position += length;
+			return position - length;
+		}
+
+		if(currentObjects == null || objectPosition + length > chunkSize){
+			currentObjects = new Object[chunkSize];
+			objectPosition = 0;
+		}
+		copy(list, currentObjects, objectPosition);
+		last = currentObjects;
+		objectPosition += length;
+		return objectPosition - length;
+	}
+
+	/**
+	 * Get the chunk holding the elements copied by the last call to {@link #append(List)}
+	 *
+	 * @return a reference to the chunk
+	 */
+	synchronized Object chunk(){
+		return last;
+	}
+
+	/**
+	 * Check if the elements of the given type are stored in primitive arrays
+	 *
+	 * @param type the element type
+	 * @return true if the elements are stored in primitive arrays, false if they are stored in Object[]
+	 */
+	static boolean isPrimitive(TalendType type){
+		return type.getPrimitiveType() != null;
+	}
+
+	private Object newChunk(int size){
+		switch(elementType){
+		case BOOLEAN:
+			return new boolean[size];
+		case BYTE:
+			return new byte[size];
+		case CHARACTER:
+			return new char[size];
+		case SHORT:
+			return new short[size];
+		case INTEGER:
+			return new int[size];
+		case LONG:
+			return new long[size];
+		case FLOAT:
+			return new float[size];
+		default:
+			return new double[size];
+		}
+	}
+
+	private void copy(List<?> list, Object chunk, int from){
+		int i = from;
+		for(Object element : list){
+			element = convert(element);
+			if(chunk instanceof Object[]){
+				((Object[]) chunk)[i++] = element;
+				continue;
+			}
+			switch(elementType){
+			case BOOLEAN:
+				((boolean[]) chunk)[i++] = ((Boolean) element).booleanValue();
+				break;
+			case BYTE:
+				((byte[]) chunk)[i++] = ((Number) element).byteValue();
+				break;
+			case CHARACTER:
+				((char[]) chunk)[i++] = ((Character) element).charValue();
+				break;
+			case SHORT:
+				((short[]) chunk)[i++] = ((Number) element).shortValue();
+				break;
+			case INTEGER:
+				((int[]) chunk)[i++] = ((Number) element).intValue();
+				break;
+			case LONG:
+				((long[]) chunk)[i++] = ((Number) element).longValue();
+				break;
+			case FLOAT:
+				((float[]) chunk)[i++] = ((Number) element).floatValue();
+				break;
+			default:
+				((double[]) chunk)[i++] = ((Number) element).doubleValue();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Convert an element to the element type. Numbers are converted to numeric types like java casts do, so that lists
+	 * holding null elements, which are stored in Object[] chunks, hold the same values as primitive chunks would.
+	 */
+	private Object convert(Object element){
+		if(element == null || elementType == TalendType.OBJECT || element.getClass() == elementType.getType()) return element;
+		if(element instanceof Number){
+			Number n = (Number) element;
+			switch(elementType){
+			case BYTE:
+				return n.byteValue();
+			case SHORT:
+				return n.shortValue();
+			case INTEGER:
+				return n.intValue();
+			case LONG:
+				return n.longValue();
+			case FLOAT:
+				return n.floatValue();
+			case DOUBLE:
+				return n.doubleValue();
+			case BIGDECIMAL:
+				return new BigDecimal(n.toString());
+			default:
+				break;
+			}
+		}
+		if(elementType == TalendType.LIST && element instanceof List) return element;
+		if(element instanceof String) return elementType.parse((String) element);
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidTalendParameter"), element, elementType.getType().getSimpleName()));
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+
+/**
+ * The partitioner splits the committed rows of a flow into shards, ie. new flows of the same model, by hashing the values of some columns,
+ * so that all the rows sharing the same values end up in the same shard.<br />
+ * Rows are split in two parallel steps: first each thread hashes a range of rows, collecting their positions in buffers of its own,
+ * one for each shard; then each shard is filled by a thread of its own from the buffers of all the threads, in flow order.
+ * Values are copied like {@link TalendQuery#toFlow(String)} does, sharing the bytes of arena-encoded values.<br />
+ * Numbers are hashed in a canonical form, so that equal values of different numeric types always go to the same shard.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#partition(String[], int)
+ *
+ */
+final class TalendPartitioner {
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private TalendPartitioner(){
+	}
+
+	/**
+	 * Get the name of a shard of a flow
+	 * 
+	 * @param flow the flow
+	 * @param shard the shard, starting from zero
+	 * @return the name of the flow followed by an underscore and the number of the shard
+	 */
+	static String nameOf(TalendFlow flow, int shard){
+		return flow.getName() + "_" + shard;
+	}
+
+	/**
+	 * Get the shard a row belongs to
+	 * 
+	 * @param row the row
+	 * @param columns the columns to hash
+	 * @param n the number of shards
+	 * @return the shard, starting from zero
+	 */
+	static int shardOf(TalendRowImpl row, TalendColumnImpl[] columns, int n){
+		int hash = 1;
+		for(TalendColumnImpl column : columns){
+			Object key = TalendIndex.keyOf(column, row.value(column));
+			hash = 31 * hash + (key == null ? 0 : (key instanceof Number ? hashOf((Number) key) : key.hashCode()));
+		}
+		return ((hash ^ (hash >>> 16)) & 0x7fffffff) % n;
+	}
+
+	/**
+	 * Hash a number by its value rather than by its type: numbers holding an integral value that fits a long are hashed
+	 * as a long, other numbers that a double holds exactly are hashed as a double
+	 * 
+	 * @param number the number
+	 * @return the hash code
+	 */
+	static int hashOf(Number number){
+		if(number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte){
+			return Long.hashCode(number.longValue());
+		}
+		if(number instanceof BigDecimal){
+			BigDecimal decimal = (BigDecimal) number;
+			try {
+				return Long.hashCode(decimal.longValueExact());
+			} catch (ArithmeticException e) {
+				double d = decimal.doubleValue();
+				if(Double.isInfinite(d) || new BigDecimal(d).compareTo(decimal) != 0) return decimal.stripTrailingZeros().hashCode();
+				return hashOf(d);
+			}
+		}
+		return hashOf(number.doubleValue());
+	}
+
+	private static int hashOf(double d){
+		long l = (long) d;
+		// doubles past the greatest long are converted to it, though not equal to it
+		if(l == d && l != Long.MAX_VALUE) return Long.hashCode(l);
+		return Double.hashCode(d);
+	}
+
+	/**
+	 * Split the committed rows of a flow into shards
+	 * 
+	 * @param flow the flow
+	 * @param columns the columns to hash
+	 * @param n the number of shards
+	 * @param parallelism the maximum number of threads
+	 * @return the shards
+	 * @throws IllegalArgumentException if a flow with the name of a shard already exists in the model
+	 * @throws java.util.ConcurrentModificationException if the flow is modified while it's split
+	 */
+	static TalendFlowImpl[] partition(TalendFlowImpl flow, TalendColumnImpl[] columns, int n, int parallelism){
+		for(int s = 0; s < n; s++){
+			if(flow.model.hasFlow(nameOf(flow, s))){
+				ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.flowAlreadyExists"), nameOf(flow, s)));
+			}
+		}
+
+		int expectedModCount = flow.modCount();
+		int rows = flow.countRows();
+		int threads = TalendWorkers.countThreads(rows, parallelism);
+		List<Scatter> scatters = new ArrayList<Scatter>(threads);
+		for(int i = 0; i < threads; i++){
+			scatters.add(new Scatter(flow, columns, n, TalendWorkers.from(rows, threads, i), TalendWorkers.from(rows, threads, i + 1)));
+		}
+		TalendWorkers.invokeAll(scatters);
+		flow.checkForModification(expectedModCount);
+
+		TalendColumnImpl[] from = flow.columnsList.toArray(new TalendColumnImpl[flow.columnsList.size()]);
+		TalendFlowImpl[] shards = new TalendFlowImpl[n];
+		List<Gather> gathers = new ArrayList<Gather>(n);
+		for(int s = 0; s < n; s++){
+			shards[s] = flow.newFlow(nameOf(flow, s), from);
+			gathers.add(new Gather(flow, from, shards[s], s, scatters));
+		}
+		if(threads > 1){
+			TalendWorkers.invokeAll(gathers);
+		} else {
+			for(Gather gather : gathers){
+				gather.call();
+			}
+		}
+		flow.checkForModification(expectedModCount);
+		return shards;
+	}
+
+	/**
+	 * Fills a shard with the rows collected by all the scatters
+	 */
+	private static final class Gather implements Callable<Void> {
+
+		private final TalendFlowImpl flow;
+		private final TalendColumnImpl[] from;
+		private final TalendFlowImpl dest;
+		private final int shard;
+		private final List<Scatter> scatters;
+
+		Gather(TalendFlowImpl flow, TalendColumnImpl[] from, TalendFlowImpl dest, int shard, List<Scatter> scatters){
+			this.flow = flow;
+			this.from = from;
+			this.dest = dest;
+			this.shard = shard;
+			this.scatters = scatters;
+		}
+
+		public Void call() {
+			TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[from.length]);
+			for(Scatter scatter : scatters){
+				int[] positions = scatter.positions[shard];
+				for(int i = 0; i < scatter.sizes[shard]; i++){
+					TalendFlowImpl.copyValues(flow.committedRow(positions[i]), from, dest.newRow(), to);
+				}
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * Hashes a range of rows, collecting their positions in a buffer for each shard
+	 */
+	private static final class Scatter implements Callable<Void> {
+
+		private final TalendFlowImpl flow;
+		private final TalendColumnImpl[] columns;
+		private final int from;
+		private final int to;
+		final int[][] positions;
+		final int[] sizes;
+
+		Scatter(TalendFlowImpl flow, TalendColumnImpl[] columns, int n, int from, int to){
+			this.flow = flow;
+			this.columns = columns;
+			this.from = from;
+			this.to = to;
+			this.positions = new int[n][];
+			this.sizes = new int[n];
+		}
+
+		public Void call() {
+			int n = sizes.length;
+			for(int i = from; i < to; i++){
+				int shard = shardOf(flow.committedRow(i), columns, n);
+				int[] buffer = positions[shard];
+				if(buffer == null){
+					buffer = positions[shard] = new int[INITIAL_BUFFER_SIZE];
+				} else if(sizes[shard] == buffer.length){
+					buffer = positions[shard] = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				buffer[sizes[shard]++] = i;
+			}
+			return null;
+		}
+
+	}
+
+}
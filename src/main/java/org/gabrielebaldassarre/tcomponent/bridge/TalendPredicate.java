@@ -0,0 +1,960 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * Predicates are filters on the rows of a flow, used by queries built with {@link TalendFlow#select(String...)}.<br />
+ * They are built using the static methods of this class and combined using {@link #and(TalendPredicate)}, {@link #or(TalendPredicate)} and {@link #not(TalendPredicate)}:<br />
+ * <pre>
+ * {@code
+ * TalendPredicate italians = TalendPredicate.eq("country", "IT").and(TalendPredicate.ge("age", 18));
+ * }
+ * </pre>
+ * Predicates refer to columns by name and are not bound to any flow, so the same predicate can be used on many flows. When a query is run,
+ * the predicate is compiled against the flow: names are resolved to columns once, constants are converted to the types of the columns
+ * (strings are parsed like {@link TalendType#parse(String)} does) and dictionary-encoded or arena-encoded values are compared without decoding them.
+ * Numbers are compared to numeric columns by their exact value and are never narrowed, so an INTEGER column is never equal to 17.5;
+ * numbers cannot be compared to non-numeric columns.<br />
+ * Like SQL, comparisons involving null values are never satisfied: use {@link #isNull(String)} to find missing values.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendQuery
+ *
+ */
+public abstract class TalendPredicate {
+
+	/**
+	 * Comparison operators
+	 */
+	enum Operator { EQ, NE, LT, LE, GT, GE }
+
+	TalendPredicate(){
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column equals the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate eq(String column, Object value){
+		return new Comparison(column, Operator.EQ, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is not null and differs from the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate ne(String column, Object value){
+		return new Comparison(column, Operator.NE, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is less than the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate lt(String column, Object value){
+		return new Comparison(column, Operator.LT, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is less than or equal to the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate le(String column, Object value){
+		return new Comparison(column, Operator.LE, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is greater than the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate gt(String column, Object value){
+		return new Comparison(column, Operator.GT, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is greater than or equal to the given one
+	 * 
+	 * @param column the name of the column
+	 * @param value the value to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate ge(String column, Object value){
+		return new Comparison(column, Operator.GE, value);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column is between two values, both included
+	 * 
+	 * @param column the name of the column
+	 * @param from the lowest value
+	 * @param to the highest value
+	 * @return the predicate
+	 */
+	public static TalendPredicate between(String column, Object from, Object to){
+		return ge(column, from).and(le(column, to));
+	}
+
+	/**
+	 * Build a predicate satisfied by rows whose value of the given column equals any of the given ones
+	 * 
+	 * @param column the name of the column
+	 * @param values the values to compare to
+	 * @return the predicate
+	 */
+	public static TalendPredicate in(String column, Object... values){
+		return new In(column, values, false);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows having no value for the given column
+	 * 
+	 * @param column the name of the column
+	 * @return the predicate
+	 */
+	public static TalendPredicate isNull(String column){
+		return new IsNull(column, false);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows having a value for the given column
+	 * 
+	 * @param column the name of the column
+	 * @return the predicate
+	 */
+	public static TalendPredicate isNotNull(String column){
+		return new IsNull(column, true);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows not satisfying the given one.<br />
+	 * Like SQL, negating a comparison involving null values doesn't make it satisfied: rows having no value for the column
+	 * satisfy neither {@code eq("a", 1)} nor {@code not(eq("a", 1))}. Negations are pushed down to the comparisons,
+	 * ie. the negation of {@code lt("a", 1).or(isNull("b"))} is {@code ge("a", 1).and(isNotNull("b"))}.
+	 * 
+	 * @param predicate the predicate to negate
+	 * @return the predicate
+	 * @throws IllegalArgumentException if the predicate is null
+	 */
+	public static TalendPredicate not(TalendPredicate predicate){
+		if(predicate == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "predicate"));
+		}
+		return predicate.negate();
+	}
+
+	/**
+	 * Build a predicate satisfied by rows satisfying both this predicate and the given one
+	 * 
+	 * @param other the other predicate
+	 * @return the predicate
+	 */
+	public TalendPredicate and(TalendPredicate other){
+		return new Junction(this, other, true);
+	}
+
+	/**
+	 * Build a predicate satisfied by rows satisfying this predicate, the given one or both
+	 * 
+	 * @param other the other predicate
+	 * @return the predicate
+	 */
+	public TalendPredicate or(TalendPredicate other){
+		return new Junction(this, other, false);
+	}
+
+	/**
+	 * Build the negation of the predicate, which rows missing any value the predicate compares satisfy neither
+	 * 
+	 * @return the negated predicate
+	 */
+	abstract TalendPredicate negate();
+
+	/**
+	 * Compile the predicate against the columns of a flow
+	 * 
+	 * @param flow the flow
+	 * @return the compiled condition
+	 * @throws IllegalArgumentException if a column doesn't belong to the flow or a constant cannot be converted to the type of its column
+	 */
+	abstract TalendCondition compile(TalendFlowImpl flow);
+
+	/**
+	 * Collect the equalities on a single value that any row satisfying the predicate must meet, so that they can be looked up in indexes
+	 * 
+	 * @param flow the flow the predicate is compiled against
+	 * @param equalities the map to put the columns and the values into, already converted to the types of the columns
+	 */
+	void collectEqualities(TalendFlowImpl flow, Map<TalendColumnImpl, Object> equalities){
+	}
+
+	/**
+	 * Check if any row of a block of the flow may satisfy the predicate, according to the statistics of the block
+	 * 
+	 * @param flow the flow the predicate is compiled against
+	 * @param block the block of rows
+	 * @return false if no row of the block can satisfy the predicate, true if some may
+	 * @see TalendColumnStatisticsImpl#zone(long)
+	 */
+	boolean mayMatch(TalendFlowImpl flow, long block){
+		return true;
+	}
+
+	/**
+	 * Compile the predicate to filter kernels over the column vectors of a flow
+	 * 
+	 * @param flow the flow
+	 * @return the filter, or null if some column involved is not vectorized
+	 * @throws IllegalArgumentException if a column doesn't belong to the flow or a constant cannot be converted to the type of its column
+	 * @see TalendFlow#vectorize(String...)
+	 */
+	TalendKernels.Filter vectorize(TalendFlowImpl flow){
+		return null;
+	}
+
+	/**
+	 * Get the statistics of the block of rows holding the values of a column
+	 * 
+	 * @param flow the flow
+	 * @param column the column
+	 * @param block the block of rows
+	 * @return the statistics of the block, or null if they are not collected
+	 */
+	static TalendColumnStatisticsImpl.Zone zoneOf(TalendFlowImpl flow, TalendColumnImpl column, long block){
+		TalendColumnStatisticsImpl statistics = flow.statisticsOf(column);
+		return (statistics == null ? null : statistics.zone(block));
+	}
+
+	/**
+	 * Resolve a column of a flow by name
+	 * 
+	 * @param flow the flow
+	 * @param name the name of the column
+	 * @return the column
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow
+	 */
+	static TalendColumnImpl resolve(TalendFlowImpl flow, String name){
+		TalendColumn column = (name == null ? null : flow.getColumn(name));
+		if(column == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), name, flow.getName()));
+		}
+		return (TalendColumnImpl) column;
+	}
+
+	/**
+	 * Convert a java value to the type of a column.<br />
+	 * Numbers are converted to numeric columns only if the column can hold them exactly, ie. 17.0 can be converted to an INTEGER column
+	 * while 17.5 cannot; numbers are never converted to non-numeric columns, like BOOLEAN ones.
+	 * 
+	 * @param column the column
+	 * @param value the value
+	 * @return the converted value
+	 * @throws IllegalArgumentException if the value cannot be converted
+	 */
+	static Object convert(TalendColumnImpl column, Object value){
+		TalendType type = column.getType();
+		if(value == null || value.getClass() == type.getType() || type == TalendType.OBJECT) return value;
+		if(value instanceof TalendValue) return convert(column, ((TalendValue) value).getValue());
+		if(type == TalendType.LIST && value instanceof List) return value;
+		if(type == TalendType.BYTE_ARRAY && value instanceof ByteBuffer) return value;
+		if(value instanceof Number && isNumeric(type)){
+			Number exact = narrow(type, (Number) value);
+			if(exact != null) return exact;
+		} else if(value instanceof String){
+			return type.parse((String) value);
+		}
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidTalendParameter"), value, type.getType().getSimpleName()));
+	}
+
+	/**
+	 * Convert a constant to be compared to the values of a column.<br />
+	 * Unlike {@link #convert(TalendColumnImpl, Object)}, numbers that the column cannot hold exactly are returned as they are,
+	 * so that they are compared to the values of the column without being narrowed (ie. an INTEGER column is less than 17.5 up to 17 included).
+	 * 
+	 * @param column the column
+	 * @param value the constant
+	 * @return the converted constant, or the number itself if the column cannot hold it
+	 * @throws IllegalArgumentException if the constant cannot be converted
+	 */
+	static Object operand(TalendColumnImpl column, Object value){
+		if(value instanceof TalendValue) value = ((TalendValue) value).getValue();
+		if(value instanceof Number && isNumeric(column.getType()) && value.getClass() != column.getType().getType()){
+			Number exact = narrow(column.getType(), (Number) value);
+			return (exact != null ? exact : value);
+		}
+		return convert(column, value);
+	}
+
+	/**
+	 * Convert a constant to be looked up among the values of a column, ie. in a hash table or in an index
+	 * 
+	 * @param column the column
+	 * @param value the constant
+	 * @return the converted constant, or null if the constant is a number that no value of the column can be equal to
+	 * @throws IllegalArgumentException if the constant cannot be converted
+	 */
+	static Object convertKey(TalendColumnImpl column, Object value){
+		Object operand = operand(column, value);
+		if(operand instanceof Number && isNumeric(column.getType()) && operand.getClass() != column.getType().getType()) return null;
+		return operand;
+	}
+
+	/**
+	 * Check if a type holds numbers
+	 * 
+	 * @param type the type
+	 * @return true for integral, floating point and BIGDECIMAL types
+	 */
+	static boolean isNumeric(TalendType type){
+		switch(type){
+		case BYTE:
+		case SHORT:
+		case INTEGER:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+		case BIGDECIMAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Convert a number to a numeric type, only if the type can hold it exactly
+	 * 
+	 * @param type the numeric type
+	 * @param n the number
+	 * @return the converted number, or null if the type cannot hold the number exactly
+	 */
+	private static Number narrow(TalendType type, Number n){
+		boolean floating = (n instanceof Double || n instanceof Float);
+		double d = n.doubleValue();
+		if(floating && (Double.isNaN(d) || Double.isInfinite(d))){
+			if(type == TalendType.DOUBLE) return d;
+			if(type == TalendType.FLOAT) return (float) d;
+			return null;
+		}
+
+		if(floating && isNegativeZero(d) && type != TalendType.DOUBLE && type != TalendType.FLOAT) return null;
+
+		switch(type){
+		case DOUBLE:
+			if(floating) return d;
+			if(isIntegral(n)){
+				long l = n.longValue();
+				return (d != 0x1p63 && (long) d == l ? d : null);
+			}
+			return (!Double.isInfinite(d) && BigDecimal.valueOf(d).compareTo(decimal(n)) == 0 ? d : null);
+		case FLOAT:
+			float f = n.floatValue();
+			if(n instanceof Float || (n instanceof Double && f == d)) return f;
+			if(floating) return null;
+			if(isIntegral(n)) return (f != 0x1p63f && (long) f == n.longValue() ? f : null);
+			return (!Float.isInfinite(f) && new BigDecimal(Float.toString(f)).compareTo(decimal(n)) == 0 ? f : null);
+		case BIGDECIMAL:
+			return decimal(n);
+		default:
+			long l;
+			if(floating){
+				if(d >= 0x1p63 || d < -0x1p63 || d != Math.rint(d)) return null;
+				l = (long) d;
+			} else if(isIntegral(n)){
+				l = n.longValue();
+			} else {
+				try {
+					l = decimal(n).longValueExact();
+				} catch (ArithmeticException e){
+					return null;
+				}
+			}
+			switch(type){
+			case BYTE:
+				return (l == (byte) l ? Byte.valueOf((byte) l) : null);
+			case SHORT:
+				return (l == (short) l ? Short.valueOf((short) l) : null);
+			case INTEGER:
+				return (l == (int) l ? Integer.valueOf((int) l) : null);
+			default:
+				return l;
+			}
+		}
+	}
+
+	private static boolean isIntegral(Number n){
+		return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+	}
+
+	/**
+	 * Get the decimal value of a finite number. Floating point numbers are converted through their shortest representation,
+	 * so that a 0.1 double equals a 0.1 decimal.
+	 */
+	private static BigDecimal decimal(Number n){
+		if(n instanceof BigDecimal) return (BigDecimal) n;
+		if(n instanceof Double) return BigDecimal.valueOf(n.doubleValue());
+		if(n instanceof Float) return new BigDecimal(Float.toString(n.floatValue()));
+		if(isIntegral(n)) return BigDecimal.valueOf(n.longValue());
+		return new BigDecimal(n.toString());
+	}
+
+	/**
+	 * Compare two non-null values of the same column, or a value and a constant.<br />
+	 * Numbers of different classes are compared by their exact value, without narrowing any of them.
+	 * 
+	 * @param a the first value
+	 * @param b the second value
+	 * @return a negative integer, zero, or a positive integer as the first value is less than, equal to, or greater than the second one
+	 * @throws ClassCastException if the values are not comparable
+	 */
+	@SuppressWarnings("unchecked")
+	static int compare(Object a, Object b){
+		if(a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) return compareNumbers((Number) a, (Number) b);
+		return ((Comparable<Object>) a).compareTo(b);
+	}
+
+	private static int compareNumbers(Number a, Number b){
+		boolean fa = (a instanceof Double || a instanceof Float);
+		boolean fb = (b instanceof Double || b instanceof Float);
+		if(fa && fb) return Double.compare(a.doubleValue(), b.doubleValue());
+		if(fa && isNegativeZero(a.doubleValue()) && decimal(b).signum() == 0) return -1;
+		if(fb && isNegativeZero(b.doubleValue()) && decimal(a).signum() == 0) return 1;
+		if(fa && isIntegral(b)) return -compareExactly(b.longValue(), a.doubleValue());
+		if(fb && isIntegral(a)) return compareExactly(a.longValue(), b.doubleValue());
+		if(isIntegral(a) && isIntegral(b)) return (a.longValue() < b.longValue() ? -1 : (a.longValue() == b.longValue() ? 0 : 1));
+		if((fa && (Double.isNaN(a.doubleValue()) || Double.isInfinite(a.doubleValue()))) || (fb && (Double.isNaN(b.doubleValue()) || Double.isInfinite(b.doubleValue())))){
+			return Double.compare(a.doubleValue(), b.doubleValue());
+		}
+		return decimal(a).compareTo(decimal(b));
+	}
+
+	/**
+	 * Check if a double is the negative zero, which floating point columns keep apart from the positive one like {@link Double#equals(Object)} does
+	 */
+	private static boolean isNegativeZero(double d){
+		return (d == 0 && Double.doubleToRawLongBits(d) != 0);
+	}
+
+	/**
+	 * Compare a long to a double without losing the precision of any of them
+	 */
+	private static int compareExactly(long l, double d){
+		if(Double.isNaN(d) || d >= 0x1p63) return -1;
+		if(d < -0x1p63) return 1;
+		long t = (long) d;
+		if(l != t) return (l < t ? -1 : 1);
+		double fraction = d - t;
+		return (fraction > 0 ? -1 : (fraction < 0 ? 1 : 0));
+	}
+
+	/**
+	 * Check if two non-null values of the same column, or a value and a constant, are equal
+	 * 
+	 * @param a the first value
+	 * @param b the second value
+	 * @return true if the values are equal
+	 */
+	static boolean equal(Object a, Object b){
+		if(a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) return compareNumbers((Number) a, (Number) b) == 0;
+		return a.equals(b);
+	}
+
+	/**
+	 * Comparison of a column to a constant
+	 */
+	private static final class Comparison extends TalendPredicate {
+
+		private final String column;
+		private final Operator operator;
+		private final Object value;
+
+		Comparison(String column, Operator operator, Object value){
+			if(value == null){
+				ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "value"));
+			}
+			this.column = column;
+			this.operator = operator;
+			this.value = value;
+		}
+
+		@Override
+		TalendCondition compile(TalendFlowImpl flow) {
+			final TalendColumnImpl col = resolve(flow, column);
+			final Object constant = operand(col, value);
+			final TalendDictionary dictionary = col.getDictionary();
+
+			if((operator == Operator.EQ || operator == Operator.NE) && dictionary != null){
+				final int code = dictionary.lookup(constant);
+				final boolean eq = (operator == Operator.EQ);
+				return new TalendCondition(){
+					public boolean test(TalendRowImpl row) {
+						TalendValue v = row.value(col);
+						if(v == null || v.getValue() == null) return false;
+						int c = ((TalendValueImpl) v).getCode();
+						return (c >= 0 ? c == code : equal(v.getValue(), constant)) == eq;
+					}
+				};
+			}
+
+			if((operator == Operator.EQ || operator == Operator.NE) && (col.getEncoding() == TalendEncoding.UTF8 || col.getEncoding() == TalendEncoding.ARENA)){
+				final byte[] bytes;
+				if(constant instanceof String){
+					bytes = ((String) constant).getBytes(TalendUtf8Value.UTF8);
+				} else if(constant instanceof ByteBuffer){
+					bytes = new byte[((ByteBuffer) constant).remaining()];
+					((ByteBuffer) constant).duplicate().get(bytes);
+				} else {
+					bytes = (byte[]) constant;
+				}
+				final boolean eq = (operator == Operator.EQ);
+				return new TalendCondition(){
+					public boolean test(TalendRowImpl row) {
+						TalendValue v = row.value(col);
+						if(!(v instanceof TalendArenaValue)) return false;
+						return ((TalendArenaValue) v).contentEquals(bytes, 0, bytes.length) == eq;
+					}
+				};
+			}
+
+			final boolean binary = (col.getType() == TalendType.BYTE_ARRAY);
+			final Object operand = (binary ? TalendIndex.keyOf(constant) : constant);
+			return new TalendCondition(){
+				public boolean test(TalendRowImpl row) {
+					TalendValue v = row.value(col);
+					if(v == null) return false;
+					Object x = (binary ? TalendIndex.keyOf(col, v) : v.getValue());
+					if(x == null) return false;
+					switch(operator){
+					case EQ:
+						return equal(x, operand);
+					case NE:
+						return !equal(x, operand);
+					case LT:
+						return compare(x, operand) < 0;
+					case LE:
+						return compare(x, operand) <= 0;
+					case GT:
+						return compare(x, operand) > 0;
+					default:
+						return compare(x, operand) >= 0;
+					}
+				}
+			};
+		}
+
+		@Override
+		boolean mayMatch(TalendFlowImpl flow, long block) {
+			TalendColumnImpl col = resolve(flow, column);
+			TalendColumnStatisticsImpl.Zone zone = zoneOf(flow, col, block);
+			if(zone == null) return true;
+			if(zone.values == 0) return false;
+			if(zone.min == null) return true;
+			Object operand = TalendIndex.keyOf(operand(col, value));
+			switch(operator){
+			case EQ:
+				return compare(zone.min, operand) <= 0 && compare(zone.max, operand) >= 0;
+			case NE:
+				return !(equal(zone.min, operand) && equal(zone.max, operand));
+			case LT:
+				return compare(zone.min, operand) < 0;
+			case LE:
+				return compare(zone.min, operand) <= 0;
+			case GT:
+				return compare(zone.max, operand) > 0;
+			default:
+				return compare(zone.max, operand) >= 0;
+			}
+		}
+
+		@Override
+		TalendKernels.Filter vectorize(TalendFlowImpl flow) {
+			TalendColumnImpl col = resolve(flow, column);
+			final TalendColumnVector vector = flow.vectorOf(col);
+			// constants the column cannot hold are left to the compiled condition
+			Object constant = (vector == null ? null : convertKey(col, value));
+			if(constant == null) return null;
+			if(vector.isFloating()){
+				final double c = ((Number) constant).doubleValue();
+				return new TalendKernels.Filter(true){
+					void select(long block, long[] selection) {
+						TalendColumnVector.Block b = vector.block(block);
+						if(b == null) Arrays.fill(selection, 0L);
+						else TalendKernels.compare(b.doubles, b.valid, operator, c, selection);
+					}
+				};
+			}
+			final long c = TalendColumnVector.toLong(constant);
+			return new TalendKernels.Filter(true){
+				void select(long block, long[] selection) {
+					TalendColumnVector.Block b = vector.block(block);
+					if(b == null) Arrays.fill(selection, 0L);
+					else TalendKernels.compare(b.longs, b.valid, operator, c, selection);
+				}
+			};
+		}
+
+		/**
+		 * Compile a lower and an upper bound on the same integral or DATE column to a single range kernel
+		 * 
+		 * @param flow the flow
+		 * @param a a comparison
+		 * @param b another comparison
+		 * @return the filter, or null if the comparisons are not the bounds of a range over a vectorized column
+		 */
+		static TalendKernels.Filter range(TalendFlowImpl flow, Comparison a, Comparison b){
+			if(!a.column.equals(b.column)) return null;
+			if(a.operator == Operator.LT || a.operator == Operator.LE){
+				Comparison swap = a;
+				a = b;
+				b = swap;
+			}
+			if((a.operator != Operator.GT && a.operator != Operator.GE) || (b.operator != Operator.LT && b.operator != Operator.LE)) return null;
+			TalendColumnImpl col = resolve(flow, a.column);
+			final TalendColumnVector vector = flow.vectorOf(col);
+			if(vector == null || vector.isFloating()) return null;
+
+			Object lower = convertKey(col, a.value);
+			Object upper = convertKey(col, b.value);
+			if(lower == null || upper == null) return null;
+			long from = TalendColumnVector.toLong(lower);
+			long to = TalendColumnVector.toLong(upper);
+			final boolean empty = (a.operator == Operator.GT && from == Long.MAX_VALUE) || (b.operator == Operator.LT && to == Long.MIN_VALUE);
+			final long lowest = (a.operator == Operator.GT && !empty ? from + 1 : from);
+			final long highest = (b.operator == Operator.LT && !empty ? to - 1 : to);
+			return new TalendKernels.Filter(true){
+				void select(long block, long[] selection) {
+					TalendColumnVector.Block b = vector.block(block);
+					if(b == null || empty) Arrays.fill(selection, 0L);
+					else TalendKernels.range(b.longs, b.valid, lowest, highest, selection);
+				}
+			};
+		}
+
+		@Override
+		void collectEqualities(TalendFlowImpl flow, Map<TalendColumnImpl, Object> equalities) {
+			if(operator == Operator.EQ){
+				TalendColumnImpl col = resolve(flow, column);
+				Object key = convertKey(col, value);
+				if(key != null) equalities.put(col, key);
+			}
+		}
+
+		@Override
+		TalendPredicate negate() {
+			switch(operator){
+			case EQ:
+				return new Comparison(column, Operator.NE, value);
+			case NE:
+				return new Comparison(column, Operator.EQ, value);
+			case LT:
+				return new Comparison(column, Operator.GE, value);
+			case LE:
+				return new Comparison(column, Operator.GT, value);
+			case GT:
+				return new Comparison(column, Operator.LE, value);
+			default:
+				return new Comparison(column, Operator.LT, value);
+			}
+		}
+
+		@Override
+		public String toString(){
+			return column + " " + operator + " " + value;
+		}
+
+	}
+
+	/**
+	 * Membership of the value of a column to a set of constants, or its negation.<br />
+	 * Like SQL, a negated membership is never satisfied by null values, nor when any of the constants is null.
+	 */
+	private static final class In extends TalendPredicate {
+
+		private final String column;
+		private final Object[] values;
+		private final boolean negate;
+
+		In(String column, Object[] values, boolean negate){
+			this.column = column;
+			this.values = values.clone();
+			this.negate = negate;
+		}
+
+		private boolean hasNull(){
+			for(Object value : values){
+				if(value == null) return true;
+			}
+			return false;
+		}
+
+		@Override
+		TalendCondition compile(TalendFlowImpl flow) {
+			final TalendColumnImpl col = resolve(flow, column);
+			final Set<Object> keys = new HashSet<Object>();
+			for(Object value : values){
+				Object key = (value == null ? null : convertKey(col, value));
+				if(key != null) keys.add(TalendIndex.keyOf(key));
+			}
+			final boolean never = (negate && hasNull());
+			return new TalendCondition(){
+				public boolean test(TalendRowImpl row) {
+					Object key = TalendIndex.keyOf(col, row.value(col));
+					return key != null && !never && keys.contains(key) != negate;
+				}
+			};
+		}
+
+		@Override
+		boolean mayMatch(TalendFlowImpl flow, long block) {
+			TalendColumnImpl col = resolve(flow, column);
+			TalendColumnStatisticsImpl.Zone zone = zoneOf(flow, col, block);
+			if(zone == null) return true;
+			if(zone.values == 0) return false;
+			if(zone.min == null || negate) return true;
+			for(Object value : values){
+				Object operand = (value == null ? null : TalendIndex.keyOf(operand(col, value)));
+				if(operand == null) continue;
+				if(compare(zone.min, operand) <= 0 && compare(zone.max, operand) >= 0) return true;
+			}
+			return false;
+		}
+
+		@Override
+		TalendKernels.Filter vectorize(TalendFlowImpl flow) {
+			TalendColumnImpl col = resolve(flow, column);
+			final TalendColumnVector vector = flow.vectorOf(col);
+			if(vector == null) return null;
+			int n = 0;
+			final long[] longs = new long[values.length];
+			final double[] doubles = new double[values.length];
+			for(Object value : values){
+				Object constant = (value == null ? null : convertKey(col, value));
+				if(constant == null) continue;
+				if(vector.isFloating()) doubles[n++] = ((Number) constant).doubleValue();
+				else longs[n++] = TalendColumnVector.toLong(constant);
+			}
+			final long[] sortedLongs = Arrays.copyOf(longs, n);
+			final double[] sortedDoubles = Arrays.copyOf(doubles, n);
+			Arrays.sort(sortedLongs);
+			Arrays.sort(sortedDoubles);
+			final boolean never = (negate && hasNull());
+			return new TalendKernels.Filter(true){
+				void select(long block, long[] selection) {
+					TalendColumnVector.Block b = vector.block(block);
+					if(b == null || never){
+						Arrays.fill(selection, 0L);
+						return;
+					}
+					if(vector.isFloating()) TalendKernels.in(b.doubles, b.valid, sortedDoubles, selection);
+					else TalendKernels.in(b.longs, b.valid, sortedLongs, selection);
+					// null values are not members of the set, nor of its complement
+					if(negate){
+						for(int w = 0; w < selection.length; w++){
+							selection[w] = ~selection[w] & b.valid[w];
+						}
+					}
+				}
+			};
+		}
+
+		@Override
+		TalendPredicate negate() {
+			return new In(column, values, !negate);
+		}
+
+		@Override
+		public String toString(){
+			return column + (negate ? " NOT IN " : " IN ") + Arrays.toString(values);
+		}
+
+	}
+
+	/**
+	 * Check for missing values
+	 */
+	private static final class IsNull extends TalendPredicate {
+
+		private final String column;
+		private final boolean negate;
+
+		IsNull(String column, boolean negate){
+			this.column = column;
+			this.negate = negate;
+		}
+
+		@Override
+		TalendCondition compile(TalendFlowImpl flow) {
+			final TalendColumnImpl col = resolve(flow, column);
+			return new TalendCondition(){
+				public boolean test(TalendRowImpl row) {
+					TalendValue v = row.value(col);
+					return (v == null || (v instanceof TalendValueImpl && v.getValue() == null)) != negate;
+				}
+			};
+		}
+
+		@Override
+		boolean mayMatch(TalendFlowImpl flow, long block) {
+			TalendColumnStatisticsImpl.Zone zone = zoneOf(flow, resolve(flow, column), block);
+			return (zone == null || (negate ? zone.values : zone.nulls) > 0);
+		}
+
+		@Override
+		TalendKernels.Filter vectorize(TalendFlowImpl flow) {
+			final TalendColumnVector vector = flow.vectorOf(resolve(flow, column));
+			if(vector == null) return null;
+			return new TalendKernels.Filter(true){
+				void select(long block, long[] selection) {
+					TalendColumnVector.Block b = vector.block(block);
+					for(int w = 0; w < selection.length; w++){
+						long valid = (b == null ? 0L : b.valid[w]);
+						selection[w] = (negate ? valid : ~valid);
+					}
+				}
+			};
+		}
+
+		@Override
+		TalendPredicate negate() {
+			return new IsNull(column, !negate);
+		}
+
+		@Override
+		public String toString(){
+			return column + (negate ? " IS NOT NULL" : " IS NULL");
+		}
+
+	}
+
+	/**
+	 * Conjunction or disjunction of two predicates
+	 */
+	private static final class Junction extends TalendPredicate {
+
+		private final TalendPredicate left;
+		private final TalendPredicate right;
+		private final boolean conjunction;
+
+		Junction(TalendPredicate left, TalendPredicate right, boolean conjunction){
+			this.left = left;
+			this.right = right;
+			this.conjunction = conjunction;
+		}
+
+		@Override
+		TalendCondition compile(TalendFlowImpl flow) {
+			final TalendCondition l = left.compile(flow);
+			final TalendCondition r = right.compile(flow);
+			if(conjunction){
+				return new TalendCondition(){
+					public boolean test(TalendRowImpl row) {
+						return l.test(row) && r.test(row);
+					}
+				};
+			}
+			return new TalendCondition(){
+				public boolean test(TalendRowImpl row) {
+					return l.test(row) || r.test(row);
+				}
+			};
+		}
+
+		@Override
+		boolean mayMatch(TalendFlowImpl flow, long block) {
+			if(conjunction) return left.mayMatch(flow, block) && right.mayMatch(flow, block);
+			return left.mayMatch(flow, block) || right.mayMatch(flow, block);
+		}
+
+		@Override
+		TalendKernels.Filter vectorize(TalendFlowImpl flow) {
+			if(conjunction && left instanceof Comparison && right instanceof Comparison){
+				TalendKernels.Filter range = Comparison.range(flow, (Comparison) left, (Comparison) right);
+				if(range != null) return range;
+			}
+			final TalendKernels.Filter l = left.vectorize(flow);
+			final TalendKernels.Filter r = right.vectorize(flow);
+			if(l == null || r == null){
+				// rows selected by one side of a conjunction can still be tested against the other one
+				if(!conjunction) return null;
+				final TalendKernels.Filter half = (l != null ? l : r);
+				if(half == null) return null;
+				return new TalendKernels.Filter(false){
+					void select(long block, long[] selection) {
+						half.select(block, selection);
+					}
+				};
+			}
+			return new TalendKernels.Filter(l.exact && r.exact){
+				void select(long block, long[] selection) {
+					long[] other = new long[selection.length];
+					l.select(block, selection);
+					r.select(block, other);
+					for(int w = 0; w < selection.length; w++){
+						selection[w] = (conjunction ? selection[w] & other[w] : selection[w] | other[w]);
+					}
+				}
+			};
+		}
+
+		@Override
+		void collectEqualities(TalendFlowImpl flow, Map<TalendColumnImpl, Object> equalities) {
+			if(conjunction){
+				left.collectEqualities(flow, equalities);
+				right.collectEqualities(flow, equalities);
+			}
+		}
+
+		@Override
+		TalendPredicate negate() {
+			return new Junction(left.negate(), right.negate(), !conjunction);
+		}
+
+		@Override
+		public String toString(){
+			return "(" + left + (conjunction ? " AND " : " OR ") + right + ")";
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Iterator;
+
+/**
+ * A query is a lazy view over the committed rows of a flow matching some predicates, built using {@link TalendFlow#select(String...)}.<br />
+ * Like flows, queries are designed using the builder pattern: predicates given by many calls to {@link #where(TalendPredicate)} are all
+ * required to be satisfied, and {@link #limit(int)} sets the maximum number of rows returned.<br />
+ * Nothing is read from the flow until the query is iterated, and predicates are compiled against the flow every time it happens.
+ * When all the columns of an index of the flow (ie. the primary key) are compared for equality, rows are looked up in the index
+ * instead of scanning the whole flow.<br />
+ * Rows are always returned in the order they appear in the flow:<br />
+ * <pre>
+ * {@code
+ * TalendQuery query = flow.select("id", "amount").where(TalendPredicate.gt("amount", 1000));
+ * 
+ * // Read the matching rows of the original flow
+ * for(TalendRow row : query){
+ *     System.out.println(row.getValue("id"));
+ * }
+ * 
+ * // Save the projected columns of the matching rows to a new flow of the same model
+ * TalendFlow big = query.toFlow("bigAmounts");
+ * }
+ * </pre>
+ * Iterators and cursors over queries are fail-fast like the ones over flows.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendPredicate
+ *
+ */
+public interface TalendQuery extends Iterable<TalendRow> {
+
+	/**
+	 * Filter the rows using the given predicate, besides the ones already given
+	 * 
+	 * @param predicate the predicate the rows must satisfy
+	 * @return a reference to the query itself
+	 * @throws IllegalArgumentException if the predicate is null
+	 */
+	public TalendQuery where(TalendPredicate predicate);
+
+	/**
+	 * Set the maximum number of rows returned by the query
+	 * 
+	 * @param rows the maximum number of rows
+	 * @return a reference to the query itself
+	 * @throws IllegalArgumentException if the number of rows is negative
+	 */
+	public TalendQuery limit(int rows);
+
+	/**
+	 * Get the projected columns
+	 * 
+	 * @return an array with references to the columns of the queried flow
+	 */
+	public TalendColumn[] getColumns();
+
+	/**
+	 * Get the queried flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Return an iterator over the rows of the queried flow matching the query.<br />
+	 * Rows are not copied, so all their columns are available, not only the projected ones.
+	 * 
+	 * @return an iterator over rows
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow
+	 */
+	public Iterator<TalendRow> iterator();
+
+	/**
+	 * Open a cursor over the rows of the queried flow matching the query
+	 * 
+	 * @return a new cursor
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow
+	 * @see TalendRowCursor
+	 */
+	public TalendRowCursor cursor();
+
+	/**
+	 * Count the rows matching the query
+	 * 
+	 * @return the number of rows
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow
+	 */
+	public int count();
+
+	/**
+	 * Run the query and return the positions of the matching rows in the queried flow, in increasing order.<br />
+	 * The positions are a selection vector over the flow: no row is copied, and rows can be read later with {@link TalendFlow#getRow(int)}
+	 * as long as the flow is not modified. Saving them to a standalone flow is an explicit step left to {@link #toFlow(String)}.
+	 * 
+	 * @return a new array of positions
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow
+	 */
+	public int[] positions();
+
+	/**
+	 * Save the projected columns of the rows matching the query to a new flow of the same model.<br />
+	 * The new flow has no maximum size, doesn't support transactions and its columns have the same names, types, default values
+	 * and encodings of the projected ones. Values are copied without decoding them whenever possible.
+	 * 
+	 * @param name the name of the new flow
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if the predicates cannot be compiled against the flow, or a flow with the same name already exists in the model
+	 */
+	public TalendFlow toFlow(String name);
+
+}
@@ -0,0 +1,347 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a query and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#select(String...)} instead and interface with queries using {@link TalendQuery} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendQuery
+ */
+public class TalendQueryImpl implements TalendQuery {
+
+	/**
+	 * Orders rows by the time they were saved to their flow
+	 */
+	static final Comparator<TalendRowImpl> FLOW_ORDER = new Comparator<TalendRowImpl>(){
+		public int compare(TalendRowImpl a, TalendRowImpl b) {
+			return (a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1));
+		}
+	};
+
+	private final TalendFlowImpl flow;
+	private final TalendColumnImpl[] columns;
+	private TalendPredicate predicate;
+	private int limit;
+
+	/**
+	 * Build a query on all the rows of a flow
+	 * 
+	 * @param flow the flow to query
+	 * @param columns the projected columns
+	 */
+	TalendQueryImpl(TalendFlowImpl flow, TalendColumnImpl[] columns){
+		this.flow = flow;
+		this.columns = columns;
+		this.limit = -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendQuery where(TalendPredicate predicate) {
+		if(predicate == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "predicate"));
+		}
+		this.predicate = (this.predicate == null ? predicate : this.predicate.and(predicate));
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendQuery limit(int rows) {
+		if(rows < 0){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), rows));
+		}
+		this.limit = rows;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn[] getColumns() {
+		return columns.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Iterator<TalendRow> iterator() {
+		final Iterator<TalendRowImpl> rows = rowIterator();
+		return new Iterator<TalendRow>(){
+
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			public TalendRow next() {
+				return rows.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRowCursor cursor() {
+		return new TalendRowCursorImpl(flow, new Iterable<TalendRowImpl>(){
+			public Iterator<TalendRowImpl> iterator() {
+				return rowIterator();
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int count() {
+		return new ResultIterator().countRemaining();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int[] positions() {
+		Iterator<TalendRowImpl> rows = rowIterator();
+		int[] positions = new int[16];
+		int size = 0;
+		while(rows.hasNext()){
+			if(size == positions.length) positions = Arrays.copyOf(positions, size * 2);
+			positions[size++] = flow.positionOf(rows.next());
+		}
+		return Arrays.copyOf(positions, size);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		Iterator<TalendRowImpl> rows = rowIterator();
+		TalendFlowImpl dest = flow.newFlow(name, columns);
+		TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[columns.length]);
+		while(rows.hasNext()){
+			TalendFlowImpl.copyValues(rows.next(), columns, dest.newRow(), to);
+		}
+		return dest;
+	}
+
+	/**
+	 * Return a fail-fast iterator over the rows matching the query
+	 * 
+	 * @return an iterator over rows
+	 */
+	Iterator<TalendRowImpl> rowIterator(){
+		return new ResultIterator();
+	}
+
+	/**
+	 * Look up the rows matching the equalities of the query in the indexes of the flow
+	 * 
+	 * @return the candidate rows in flow order, or null if no index can be used and the whole flow must be scanned
+	 */
+	private TalendRowImpl[] lookup(){
+		if(predicate == null) return null;
+		Map<TalendColumnImpl, Object> equalities = new HashMap<TalendColumnImpl, Object>();
+		predicate.collectEqualities(flow, equalities);
+		if(equalities.isEmpty()) return null;
+
+		for(TalendIndex index : flow.getIndexes()){
+			TalendColumnImpl[] cols = index.getColumns();
+			Object[] values = new Object[cols.length];
+			boolean covered = true;
+			for(int i = 0; i < cols.length && covered; i++){
+				covered = equalities.containsKey(cols[i]);
+				values[i] = equalities.get(cols[i]);
+			}
+			if(!covered) continue;
+
+			List<TalendRowImpl> rows = index.get(index.keyOf(values));
+			TalendRowImpl[] found = rows.toArray(new TalendRowImpl[rows.size()]);
+			if(found.length > 1) Arrays.sort(found, FLOW_ORDER);
+			return found;
+		}
+		return null;
+	}
+
+	/**
+	 * Fail-fast iterator over the rows matching the query, either scanning the flow or the rows found in an index.<br />
+	 * When statistics are collected, scans skip the blocks of rows that cannot match the predicate of the query. When the predicate
+	 * can be compiled to kernels, scans select the matching rows of each block at once and only read the selected ones.
+	 */
+	private final class ResultIterator implements Iterator<TalendRowImpl> {
+
+		private final int expectedModCount;
+		private final TalendCondition condition;
+		private final TalendRowImpl[] candidates;
+		private final int end;
+		private final int max;
+		private final TalendPredicate filter;
+		private final TalendKernels.Filter kernel;
+		private final boolean skipping;
+		private final long firstSequence;
+		private final long[] selection;
+		private int nextBlock;
+		private int position;
+		private int returned;
+		private TalendRowImpl next;
+		private long blockPosition;
+		private int word;
+		private long bits;
+
+		ResultIterator(){
+			this.expectedModCount = flow.modCount();
+			this.condition = (predicate == null ? null : predicate.compile(flow));
+			this.candidates = lookup();
+			this.end = (candidates != null ? candidates.length : flow.countRows());
+			this.max = limit;
+			this.filter = predicate;
+			this.kernel = (candidates == null && filter != null && end > 0 ? filter.vectorize(flow) : null);
+			this.skipping = (candidates == null && filter != null && end > 0 && flow.hasStatistics());
+			this.firstSequence = ((skipping || kernel != null) ? flow.committedRow(0).sequence : 0);
+			this.selection = (kernel != null ? new long[TalendColumnVector.WORDS] : null);
+			this.word = TalendColumnVector.WORDS;
+		}
+
+		public boolean hasNext() {
+			if(next != null) return true;
+			if(max >= 0 && returned >= max) return false;
+			flow.checkForModification(expectedModCount);
+			if(kernel != null) return nextSelected();
+			while(position < end){
+				if(skipping && position == nextBlock){
+					long block = (firstSequence + position) >>> TalendColumnStatisticsImpl.BLOCK_SHIFT;
+					nextBlock = (int) Math.min(end, ((block + 1) << TalendColumnStatisticsImpl.BLOCK_SHIFT) - firstSequence);
+					if(!filter.mayMatch(flow, block)){
+						position = nextBlock;
+						continue;
+					}
+				}
+				TalendRowImpl row = (candidates != null ? candidates[position++] : flow.committedRow(position++));
+				if(condition == null || condition.test(row)){
+					next = row;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Find the next row selected by the kernels, selecting the rows of a block whenever the selection of the previous one is exhausted
+		 */
+		private boolean nextSelected(){
+			while(true){
+				while(bits == 0){
+					if(++word < TalendColumnVector.WORDS){
+						bits = selection[word];
+						continue;
+					}
+					if(!selectNextBlock()) return false;
+				}
+				int bit = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				TalendRowImpl row = flow.committedRow((int) (blockPosition + (word << 6) + bit));
+				if(kernel.exact || condition.test(row)){
+					next = row;
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Select the rows of the next block that may match the predicate
+		 * 
+		 * @return false if there are no more blocks
+		 */
+		private boolean selectNextBlock(){
+			while(position < end){
+				long block = (firstSequence + position) >>> TalendColumnStatisticsImpl.BLOCK_SHIFT;
+				int from = position;
+				position = (int) Math.min(end, ((block + 1) << TalendColumnStatisticsImpl.BLOCK_SHIFT) - firstSequence);
+				if(skipping && !filter.mayMatch(flow, block)) continue;
+				kernel.select(block, selection);
+				TalendKernels.clip(selection, block, firstSequence + from, firstSequence + end);
+				blockPosition = (block << TalendColumnStatisticsImpl.BLOCK_SHIFT) - firstSequence;
+				word = -1;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Count the rows left to return, without reading them when the kernels select them exactly
+		 * 
+		 * @return the number of rows
+		 */
+		int countRemaining(){
+			if(kernel == null || !kernel.exact || next != null || bits != 0){
+				int count = 0;
+				while(hasNext()){
+					next();
+					count++;
+				}
+				return count;
+			}
+			flow.checkForModification(expectedModCount);
+			long count = 0;
+			while(selectNextBlock()){
+				count += TalendKernels.count(selection);
+			}
+			return (int) (max >= 0 ? Math.min(count, max) : count);
+		}
+
+		public TalendRowImpl next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			TalendRowImpl row = next;
+			next = null;
+			returned++;
+			return row;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -15,6 +15,9 @@
     along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
  */
 package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.nio.ByteBuffer;
+
 /**
  * TalendRows are row-like structures that belong to TalendFlow elements and act as container of cell-like objects like TalendValue instances.<br />
  * This means that they are organized in OOP fashion (developers that uses ORM systems or graph-based databases
@@ -104,6 +107,27 @@ public interface TalendRow {
 	 */	
 	public Object getValue(String column);
 
+	/**
+	 * Return a read-only view of the bytes held by the column with given column name.<br />
+	 * No bytes are copied: for BYTE_ARRAY columns with {@link TalendEncoding#ARENA} encoding and STRING columns with {@link TalendEncoding#UTF8} encoding
+	 * the buffer is a slice of the chunk shared by the whole column, while for plain BYTE_ARRAY columns the buffer wraps the array held by the row.
+	 * 
+	 * @param column the name of the column from which retrieve the bytes
+	 * @return a read-only buffer whose position is zero and whose limit is the number of bytes, or null if no value is defined for the column
+	 * @throws IllegalArgumentException if no valid column is found in providing flow with given name or if the column doesn't hold bytes
+	 */
+	public ByteBuffer getByteBuffer(String column);
+
+	/**
+	 * Return a read-only view of the bytes held by the column at the given index.<br />
+	 * See {@link #getByteBuffer(String)} for details.
+	 * 
+	 * @param index the column index from which retrieve the bytes
+	 * @return a read-only buffer whose position is zero and whose limit is the number of bytes, or null if no value is defined for the column
+	 * @throws IllegalArgumentException if no valid column is found in providing flow at given index or if the column doesn't hold bytes
+	 */
+	public ByteBuffer getByteBuffer(int index);
+
 	/**
 	 * Set the value for the column with the given name.<br />
 	 * This method implements the builder design pattern: it returns a reference to current row so it's
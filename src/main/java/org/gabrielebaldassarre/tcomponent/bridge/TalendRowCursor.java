@@ -0,0 +1,189 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A cursor streams the committed rows of a flow one at a time, reading them directly from the storage of the flow.<br />
+ * It is positioned before the first row when it is built, and it is moved forward by {@link #next()}:<br />
+ * <pre>
+ * {@code
+ * // Assuming a valid TalendFlow instance in flow
+ * TalendRowCursor cursor = flow.cursor();
+ * 
+ * while(cursor.next()){
+ *     System.out.println(cursor.getPosition() + ": " + cursor.getRow());
+ * }
+ * }
+ * </pre>
+ * Cursors are fail-fast: if the flow is modified (ie. rows are committed or the flow is truncated) while the cursor is open,
+ * the next call to {@link #next()} throws a {@link java.util.ConcurrentModificationException}.<br />
+ * Scans that only read a few columns don't even need to get the rows: the cursor itself provides typed getters
+ * taking a column handle, which should be looked up once before the scan. A single cursor serves the whole scan and
+ * no object is allocated for each row, as long as values don't have to be decoded (ie. {@link TalendEncoding#UTF8} text):<br />
+ * <pre>
+ * {@code
+ * TalendColumn amount = flow.getColumn("amount");
+ * TalendRowCursor cursor = flow.cursor();
+ * long total = 0;
+ * 
+ * while(cursor.next()){
+ *     if(!cursor.isNull(amount)) total += cursor.getLong(amount);
+ * }
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#cursor()
+ *
+ */
+public interface TalendRowCursor {
+
+	/**
+	 * Move the cursor to the next row
+	 * 
+	 * @return true if the cursor is now positioned on a row, false if there are no more rows
+	 * @throws java.util.ConcurrentModificationException if the flow was modified since the cursor has been opened
+	 */
+	public boolean next();
+
+	/**
+	 * Get the row the cursor is positioned on
+	 * 
+	 * @return a reference to the row
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 */
+	public TalendRow getRow();
+
+	/**
+	 * Get the position of the current row in the flow
+	 * 
+	 * @return the position of the row, starting from zero, or -1 if the cursor has not been moved yet
+	 */
+	public int getPosition();
+
+	/**
+	 * Move the cursor back before the first row, so that it can be used for a new scan of the flow.<br />
+	 * Modifications made to the flow so far are accepted, and the cursor will fail only on the next ones.
+	 */
+	public void reset();
+
+	/**
+	 * Release the resources held by the cursor, ie. the temporary files of a sort not read until the end.
+	 * Once closed, a cursor over a sort has no more rows until it is reset. Cursors over flows and queries hold no resources.
+	 */
+	public void close();
+
+	/**
+	 * Get the value of a column of the current row
+	 * 
+	 * @param column the column handle
+	 * @return the value, or the default value of the column if none was set on the row
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 */
+	public TalendValue getTalendValue(TalendColumn column);
+
+	/**
+	 * Get the value of a column of the current row, as java type
+	 * 
+	 * @param column the column handle
+	 * @return the value, or null
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 */
+	public Object getValue(TalendColumn column);
+
+	/**
+	 * Check if a column of the current row has no value
+	 * 
+	 * @param column the column handle
+	 * @return true if the value is null, false otherwise
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 */
+	public boolean isNull(TalendColumn column);
+
+	/**
+	 * Get the value of a numeric column of the current row as a long.<br />
+	 * Values of any numeric type are widened or narrowed like java casts do.
+	 * 
+	 * @param column the column handle
+	 * @return the value
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 * @throws ClassCastException if the column is not numeric
+	 * @throws NullPointerException if the value is null
+	 */
+	public long getLong(TalendColumn column);
+
+	/**
+	 * Get the value of a numeric column of the current row as an int.<br />
+	 * Values of any numeric type are widened or narrowed like java casts do.
+	 * 
+	 * @param column the column handle
+	 * @return the value
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 * @throws ClassCastException if the column is not numeric
+	 * @throws NullPointerException if the value is null
+	 */
+	public int getInt(TalendColumn column);
+
+	/**
+	 * Get the value of a numeric column of the current row as a double.<br />
+	 * Values of any numeric type are widened or narrowed like java casts do.
+	 * 
+	 * @param column the column handle
+	 * @return the value
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 * @throws ClassCastException if the column is not numeric
+	 * @throws NullPointerException if the value is null
+	 */
+	public double getDouble(TalendColumn column);
+
+	/**
+	 * Get the value of a BOOLEAN column of the current row
+	 * 
+	 * @param column the column handle
+	 * @return the value
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 * @throws ClassCastException if the column is not a BOOLEAN one
+	 * @throws NullPointerException if the value is null
+	 */
+	public boolean getBoolean(TalendColumn column);
+
+	/**
+	 * Get the value of a STRING column of the current row
+	 * 
+	 * @param column the column handle
+	 * @return the value, or null
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow of the cursor
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 * @throws ClassCastException if the column is not a STRING one
+	 */
+	public String getString(TalendColumn column);
+
+	/**
+	 * Get the flow the cursor is reading from
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+}
@@ -0,0 +1,217 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a cursor and therefore should not be used in normal circumnstances.
+ * You should open cursors using {@link TalendFlow#cursor()} instead and interface with them using {@link TalendRowCursor} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendRowCursor
+ */
+public class TalendRowCursorImpl implements TalendRowCursor {
+
+	private final TalendFlowImpl flow;
+	private final Iterable<TalendRowImpl> source;
+	private Iterator<TalendRowImpl> rows;
+	private int expectedModCount;
+	private int size;
+	private TalendRowImpl current;
+	private int position;
+
+	/**
+	 * Build a cursor positioned before the first committed row of a flow
+	 * 
+	 * @param flow the flow to read from
+	 */
+	TalendRowCursorImpl(TalendFlowImpl flow){
+		this(flow, null);
+	}
+
+	/**
+	 * Build a cursor positioned before the first of some rows of a flow, ie. the results of a query
+	 * 
+	 * @param flow the flow the rows belong
+	 * @param source the rows to read, through fail-fast iterators
+	 */
+	TalendRowCursorImpl(TalendFlowImpl flow, Iterable<TalendRowImpl> source){
+		this.flow = flow;
+		this.source = source;
+		reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean next() {
+		if(rows != null){
+			current = (rows.hasNext() ? rows.next() : null);
+			if(current != null) position = flow.positionOf(current);
+			return current != null;
+		}
+		flow.checkForModification(expectedModCount);
+		if(position + 1 >= size){
+			position = size;
+			current = null;
+			return false;
+		}
+		current = flow.committedRow(++position);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		close();
+		expectedModCount = flow.modCount();
+		size = flow.countRows();
+		rows = (source == null ? null : source.iterator());
+		position = -1;
+		current = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() {
+		if(rows instanceof Closeable){
+			try {
+				((Closeable) rows).close();
+			} catch (IOException e) {
+				// sort iterators never fail to close
+			}
+		}
+		current = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRow getRow() {
+		return current();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendValue getTalendValue(TalendColumn column) {
+		return current().value(handle(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object getValue(TalendColumn column) {
+		TalendValue val = getTalendValue(column);
+		return (val == null ? null : val.getValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isNull(TalendColumn column) {
+		TalendValue val = getTalendValue(column);
+		return (val == null || (val instanceof TalendValueImpl && val.getValue() == null));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLong(TalendColumn column) {
+		return ((Number) getValue(column)).longValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getInt(TalendColumn column) {
+		return ((Number) getValue(column)).intValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getDouble(TalendColumn column) {
+		return ((Number) getValue(column)).doubleValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean getBoolean(TalendColumn column) {
+		return ((Boolean) getValue(column)).booleanValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getString(TalendColumn column) {
+		return (String) getValue(column);
+	}
+
+	/**
+	 * Get the row the cursor is positioned on
+	 * 
+	 * @return the row
+	 * @throws IllegalStateException if the cursor is not positioned on a row
+	 */
+	TalendRowImpl current(){
+		if(current == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.cursorNotPositioned"), flow.getName()));
+		}
+		return current;
+	}
+
+	/**
+	 * Check that a column handle belongs to the flow of the cursor
+	 * 
+	 * @param column the column handle
+	 * @return the column
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow, or has been removed from it
+	 */
+	TalendColumnImpl handle(TalendColumn column){
+		// removed columns no longer own their slot
+		if(!(column instanceof TalendColumnImpl) || column.getFlow() != flow || flow.columnAt(((TalendColumnImpl) column).slot) != column){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), (column == null ? null : column.getName()), flow.getName()));
+		}
+		return (TalendColumnImpl) column;
+	}
+
+}
@@ -17,6 +17,10 @@
 package org.gabrielebaldassarre.tcomponent.bridge;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -24,7 +28,13 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is the concrete implementation of a row and therefore should not be used in normal circumnstances.
- * You should build instances using {@link TalendRowFactory} instead and interface with flow using {@link TalendRow} interface.
+ * You should build instances using {@link TalendRowFactory} instead and interface with flow using {@link TalendRow} interface.<br />
+ * Rows only store the values that were explicitly set on them, in arrays indexed by the slot of their column, along with a bitmap
+ * telling which slots were set. Columns whose value was never set fall back to the column default, which is held only once by the column itself:
+ * the cost of building a row doesn't depend on the number of columns of the flow, but only on the number of values actually set.<br />
+ * Saved values can be read while another thread changes the row: both arrays are published together through a single volatile reference,
+ * and a slot is only marked as set in a new bitmap once its value has been written, so readers never take the row lock and always get
+ * either the previous or the new value of a column.
  * 
  * @author Gabriele Baldassarre
  * @see TalendRowFactory
@@ -34,21 +44,20 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 
 	private static final long serialVersionUID = 3990672272324520026L;
 	private TalendFlowImpl table;
-	private Map<TalendColumnImpl, TalendValue> valueMap;
-	private Map<TalendColumnImpl, TalendValue> valueDraft;
+	private volatile Saved saved;
+	private TalendValue[] draft;
+	private long[] drafted;
 	private boolean autosave;
 	public boolean presentInTable;
+	long sequence;
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public TalendRowImpl(TalendFlowImpl table, boolean autosave){
 		this.table = table;
-		this.valueMap = new ConcurrentHashMap<TalendColumnImpl, TalendValue>(table.countColumns());
-		this.valueDraft = new ConcurrentHashMap<TalendColumnImpl, TalendValue>(table.countColumns());
 		this.autosave = autosave;
 		this.presentInTable = !table.supportsTransactions();
-		init();
 	}
 
 	/**
@@ -62,43 +71,42 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public TalendValue getTalendValue(int index) throws IllegalArgumentException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		if(table.countColumns() < index){
+		TalendColumnImpl col = table.getColumn(index);
+		if(col == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidIndex"), table.getName(), index));
 		}
-		return valueMap.get(table.getColumn(index));
+		return value(col);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public TalendValue getTalendValue(String column) throws IllegalArgumentException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		if(table.getColumn(column) == null){
+		TalendColumnImpl col = (TalendColumnImpl) table.getColumn(column);
+		if(col == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), column, table.getName()));
 		}
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : valueMap.entrySet()){
-			if(item.getKey().getName().equals(column)) return item.getValue();
-		}
-		return null;
+		return value(col);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public TalendValue[] getTalendValues() {
-		return valueMap.values().toArray(new TalendValue[valueMap.size()]);
+		List<TalendValue> list = new ArrayList<TalendValue>(table.countColumns());
+		for(TalendColumnImpl col : table.columnsList){
+			TalendValue val = value(col);
+			if(val != null) list.add(val);
+		}
+		return list.toArray(new TalendValue[list.size()]);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public Object getValue(int index) throws IllegalArgumentException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		TalendColumn col = table.getColumn(index);
-		if(col == null){
-			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidIndex"), table.getName(), index));
-		}
 		TalendValue val = getTalendValue(index);
 		return (val == null ? null : val.getValue());
 	}
@@ -107,23 +115,44 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public Object getValue(String column) throws IllegalArgumentException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		if(table.getColumn(column) == null){
-			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), column, table.getName()));
-		}
 		TalendValue val = getTalendValue(column);
 		return (val == null ? null : val.getValue());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer getByteBuffer(String column) throws IllegalArgumentException {
+		return asByteBuffer(table.getColumn(column), getTalendValue(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer getByteBuffer(int index) throws IllegalArgumentException {
+		return asByteBuffer(table.getColumn(index), getTalendValue(index));
+	}
+
+	private ByteBuffer asByteBuffer(TalendColumn column, TalendValue value){
+		if(value instanceof TalendArenaValue) return ((TalendArenaValue) value).asByteBuffer();
+		if(column.getType() != TalendType.BYTE_ARRAY && column.getEncoding() != TalendEncoding.UTF8){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.notBinaryColumn"), column.getName(), table.getName()));
+		}
+		if(value == null || value.getValue() == null) return null;
+		return ByteBuffer.wrap((byte[]) value.getValue()).asReadOnlyBuffer();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public TalendRow setValue(String column, Object value, boolean save) {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		if(table.getColumn(column) == null){
+		TalendColumn col = table.getColumn(column);
+		if(col == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), column, table.getName()));
 		}
-		setValue(table.getColumn(column), value,save);
+		setValue(col, value, save);
 		return this;
 	}
 
@@ -131,9 +160,9 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public TalendRow setValue(int index, Object value, boolean save) throws IllegalArgumentException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 		TalendColumn col = table.getColumn(index);
 		if(col == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidIndex"), table.getName(), index));
 		}
 		setValue(col, value, save);
@@ -165,51 +194,204 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public int countValues() {
-		return valueMap.size();
+		int count = 0;
+		for(TalendColumnImpl col : table.columnsList){
+			if(value(col) != null) count++;
+		}
+		return count;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public boolean isEmpty() {
-		return valueMap.isEmpty();
+		return countValues() == 0;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	public void truncate() {
-		init();
+	public synchronized void truncate() {
+		saved = null;
+		draft = null;
+		drafted = null;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public synchronized TalendRow setValue(TalendValue value, boolean save) throws IllegalStateException {
-		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
-		if(table.getColumn(value.getColumn()) == null){
+		TalendColumnImpl col = table.getColumn(value.getColumn());
+		if(col == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidColumn"), value.getColumn(), table.getName()));
 		}
+
+		if(col.derivation != null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.derivedColumn"), col.getName(), table.getName()));
+		}
 		
-		TalendColumnImpl col = table.getColumn(value.getColumn());
-		
-		TalendValueImpl val = new TalendValueImpl(col, value.getValue());
+		TalendValue val = col.newValue(value);
+		if(val instanceof TalendValueImpl && val.getValue() == null) val = null;
+
 		if(save == true){
-			mapValues(valueMap, col, val);
+			store(col.slot, val);
 		} else {
-			mapValues(valueDraft, col, val);
+			stage(col.slot, val);
 		}
 		
 		return this;
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Return the value of the given column, as saved to this row.<br />
+	 * If no value was explicitly set for the column, the value of a derived column is computed from its expression,
+	 * while the default value is returned for any other column.
+	 * 
+	 * @param column the column to get the value of
+	 * @return the value or null if the column has no value
+	 */
+	TalendValue value(TalendColumnImpl column){
+		int slot = column.slot;
+		Saved s = saved;
+		if(s != null && isSet(s.present, slot)) return s.values[slot];
+		if(column.derivation != null) return column.derive(this);
+		return column.getDefaultTalendValue();
+	}
+
+	/**
+	 * Return the value of the given column as it will be once the pending changes of this row are saved
+	 * 
+	 * @param column the column to get the value of
+	 * @return the value or null if the column has no value
+	 */
+	TalendValue pending(TalendColumnImpl column){
+		int slot = column.slot;
+		if(isSet(drafted, slot)) return draft[slot];
+		return value(column);
+	}
+
+	/**
+	 * Set the value of a column, bypassing any check and conversion.<br />
+	 * This is used to fill rows built by the flow itself, like query results.
+	 * 
+	 * @param column the column of this row's flow
+	 * @param value the value, already belonging to the column, or null
 	 */
-	private void init(){
-		for(TalendColumnImpl col : table.getColumns()){
-			setValue(new TalendValueImpl(col, col.getDefaultValue()), true);
+	synchronized void put(TalendColumnImpl column, TalendValue value){
+		store(column.slot, value);
+	}
+
+	/**
+	 * Stage the value of a column among the pending changes of this row, bypassing any check and conversion.<br />
+	 * This is used by the flow itself to change rows within a transaction, like upserts do.
+	 * 
+	 * @param column the column of this row's flow
+	 * @param value the value, already belonging to the column, or null
+	 */
+	synchronized void putPending(TalendColumnImpl column, TalendValue value){
+		stage(column.slot, value);
+	}
+
+	/**
+	 * Check if the value of a column is among the pending changes of this row
+	 * 
+	 * @param column the column of this row's flow
+	 * @return true if a value is staged for the column
+	 */
+	synchronized boolean isPending(TalendColumnImpl column){
+		return isSet(drafted, column.slot);
+	}
+
+	/**
+	 * Save the pending change of a single column, leaving the other ones pending
+	 * 
+	 * @param column the column of this row's flow
+	 */
+	synchronized void savePending(TalendColumnImpl column){
+		int slot = column.slot;
+		if(!isSet(drafted, slot)) return;
+		TalendValue value = draft[slot];
+		unstage(slot);
+		store(slot, value);
+	}
+
+	/**
+	 * Discard the pending change of a single column, leaving the other ones pending
+	 * 
+	 * @param column the column of this row's flow
+	 */
+	synchronized void discardPending(TalendColumnImpl column){
+		if(isSet(drafted, column.slot)) unstage(column.slot);
+	}
+
+	/**
+	 * Encode again the values of a dictionary-encoded column, both saved and pending, after its dictionary has been reset
+	 * 
+	 * @param column the column of this row's flow
+	 */
+	synchronized void encodeAgain(TalendColumnImpl column){
+		int slot = column.slot;
+		if(isSet(drafted, slot) && draft[slot] instanceof TalendValueImpl){
+			draft[slot] = column.newValue(draft[slot].getValue());
 		}
+		Saved s = saved;
+		if(s != null && isSet(s.present, slot) && s.values[slot] instanceof TalendValueImpl){
+			store(slot, column.newValue(s.values[slot].getValue()));
+		}
+	}
+
+	private void unstage(int slot){
+		draft[slot] = null;
+		drafted[slot >>> 6] &= ~(1L << slot);
+		for(long word : drafted){
+			if(word != 0) return;
+		}
+		draft = null;
+		drafted = null;
+	}
+
+	private static boolean isSet(long[] bits, int slot){
+		return bits != null && (slot >>> 6) < bits.length && (bits[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	private void store(int slot, TalendValue value){
+		TalendColumnImpl column = null;
+		TalendValue previous = null;
+		if(presentInTable && table.isTracked()){
+			column = table.columnAt(slot);
+			if(column != null) previous = value(column);
+		}
+		Saved s = saved;
+		if(s == null || slot >= s.values.length){
+			int size = Math.max(table.countSlots(), slot + 1);
+			TalendValue[] values = (s == null ? new TalendValue[size] : Arrays.copyOf(s.values, size));
+			long[] present = (s == null ? new long[(size + 63) >>> 6] : Arrays.copyOf(s.present, (size + 63) >>> 6));
+			values[slot] = value;
+			present[slot >>> 6] |= 1L << slot;
+			saved = new Saved(values, present);
+		} else if(isSet(s.present, slot)){
+			s.values[slot] = value;
+			saved = s;
+		} else {
+			// the value is written before the bitmap marking it as set is published
+			s.values[slot] = value;
+			long[] present = s.present.clone();
+			present[slot >>> 6] |= 1L << slot;
+			saved = new Saved(s.values, present);
+		}
+		if(column != null) table.rowUpdated(this, column, previous);
+	}
+
+	private void stage(int slot, TalendValue value){
+		if(draft == null || slot >= draft.length){
+			int size = Math.max(table.countSlots(), slot + 1);
+			draft = (draft == null ? new TalendValue[size] : Arrays.copyOf(draft, size));
+			drafted = (drafted == null ? new long[(size + 63) >>> 6] : Arrays.copyOf(drafted, (size + 63) >>> 6));
+		}
+		draft[slot] = value;
+		drafted[slot >>> 6] |= 1L << slot;
 	}
 
 	/**
@@ -218,8 +400,10 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	public String toString(){
 		String values = "{TalendRow flow=" + table.getName();
 
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : valueMap.entrySet()){
-			values += ", " + item.getKey().getName() + "=" + (item.getValue().getValue() != null && item.getKey().getType() == TalendType.STRING ? "\'" : "") + item.getValue().getValue() + (item.getValue().getValue() != null && item.getKey().getType() == TalendType.STRING ? "\'" : "") + " (" + item.getKey().getType() + (item.getKey().isKey() == true ? " - PK" : "") + ")";
+		for(TalendColumnImpl col : table.columnsList){
+			TalendValue val = value(col);
+			if(val == null) continue;
+			values += ", " + col.getName() + "=" + (col.getType() == TalendType.STRING ? "\'" : "") + val.getValue() + (col.getType() == TalendType.STRING ? "\'" : "") + " (" + col.getType() + (col.isKey() == true ? " - PK" : "") + ")";
 		}
 		values += "}";
 		return values;
@@ -229,8 +413,19 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	/**
 	 * {@inheritDoc}
 	 */
-	public void removeColumn(TalendColumnImpl column){
-		valueMap.remove(column);
+	public synchronized void removeColumn(TalendColumnImpl column){
+		int slot = column.slot;
+		Saved s = saved;
+		if(s != null && isSet(s.present, slot)){
+			long[] present = s.present.clone();
+			present[slot >>> 6] &= ~(1L << slot);
+			saved = new Saved(s.values, present);
+			s.values[slot] = null;
+		}
+		if(isSet(drafted, slot)){
+			draft[slot] = null;
+			drafted[slot >>> 6] &= ~(1L << slot);
+		}
 	}
 
 	/**
@@ -244,7 +439,7 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	/**
 	 * {@inheritDoc}
 	 */
-	public TalendRow save() {
+	public synchronized TalendRow save() {
 		if(autosave == true) return this;
 
 		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
@@ -253,10 +448,13 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.cannotSaveRow"), table.getName()));
 		}
 		
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : valueDraft.entrySet()){
-			mapValues(valueMap, item.getKey(), item.getValue());
+		if(drafted != null){
+			for(int slot = 0; slot < draft.length; slot++){
+				if(isSet(drafted, slot)) store(slot, draft[slot]);
+			}
 		}
-		valueDraft.clear();
+		draft = null;
+		drafted = null;
 		return this;
 	}
 
@@ -264,14 +462,15 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public boolean isChanged() {
-		return autosave == true ? false : (valueDraft.size() > 0 ? true : false);
+		return autosave == true ? false : (drafted != null ? true : false);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	public void discardChanges() {
-		valueDraft.clear();
+	public synchronized void discardChanges() {
+		draft = null;
+		drafted = null;
 		
 	}
 
@@ -302,14 +501,6 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	public TalendRow setValue(TalendValue value) {
 		return setValue(value, this.autosave);
 	}
-	
-	private void mapValues(Map<TalendColumnImpl, TalendValue> valueMap, TalendColumnImpl key, TalendValue value){
-		if(value.getValue() == null){
-			valueMap.remove(key);
-		} else {
-			valueMap.put(key,  value);
-		}
-	}
 
 	/**
 	 * {@inheritDoc}
@@ -324,15 +515,13 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	public Map<TalendColumn, TalendValue> getKeySet(){
 		
 		Map<TalendColumn, TalendValue> keycolumnbuffer = new ConcurrentHashMap<TalendColumn, TalendValue>();
+		if(table.keyList == null) return keycolumnbuffer;
 		
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : valueMap.entrySet()){
-			if(item.getKey().isKey() && item.getValue().getValue() != null) keycolumnbuffer.put(item.getKey(), item.getValue());
+		for(TalendColumnImpl col : table.keyList){
+			TalendValue val = (isSet(drafted, col.slot) ? draft[col.slot] : value(col));
+			if(val != null && val.getValue() != null) keycolumnbuffer.put(col, val);
 		}
 
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : valueDraft.entrySet()){
-			if(item.getKey().isKey() && item.getValue().getValue() != null) keycolumnbuffer.put(item.getKey(), item.getValue());
-		}		
-
 		return keycolumnbuffer;
 	}
 	
@@ -340,14 +529,39 @@ public class TalendRowImpl implements Serializable, TalendRow, TalendBehaviourab
 	 * {@inheritDoc}
 	 */
 	public TalendRow clone(){
-		TalendRow cloned = table.getFactory().newRow(table);
+		TalendRowImpl cloned = (TalendRowImpl) table.getFactory().newRow(table);
+		Saved s = saved;
 		
-		Map<TalendColumnImpl, TalendValue> clonedValues = new ConcurrentHashMap<TalendColumnImpl, TalendValue>(valueMap);
-		clonedValues.putAll(valueDraft);
-		
-		for(Map.Entry<TalendColumnImpl, TalendValue> item : clonedValues.entrySet()){
-			cloned.setValue(item.getValue());
+		for(TalendColumnImpl col : table.columnsList){
+			TalendValue val;
+			if(isSet(drafted, col.slot)){
+				val = draft[col.slot];
+			} else if(s != null && isSet(s.present, col.slot)){
+				val = s.values[col.slot];
+			} else continue;
+			if(col.derivation != null){
+				cloned.put(col, val);
+				continue;
+			}
+			cloned.setValue(val != null ? val : col.newValue((Object) null), cloned.autosave);
 		}
 		return cloned;
 	}
+
+	/**
+	 * The values saved to a row, along with the bitmap telling which slots were set.<br />
+	 * Instances are replaced as a whole whenever the bitmap changes, while values of slots already set are overwritten in place.
+	 */
+	private static final class Saved implements Serializable {
+
+		private static final long serialVersionUID = -3218733452296143716L;
+		final TalendValue[] values;
+		final long[] present;
+
+		Saved(TalendValue[] values, long[] present){
+			this.values = values;
+			this.present = present;
+		}
+
+	}
 }
@@ -0,0 +1,47 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over rows that may hold resources, like the temporary files of a sort, until it is read to the end.<br />
+ * Iterators that are abandoned before their end should be closed, preferably using a try-with-resources statement:<br />
+ * <pre>
+ * {@code
+ * try(TalendRowIterator rows = flow.sort(new String[]{"amount"}, new TalendSortOrder[]{TalendSortOrder.DESCENDING}).iterator()){
+ *     for(int i = 0; i < 10 && rows.hasNext(); i++){
+ *         System.out.println(rows.next());
+ *     }
+ * }
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendSort#iterator()
+ *
+ */
+public interface TalendRowIterator extends Iterator<TalendRow>, Closeable {
+
+	/**
+	 * Release the resources held by the iterator. Once closed, the iterator has no more rows.<br />
+	 * Closing an iterator twice has no effect.
+	 */
+	public void close();
+
+}
@@ -0,0 +1,116 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A sampling selects a uniform random subset of the committed rows of a flow, built using {@link TalendFlow#sample()}.<br />
+ * Two modes are available:<br />
+ * <ul>
+ * <li><b>Reservoir sampling</b> selects exactly a given number of rows, or all of them if the flow is smaller, each row having the same
+ * probability of being selected. Rows are read in a single pass and only the positions of the selected rows are kept in memory.
+ * The sample can be stratified by the values of a column, selecting the given number of rows for each of its values.
+ * This is the default mode, with samples of {@value #DEFAULT_SIZE} rows.</li>
+ * <li><b>Bernoulli sampling</b> selects each row independently with a given probability, so the size of the sample is only known on average.
+ * The decision about each row only depends on the seed and on the position of the row, so rows are split among many threads
+ * and the sample is the same whatever the number of threads is.</li>
+ * </ul>
+ * Without a seed, each sampling selects different rows. Example of use:<br />
+ * <pre>
+ * {@code
+ * // 500 orders for each country, always the same ones
+ * TalendFlow profile = orders.sample().reservoir(500).stratifyBy("country").setSeed(42L).toFlow("ordersSample");
+ * 
+ * // About one order out of 1000
+ * TalendFlow sparse = orders.sample().bernoulli(0.001).toFlow("sparseOrders");
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ *
+ */
+public interface TalendSampling {
+
+	/**
+	 * Default number of rows of reservoir samples
+	 */
+	public static final int DEFAULT_SIZE = 1000;
+
+	/**
+	 * Use reservoir sampling, selecting the given number of rows, for each stratum if the sample is stratified
+	 * 
+	 * @param size the number of rows to select
+	 * @return a reference to the sampling itself
+	 * @throws IllegalArgumentException if the size is less than one
+	 */
+	public TalendSampling reservoir(int size);
+
+	/**
+	 * Use Bernoulli sampling, selecting each row with the given probability
+	 * 
+	 * @param fraction the probability of each row to be selected, between 0 and 1
+	 * @return a reference to the sampling itself
+	 * @throws IllegalArgumentException if the fraction is not between 0 and 1
+	 */
+	public TalendSampling bernoulli(double fraction);
+
+	/**
+	 * Sample the rows sharing each value of a column on their own. This only applies to reservoir sampling:
+	 * Bernoulli samples select each row independently and cannot be stratified.
+	 * 
+	 * @param column the name of the column
+	 * @return a reference to the sampling itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow
+	 */
+	public TalendSampling stratifyBy(String column);
+
+	/**
+	 * Set the seed of the random numbers, so that samples of the same rows are always the same
+	 * 
+	 * @param seed the seed, or null to select different rows each time
+	 * @return a reference to the sampling itself
+	 */
+	public TalendSampling setSeed(Long seed);
+
+	/**
+	 * Set the maximum number of threads used by Bernoulli sampling. The default is the number of available processors.
+	 * 
+	 * @param threads the maximum number of threads
+	 * @return a reference to the sampling itself
+	 * @throws IllegalArgumentException if the number of threads is less than one
+	 */
+	public TalendSampling setParallelism(int threads);
+
+	/**
+	 * Get the sampled flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Select the rows and copy them into a new flow in the same model, in the same order they have in the sampled flow.<br />
+	 * The new flow has the same columns of this one, a maximum size equal to the number of selected rows and doesn't support transactions.
+	 * 
+	 * @param name the name of the new flow
+	 * @return the new flow
+	 * @throws IllegalArgumentException if the name is not valid or a flow with the same name already exists in the model
+	 * @throws IllegalStateException if a Bernoulli sample is stratified
+	 * @throws java.util.ConcurrentModificationException if the flow is modified while reading it
+	 */
+	public TalendFlow toFlow(String name);
+
+}
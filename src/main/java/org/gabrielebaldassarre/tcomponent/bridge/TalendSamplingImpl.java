@@ -0,0 +1,322 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+
+/**
+ * This is the concrete implementation of a sampling and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#sample()} instead and interface with samplings using {@link TalendSampling} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendSampling
+ */
+public class TalendSamplingImpl implements TalendSampling {
+
+	private final TalendFlowImpl flow;
+	private int size;
+	private Double fraction;
+	private TalendColumnImpl stratum;
+	private Long seed;
+	private int parallelism;
+
+	/**
+	 * Build a sampling of all the rows of a flow
+	 * 
+	 * @param flow the flow to sample
+	 */
+	TalendSamplingImpl(TalendFlowImpl flow){
+		this.flow = flow;
+		this.size = DEFAULT_SIZE;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling reservoir(int size) {
+		if(size < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), size));
+		}
+		this.size = size;
+		this.fraction = null;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling bernoulli(double fraction) {
+		if(!(fraction >= 0 && fraction <= 1)){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidFraction"), fraction));
+		}
+		this.fraction = fraction;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling stratifyBy(String column) {
+		this.stratum = TalendPredicate.resolve(flow, column);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling setSeed(Long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSampling setParallelism(int threads) {
+		if(threads < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), threads));
+		}
+		this.parallelism = threads;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		if(fraction != null && stratum != null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.stratifiedBernoulli"), flow.getName()));
+		}
+		int expectedModCount = flow.modCount();
+		Random random = (seed == null ? new Random() : new Random(seed));
+		int[] positions = (fraction == null ? reservoir(random) : bernoulli(random.nextLong()));
+		flow.checkForModification(expectedModCount);
+
+		TalendColumnImpl[] from = flow.columnsList.toArray(new TalendColumnImpl[flow.columnsList.size()]);
+		TalendFlowImpl dest = flow.newFlow(name, from, Math.max(1, positions.length));
+		TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[from.length]);
+		for(int position : positions){
+			TalendFlowImpl.copyValues(flow.committedRow(position), from, dest.newRow(), to);
+		}
+		return dest;
+	}
+
+	/**
+	 * Select the positions of a reservoir sample
+	 * 
+	 * @return the positions, in ascending order
+	 */
+	private int[] reservoir(Random random){
+		int rows = flow.countRows();
+		if(stratum == null){
+			// without strata the positions to read are known in advance, so skipped rows are not even read
+			Reservoir reservoir = new Reservoir(random);
+			for(long i = 0; i < rows; i = reservoir.next()){
+				reservoir.offer((int) i);
+			}
+			return reservoir.positions();
+		}
+
+		Map<Object, Reservoir> strata = new HashMap<Object, Reservoir>();
+		Object lastKey = null;
+		Reservoir last = null;
+		for(int i = 0; i < rows; i++){
+			Object key = TalendIndex.keyOf(stratum, flow.committedRow(i).value(stratum));
+			if(last == null || !(key == null ? lastKey == null : key.equals(lastKey))){
+				last = strata.get(key);
+				if(last == null){
+					last = new Reservoir(random);
+					strata.put(key, last);
+				}
+				lastKey = key;
+			}
+			if(last.next() == last.count()){
+				last.offer(i);
+			} else {
+				last.skip();
+			}
+		}
+		int total = 0;
+		for(Reservoir r : strata.values()){
+			total += r.size;
+		}
+		int[] positions = new int[total];
+		int k = 0;
+		for(Reservoir r : strata.values()){
+			System.arraycopy(r.positions, 0, positions, k, r.size);
+			k += r.size;
+		}
+		Arrays.sort(positions);
+		return positions;
+	}
+
+	/**
+	 * Select the positions of a Bernoulli sample
+	 * 
+	 * @return the positions, in ascending order
+	 */
+	private int[] bernoulli(final long salt){
+		final int rows = flow.countRows();
+		final int threads = TalendWorkers.countThreads(rows, parallelism);
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(threads);
+		for(int t = 0; t < threads; t++){
+			final int from = TalendWorkers.from(rows, threads, t);
+			final int to = TalendWorkers.from(rows, threads, t + 1);
+			tasks.add(new Callable<int[]>(){
+				public int[] call() {
+					int[] selected = new int[16];
+					int n = 0;
+					for(int i = from; i < to; i++){
+						if(uniform(salt, i) >= fraction) continue;
+						if(n == selected.length) selected = Arrays.copyOf(selected, n * 2);
+						selected[n++] = i;
+					}
+					return Arrays.copyOf(selected, n);
+				}
+			});
+		}
+		List<int[]> results = TalendWorkers.invokeAll(tasks);
+		int total = 0;
+		for(int[] r : results){
+			total += r.length;
+		}
+		int[] positions = new int[total];
+		int k = 0;
+		for(int[] r : results){
+			System.arraycopy(r, 0, positions, k, r.length);
+			k += r.length;
+		}
+		return positions;
+	}
+
+	/**
+	 * Get a pseudo-random number between 0 included and 1 excluded, only depending on a salt and on a position
+	 * 
+	 * @param salt the salt
+	 * @param position the position
+	 * @return a uniformly distributed number
+	 */
+	static double uniform(long salt, long position){
+		long z = salt + position * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * A reservoir of row positions, using the skips of Li's algorithm L so that random numbers are only drawn
+	 * for the rows entering the reservoir
+	 */
+	private final class Reservoir {
+
+		private final Random random;
+		private int[] positions;
+		private int size;
+		private long count;
+		private long next;
+		private double w;
+
+		Reservoir(Random random){
+			this.random = random;
+			this.positions = new int[Math.min(TalendSamplingImpl.this.size, 16)];
+		}
+
+		/**
+		 * Get the number of rows offered or skipped so far
+		 */
+		long count(){
+			return count;
+		}
+
+		/**
+		 * Get the number of rows to offer or skip before the next one entering the reservoir
+		 */
+		long next(){
+			return (size < TalendSamplingImpl.this.size ? count : next);
+		}
+
+		/**
+		 * Put a row into the reservoir. Rows skipped before it must have been counted.
+		 */
+		void offer(int position){
+			int capacity = TalendSamplingImpl.this.size;
+			if(size < capacity){
+				if(size == positions.length) positions = Arrays.copyOf(positions, (int) Math.min(capacity, positions.length * 2L));
+				positions[size++] = position;
+				count++;
+				if(size == capacity){
+					w = Math.exp(Math.log(nextDouble()) / capacity);
+					next = count + gap();
+				}
+				return;
+			}
+			positions[random.nextInt(capacity)] = position;
+			count = next + 1;
+			w *= Math.exp(Math.log(nextDouble()) / capacity);
+			next = count + gap();
+		}
+
+		/**
+		 * Count a row not entering the reservoir
+		 */
+		void skip(){
+			count++;
+		}
+
+		/**
+		 * Get the positions held by the reservoir, in ascending order
+		 */
+		int[] positions(){
+			int[] result = Arrays.copyOf(positions, size);
+			Arrays.sort(result);
+			return result;
+		}
+
+		private long gap(){
+			double gap = Math.floor(Math.log(nextDouble()) / Math.log(1 - w));
+			return (gap >= 0 && gap < Long.MAX_VALUE / 2 ? (long) gap : Long.MAX_VALUE / 2);
+		}
+
+		private double nextDouble(){
+			// never zero, so that logarithms are finite
+			return 1 - random.nextDouble();
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A sort is a lazy view over the committed rows of a flow ordered by the values of some columns, built using
+ * {@link TalendFlow#sort(String[], TalendSortOrder[])}.<br />
+ * Rows are sorted every time the sort is iterated. Sorting is stable: rows with equal keys keep the order they have in the flow.<br />
+ * Only the sort keys are held in memory, in runs of at most {@link #setMaximumRows(Integer)} rows: each run is sorted on its own,
+ * using a radix sort when the flow is sorted by a single numeric or DATE column, and then spilled to a temporary file in a compact
+ * binary format. Runs are finally merged while the rows are returned, so flows much larger than the sort budget can be sorted
+ * using a bounded amount of memory:<br />
+ * <pre>
+ * {@code
+ * TalendSort sorted = flow.sort(new String[]{"country", "amount"}, new TalendSortOrder[]{TalendSortOrder.ASCENDING, TalendSortOrder.DESCENDING});
+ * 
+ * // Stream the rows of the original flow in order
+ * for(TalendRow row : sorted){
+ *     System.out.println(row.getValue("amount"));
+ * }
+ * 
+ * // Save a sorted copy of the flow
+ * TalendFlow copy = sorted.toFlow("sortedFlow");
+ * }
+ * </pre>
+ * Iterators and cursors over sorts are fail-fast like the ones over flows. Temporary files are deleted as soon as the rows are
+ * read until the end or the iterator fails: iterators and cursors abandoned before should be closed, or their files are only
+ * deleted when the JVM exits.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendSortOrder
+ *
+ */
+public interface TalendSort extends Iterable<TalendRow> {
+
+	/**
+	 * Set the maximum number of rows whose keys are sorted in memory at once.
+	 * 
+	 * @param rows the maximum number of rows, or null to always sort the whole flow in memory
+	 * @return a reference to the sort itself
+	 * @throws IllegalArgumentException if the number of rows is not positive
+	 */
+	public TalendSort setMaximumRows(Integer rows);
+
+	/**
+	 * Get the sorted flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Get the columns the rows are sorted by
+	 * 
+	 * @return an array with references to the columns of the sorted flow
+	 */
+	public TalendColumn[] getColumns();
+
+	/**
+	 * Get the directions the columns are sorted in
+	 * 
+	 * @return an array with the directions, in the same order of the columns
+	 */
+	public TalendSortOrder[] getOrders();
+
+	/**
+	 * Return an iterator over the committed rows of the flow in sorted order.<br />
+	 * Rows are not copied. The iterator should be closed if it is not read until the end.
+	 * 
+	 * @return an iterator over rows
+	 * @throws IllegalStateException if sort keys cannot be spilled to disk
+	 */
+	public TalendRowIterator iterator();
+
+	/**
+	 * Open a cursor over the committed rows of the flow in sorted order.<br />
+	 * The cursor should be closed if it is not read until the end.
+	 * 
+	 * @return a new cursor
+	 * @throws IllegalStateException if sort keys cannot be spilled to disk
+	 * @see TalendRowCursor
+	 */
+	public TalendRowCursor cursor();
+
+	/**
+	 * Save a sorted copy of the flow to a new flow of the same model.<br />
+	 * The new flow has no maximum size, doesn't support transactions and its columns have the same names, types, default values
+	 * and encodings of the sorted one.
+	 * 
+	 * @param name the name of the new flow
+	 * @return a reference to the new flow
+	 * @throws IllegalArgumentException if a flow with the same name already exists in the model
+	 * @throws IllegalStateException if sort keys cannot be spilled to disk
+	 */
+	public TalendFlow toFlow(String name);
+
+}
@@ -0,0 +1,570 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a sort and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#sort(String[], TalendSortOrder[])} instead and interface with sorts using {@link TalendSort} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendSort
+ */
+public class TalendSortImpl implements TalendSort {
+
+	/**
+	 * Default maximum number of rows whose keys are sorted in memory at once
+	 */
+	static final int DEFAULT_MAXIMUM_ROWS = 1024 * 1024;
+
+	private final TalendFlowImpl flow;
+	private final TalendColumnImpl[] columns;
+	private final TalendSortOrder[] orders;
+	private final boolean[] descending;
+	private final boolean primitive;
+	private Integer maximumRows;
+
+	/**
+	 * Build a sort on all the rows of a flow
+	 * 
+	 * @param flow the flow to sort
+	 * @param columns the columns to sort by
+	 * @param orders the directions the columns are sorted in
+	 * @throws IllegalArgumentException if the values of any of the columns cannot be compared
+	 */
+	TalendSortImpl(TalendFlowImpl flow, TalendColumnImpl[] columns, TalendSortOrder[] orders){
+		this.flow = flow;
+		this.columns = columns;
+		this.orders = orders;
+		this.descending = new boolean[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			if(!isComparable(columns[i].getType())){
+				ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.notComparableColumn"), columns[i].getName(), flow.getName()));
+			}
+			descending[i] = (orders[i] == TalendSortOrder.DESCENDING);
+		}
+		this.primitive = (columns.length == 1 && isPrimitive(columns[0].getType()));
+		this.maximumRows = DEFAULT_MAXIMUM_ROWS;
+	}
+
+	/**
+	 * Check if the values of a type can be compared
+	 * 
+	 * @param type the type
+	 * @return true if the values have a natural order
+	 */
+	static boolean isComparable(TalendType type){
+		return type != TalendType.LIST && type != TalendType.OBJECT;
+	}
+
+	/**
+	 * Check if the values of a type can be sorted as primitive longs
+	 * 
+	 * @param type the type
+	 * @return true if the values are numbers or dates
+	 */
+	static boolean isPrimitive(TalendType type){
+		return TalendAccumulator.isIntegral(type) || type == TalendType.FLOAT || type == TalendType.DOUBLE || type == TalendType.DATE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSort setMaximumRows(Integer rows) {
+		if(rows != null && rows < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), rows));
+		}
+		this.maximumRows = rows;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn[] getColumns() {
+		return columns.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendSortOrder[] getOrders() {
+		return orders.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRowIterator iterator() {
+		final SortedIterator rows = rowIterator();
+		return new TalendRowIterator(){
+
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			public TalendRow next() {
+				return rows.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+				rows.close();
+			}
+
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendRowCursor cursor() {
+		return new TalendRowCursorImpl(flow, new Iterable<TalendRowImpl>(){
+			public Iterator<TalendRowImpl> iterator() {
+				return rowIterator();
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		TalendColumnImpl[] from = flow.columnsList.toArray(new TalendColumnImpl[flow.columnsList.size()]);
+		TalendFlowImpl dest = flow.newFlow(name, from);
+		TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[from.length]);
+		SortedIterator rows = rowIterator();
+		try {
+			while(rows.hasNext()){
+				TalendFlowImpl.copyValues(rows.next(), from, dest.newRow(), to);
+			}
+		} finally {
+			rows.close();
+		}
+		return dest;
+	}
+
+	/**
+	 * Sort the keys of the rows, spilling runs to disk if needed, and return a fail-fast iterator over the sorted rows
+	 * 
+	 * @return an iterator over rows
+	 */
+	SortedIterator rowIterator(){
+		int expectedModCount = flow.modCount();
+		int rows = flow.countRows();
+		int runSize = (maximumRows == null ? Math.max(1, rows) : maximumRows);
+		if(rows <= runSize) return new SortedIterator(expectedModCount, sortRun(0, rows).positions);
+
+		List<TalendSpill> spills = new ArrayList<TalendSpill>();
+		try {
+			for(int start = 0; start < rows; start += runSize){
+				Run run = sortRun(start, Math.min(rows, start + runSize));
+				TalendSpill spill = new TalendSpill(flow.getName());
+				spills.add(spill);
+				run.write(spill);
+			}
+			flow.checkForModification(expectedModCount);
+			PriorityQueue<Head> queue = new PriorityQueue<Head>(spills.size(), new Comparator<Head>(){
+				public int compare(Head a, Head b) {
+					int c = compareKeys(a.isNull, a.key, a.parts, b.isNull, b.key, b.parts);
+					return (c != 0 ? c : a.run - b.run);
+				}
+			});
+			for(int i = 0; i < spills.size(); i++){
+				Head head = new Head(i, spills.get(i));
+				if(head.advance()) queue.add(head);
+			}
+			return new SortedIterator(expectedModCount, queue);
+		} catch (IOException e) {
+			for(TalendSpill spill : spills){
+				spill.delete();
+			}
+			throw TalendSpill.failure(flow.getName(), e);
+		} catch (RuntimeException e) {
+			for(TalendSpill spill : spills){
+				spill.delete();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Sort the keys of a range of rows
+	 * 
+	 * @param from the position of the first row, included
+	 * @param to the position of the last row, excluded
+	 * @return the sorted run
+	 */
+	private Run sortRun(int from, int to){
+		int n = to - from;
+		Run run = new Run(n);
+		if(primitive){
+			TalendColumnImpl col = columns[0];
+			int[] nulls = new int[0];
+			int k = 0;
+			for(int i = from; i < to; i++){
+				TalendValue value = flow.committedRow(i).value(col);
+				if(TalendAccumulator.isNull(value)){
+					if(run.nulls == nulls.length) nulls = Arrays.copyOf(nulls, Math.max(16, nulls.length * 2));
+					nulls[run.nulls++] = i;
+					continue;
+				}
+				run.keys[k] = encode(value.getValue());
+				run.positions[k++] = i;
+			}
+			radixSort(run.keys, run.positions, k);
+			if(run.nulls > 0){
+				// null keys are the smallest ones
+				int offset = (descending[0] ? k : 0);
+				if(!descending[0]){
+					System.arraycopy(run.positions, 0, run.positions, run.nulls, k);
+					System.arraycopy(run.keys, 0, run.keys, run.nulls, k);
+				}
+				System.arraycopy(nulls, 0, run.positions, offset, run.nulls);
+				Arrays.fill(run.keys, offset, offset + run.nulls, 0L);
+			}
+			return run;
+		}
+
+		Object[][] parts = new Object[n][];
+		Integer[] order = new Integer[n];
+		for(int i = 0; i < n; i++){
+			parts[i] = partsOf(flow.committedRow(from + i));
+			order[i] = i;
+		}
+		final Object[][] keys = parts;
+		Arrays.sort(order, new Comparator<Integer>(){
+			public int compare(Integer a, Integer b) {
+				return compareParts(keys[a], keys[b]);
+			}
+		});
+		for(int i = 0; i < n; i++){
+			run.positions[i] = from + order[i];
+			run.parts[i] = parts[order[i]];
+		}
+		return run;
+	}
+
+	/**
+	 * Check if the keys of the rows are encoded as primitive longs, ie. rows are sorted by a single numeric or date column
+	 * 
+	 * @return true if the keys can be read using {@link #codeOf(TalendRowImpl)}, false if they must be read using {@link #partsOf(TalendRowImpl)}
+	 */
+	boolean hasPrimitiveKeys(){
+		return primitive;
+	}
+
+	/**
+	 * Encode the key of a row sorted by a single primitive column so that unsigned comparisons of the codes follow the sort order
+	 * 
+	 * @param row the row
+	 * @return the code of the key
+	 */
+	long codeOf(TalendRowImpl row){
+		TalendValue value = row.value(columns[0]);
+		// null keys are the smallest ones
+		if(TalendAccumulator.isNull(value)) return (descending[0] ? -1L : 0L);
+		return encode(value.getValue());
+	}
+
+	/**
+	 * Get the values of the key of a row
+	 * 
+	 * @param row the row
+	 * @return the values of the sort columns, to be compared using {@link #compareParts(Object[], Object[])}
+	 */
+	Object[] partsOf(TalendRowImpl row){
+		Object[] parts = new Object[columns.length];
+		for(int c = 0; c < columns.length; c++){
+			parts[c] = TalendIndex.keyOf(columns[c], row.value(columns[c]));
+		}
+		return parts;
+	}
+
+	/**
+	 * Encode a non-null value of a primitive column so that unsigned comparisons of the codes follow the sort order.<br />
+	 * The value is converted to the type of the column first, so that numbers of other types are encoded like the values of the column.
+	 */
+	private long encode(Object value){
+		value = TalendPredicate.convert(columns[0], value);
+		long code;
+		if(value instanceof Date){
+			code = ((Date) value).getTime() ^ Long.MIN_VALUE;
+		} else if(value instanceof Double || value instanceof Float){
+			long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+			code = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+		} else {
+			code = ((Number) value).longValue() ^ Long.MIN_VALUE;
+		}
+		return (descending[0] ? ~code : code);
+	}
+
+	/**
+	 * Stable LSD radix sort of unsigned long keys, moving an int value along with each key.<br />
+	 * Passes over bytes holding the same value in all the keys are skipped.
+	 * 
+	 * @param keys the keys
+	 * @param values the values
+	 * @param n the number of keys to sort, starting from the first one
+	 */
+	static void radixSort(long[] keys, int[] values, int n){
+		if(n < 2) return;
+		long[] srcKeys = keys;
+		int[] srcValues = values;
+		long[] dstKeys = new long[n];
+		int[] dstValues = new int[n];
+		int[] count = new int[257];
+		for(int shift = 0; shift < 64; shift += 8){
+			Arrays.fill(count, 0);
+			for(int i = 0; i < n; i++){
+				count[(int) ((srcKeys[i] >>> shift) & 0xff) + 1]++;
+			}
+			if(count[(int) ((srcKeys[0] >>> shift) & 0xff) + 1] == n) continue;
+			for(int b = 0; b < 256; b++){
+				count[b + 1] += count[b];
+			}
+			for(int i = 0; i < n; i++){
+				int d = count[(int) ((srcKeys[i] >>> shift) & 0xff)]++;
+				dstKeys[d] = srcKeys[i];
+				dstValues[d] = srcValues[i];
+			}
+			long[] k = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = k;
+			int[] v = srcValues;
+			srcValues = dstValues;
+			dstValues = v;
+		}
+		if(srcKeys != keys){
+			System.arraycopy(srcKeys, 0, keys, 0, n);
+			System.arraycopy(srcValues, 0, values, 0, n);
+		}
+	}
+
+	/**
+	 * Compare the keys of two rows in the sort order
+	 * 
+	 * @param a the values of the first key
+	 * @param b the values of the second key
+	 * @return a negative number, zero or a positive number if the first key comes before, together or after the second one
+	 */
+	int compareParts(Object[] a, Object[] b){
+		for(int i = 0; i < columns.length; i++){
+			Object x = a[i];
+			Object y = b[i];
+			int c;
+			if(x == null || y == null){
+				c = (x == null ? (y == null ? 0 : -1) : 1);
+			} else {
+				c = TalendPredicate.compare(x, y);
+			}
+			if(c != 0) return (descending[i] ? -c : c);
+		}
+		return 0;
+	}
+
+	private int compareKeys(boolean aNull, long a, Object[] aParts, boolean bNull, long b, Object[] bParts){
+		if(!primitive) return compareParts(aParts, bParts);
+		if(aNull || bNull){
+			int c = (aNull ? (bNull ? 0 : -1) : 1);
+			return (descending[0] ? -c : c);
+		}
+		return Long.compareUnsigned(a, b);
+	}
+
+	/**
+	 * The sorted keys of a range of rows
+	 */
+	private final class Run {
+
+		final int[] positions;
+		final long[] keys;
+		final Object[][] parts;
+		int nulls;
+
+		Run(int size){
+			positions = new int[size];
+			keys = (primitive ? new long[size] : null);
+			parts = (primitive ? null : new Object[size][]);
+		}
+
+		boolean isNull(int i){
+			return (descending[0] ? i >= positions.length - nulls : i < nulls);
+		}
+
+		void write(TalendSpill spill) throws IOException {
+			for(int i = 0; i < positions.length; i++){
+				DataOutput out = spill.output();
+				out.writeInt(positions[i]);
+				if(primitive){
+					out.writeBoolean(isNull(i));
+					out.writeLong(keys[i]);
+				} else {
+					for(Object part : parts[i]){
+						TalendSpill.write(out, part);
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The next record of a spilled run being merged
+	 */
+	private final class Head {
+
+		final int run;
+		final TalendSpill spill;
+		private final long records;
+		private long read;
+		int position;
+		boolean isNull;
+		long key;
+		Object[] parts;
+
+		Head(int run, TalendSpill spill){
+			this.run = run;
+			this.spill = spill;
+			this.records = spill.countRecords();
+		}
+
+		/**
+		 * Read the next record of the run
+		 * 
+		 * @return false if the run is over
+		 * @throws IOException if the record cannot be read
+		 */
+		boolean advance() throws IOException {
+			if(read == records){
+				spill.delete();
+				return false;
+			}
+			read++;
+			DataInput in = spill.input();
+			position = in.readInt();
+			if(primitive){
+				isNull = in.readBoolean();
+				key = in.readLong();
+			} else {
+				parts = new Object[columns.length];
+				for(int i = 0; i < parts.length; i++){
+					parts[i] = TalendSpill.read(in);
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * Fail-fast iterator over the sorted rows, either reading the positions of a single run or merging spilled runs.<br />
+	 * The spill files of the runs are deleted once read, when the iterator fails or when it is closed.
+	 */
+	final class SortedIterator implements Iterator<TalendRowImpl>, Closeable {
+
+		private final int expectedModCount;
+		private final int[] positions;
+		private final PriorityQueue<Head> queue;
+		private int index;
+
+		SortedIterator(int expectedModCount, int[] positions){
+			this.expectedModCount = expectedModCount;
+			this.positions = positions;
+			this.queue = null;
+		}
+
+		SortedIterator(int expectedModCount, PriorityQueue<Head> queue){
+			this.expectedModCount = expectedModCount;
+			this.positions = null;
+			this.queue = queue;
+		}
+
+		public boolean hasNext() {
+			return (positions != null ? index < positions.length : !queue.isEmpty());
+		}
+
+		public TalendRowImpl next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			if(positions != null){
+				flow.checkForModification(expectedModCount);
+				return flow.committedRow(positions[index++]);
+			}
+
+			Head head = queue.poll();
+			try {
+				flow.checkForModification(expectedModCount);
+				int position = head.position;
+				if(head.advance()) queue.add(head);
+				return flow.committedRow(position);
+			} catch (IOException e) {
+				head.spill.delete();
+				close();
+				throw TalendSpill.failure(flow.getName(), e);
+			} catch (RuntimeException e) {
+				head.spill.delete();
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Delete the spill files of the runs not read yet
+		 */
+		public void close() {
+			if(positions != null){
+				index = positions.length;
+				return;
+			}
+			while(!queue.isEmpty()){
+				queue.poll().spill.delete();
+			}
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents the direction in which the values of a column are sorted by {@link TalendSort}.<br />
+ * Null values are considered smaller than any other value, so they come first in ascending order and last in descending order.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendFlow#sort(String[], TalendSortOrder[])
+ *
+ */
+public enum TalendSortOrder {
+
+	/**
+	 * From the smallest value to the biggest one
+	 */
+	ASCENDING,
+
+	/**
+	 * From the biggest value to the smallest one
+	 */
+	DESCENDING
+
+}
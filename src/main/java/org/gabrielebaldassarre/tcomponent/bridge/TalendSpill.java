@@ -0,0 +1,324 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A spill file holds data that operators over flows (ie. aggregations and sorts) cannot keep in memory.<br />
+ * Values are written in a compact binary format: a tag byte telling the java type of the value followed by its content, so that
+ * the usual types of Talend columns are stored without java serialization. Values of any other type are stored using java serialization,
+ * so they must be {@link java.io.Serializable}.<br />
+ * Spill files are temporary files, deleted when they are closed after having been read, or when the operator spilling them fails.
+ * They are not registered with {@link File#deleteOnExit()}, whose entries are never released by the JVM: every path would be kept in memory
+ * until the JVM exits, even long after the file has been deleted.
+ * 
+ * @author Gabriele Baldassarre
+ *
+ */
+final class TalendSpill {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte LONG = 2;
+	private static final byte INTEGER = 3;
+	private static final byte SHORT = 4;
+	private static final byte BYTE = 5;
+	private static final byte DOUBLE = 6;
+	private static final byte FLOAT = 7;
+	private static final byte BOOLEAN = 8;
+	private static final byte CHARACTER = 9;
+	private static final byte DATE = 10;
+	private static final byte BIGDECIMAL = 11;
+	private static final byte BYTES = 12;
+	private static final byte LIST = 13;
+	private static final byte SERIALIZED = 14;
+
+	/**
+	 * Number of spill files created and not deleted yet, by any flow
+	 */
+	private static final AtomicInteger live = new AtomicInteger();
+
+	private final String flow;
+	private final File file;
+	private DataOutputStream out;
+	private DataInputStream in;
+	private long records;
+	private boolean deleted;
+
+	/**
+	 * Create a new empty spill file
+	 * 
+	 * @param flow the name of the flow whose data is spilled, used to report errors
+	 * @throws IllegalStateException if the file cannot be created
+	 */
+	TalendSpill(String flow){
+		this.flow = flow;
+		File created = null;
+		try {
+			created = File.createTempFile("talend-bridge-", ".spill");
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(created), BUFFER_SIZE));
+		} catch (IOException e) {
+			if(created != null) created.delete();
+			throw failure(flow, e);
+		}
+		this.file = created;
+		live.incrementAndGet();
+	}
+
+	/**
+	 * Get the stream to write records to
+	 * 
+	 * @return the output stream
+	 */
+	DataOutput output(){
+		records++;
+		return out;
+	}
+
+	/**
+	 * Get the number of records written so far, ie. the number of calls to {@link #output()}
+	 * 
+	 * @return the number of records
+	 */
+	long countRecords(){
+		return records;
+	}
+
+	/**
+	 * Stop writing and start reading records from the beginning of the file
+	 * 
+	 * @return the input stream
+	 * @throws IllegalStateException if the file cannot be read
+	 */
+	DataInput input(){
+		try {
+			if(out != null){
+				out.close();
+				out = null;
+			}
+			if(in == null){
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			}
+			return in;
+		} catch (IOException e) {
+			throw failure(flow, e);
+		}
+	}
+
+	/**
+	 * Close and delete the file
+	 */
+	void delete(){
+		try {
+			if(out != null) out.close();
+			if(in != null) in.close();
+		} catch (IOException e) {
+			// nothing to do, the file is going to be deleted anyway
+		}
+		out = null;
+		in = null;
+		file.delete();
+		if(!deleted){
+			deleted = true;
+			live.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Get the number of spill files created by this JVM and not deleted yet
+	 * 
+	 * @return the number of files
+	 */
+	static int countFiles(){
+		return live.get();
+	}
+
+	/**
+	 * Write a value
+	 * 
+	 * @param out the stream to write to
+	 * @param value the value to write, as java type
+	 * @throws IOException if the value cannot be written
+	 */
+	static void write(DataOutput out, Object value) throws IOException {
+		if(value == null){
+			out.writeByte(NULL);
+		} else if(value instanceof String){
+			byte[] utf8 = ((String) value).getBytes(TalendUtf8Value.UTF8);
+			out.writeByte(STRING);
+			out.writeInt(utf8.length);
+			out.write(utf8);
+		} else if(value instanceof Long){
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if(value instanceof Integer){
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if(value instanceof Short){
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if(value instanceof Byte){
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if(value instanceof Double){
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if(value instanceof Float){
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if(value instanceof Boolean){
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if(value instanceof Character){
+			out.writeByte(CHARACTER);
+			out.writeChar((Character) value);
+		} else if(value.getClass() == Date.class){
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if(value instanceof BigDecimal){
+			out.writeByte(BIGDECIMAL);
+			write(out, value.toString());
+		} else if(value instanceof byte[] || value instanceof ByteBuffer){
+			byte[] bytes;
+			if(value instanceof byte[]){
+				bytes = (byte[]) value;
+			} else {
+				bytes = new byte[((ByteBuffer) value).remaining()];
+				((ByteBuffer) value).duplicate().get(bytes);
+			}
+			out.writeByte(BYTES);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if(value instanceof List){
+			List<?> list = (List<?>) value;
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+			for(Object element : list){
+				write(out, element);
+			}
+		} else {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(buffer);
+			oos.writeObject(value);
+			oos.close();
+			out.writeByte(SERIALIZED);
+			out.writeInt(buffer.size());
+			out.write(buffer.toByteArray());
+		}
+	}
+
+	/**
+	 * Read a value written by {@link #write(DataOutput, Object)}.<br />
+	 * Binary values are returned as read-only {@link ByteBuffer}s.
+	 * 
+	 * @param in the stream to read from
+	 * @return the value, as java type
+	 * @throws EOFException if the end of the stream has been reached
+	 * @throws IOException if the value cannot be read
+	 */
+	static Object read(DataInput in) throws IOException {
+		byte tag = in.readByte();
+		switch(tag){
+		case NULL:
+			return null;
+		case STRING:
+			byte[] utf8 = new byte[in.readInt()];
+			in.readFully(utf8);
+			return new String(utf8, TalendUtf8Value.UTF8);
+		case LONG:
+			return in.readLong();
+		case INTEGER:
+			return in.readInt();
+		case SHORT:
+			return in.readShort();
+		case BYTE:
+			return in.readByte();
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case BOOLEAN:
+			return in.readBoolean();
+		case CHARACTER:
+			return in.readChar();
+		case DATE:
+			return new Date(in.readLong());
+		case BIGDECIMAL:
+			return new BigDecimal((String) read(in));
+		case BYTES:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		case LIST:
+			int size = in.readInt();
+			List<Object> list = new ArrayList<Object>(size);
+			for(int i = 0; i < size; i++){
+				list.add(read(in));
+			}
+			return list;
+		default:
+			byte[] serialized = new byte[in.readInt()];
+			in.readFully(serialized);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			try {
+				return ois.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			} finally {
+				ois.close();
+			}
+		}
+	}
+
+	/**
+	 * Build the exception reporting a failure while spilling data of a flow
+	 * 
+	 * @param flow the name of the flow
+	 * @param cause the failure
+	 * @return the exception to throw
+	 */
+	static IllegalStateException failure(String flow, IOException cause){
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		return new IllegalStateException(String.format(Locale.getDefault(), rb.getString("exception.spillFailed"), flow, cause.getMessage()), cause);
+	}
+
+}
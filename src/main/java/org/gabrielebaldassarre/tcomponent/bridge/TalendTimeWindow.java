@@ -0,0 +1,241 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time window operator assigns the committed rows of a flow to windows of event time, according to the values of a DATE column,
+ * and computes aggregates over the rows of each window. It's built using {@link TalendFlow#window(String)}.<br />
+ * Windows are aligned to the epoch and can be tumbling (adjacent and not overlapping) or hopping (overlapping, since they advance
+ * by less than their size, so that each row belongs to more than one window).<br />
+ * Windowing is incremental: each call to {@link #update()} only reads the rows committed to the source flow since the previous call.
+ * The greatest date read so far is taken as the current event time: a window is closed as soon as the event time
+ * passes its end by more than the allowed lateness. When a window is closed, a row holding its bounds and its aggregates
+ * is added to the output flow and all the state of the window is released, so that memory only depends on the number of windows
+ * still open and not on the number of rows read.<br />
+ * Rows arriving after all the windows they belong to have been closed are late and are discarded. Rows with a null date are ignored.<br />
+ * Example of use:<br />
+ * <pre>
+ * {@code
+ * // Number of clicks and average duration for each minute, accepting clicks up to 10 seconds late
+ * TalendTimeWindow minutes = clicks.window("timestamp").tumbling(1, TimeUnit.MINUTES).allowLateness(10, TimeUnit.SECONDS)
+ *     .count("clicks").avg("duration", "avgDuration").into("clicksPerMinute");
+ * 
+ * // After each commit to the source flow
+ * clicks.commit();
+ * minutes.update();
+ * }
+ * </pre>
+ * The output flow is owned by the operator: it must not be modified by anyone else.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendWindowAggregate
+ *
+ */
+public interface TalendTimeWindow {
+
+	/**
+	 * Name of the column of the output flow holding the start of the window, inclusive
+	 */
+	public static final String WINDOW_START = "windowStart";
+
+	/**
+	 * Name of the column of the output flow holding the end of the window, exclusive
+	 */
+	public static final String WINDOW_END = "windowEnd";
+
+	/**
+	 * Use adjacent windows of the given size. This is the default, with windows of one minute.
+	 * 
+	 * @param size the size of the windows
+	 * @param unit the unit of the size
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the size is less than one millisecond
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow tumbling(long size, TimeUnit unit);
+
+	/**
+	 * Use overlapping windows of the given size, starting every given advance
+	 * 
+	 * @param size the size of the windows
+	 * @param advance the distance between the starts of two consecutive windows, not greater than their size
+	 * @param unit the unit of size and advance
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if size or advance are less than one millisecond, or advance is greater than size
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow hopping(long size, long advance, TimeUnit unit);
+
+	/**
+	 * Keep windows open for some time after the event time has passed their end, to accept rows arriving out of order.
+	 * The default is no lateness at all. Lateness so large that windows would close past the greatest representable instant,
+	 * such as {@link Long#MAX_VALUE} milliseconds, keeps windows open until {@link #flush()} is called.
+	 * 
+	 * @param lateness the allowed lateness
+	 * @param unit the unit of the lateness
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the lateness is negative
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow allowLateness(long lateness, TimeUnit unit);
+
+	/**
+	 * Count the rows of each window
+	 * 
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow count(String as);
+
+	/**
+	 * Count the non-null values of a column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow count(String column, String as);
+
+	/**
+	 * Count the distinct non-null values of a column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow countDistinct(String column, String as);
+
+	/**
+	 * Sum the values of a numeric column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or is not numeric, or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow sum(String column, String as);
+
+	/**
+	 * Average the values of a numeric column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or is not numeric, or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow avg(String column, String as);
+
+	/**
+	 * Get the minimum value of a column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or cannot be compared, or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow min(String column, String as);
+
+	/**
+	 * Get the maximum value of a column in each window
+	 * 
+	 * @param column the name of the column
+	 * @param as the name of the output column
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the column doesn't belong to the flow or cannot be compared, or the name is null or empty
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow max(String column, String as);
+
+	/**
+	 * Start the windowing, creating the output flow in the same model of the source flow and reading the rows already committed
+	 * to the source flow.<br />
+	 * The output flow has the {@link #WINDOW_START} and {@link #WINDOW_END} DATE columns followed by a column for each aggregate,
+	 * no maximum size and doesn't support transactions.
+	 * 
+	 * @param name the name of the output flow
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the name is not valid or already used by a flow of the model, or an aggregate column is named like a window bound
+	 * @throws IllegalStateException if the windowing has already started
+	 */
+	public TalendTimeWindow into(String name);
+
+	/**
+	 * Read the rows committed to the source flow since the previous call, emitting the windows closed by them.
+	 * Rows that have been evicted from a bounded source flow before being read are lost.
+	 * 
+	 * @return the number of windows emitted
+	 * @throws IllegalStateException if the windowing has not started yet
+	 * @throws java.util.ConcurrentModificationException if the output flow has been modified by someone else
+	 */
+	public int update();
+
+	/**
+	 * Close and emit all the windows still open, ie. at the end of the input. Rows read later belonging to those windows are late.
+	 * 
+	 * @return the number of windows emitted
+	 * @throws IllegalStateException if the windowing has not started yet
+	 * @throws java.util.ConcurrentModificationException if the output flow has been modified by someone else
+	 */
+	public int flush();
+
+	/**
+	 * Get the source flow
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Get the DATE column holding the event time of the rows
+	 * 
+	 * @return a reference to the column
+	 */
+	public TalendColumn getColumn();
+
+	/**
+	 * Get the output flow
+	 * 
+	 * @return a reference to the flow, or null if the windowing has not started yet
+	 */
+	public TalendFlow getOutput();
+
+	/**
+	 * Get the number of windows still open
+	 * 
+	 * @return the number of open windows
+	 */
+	public int countOpenWindows();
+
+	/**
+	 * Get the number of late rows discarded so far
+	 * 
+	 * @return the number of late rows
+	 */
+	public long countLateRows();
+
+}
@@ -0,0 +1,350 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the concrete implementation of a time window operator and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#window(String)} instead and interface with them using {@link TalendTimeWindow} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendTimeWindow
+ */
+public class TalendTimeWindowImpl implements TalendTimeWindow {
+
+	private final TalendFlowImpl flow;
+	private final TalendColumnImpl column;
+	private final List<TalendAccumulator> accumulators;
+	private long size;
+	private long advance;
+	private long lateness;
+
+	private TalendFlowImpl output;
+	private TalendColumnImpl[] to;
+	private int outputModCount;
+	private long nextSequence;
+
+	// accumulators of the open windows, by start of the window
+	private final TreeMap<Long, TalendAccumulator[]> open;
+	private long eventTime;
+	private long closedUntil;
+	private long lateRows;
+
+	/**
+	 * Build a time window operator over the committed rows of a flow
+	 * 
+	 * @param flow the source flow
+	 * @param column the DATE column holding the event time
+	 */
+	TalendTimeWindowImpl(TalendFlowImpl flow, TalendColumnImpl column){
+		this.flow = flow;
+		this.column = column;
+		this.accumulators = new ArrayList<TalendAccumulator>();
+		this.size = TimeUnit.MINUTES.toMillis(1);
+		this.advance = size;
+		this.open = new TreeMap<Long, TalendAccumulator[]>();
+		this.eventTime = Long.MIN_VALUE;
+		this.closedUntil = Long.MIN_VALUE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow tumbling(long size, TimeUnit unit) {
+		return hopping(size, size, unit);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow hopping(long size, long advance, TimeUnit unit) {
+		checkStarted(false);
+		long s = toMillis(size, unit);
+		long a = toMillis(advance, unit);
+		if(s < 1 || a < 1 || a > s){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidWindow"), s, a));
+		}
+		this.size = s;
+		this.advance = a;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow allowLateness(long lateness, TimeUnit unit) {
+		checkStarted(false);
+		long l = toMillis(lateness, unit);
+		if(l < 0){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), l));
+		}
+		this.lateness = l;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow count(String as) {
+		return add(TalendAccumulator.Function.COUNT, null, as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow count(String column, String as) {
+		return add(TalendAccumulator.Function.COUNT, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow countDistinct(String column, String as) {
+		return add(TalendAccumulator.Function.COUNT_DISTINCT, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow sum(String column, String as) {
+		return add(TalendAccumulator.Function.SUM, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow avg(String column, String as) {
+		return add(TalendAccumulator.Function.AVG, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow min(String column, String as) {
+		return add(TalendAccumulator.Function.MIN, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow max(String column, String as) {
+		return add(TalendAccumulator.Function.MAX, TalendPredicate.resolve(flow, column), as);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTimeWindow into(String name) {
+		checkStarted(false);
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		for(TalendAccumulator acc : accumulators){
+			if(acc.name.equals(WINDOW_START) || acc.name.equals(WINDOW_END)){
+				throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.columnAlreadyUsed"), acc.name, name));
+			}
+		}
+		TalendFlowImpl dest = flow.newFlow(name, new TalendColumnImpl[0]);
+		dest.addColumn(WINDOW_START, TalendType.DATE, null, false, TalendEncoding.AUTO);
+		dest.addColumn(WINDOW_END, TalendType.DATE, null, false, TalendEncoding.AUTO);
+		for(TalendAccumulator acc : accumulators){
+			dest.addColumn(acc.name, acc.getType(), null, false, TalendEncoding.AUTO);
+		}
+		this.to = dest.columnsList.toArray(new TalendColumnImpl[dest.columnsList.size()]);
+		this.output = dest;
+		this.outputModCount = dest.modCount();
+		update();
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized int update() {
+		checkStarted(true);
+		output.checkForModification(outputModCount);
+		int rows = flow.countRows();
+		if(rows == 0) return 0;
+		long first = flow.committedRow(0).sequence;
+		int start = (int) Math.max(0, Math.min(rows, nextSequence - first));
+		int emitted = 0;
+		for(int i = start; i < rows; i++){
+			emitted += accept(flow.committedRow(i));
+		}
+		nextSequence = flow.committedRow(rows - 1).sequence + 1;
+		outputModCount = output.modCount();
+		return emitted;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized int flush() {
+		checkStarted(true);
+		output.checkForModification(outputModCount);
+		int emitted = 0;
+		while(!open.isEmpty()){
+			emit(open.pollFirstEntry());
+			emitted++;
+		}
+		outputModCount = output.modCount();
+		return emitted;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn getColumn() {
+		return column;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getOutput() {
+		return output;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized int countOpenWindows() {
+		return open.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long countLateRows() {
+		return lateRows;
+	}
+
+	private static long toMillis(long duration, TimeUnit unit){
+		if(unit == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "unit"));
+		}
+		return unit.toMillis(duration);
+	}
+
+	private TalendTimeWindow add(TalendAccumulator.Function function, TalendColumnImpl column, String as){
+		checkStarted(false);
+		if(as == null || as.isEmpty()){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "as"));
+		}
+		accumulators.add(TalendAccumulator.of(function, column, as));
+		return this;
+	}
+
+	private void checkStarted(boolean started){
+		if((output != null) == started) return;
+		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+		throw new IllegalStateException(String.format(Locale.getDefault(), rb.getString(started ? "exception.windowNotStarted" : "exception.windowStarted"), flow.getName()));
+	}
+
+	/**
+	 * Aggregate a row into all the open windows it belongs to, then emit the windows closed by its event time
+	 * 
+	 * @return the number of windows emitted
+	 */
+	private int accept(TalendRowImpl row){
+		TalendValue value = row.value(column);
+		if(TalendAccumulator.isNull(value)) return 0;
+		long time = ((Date) value.getValue()).getTime();
+		if(time > eventTime) eventTime = time;
+
+		boolean late = true;
+		for(long start = Math.floorDiv(time, advance) * advance; start > plus(time, -size); start -= advance){
+			long end = plus(start, size);
+			if(end <= closedUntil || plus(end, lateness) <= eventTime) continue;
+			TalendAccumulator[] accs = open.get(start);
+			if(accs == null){
+				accs = new TalendAccumulator[accumulators.size()];
+				for(int i = 0; i < accs.length; i++){
+					accs[i] = accumulators.get(i).newInstance();
+					accs[i].ensureCapacity(1);
+				}
+				open.put(start, accs);
+			}
+			for(TalendAccumulator acc : accs){
+				acc.add(0, (acc.column == null ? null : row.value(acc.column)));
+			}
+			late = false;
+		}
+		if(late) lateRows++;
+
+		int emitted = 0;
+		while(!open.isEmpty() && plus(plus(open.firstKey(), size), lateness) <= eventTime){
+			emit(open.pollFirstEntry());
+			emitted++;
+		}
+		return emitted;
+	}
+
+	/**
+	 * Add the row of a closed window to the output flow. The window has already been removed from the open ones,
+	 * so its accumulators are released as soon as this method returns.
+	 */
+	private void emit(Map.Entry<Long, TalendAccumulator[]> window){
+		long start = window.getKey();
+		TalendRowImpl row = output.newRow();
+		set(row, to[0], new Date(start));
+		set(row, to[1], new Date(plus(start, size)));
+		TalendAccumulator[] accs = window.getValue();
+		for(int i = 0; i < accs.length; i++){
+			set(row, to[2 + i], accs[i].result(0));
+		}
+		closedUntil = Math.max(closedUntil, plus(start, size));
+	}
+
+	/**
+	 * Add two instants or durations, saturating to the bounds of the long type instead of overflowing,
+	 * so that windows ending past the end of time never close
+	 */
+	private static long plus(long a, long b){
+		long sum = a + b;
+		if(((a ^ sum) & (b ^ sum)) < 0) return (b < 0 ? Long.MIN_VALUE : Long.MAX_VALUE);
+		return sum;
+	}
+
+	private static void set(TalendRowImpl row, TalendColumnImpl column, Object value){
+		if(value instanceof ByteBuffer){
+			byte[] bytes = new byte[((ByteBuffer) value).remaining()];
+			((ByteBuffer) value).duplicate().get(bytes);
+			value = bytes;
+		}
+		row.put(column, (value == null ? null : column.newValue(value)));
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A top-N operator selects the first rows of a flow in the order given by some columns, optionally for each group of rows
+ * sharing the values of other columns. It's built using {@link TalendFlow#top(int, String[], TalendSortOrder[])}.<br />
+ * Unlike a full {@link TalendSort}, rows are read in a single pass and each group only keeps a bounded heap of the best
+ * rows seen so far, so memory depends on the limit and on the number of groups, not on the number of rows. The rows of the flow are split
+ * among many threads, each one with heaps of its own that are merged at the end.<br />
+ * Rows with equal keys keep the order they have in the flow, and null values are the smallest ones, like in sorts.<br />
+ * Example of use:<br />
+ * <pre>
+ * {@code
+ * // Top 100 customers by revenue in each region
+ * TalendFlow best = customers.top(100, new String[]{"revenue"}, new TalendSortOrder[]{TalendSortOrder.DESCENDING})
+ *     .groupBy("region")
+ *     .toFlow("bestCustomers");
+ * }
+ * </pre>
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendSort
+ *
+ */
+public interface TalendTopN {
+
+	/**
+	 * Select the first rows of each group of rows sharing the values of the given columns, instead of the first rows of the whole flow
+	 * 
+	 * @param columns the names of the columns to group by
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if any of the columns doesn't belong to the flow
+	 */
+	public TalendTopN groupBy(String... columns);
+
+	/**
+	 * Only consider the rows matching a predicate. Calling this method many times combines the predicates in a logical AND.
+	 * 
+	 * @param predicate the predicate
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the predicate is null
+	 */
+	public TalendTopN where(TalendPredicate predicate);
+
+	/**
+	 * Set the maximum number of threads used to read the flow. The default is the number of available processors.
+	 * 
+	 * @param threads the maximum number of threads
+	 * @return a reference to the operator itself
+	 * @throws IllegalArgumentException if the number of threads is less than one
+	 */
+	public TalendTopN setParallelism(int threads);
+
+	/**
+	 * Get the flow rows are selected from
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Get the maximum number of rows selected for each group
+	 * 
+	 * @return the limit
+	 */
+	public int getLimit();
+
+	/**
+	 * Select the rows and copy them into a new flow in the same model.<br />
+	 * The new flow has the same columns of this one, no maximum size and doesn't support transactions.
+	 * Groups follow each other in the order of their first row in the flow, and the rows of each group are sorted.
+	 * 
+	 * @param name the name of the new flow
+	 * @return the new flow
+	 * @throws IllegalArgumentException if the name is not valid or a flow with the same name already exists in the model
+	 * @throws java.util.ConcurrentModificationException if the flow is modified while reading it
+	 */
+	public TalendFlow toFlow(String name);
+
+}
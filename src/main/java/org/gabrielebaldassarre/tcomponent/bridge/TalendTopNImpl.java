@@ -0,0 +1,334 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+
+/**
+ * This is the concrete implementation of a top-N operator and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#top(int, String[], TalendSortOrder[])} instead and interface with them using {@link TalendTopN} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendTopN
+ */
+public class TalendTopNImpl implements TalendTopN {
+
+	private final TalendFlowImpl flow;
+	private final TalendSortImpl order;
+	private final int limit;
+	private TalendColumnImpl[] groups;
+	private TalendPredicate predicate;
+	private int parallelism;
+
+	/**
+	 * Build a top-N operator on all the rows of a flow
+	 * 
+	 * @param flow the flow to read
+	 * @param limit the maximum number of rows for each group
+	 * @param order the order of the rows, as a sort of the flow
+	 */
+	TalendTopNImpl(TalendFlowImpl flow, int limit, TalendSortImpl order){
+		this.flow = flow;
+		this.order = order;
+		this.limit = limit;
+		this.groups = new TalendColumnImpl[0];
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTopN groupBy(String... columns) {
+		TalendColumnImpl[] cols = new TalendColumnImpl[(columns == null ? 0 : columns.length)];
+		for(int i = 0; i < cols.length; i++){
+			cols[i] = TalendPredicate.resolve(flow, columns[i]);
+		}
+		this.groups = cols;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTopN where(TalendPredicate predicate) {
+		if(predicate == null){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidNullValue"), "predicate"));
+		}
+		this.predicate = (this.predicate == null ? predicate : this.predicate.and(predicate));
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendTopN setParallelism(int threads) {
+		if(threads < 1){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidLimit"), threads));
+		}
+		this.parallelism = threads;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow toFlow(String name) {
+		int expectedModCount = flow.modCount();
+		TalendCondition condition = (predicate == null ? null : predicate.compile(flow));
+		int rows = flow.countRows();
+		int threads = TalendWorkers.countThreads(rows, parallelism);
+
+		Worker[] workers = new Worker[threads];
+		for(int i = 0; i < threads; i++){
+			workers[i] = new Worker(condition, TalendWorkers.from(rows, threads, i), TalendWorkers.from(rows, threads, i + 1));
+		}
+		TalendWorkers.invokeAll(Arrays.asList(workers));
+		flow.checkForModification(expectedModCount);
+
+		// workers read ascending ranges of rows, so merging them in order keeps groups in the order of their first row
+		Map<Object, Heap> result = workers[0].heaps;
+		for(int i = 1; i < workers.length; i++){
+			for(Map.Entry<Object, Heap> e : workers[i].heaps.entrySet()){
+				Heap heap = result.get(e.getKey());
+				if(heap == null){
+					result.put(e.getKey(), e.getValue());
+				} else {
+					heap.merge(e.getValue());
+				}
+			}
+		}
+
+		TalendColumnImpl[] from = flow.columnsList.toArray(new TalendColumnImpl[flow.columnsList.size()]);
+		TalendFlowImpl dest = flow.newFlow(name, from);
+		TalendColumnImpl[] to = dest.columnsList.toArray(new TalendColumnImpl[from.length]);
+		for(Heap heap : result.values()){
+			for(int position : heap.sorted()){
+				TalendFlowImpl.copyValues(flow.committedRow(position), from, dest.newRow(), to);
+			}
+		}
+		return dest;
+	}
+
+	/**
+	 * Build the key of the group a row belongs to
+	 */
+	private Object groupOf(TalendRowImpl row){
+		if(groups.length == 0) return Boolean.TRUE;
+		if(groups.length == 1) return TalendIndex.keyOf(groups[0], row.value(groups[0]));
+		Object[] parts = new Object[groups.length];
+		for(int i = 0; i < groups.length; i++){
+			parts[i] = TalendIndex.keyOf(groups[i], row.value(groups[i]));
+		}
+		return Arrays.asList(parts);
+	}
+
+	/**
+	 * Selects the first rows of each group in a range of rows of the flow
+	 */
+	private final class Worker implements Callable<Void> {
+
+		private final TalendCondition condition;
+		private final int from;
+		private final int to;
+		private final Map<Object, Heap> heaps;
+
+		Worker(TalendCondition condition, int from, int to){
+			this.condition = condition;
+			this.from = from;
+			this.to = to;
+			this.heaps = new LinkedHashMap<Object, Heap>();
+		}
+
+		public Void call() {
+			Object lastGroup = null;
+			Heap last = null;
+			for(int i = from; i < to; i++){
+				TalendRowImpl row = flow.committedRow(i);
+				if(condition != null && !condition.test(row)) continue;
+				Object group = groupOf(row);
+				if(last == null || !Objects.equals(group, lastGroup)){
+					// rows of the same group are often clustered, so the lookup of the previous group is skipped
+					last = heaps.get(group);
+					if(last == null){
+						last = new Heap();
+						heaps.put(group, last);
+					}
+					lastGroup = group;
+				}
+				last.offer(row, i);
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * A bounded binary heap holding the positions of the best rows of a group, whose root is the worst of them.<br />
+	 * Keys are held as primitive codes when rows are ordered by a single numeric or date column.
+	 */
+	private final class Heap {
+
+		private int[] positions = new int[Math.min(limit, 16)];
+		private long[] codes = (order.hasPrimitiveKeys() ? new long[positions.length] : null);
+		private Object[][] parts = (order.hasPrimitiveKeys() ? null : new Object[positions.length][]);
+		private int size;
+
+		/**
+		 * Offer a row to the heap. Rows must be offered in ascending order of position.
+		 */
+		void offer(TalendRowImpl row, int position){
+			if(codes != null){
+				long code = order.codeOf(row);
+				if(size == limit){
+					// on equal keys the rows already held come first
+					if(Long.compareUnsigned(code, codes[0]) >= 0) return;
+					codes[0] = code;
+					positions[0] = position;
+					down(0);
+					return;
+				}
+				grow();
+				codes[size] = code;
+			} else {
+				Object[] key = order.partsOf(row);
+				if(size == limit){
+					if(order.compareParts(key, parts[0]) >= 0) return;
+					parts[0] = key;
+					positions[0] = position;
+					down(0);
+					return;
+				}
+				grow();
+				parts[size] = key;
+			}
+			positions[size] = position;
+			up(size++);
+		}
+
+		/**
+		 * Add the rows of another heap, holding rows with greater positions than this one
+		 */
+		void merge(Heap other){
+			for(int i = 0; i < other.size; i++){
+				if(size < limit){
+					grow();
+					copy(other, i, size);
+					up(size++);
+				} else if(compare(other, i, this, 0) < 0){
+					copy(other, i, 0);
+					down(0);
+				}
+			}
+		}
+
+		/**
+		 * Get the positions of the rows of the heap in sort order. The heap is emptied.
+		 */
+		int[] sorted(){
+			int[] result = new int[size];
+			while(size > 0){
+				result[size - 1] = positions[0];
+				swap(0, --size);
+				down(0);
+			}
+			return result;
+		}
+
+		private void grow(){
+			if(size < positions.length) return;
+			int capacity = (int) Math.min(limit, positions.length * 2L);
+			positions = Arrays.copyOf(positions, capacity);
+			if(codes != null) codes = Arrays.copyOf(codes, capacity);
+			if(parts != null) parts = Arrays.copyOf(parts, capacity);
+		}
+
+		private void copy(Heap other, int from, int to){
+			positions[to] = other.positions[from];
+			if(codes != null) codes[to] = other.codes[from];
+			if(parts != null) parts[to] = other.parts[from];
+		}
+
+		/**
+		 * Compare two rows by key and then by position
+		 */
+		private int compare(Heap a, int i, Heap b, int j){
+			int c = (codes != null ? Long.compareUnsigned(a.codes[i], b.codes[j]) : order.compareParts(a.parts[i], b.parts[j]));
+			return (c != 0 ? c : Integer.compare(a.positions[i], b.positions[j]));
+		}
+
+		private void up(int i){
+			while(i > 0){
+				int parent = (i - 1) / 2;
+				if(compare(this, i, this, parent) <= 0) return;
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void down(int i){
+			while(true){
+				int worst = i;
+				int left = 2 * i + 1;
+				int right = left + 1;
+				if(left < size && compare(this, left, this, worst) > 0) worst = left;
+				if(right < size && compare(this, right, this, worst) > 0) worst = right;
+				if(worst == i) return;
+				swap(i, worst);
+				i = worst;
+			}
+		}
+
+		private void swap(int i, int j){
+			int p = positions[i];
+			positions[i] = positions[j];
+			positions[j] = p;
+			if(codes != null){
+				long c = codes[i];
+				codes[i] = codes[j];
+				codes[j] = c;
+			} else {
+				Object[] k = parts[i];
+				parts[i] = parts[j];
+				parts[j] = k;
+			}
+		}
+
+	}
+
+}
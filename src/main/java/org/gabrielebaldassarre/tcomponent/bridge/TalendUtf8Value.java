@@ -0,0 +1,76 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.nio.charset.Charset;
+
+/**
+ * This is the value of a STRING column with {@link TalendEncoding#UTF8} encoding.<br />
+ * The text is kept as raw UTF-8 bytes in the arena of the column and a java String is only built when {@link #getValue()}
+ * is called. Since the String is not retained by the value, it's built again on every call: flows that read their text
+ * many times should rather use plain or dictionary encodings.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendEncoding
+ *
+ */
+public final class TalendUtf8Value extends TalendArenaValue {
+
+	private static final long serialVersionUID = 5120464926471569958L;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Copy the given UTF-8 bytes into an arena and build a value referring to them
+	 *
+	 * @param column the column the value belongs
+	 * @param arena the arena to copy the bytes into
+	 * @param utf8 the array holding UTF-8 encoded text
+	 * @param offset the position of the first byte of the text
+	 * @param length the number of bytes of the text
+	 */
+	TalendUtf8Value(TalendColumnImpl column, TalendByteArena arena, byte[] utf8, int offset, int length){
+		super(column, arena, utf8, offset, length);
+	}
+
+	/**
+	 * Build a value sharing the bytes of another one
+	 *
+	 * @param column the column the value belongs
+	 * @param shared the value to share bytes with
+	 */
+	TalendUtf8Value(TalendColumnImpl column, TalendArenaValue shared){
+		super(column, shared);
+	}
+
+	/**
+	 * Decode the UTF-8 bytes of the value
+	 *
+	 * @return a new String
+	 */
+	public Object getValue() {
+		return new String(chunk(), offset(), length(), UTF8);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString(){
+		return (String) getValue();
+	}
+
+}
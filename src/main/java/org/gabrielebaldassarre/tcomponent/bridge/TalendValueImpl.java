@@ -10,11 +10,23 @@ public final class TalendValueImpl implements TalendValue, Serializable {
 	private static final long serialVersionUID = 2968836897105515941L;
 	private final TalendColumnImpl column;
 	private final Object value;
+	private final int code;
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public TalendValueImpl(TalendColumnImpl column, Object value) throws IllegalArgumentException{
+		this(column, value, -1);
+	}
+
+	/**
+	 * Build a value carrying the code it was assigned by the dictionary of its column
+	 * 
+	 * @param column the column the value belongs
+	 * @param value the value, as java type
+	 * @param code the dictionary code of the value or -1 if the value is not dictionary-encoded
+	 */
+	TalendValueImpl(TalendColumnImpl column, Object value, int code) throws IllegalArgumentException{
 		ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
 		this.column = column;	
 		if (value != null) {
@@ -22,13 +34,14 @@ public final class TalendValueImpl implements TalendValue, Serializable {
                 if (value.getClass().equals(String.class)) {
                     value = column.getType().parse((String) value);
                 } else {
-                	if(column.getType().equals(TalendType.LIST) && !implementsInterface(value, List.class))
+                	if(column.getType().equals(TalendType.LIST) && !(value instanceof List))
                 		throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.invalidTalendParameter"), value, column.getType().getType().getSimpleName()));
                 }
             }
 		}
 		
 		this.value = value;
+		this.code = code;
 	}
 	
 	/**
@@ -38,15 +51,6 @@ public final class TalendValueImpl implements TalendValue, Serializable {
 		return column;
 	}
 	
-	private boolean implementsInterface(final Object object, final Class interf){
-	    for (Class<?> c : object.getClass().getInterfaces()) {
-	        if (c.equals(interf)) {
-	            return true;
-	        }
-	    }
-	    return false;
-	}
-	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -54,6 +58,17 @@ public final class TalendValueImpl implements TalendValue, Serializable {
 		return value;
 	}
 	
+	/**
+	 * Get the code assigned to the value by the dictionary of its column.<br />
+	 * Values with the same code and coming from the same dictionary are equal.
+	 * 
+	 * @return the dictionary code or -1 if the value is not dictionary-encoded
+	 * @see TalendDictionary
+	 */
+	public int getCode() {
+		return code;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -89,7 +104,15 @@ public final class TalendValueImpl implements TalendValue, Serializable {
             return true;
         if (obj.getClass() != getClass())
             return false;
-	    return  value.equals(((TalendValueImpl) obj).getValue());
+        TalendValueImpl other = (TalendValueImpl) obj;
+        if (code >= 0 && other.code >= 0 && column.getDictionary() == other.column.getDictionary()) {
+            if (code == other.code)
+                return true;
+            // codes given before and after a reset of the dictionary may belong to the same value
+            if (column.getDictionary().isCurrent(code) && column.getDictionary().isCurrent(other.code))
+                return false;
+        }
+	    return  value.equals(other.getValue());
 	  }
 	
 }
@@ -0,0 +1,93 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * A window aggregate is an aggregate function computed over the committed rows of a flow and kept up to date by the flow itself,
+ * built using {@link TalendFlow#addWindowAggregate(TalendWindowFunction, String)}.<br />
+ * Flows with a maximum size are sliding windows over their input, since the oldest row is evicted when a new one is saved:
+ * window aggregates follow both appends and evictions in constant amortized time, without scanning the window. Counts and sums
+ * add the values of saved rows and subtract the ones of evicted rows, while minimum and maximum keep a monotonic queue of the
+ * values that can still become the result.<br />
+ * Example of use:<br />
+ * <pre>
+ * {@code
+ * TalendFlow last = factory.newFlow("lastReadings", 10000, false);
+ * last.addColumn("value", TalendType.DOUBLE);
+ * TalendWindowAggregate avg = last.addWindowAggregate(TalendWindowFunction.AVG, "value");
+ * TalendWindowAggregate max = last.addWindowAggregate(TalendWindowFunction.MAX, "value");
+ * 
+ * // For each new reading
+ * rowFactory.newRow(last).setValue("value", reading);
+ * if(reading > 3 * avg.getDouble()) alert(max.getValue());
+ * }
+ * </pre>
+ * Sums of FLOAT and DOUBLE columns are affected by rounding errors growing with the number of evicted rows.
+ * Changing a value of a saved row other than the newest one forces minimum and maximum to scan the window once when they are read again.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendWindowFunction
+ *
+ */
+public interface TalendWindowAggregate {
+
+	/**
+	 * Get the flow the aggregate is computed over
+	 * 
+	 * @return a reference to the flow
+	 */
+	public TalendFlow getFlow();
+
+	/**
+	 * Get the aggregated column
+	 * 
+	 * @return a reference to the column, or null if the aggregate counts rows
+	 */
+	public TalendColumn getColumn();
+
+	/**
+	 * Get the aggregate function
+	 * 
+	 * @return the function
+	 */
+	public TalendWindowFunction getFunction();
+
+	/**
+	 * Get the current value of the aggregate.<br />
+	 * Counts are Long; sums are Long for BYTE, SHORT, INTEGER and LONG columns, Double for FLOAT and DOUBLE columns and BigDecimal
+	 * for BIGDECIMAL columns; averages are Double; minimum and maximum have the type of the column.
+	 * 
+	 * @return the value, or null if the window holds no value but for counts
+	 */
+	public Object getValue();
+
+	/**
+	 * Get the current value of a numeric aggregate as a double
+	 * 
+	 * @return the value, or NaN if the window holds no value
+	 * @throws ClassCastException if the aggregate is not numeric
+	 */
+	public double getDouble();
+
+	/**
+	 * Get the number of values currently aggregated
+	 * 
+	 * @return the number of non-null values, or the number of rows if the aggregate counts rows
+	 */
+	public long countValues();
+
+}
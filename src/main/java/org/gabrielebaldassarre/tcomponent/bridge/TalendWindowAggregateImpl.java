@@ -0,0 +1,345 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * This is the concrete implementation of a window aggregate and therefore should not be used in normal circumnstances.
+ * You should build instances using {@link TalendFlow#addWindowAggregate(TalendWindowFunction, String)} instead and interface with them using {@link TalendWindowAggregate} interface.
+ * 
+ * @author Gabriele Baldassarre
+ * @see TalendWindowAggregate
+ */
+public class TalendWindowAggregateImpl implements TalendWindowAggregate {
+
+	private final TalendFlowImpl flow;
+	private final TalendWindowFunction function;
+	private final TalendColumnImpl column;
+	private final boolean integral;
+	private final boolean decimal;
+	private final boolean extreme;
+
+	private long count;
+	private long longSum;
+	private double doubleSum;
+	private BigDecimal decimalSum;
+
+	// monotonic queue of candidate extremes, held in a ring buffer along with the sequences of their rows
+	private Object[] values;
+	private long[] sequences;
+	private int head;
+	private int size;
+	private boolean stale;
+	// newest row of the flow, whose value is only queued once it's read or another row is added
+	private TalendRowImpl pending;
+
+	/**
+	 * Build an aggregate over the committed rows of a flow
+	 * 
+	 * @param flow the flow
+	 * @param function the aggregate function
+	 * @param column the aggregated column, or null to count rows
+	 * @throws IllegalArgumentException if the function cannot be computed over the column
+	 */
+	TalendWindowAggregateImpl(TalendFlowImpl flow, TalendWindowFunction function, TalendColumnImpl column){
+		this.flow = flow;
+		this.function = function;
+		this.column = column;
+		TalendType type = (column == null ? null : column.getType());
+		boolean numeric = (TalendAccumulator.isIntegral(type) || type == TalendType.FLOAT || type == TalendType.DOUBLE || type == TalendType.BIGDECIMAL);
+		if((column == null && function != TalendWindowFunction.COUNT)
+				|| ((function == TalendWindowFunction.SUM || function == TalendWindowFunction.AVG) && !numeric)
+				|| ((function == TalendWindowFunction.MIN || function == TalendWindowFunction.MAX) && !TalendSortImpl.isComparable(type))){
+			ResourceBundle rb = ResourceBundle.getBundle("TalendBridge", Locale.getDefault());
+			throw new IllegalArgumentException(String.format(Locale.getDefault(), rb.getString("exception.unsupportedAggregate"), function, (column == null ? null : column.getName()), type));
+		}
+		this.integral = TalendAccumulator.isIntegral(type);
+		this.decimal = (type == TalendType.BIGDECIMAL);
+		this.extreme = (function == TalendWindowFunction.MIN || function == TalendWindowFunction.MAX);
+		if(extreme){
+			values = new Object[16];
+			sequences = new long[16];
+		}
+		rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendFlow getFlow() {
+		return flow;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendColumn getColumn() {
+		return column;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TalendWindowFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized Object getValue() {
+		switch(function){
+		case COUNT:
+			return count;
+		case SUM:
+			if(count == 0) return null;
+			return (integral ? (Object) longSum : (decimal ? (Object) decimalSum : (Object) doubleSum));
+		case AVG:
+			if(count == 0) return null;
+			return (integral ? (double) longSum / count : (decimal ? decimalSum.doubleValue() / count : doubleSum / count));
+		default:
+			flush();
+			if(stale) rebuild();
+			return (size == 0 ? null : values[head]);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getDouble() {
+		Object value = getValue();
+		return (value == null ? Double.NaN : ((Number) value).doubleValue());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long countValues() {
+		if(extreme) flush();
+		return count;
+	}
+
+	/**
+	 * Aggregate a row just saved to the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void added(TalendRowImpl row){
+		if(column == null){
+			count++;
+			return;
+		}
+		if(extreme){
+			// values of rows added to flows without transactions are usually set right after the row is added
+			flush();
+			pending = row;
+			return;
+		}
+		add(valueOf(row.value(column)), row.sequence);
+	}
+
+	/**
+	 * Remove a row evicted from the flow
+	 * 
+	 * @param row the row
+	 */
+	synchronized void removed(TalendRowImpl row){
+		if(column == null){
+			count--;
+			return;
+		}
+		if(extreme) flush();
+		Object value = valueOf(row.value(column));
+		if(value == null) return;
+		count--;
+		if(extreme){
+			while(size > 0 && sequences[head] <= row.sequence){
+				values[head] = null;
+				head = (head + 1) % values.length;
+				size--;
+			}
+			return;
+		}
+		subtract(value);
+	}
+
+	/**
+	 * Follow a change of a value of a saved row
+	 * 
+	 * @param row the row, already holding the new value
+	 * @param previous the value held by the column before the change
+	 */
+	synchronized void updated(TalendRowImpl row, TalendValue previous){
+		if(extreme && row == pending) return;
+		Object before = valueOf(previous);
+		Object after = valueOf(row.value(column));
+		if(extreme){
+			if(!stale && isNewest(row)){
+				replaceNewest(row, before, after);
+				return;
+			}
+			if(before != null) count--;
+			if(after != null) count++;
+			stale = true;
+			return;
+		}
+		if(before != null){
+			count--;
+			subtract(before);
+		}
+		add(after, row.sequence);
+	}
+
+	/**
+	 * Forget all the rows, after the flow has been truncated
+	 */
+	synchronized void clear(){
+		count = 0;
+		longSum = 0;
+		doubleSum = 0;
+		decimalSum = null;
+		if(extreme){
+			Arrays.fill(values, null);
+			head = 0;
+			size = 0;
+			stale = false;
+			pending = null;
+		}
+	}
+
+	/**
+	 * Queue the value of the newest row, if it's still pending
+	 */
+	private void flush(){
+		if(pending == null) return;
+		TalendRowImpl row = pending;
+		pending = null;
+		add(valueOf(row.value(column)), row.sequence);
+	}
+
+	/**
+	 * Replace the queued value of the newest row of the flow, without aggregating again the whole flow.<br />
+	 * If the new value is not better than the previous one, the rows the previous value made useless are queued again:
+	 * they are the rows following the last value queued before the newest row.
+	 * 
+	 * @param row the newest row
+	 * @param before the previous value of the row
+	 * @param after the new value of the row
+	 */
+	private void replaceNewest(TalendRowImpl row, Object before, Object after){
+		if(before != null){
+			count--;
+			int last = (head + size - 1) % values.length;
+			if(size > 0 && sequences[last] == row.sequence){
+				values[last] = null;
+				size--;
+			}
+			int c = (after == null ? 0 : TalendPredicate.compare(after, before));
+			if(after == null || (function == TalendWindowFunction.MAX ? c < 0 : c > 0)){
+				long from = (size > 0 ? sequences[(head + size - 1) % values.length] + 1 : flow.committedRow(0).sequence);
+				int position = flow.positionOf(row);
+				for(int i = position - (int) (row.sequence - from); i < position; i++){
+					TalendRowImpl r = flow.committedRow(i);
+					Object value = valueOf(r.value(column));
+					if(value != null) push(value, r.sequence);
+				}
+			}
+		}
+		add(after, row.sequence);
+	}
+
+	private boolean isNewest(TalendRowImpl row){
+		int rows = flow.countRows();
+		return rows > 0 && flow.committedRow(rows - 1) == row;
+	}
+
+	private Object valueOf(TalendValue value){
+		return TalendIndex.keyOf(column, value);
+	}
+
+	private void add(Object value, long sequence){
+		if(value == null) return;
+		count++;
+		if(extreme){
+			if(!stale) push(value, sequence);
+			return;
+		}
+		if(integral){
+			longSum += ((Number) value).longValue();
+		} else if(decimal){
+			decimalSum = (decimalSum == null ? (BigDecimal) value : decimalSum.add((BigDecimal) value));
+		} else {
+			doubleSum += ((Number) value).doubleValue();
+		}
+	}
+
+	private void subtract(Object value){
+		if(integral){
+			longSum -= ((Number) value).longValue();
+		} else if(decimal){
+			decimalSum = decimalSum.subtract((BigDecimal) value);
+		} else {
+			doubleSum = (count == 0 ? 0 : doubleSum - ((Number) value).doubleValue());
+		}
+	}
+
+	/**
+	 * Append a value to the monotonic queue, dropping the values it makes useless
+	 */
+	private void push(Object value, long sequence){
+		boolean max = (function == TalendWindowFunction.MAX);
+		while(size > 0){
+			int last = (head + size - 1) % values.length;
+			int c = TalendPredicate.compare(values[last], value);
+			if(max ? c > 0 : c < 0) break;
+			values[last] = null;
+			size--;
+		}
+		if(size == values.length){
+			Object[] v = new Object[values.length * 2];
+			long[] s = new long[values.length * 2];
+			for(int i = 0; i < size; i++){
+				v[i] = values[(head + i) % values.length];
+				s[i] = sequences[(head + i) % values.length];
+			}
+			values = v;
+			sequences = s;
+			head = 0;
+		}
+		int tail = (head + size) % values.length;
+		values[tail] = value;
+		sequences[tail] = sequence;
+		size++;
+	}
+
+	/**
+	 * Aggregate again all the committed rows of the flow
+	 */
+	private void rebuild(){
+		clear();
+		for(int i = 0; i < flow.countRows(); i++){
+			added(flow.committedRow(i));
+		}
+		if(extreme) flush();
+	}
+
+}
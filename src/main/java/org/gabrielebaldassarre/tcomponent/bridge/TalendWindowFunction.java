@@ -0,0 +1,55 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * This enum rapresents the aggregate functions that can be computed over the window of rows held by a flow,
+ * using {@link TalendFlow#addWindowAggregate(TalendWindowFunction, String)}.<br />
+ * Null values are ignored by all the functions.
+ *
+ * @author Gabriele Baldassarre
+ * @see TalendWindowAggregate
+ *
+ */
+public enum TalendWindowFunction {
+
+	/**
+	 * Number of non-null values, or number of rows if no column is given
+	 */
+	COUNT,
+
+	/**
+	 * Sum of the values of a numeric column
+	 */
+	SUM,
+
+	/**
+	 * Average of the values of a numeric column
+	 */
+	AVG,
+
+	/**
+	 * Smallest value of a column
+	 */
+	MIN,
+
+	/**
+	 * Biggest value of a column
+	 */
+	MAX
+
+}
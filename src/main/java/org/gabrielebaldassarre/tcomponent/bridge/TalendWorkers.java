@@ -0,0 +1,100 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for operators over flows (ie. aggregations and joins) splitting their work among many threads.<br />
+ * Work is run in the common fork-join pool, and only when there are enough rows to make it worth it.
+ * 
+ * @author Gabriele Baldassarre
+ *
+ */
+final class TalendWorkers {
+
+	/**
+	 * Minimum number of rows handled by each thread
+	 */
+	static final int MIN_ROWS_PER_THREAD = 16 * 1024;
+
+	private TalendWorkers(){
+	}
+
+	/**
+	 * Get the number of threads to use for the given number of rows
+	 * 
+	 * @param rows the number of rows
+	 * @param parallelism the maximum number of threads
+	 * @return the number of threads, at least one
+	 */
+	static int countThreads(int rows, int parallelism){
+		return Math.max(1, Math.min(parallelism, rows / MIN_ROWS_PER_THREAD));
+	}
+
+	/**
+	 * Get the first position of the range of rows handled by a thread.<br />
+	 * The range of the thread i spans from <code>from(rows, threads, i)</code> included to <code>from(rows, threads, i + 1)</code> excluded.
+	 * 
+	 * @param rows the number of rows
+	 * @param threads the number of threads
+	 * @param i the thread, starting from zero
+	 * @return the position of the first row
+	 */
+	static int from(int rows, int threads, int i){
+		return (int) ((long) rows * i / threads);
+	}
+
+	/**
+	 * Run some tasks and wait for them to complete.<br />
+	 * A single task is run in the calling thread, many tasks are run in the common fork-join pool.
+	 * 
+	 * @param tasks the tasks to run
+	 * @return the results of the tasks, in the same order
+	 * @throws RuntimeException the first unchecked exception thrown by the tasks, if any
+	 */
+	static <T> List<T> invokeAll(List<? extends Callable<T>> tasks){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			if(tasks.size() == 1){
+				results.add(tasks.get(0).call());
+				return results;
+			}
+			for(Future<T> f : ForkJoinPool.commonPool().invokeAll(tasks)){
+				results.add(f.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package org.gabrielebaldassarre.app;
+
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.lt;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendAggregation;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for group-by aggregations over flows.
+ */
+public class TalendAggregationTest
+    extends TestCase
+{
+    private static final int ROWS = 20000;
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendAggregationTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendAggregationTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "k", TalendType.INTEGER )
+            .addColumn( "c", TalendType.STRING, null, false, TalendEncoding.UTF8 )
+            .addColumn( "n", TalendType.LONG )
+            .addColumn( "d", TalendType.DOUBLE )
+            .addColumn( "b", TalendType.BIGDECIMAL )
+            .addColumn( "s", TalendType.STRING );
+        for( int i = 0; i < ROWS; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", i )
+                .setValue( "c", i % 7 == 0 ? null : "c" + ( i % 5 ) )
+                .setValue( "n", (long) ( i % 100 ) )
+                .setValue( "d", i / 2.0 )
+                .setValue( "b", new BigDecimal( "0.5" ) )
+                .setValue( "s", "s" + ( i % 13 ) );
+        }
+    }
+
+    private TalendAggregation all( TalendAggregation aggregation )
+    {
+        return aggregation.count( "cnt" ).count( "c", "cc" ).sum( "n", "sn" ).sum( "d", "sd" ).sum( "b", "sb" )
+            .avg( "n", "an" ).min( "s", "mins" ).max( "n", "maxn" ).countDistinct( "s", "ds" );
+    }
+
+    private Map<Object, TalendRow> byKey( TalendFlow groups, String column )
+    {
+        Map<Object, TalendRow> rows = new HashMap<Object, TalendRow>();
+        for( TalendRow row : groups )
+        {
+            assertNull( rows.put( row.getValue( column ), row ) );
+        }
+        return rows;
+    }
+
+    private void assertSameGroups( TalendFlow expected, TalendFlow actual, String column )
+    {
+        Map<Object, TalendRow> left = byKey( expected, column );
+        Map<Object, TalendRow> right = byKey( actual, column );
+        assertEquals( left.keySet(), right.keySet() );
+        for( Map.Entry<Object, TalendRow> group : left.entrySet() )
+        {
+            TalendRow other = right.get( group.getKey() );
+            for( int i = 0; i < expected.getColumns().length; i++ )
+            {
+                String name = expected.getColumns()[i].getName();
+                Object value = group.getValue().getValue( name );
+                if( value instanceof Double )
+                {
+                    assertEquals( (Double) value, (Double) other.getValue( name ), 1e-6 );
+                }
+                else
+                {
+                    assertEquals( value, other.getValue( name ) );
+                }
+            }
+        }
+    }
+
+    public void testAccumulators()
+    {
+        Map<Object, TalendRow> groups = byKey( all( flow.groupBy( "c" ) ).setParallelism( 1 ).toFlow( "g" ), "c" );
+        assertEquals( 6, groups.size() );
+
+        long count = 0;
+        long sum = 0;
+        double doubles = 0;
+        for( int i = 0; i < ROWS; i++ )
+        {
+            if( i % 7 == 0 )
+            {
+                count++;
+                sum += i % 100;
+                doubles += i / 2.0;
+            }
+        }
+        TalendRow nulls = groups.get( null );
+        assertEquals( Long.valueOf( count ), nulls.getValue( "cnt" ) );
+        assertEquals( Long.valueOf( 0 ), nulls.getValue( "cc" ) );
+        assertEquals( Long.valueOf( sum ), nulls.getValue( "sn" ) );
+        assertEquals( doubles, (Double) nulls.getValue( "sd" ), 1e-6 );
+        assertEquals( 0, new BigDecimal( "0.5" ).multiply( new BigDecimal( count ) ).compareTo( (BigDecimal) nulls.getValue( "sb" ) ) );
+        assertEquals( (double) sum / count, (Double) nulls.getValue( "an" ), 1e-9 );
+        assertEquals( "s0", nulls.getValue( "mins" ) );
+        assertEquals( Long.valueOf( 99 ), nulls.getValue( "maxn" ) );
+        assertEquals( Long.valueOf( 13 ), nulls.getValue( "ds" ) );
+
+        long total = 0;
+        for( TalendRow group : groups.values() )
+        {
+            total += (Long) group.getValue( "cnt" );
+        }
+        assertEquals( ROWS, total );
+        assertEquals( TalendType.LONG, flow.getModel().getFlow( "g" ).getColumn( "sn" ).getType() );
+        assertEquals( TalendEncoding.UTF8, flow.getModel().getFlow( "g" ).getColumn( "c" ).getEncoding() );
+    }
+
+    public void testMixedNumericSums()
+    {
+        TalendFlow mixed = model.getFlowFactory().newFlow( "mixed", null, false );
+        mixed.addColumn( "i", TalendType.INTEGER ).addColumn( "f", TalendType.FLOAT ).addColumn( "y", TalendType.BYTE );
+        model.getRowFactory().newRow( mixed ).setValue( "i", Integer.MAX_VALUE ).setValue( "f", 1.5f ).setValue( "y", (byte) 100 );
+        model.getRowFactory().newRow( mixed ).setValue( "i", Integer.MAX_VALUE ).setValue( "f", 2.5f ).setValue( "y", (byte) 100 );
+        model.getRowFactory().newRow( mixed );
+        TalendRow result = mixed.groupBy().sum( "i", "si" ).sum( "f", "sf" ).sum( "y", "sy" ).avg( "i", "ai" ).min( "f", "mf" ).toFlow( "sums" ).getRow( 0 );
+        // integral sums are widened to longs and never overflow
+        assertEquals( Long.valueOf( 2L * Integer.MAX_VALUE ), result.getValue( "si" ) );
+        assertEquals( Double.valueOf( 4.0 ), result.getValue( "sf" ) );
+        assertEquals( Long.valueOf( 200 ), result.getValue( "sy" ) );
+        assertEquals( (double) Integer.MAX_VALUE, (Double) result.getValue( "ai" ), 0.0 );
+        assertEquals( Float.valueOf( 1.5f ), result.getValue( "mf" ) );
+    }
+
+    public void testEmptyGlobalAggregationHasOneRow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "x", TalendType.INTEGER );
+        TalendFlow result = empty.groupBy().count( "cnt" ).sum( "x", "s" ).min( "x", "mn" ).avg( "x", "av" ).toFlow( "g" );
+        assertEquals( 1, result.countRows() );
+        assertEquals( Long.valueOf( 0 ), result.getRow( 0 ).getValue( "cnt" ) );
+        assertNull( result.getRow( 0 ).getValue( "s" ) );
+        assertNull( result.getRow( 0 ).getValue( "mn" ) );
+        assertNull( result.getRow( 0 ).getValue( "av" ) );
+
+        assertEquals( 0, empty.groupBy( "x" ).count( "cnt" ).toFlow( "h" ).countRows() );
+        TalendFlow filtered = flow.groupBy().where( lt( "k", -1 ) ).count( "cnt" ).max( "n", "mx" ).toFlow( "filtered" );
+        assertEquals( 1, filtered.countRows() );
+        assertEquals( Long.valueOf( 0 ), filtered.getRow( 0 ).getValue( "cnt" ) );
+        assertNull( filtered.getRow( 0 ).getValue( "mx" ) );
+    }
+
+    public void testParallelAgreesWithSerial()
+    {
+        TalendFlow serial = all( flow.groupBy( "c" ) ).setParallelism( 1 ).toFlow( "serial" );
+        TalendFlow parallel = all( flow.groupBy( "c" ) ).setParallelism( 4 ).toFlow( "parallel" );
+        assertSameGroups( serial, parallel, "c" );
+    }
+
+    public void testSpillAgreesWithMemory()
+    {
+        TalendFlow memory = all( flow.groupBy( "c" ) ).setParallelism( 1 ).toFlow( "memory" );
+        TalendFlow spilled = all( flow.groupBy( "c" ) ).setMaximumGroups( 2 ).toFlow( "spilled" );
+        assertSameGroups( memory, spilled, "c" );
+
+        // many more groups than the budget, forcing partitions to be split again
+        TalendFlow keys = flow.groupBy( "k" ).count( "cnt" ).sum( "n", "sn" ).setMaximumGroups( 500 ).toFlow( "keys" );
+        assertEquals( ROWS, keys.countRows() );
+        long sum = 0;
+        for( TalendRow row : keys )
+        {
+            assertEquals( Long.valueOf( 1 ), row.getValue( "cnt" ) );
+            sum += (Long) row.getValue( "sn" );
+        }
+        assertEquals( ROWS / 100 * 4950L, sum );
+    }
+
+    public void testMultipleGroupingColumns()
+    {
+        TalendFlow memory = flow.groupBy( "c", "n" ).where( lt( "n", 2 ) ).count( "cnt" ).min( "k", "mink" ).toFlow( "memory" );
+        TalendFlow spilled = flow.groupBy( "c", "n" ).where( lt( "n", 2 ) ).count( "cnt" ).min( "k", "mink" ).setMaximumGroups( 3 ).toFlow( "spilled" );
+        // rows with n below 2 hold c0 or c1, or null every seven rows
+        assertEquals( 4, memory.countRows() );
+        assertEquals( memory.countRows(), spilled.countRows() );
+        long total = 0;
+        for( TalendRow row : spilled )
+        {
+            assertTrue( (Long) row.getValue( "n" ) < 2 );
+            total += (Long) row.getValue( "cnt" );
+        }
+        assertEquals( ROWS / 50, total );
+    }
+
+    public void testInvalidAggregations()
+    {
+        try
+        {
+            flow.groupBy( "missing" );
+            fail( "unknown grouping column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.groupBy( "c" ).sum( "s", "x" );
+            fail( "string column summed" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.groupBy( "c" ).count( "" );
+            fail( "empty result name accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.groupBy( "c" ).setMaximumGroups( 0 );
+            fail( "empty group budget accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.groupBy( "c" ).setParallelism( 0 );
+            fail( "no threads accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.groupBy( "c" ).count( "cnt" ).toFlow( "f" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
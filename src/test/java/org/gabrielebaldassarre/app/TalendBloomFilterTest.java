@@ -0,0 +1,222 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendBloomFilter;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for Bloom filters on the indexes of flows.
+ */
+public class TalendBloomFilterTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendBloomFilterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendBloomFilterTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+    }
+
+    private static int count( TalendFlow flow, String column, Object value )
+    {
+        return flow.select().where( TalendPredicate.eq( column, value ) ).count();
+    }
+
+    public void testLookupsOfEvictedAndMissingKeys()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 10000, false );
+        flow.addColumn( "k", TalendType.LONG ).addColumn( "s", TalendType.STRING ).addIndex( "k" );
+        TalendBloomFilter filter = flow.addBloomFilter( "k" );
+        assertEquals( 1, filter.getColumns().length );
+        // evictions outnumber the keys many times, so the filter is rebuilt along the way
+        for( long i = 0; i < 30000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", i * 3 ).setValue( "s", "x" + i );
+        }
+        // keys never held by the index only pass the filter by chance
+        for( long i = 0; i < 90000; i++ )
+        {
+            if( i % 3 != 0 )
+            {
+                assertEquals( 0, count( flow, "k", i ) );
+            }
+        }
+        assertEquals( 60000, filter.countLookups() );
+        assertEquals( 60000, filter.countRejections() + filter.countFalsePositives() );
+        assertTrue( filter.getFalsePositiveRate() < 0.01 );
+
+        // evicted keys may still be set until the filter is rebuilt, but keys held by the index are never rejected
+        int hits = 0;
+        for( long i = 0; i < 90000; i += 3 )
+        {
+            int c = count( flow, "k", i );
+            assertEquals( i / 3 >= 30000 - flow.countRows() ? 1 : 0, c );
+            hits += c;
+        }
+        assertEquals( flow.countRows(), hits );
+        assertEquals( 90000, filter.countLookups() );
+        assertEquals( 90000 - hits, filter.countRejections() + filter.countFalsePositives() );
+        assertTrue( filter.countBits() > 0 );
+    }
+
+    public void testUpdatesOfKeys()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 100, false );
+        flow.addColumn( "k", TalendType.LONG ).addIndex( "k" ).addBloomFilter( "k" );
+        for( long i = 0; i < 1000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", i );
+        }
+        // the oldest row left holds 899
+        assertEquals( 101, flow.countRows() );
+        flow.getRow( 0 ).setValue( "k", -7L );
+        assertEquals( 1, count( flow, "k", -7 ) );
+        assertEquals( 0, count( flow, "k", 899L ) );
+        assertEquals( 1, count( flow, "k", 900L ) );
+    }
+
+    public void testMixedNumericKeysAndNulls()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "k", TalendType.LONG ).addColumn( "s", TalendType.STRING ).addIndex( "k" ).addIndex( "s", "k" );
+        TalendBloomFilter filter = flow.addBloomFilter( "k" );
+        TalendBloomFilter composite = flow.addBloomFilter( "k", "s" );
+        assertEquals( 2, composite.getColumns().length );
+        model.getRowFactory().newRow( flow ).setValue( "k", 3 ).setValue( "s", "a" );
+        model.getRowFactory().newRow( flow ).setValue( "k", 4.0 ).setValue( "s", "b" );
+        model.getRowFactory().newRow( flow ).setValue( "s", "n" );
+        // numbers of other types holding the same value hash like the values of the column
+        assertEquals( 1, count( flow, "k", 3L ) );
+        assertEquals( 1, count( flow, "k", 3.0 ) );
+        assertEquals( 1, count( flow, "k", 4 ) );
+        assertEquals( 1, count( flow, "k", new BigDecimal( "4.00" ) ) );
+        assertEquals( 0, count( flow, "k", 3.5 ) );
+        assertEquals( 1, flow.select().where( TalendPredicate.isNull( "k" ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "s", "b" ).and( TalendPredicate.eq( "k", 4 ) ) ).count() );
+        assertTrue( filter.countLookups() > 0 );
+    }
+
+    public void testPrimaryKeyChecksOnCommit()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "p", null, true );
+        flow.addColumn( "id", TalendType.INTEGER, null, true );
+        TalendBloomFilter filter = flow.addBloomFilter( "id" );
+        for( int i = 0; i < 1000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "id", i );
+        }
+        flow.commit();
+        // all the new keys were missing and rejected by the filter
+        assertEquals( 1000, filter.countLookups() );
+        assertEquals( 1000, filter.countRejections() );
+        assertEquals( 0.0, filter.getFalsePositiveRate(), 0.0 );
+        model.getRowFactory().newRow( flow ).setValue( "id", 5L );
+        try
+        {
+            flow.commit();
+            fail( "duplicate key committed" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "k", TalendType.INTEGER ).addIndex( "k" );
+        TalendBloomFilter filter = flow.addBloomFilter( "k" );
+        model.getRowFactory().newRow( flow ).setValue( "k", 3 );
+        flow.commit();
+        model.getRowFactory().newRow( flow ).setValue( "k", 9 );
+        flow.rollback();
+        assertEquals( 0, count( flow, "k", 9 ) );
+        assertEquals( 1, count( flow, "k", 3 ) );
+
+        flow.truncate();
+        flow.commit();
+        assertEquals( 0, count( flow, "k", 3 ) );
+        assertEquals( 0.0, filter.getExpectedFalsePositiveRate(), 0.0 );
+        model.getRowFactory().newRow( flow ).setValue( "k", 3 );
+        flow.commit();
+        assertEquals( 1, count( flow, "k", 3 ) );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "k", TalendType.INTEGER ).addIndex( "k" );
+        TalendBloomFilter filter = flow.addBloomFilter( "k" );
+        assertSame( filter, flow.addBloomFilter( "k" ) );
+        assertTrue( Double.isNaN( filter.getFalsePositiveRate() ) );
+        assertEquals( 0.0, filter.getExpectedFalsePositiveRate(), 0.0 );
+        assertEquals( 0, count( flow, "k", 1 ) );
+        assertEquals( 1, filter.countLookups() );
+        assertEquals( 1, filter.countRejections() );
+        assertEquals( 0, filter.countFalsePositives() );
+    }
+
+    public void testFiltersNeedIndexes()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "k", TalendType.INTEGER ).addColumn( "s", TalendType.STRING ).addIndex( "k", "s" );
+        try
+        {
+            flow.addBloomFilter( "s" );
+            fail( "filter without an index" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addBloomFilter();
+            fail( "no column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addBloomFilter( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        // columns can be given in any order
+        assertNotNull( flow.addBloomFilter( "s", "k" ) );
+    }
+}
@@ -0,0 +1,162 @@
+package org.gabrielebaldassarre.app;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendArenaValue;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendByteArrayValue;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for BYTE_ARRAY columns backed by byte arenas.
+ */
+public class TalendByteArrayValueTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+    private TalendFlow other;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendByteArrayValueTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendByteArrayValueTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "blob", TalendType.BYTE_ARRAY, null, false, TalendEncoding.ARENA )
+            .addColumn( "plain", TalendType.BYTE_ARRAY )
+            .addColumn( "text", TalendType.STRING, null, false, TalendEncoding.UTF8 );
+        other = model.getFlowFactory().newFlow( "g", null, false );
+        other.addColumn( "blob", TalendType.BYTE_ARRAY, null, false, TalendEncoding.ARENA );
+    }
+
+    public void testSlicesAreReadOnly()
+    {
+        byte[] payload = new byte[5000];
+        payload[4999] = 7;
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "blob", payload ).setValue( "plain", new byte[]{ 1, 2 } );
+        assertTrue( row.getTalendValue( "blob" ) instanceof TalendByteArrayValue );
+
+        ByteBuffer slice = row.getByteBuffer( "blob" );
+        assertEquals( 0, slice.position() );
+        assertEquals( 5000, slice.remaining() );
+        assertEquals( 7, slice.get( 4999 ) );
+        assertTrue( slice.isReadOnly() );
+        try
+        {
+            slice.put( 0, (byte) 1 );
+            fail( "slice was written" );
+        }
+        catch( ReadOnlyBufferException e )
+        {
+            // expected
+        }
+        assertEquals( 2, row.getByteBuffer( "plain" ).remaining() );
+    }
+
+    public void testValuesDoNotAliasTheCallerArray()
+    {
+        byte[] payload = { 1, 2, 3 };
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "blob", payload );
+        payload[0] = 9;
+        assertEquals( 1, ( (byte[]) row.getValue( "blob" ) )[0] );
+
+        byte[] copy = (byte[]) row.getValue( "blob" );
+        copy[1] = 9;
+        assertEquals( 2, ( (TalendArenaValue) row.getTalendValue( "blob" ) ).byteAt( 1 ) );
+    }
+
+    public void testClonesAndCopiesShareBytes()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "blob", new byte[]{ 4, 5, 6 } );
+        TalendRow copy = model.getRowFactory().newRow( other ).setValue( "blob", row.getTalendValue( "blob" ) );
+        assertEquals( row.getTalendValue( "blob" ), copy.getTalendValue( "blob" ) );
+        assertEquals( row.getTalendValue( "blob" ), row.clone().getTalendValue( "blob" ) );
+        assertEquals( row.getTalendValue( "blob" ).hashCode(), copy.getTalendValue( "blob" ).hashCode() );
+        assertTrue( Arrays.equals( new byte[]{ 4, 5, 6 }, (byte[]) copy.getValue( "blob" ) ) );
+    }
+
+    public void testTextCanBeCopiedAsBytes()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "text", ByteBuffer.wrap( new byte[]{ 'c', 'i', 'a', 'o' } ) );
+        assertEquals( "ciao", row.getValue( "text" ) );
+        TalendRow copy = model.getRowFactory().newRow( other ).setValue( "blob", row.getTalendValue( "text" ) );
+        assertEquals( "ciao", new String( (byte[]) copy.getValue( "blob" ) ) );
+    }
+
+    public void testNullAndEmptyValues()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        assertNull( row.getValue( "blob" ) );
+        assertNull( row.getByteBuffer( "blob" ) );
+
+        row.setValue( "blob", new byte[0] );
+        assertEquals( 0, row.getByteBuffer( "blob" ).remaining() );
+        assertEquals( 0, ( (byte[]) row.getValue( "blob" ) ).length );
+    }
+
+    public void testOutOfBoundsBytes()
+    {
+        TalendArenaValue value = (TalendArenaValue) model.getRowFactory().newRow( flow ).setValue( "blob", new byte[]{ 1 } ).getTalendValue( "blob" );
+        try
+        {
+            value.byteAt( 1 );
+            fail( "read past the end of the value" );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+
+    public void testFiltersCompareBytes()
+    {
+        model.getRowFactory().newRow( flow ).setValue( "blob", new byte[]{ 1, 2 } );
+        model.getRowFactory().newRow( flow ).setValue( "blob", new byte[]{ 1, 2, 3 } );
+        model.getRowFactory().newRow( flow );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "blob", new byte[]{ 1, 2 } ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.ne( "blob", new byte[]{ 1, 2 } ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.isNull( "blob" ) ).count() );
+    }
+
+    public void testArenaIsOnlySupportedByByteArrays()
+    {
+        try
+        {
+            flow.addColumn( "n", TalendType.LONG, null, false, TalendEncoding.ARENA );
+            fail( "arena encoding accepted by a long column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
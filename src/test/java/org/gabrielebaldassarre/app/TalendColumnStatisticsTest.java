@@ -0,0 +1,254 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendColumnStatistics;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for column statistics and the zone maps queries use to skip blocks of rows.
+ */
+public class TalendColumnStatisticsTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendColumnStatisticsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendColumnStatisticsTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+    }
+
+    private TalendFlow newFlow( String name, boolean transactional )
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( name, 20000, transactional );
+        flow.addColumn( "ts", TalendType.LONG ).addColumn( "c", TalendType.STRING, null, false, TalendEncoding.UTF8 ).addColumn( "d", TalendType.DOUBLE );
+        return flow;
+    }
+
+    private static void assertSameCount( TalendFlow flow, TalendFlow plain, TalendPredicate predicate )
+    {
+        assertEquals( predicate.toString(), plain.select().where( predicate ).count(), flow.select().where( predicate ).count() );
+    }
+
+    /**
+     * Check the statistics against the values of the committed rows
+     */
+    private static void assertStatistics( TalendFlow flow )
+    {
+        TalendColumnStatistics ts = flow.getStatistics( "ts" );
+        TalendColumnStatistics c = flow.getStatistics( "c" );
+        Set<Object> distinct = new HashSet<Object>();
+        long nulls = 0;
+        for( TalendRow row : flow )
+        {
+            Long value = (Long) row.getValue( "ts" );
+            // bounds can be wider than the values, but never narrower
+            assertTrue( (Long) ts.getMinimum() <= value );
+            assertTrue( (Long) ts.getMaximum() >= value );
+            if( row.getValue( "c" ) == null )
+            {
+                nulls++;
+            }
+            else
+            {
+                distinct.add( row.getValue( "c" ) );
+            }
+        }
+        assertEquals( nulls, c.countNulls() );
+        assertEquals( flow.countRows() - nulls, c.countValues() );
+        // distinct values of evicted blocks may still be counted
+        assertTrue( c.estimateDistinct() >= distinct.size() * 0.9 );
+        assertTrue( c.estimateDistinct() <= 500 * 1.1 );
+    }
+
+    public void testZoneMapsAgreeWithFullScans()
+    {
+        for( boolean transactional : new boolean[]{ false, true } )
+        {
+            TalendFlow flow = newFlow( "f" + transactional, transactional );
+            TalendFlow plain = newFlow( "plain" + transactional, transactional );
+            flow.collectStatistics();
+            Random random = new Random( 2 );
+            long ts = 0;
+            for( int batch = 0; batch < 20; batch++ )
+            {
+                for( int i = 0; i < 2000; i++ )
+                {
+                    ts += random.nextInt( 3 );
+                    String c = random.nextInt( 9 ) == 0 ? null : "c" + random.nextInt( 500 );
+                    Double d = random.nextInt( 20 ) == 0 ? null : random.nextGaussian();
+                    for( TalendFlow f : new TalendFlow[]{ flow, plain } )
+                    {
+                        model.getRowFactory().newRow( f ).setValue( "ts", ts ).setValue( "c", c ).setValue( "d", d );
+                    }
+                }
+                if( transactional )
+                {
+                    flow.commit();
+                    plain.commit();
+                }
+                // changing an old value widens the bounds of its block
+                int position = random.nextInt( flow.countRows() );
+                long value = random.nextInt( 100000 );
+                flow.getRow( position ).setValue( "ts", value );
+                plain.getRow( position ).setValue( "ts", value );
+
+                assertSameCount( flow, plain, TalendPredicate.between( "ts", ts - 5000, ts - 2000 ) );
+                assertSameCount( flow, plain, TalendPredicate.eq( "ts", value ) );
+                assertSameCount( flow, plain, TalendPredicate.lt( "ts", 20000 ).or( TalendPredicate.isNull( "c" ) ) );
+                assertSameCount( flow, plain, TalendPredicate.in( "c", "c1", "c7" ) );
+                assertSameCount( flow, plain, TalendPredicate.gt( "d", 2.5 ) );
+                assertSameCount( flow, plain, TalendPredicate.not( TalendPredicate.ge( "ts", 100 ) ) );
+                assertSameCount( flow, plain, TalendPredicate.ne( "ts", 5 ) );
+            }
+            assertStatistics( flow );
+        }
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow flow = newFlow( "f", true );
+        flow.collectStatistics( "ts", "c" );
+        model.getRowFactory().newRow( flow ).setValue( "ts", 5L ).setValue( "c", "a" );
+        // pending rows are not counted
+        assertEquals( 0, flow.getStatistics( "ts" ).countValues() );
+        flow.commit();
+        model.getRowFactory().newRow( flow ).setValue( "ts", 1000L );
+        model.getRowFactory().newRow( flow ).setValue( "ts", -1000L );
+        flow.rollback();
+        assertEquals( 1, flow.getStatistics( "ts" ).countValues() );
+        assertEquals( 1, flow.getStatistics( "c" ).countValues() );
+        assertEquals( Long.valueOf( 5 ), flow.getStatistics( "ts" ).getMinimum() );
+        assertEquals( Long.valueOf( 5 ), flow.getStatistics( "ts" ).getMaximum() );
+
+        flow.truncate();
+        flow.commit();
+        TalendColumnStatistics ts = flow.getStatistics( "ts" );
+        assertEquals( 0, ts.countValues() );
+        assertEquals( 0, ts.countNulls() );
+        assertNull( ts.getMinimum() );
+        assertEquals( 0, flow.getStatistics( "c" ).estimateDistinct() );
+        model.getRowFactory().newRow( flow ).setValue( "ts", 7L );
+        flow.commit();
+        assertEquals( Long.valueOf( 7 ), ts.getMaximum() );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "ts", 7 ) ).count() );
+    }
+
+    public void testMixedNumericValues()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "numbers", null, false );
+        flow.addColumn( "v", TalendType.LONG ).collectStatistics();
+        for( Object value : new Object[]{ 3, 7.0, new BigDecimal( "10" ), "2", null } )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "v", value );
+        }
+        TalendColumnStatistics v = flow.getStatistics( "v" );
+        // bounds are converted to the type of the column
+        assertEquals( Long.valueOf( 2 ), v.getMinimum() );
+        assertEquals( Long.valueOf( 10 ), v.getMaximum() );
+        assertEquals( 1, v.countNulls() );
+        assertEquals( 4, v.countValues() );
+        assertEquals( 4, v.estimateDistinct() );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "v", 7 ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.gt( "v", 8.5 ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.lt( "v", 2.5 ) ).count() );
+        assertEquals( 0, flow.select().where( TalendPredicate.gt( "v", 10 ) ).count() );
+        assertEquals( 4, flow.select().where( TalendPredicate.le( "v", new BigDecimal( "10" ) ) ).count() );
+    }
+
+    public void testDistinctEstimates()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "k", TalendType.INTEGER );
+        for( int i = 0; i < 200000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", i % 12345 );
+        }
+        // statistics started on a flow that already has rows
+        flow.collectStatistics( "k" );
+        TalendColumnStatistics k = flow.getStatistics( "k" );
+        assertTrue( Math.abs( k.estimateDistinct() - 12345 ) < 12345 * 0.06 );
+        assertEquals( 0, k.countNulls() );
+        assertEquals( Integer.valueOf( 0 ), k.getMinimum() );
+        assertEquals( Integer.valueOf( 12344 ), k.getMaximum() );
+    }
+
+    public void testEmptyFlowsAndUncomparableValues()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "v", TalendType.LONG ).addColumn( "o", TalendType.OBJECT ).addListColumn( "l", TalendType.INTEGER );
+        assertNull( flow.getStatistics( "v" ) );
+        flow.collectStatistics();
+        TalendColumnStatistics v = flow.getStatistics( "v" );
+        assertEquals( "v", v.getColumn().getName() );
+        assertNull( v.getMinimum() );
+        assertNull( v.getMaximum() );
+        assertEquals( 0, v.countNulls() );
+        assertEquals( 0, v.countValues() );
+        assertEquals( 0, v.estimateDistinct() );
+        assertEquals( 0, flow.select().where( TalendPredicate.eq( "v", 1 ) ).count() );
+
+        model.getRowFactory().newRow( flow ).setValue( "o", new Object() );
+        assertNull( flow.getStatistics( "o" ).getMinimum() );
+        assertEquals( 1, flow.getStatistics( "o" ).countValues() );
+        assertNotNull( flow.getStatistics( "l" ) );
+        // statistics already collected are left untouched
+        flow.collectStatistics( "v" );
+        assertSame( v, flow.getStatistics( "v" ) );
+    }
+
+    public void testUnknownColumns()
+    {
+        TalendFlow flow = newFlow( "f", false );
+        try
+        {
+            flow.collectStatistics( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.getStatistics( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
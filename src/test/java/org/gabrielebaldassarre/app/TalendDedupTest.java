@@ -0,0 +1,270 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendDedup;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendDedupPolicy;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for hash-based deduplication of flows.
+ */
+public class TalendDedupTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendDedupTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendDedupTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "id", TalendType.INTEGER ).addColumn( "k", TalendType.STRING, "dflt", false, TalendEncoding.UTF8 ).addColumn( "n", TalendType.LONG );
+    }
+
+    public void testIncrementalUpdatesWithBothPolicies()
+    {
+        TalendDedup first = flow.deduplicate( "k", "n" ).into( "first", "duplicates" );
+        TalendDedup last = flow.deduplicate( "k", "n" ).keep( TalendDedupPolicy.KEEP_LAST ).into( "last", null );
+        assertNull( last.getDuplicates() );
+
+        Random random = new Random( 5 );
+        Map<String, Integer> firstIds = new LinkedHashMap<String, Integer>();
+        Map<String, Integer> lastIds = new HashMap<String, Integer>();
+        int id = 0;
+        for( int batch = 0; batch < 5; batch++ )
+        {
+            for( int i = 0; i < 2000; i++ )
+            {
+                String k = random.nextInt( 7 ) == 0 ? null : ( random.nextInt( 5 ) == 0 ? "dflt" : "k" + random.nextInt( 100 ) );
+                Long n = random.nextInt( 10 ) == 0 ? null : (long) random.nextInt( 20 );
+                TalendRow row = model.getRowFactory().newRow( flow ).setValue( "id", id ).setValue( "n", n );
+                // defaults and explicit values holding the same string are the same key
+                if( k == null || !k.equals( "dflt" ) || random.nextBoolean() )
+                {
+                    row.setValue( "k", k );
+                }
+                String key = k + "|" + n;
+                if( !firstIds.containsKey( key ) )
+                {
+                    firstIds.put( key, id );
+                }
+                lastIds.put( key, id++ );
+            }
+            flow.commit();
+            assertEquals( 2000, first.update() );
+            assertEquals( 2000, last.update() );
+        }
+        assertEquals( 0, first.update() );
+
+        TalendFlow uniques = first.getUniques();
+        assertEquals( firstIds.size(), uniques.countRows() );
+        assertEquals( id, uniques.countRows() + first.getDuplicates().countRows() );
+        int i = 0;
+        for( Map.Entry<String, Integer> key : firstIds.entrySet() )
+        {
+            TalendRow kept = uniques.getRow( i );
+            assertEquals( key.getValue(), kept.getValue( "id" ) );
+            assertEquals( key.getKey(), kept.getValue( "k" ) + "|" + kept.getValue( "n" ) );
+            assertEquals( lastIds.get( key.getKey() ), last.getUniques().getRow( i++ ).getValue( "id" ) );
+        }
+    }
+
+    public void testKeepLastRoutesReplacedRows()
+    {
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "k", TalendType.INTEGER ).addColumn( "v", TalendType.INTEGER );
+        for( int i = 0; i < 6; i++ )
+        {
+            model.getRowFactory().newRow( plain ).setValue( "k", i % 2 ).setValue( "v", i );
+        }
+        TalendDedup dedup = plain.deduplicate( "k" ).keep( TalendDedupPolicy.KEEP_LAST ).into( "u", "d" );
+        assertEquals( 2, dedup.getUniques().countRows() );
+        assertEquals( Integer.valueOf( 4 ), dedup.getUniques().getRow( 0 ).getValue( "v" ) );
+        assertEquals( Integer.valueOf( 5 ), dedup.getUniques().getRow( 1 ).getValue( "v" ) );
+        assertEquals( 4, dedup.getDuplicates().countRows() );
+        assertEquals( Integer.valueOf( 0 ), dedup.getDuplicates().getRow( 0 ).getValue( "v" ) );
+    }
+
+    public void testNullKeysAreEqual()
+    {
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "a", TalendType.INTEGER ).addColumn( "b", TalendType.STRING );
+        model.getRowFactory().newRow( plain );
+        model.getRowFactory().newRow( plain ).setValue( "a", null );
+        model.getRowFactory().newRow( plain ).setValue( "a", 1 );
+        model.getRowFactory().newRow( plain ).setValue( "b", "x" );
+        TalendDedup dedup = plain.deduplicate( "a", "b" ).into( "u", "d" );
+        assertEquals( 3, dedup.getUniques().countRows() );
+        assertEquals( 1, dedup.getDuplicates().countRows() );
+    }
+
+    public void testMixedNumericKeysOfOneColumn()
+    {
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "n", TalendType.LONG );
+        model.getRowFactory().newRow( plain ).setValue( "n", 1 );
+        model.getRowFactory().newRow( plain ).setValue( "n", 1L );
+        model.getRowFactory().newRow( plain ).setValue( "n", "1" );
+        model.getRowFactory().newRow( plain ).setValue( "n", 2 );
+        assertEquals( 2, plain.deduplicate( "n" ).into( "u", null ).getUniques().countRows() );
+    }
+
+    public void testEncodedKeys()
+    {
+        TalendFlow encoded = model.getFlowFactory().newFlow( "encoded", null, false );
+        encoded.addColumn( "d", TalendType.STRING, null, false, TalendEncoding.DICTIONARY )
+            .addColumn( "a", TalendType.STRING, null, false, TalendEncoding.AUTO )
+            .addColumn( "b", TalendType.BYTE_ARRAY, null, false, TalendEncoding.ARENA );
+        Set<String> keys = new HashSet<String>();
+        Random random = new Random( 1 );
+        for( int i = 0; i < 20000; i++ )
+        {
+            String d = "d" + random.nextInt( 10 );
+            String a = "a" + random.nextInt( 3000 );
+            byte[] b = { (byte) random.nextInt( 3 ) };
+            model.getRowFactory().newRow( encoded ).setValue( "d", d ).setValue( "a", a ).setValue( "b", b );
+            keys.add( d + "|" + a + "|" + b[0] );
+        }
+        TalendDedup dedup = encoded.deduplicate( "d", "a", "b" ).into( "u", "x" );
+        assertEquals( keys.size(), dedup.getUniques().countRows() );
+        assertEquals( 20000, dedup.getUniques().countRows() + dedup.getDuplicates().countRows() );
+        assertEquals( TalendEncoding.ARENA, dedup.getUniques().getColumn( "b" ).getEncoding() );
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendDedup dedup = flow.deduplicate( "n" ).into( "u", "d" );
+        model.getRowFactory().newRow( flow ).setValue( "n", 1L );
+        model.getRowFactory().newRow( flow ).setValue( "n", 2L );
+        flow.commit();
+        model.getRowFactory().newRow( flow ).setValue( "n", 3L );
+        flow.rollback();
+        assertEquals( 2, dedup.update() );
+
+        // keys already kept are remembered after the source is truncated
+        flow.truncate();
+        flow.commit();
+        assertEquals( 0, dedup.update() );
+        model.getRowFactory().newRow( flow ).setValue( "n", 1L );
+        model.getRowFactory().newRow( flow ).setValue( "n", 3L );
+        flow.commit();
+        assertEquals( 2, dedup.update() );
+        assertEquals( 3, dedup.getUniques().countRows() );
+        assertEquals( 1, dedup.getDuplicates().countRows() );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendDedup dedup = flow.deduplicate( "k" ).into( "u", "d" );
+        assertEquals( 0, dedup.update() );
+        assertEquals( 0, dedup.getUniques().countRows() );
+        assertEquals( 0, dedup.getDuplicates().countRows() );
+    }
+
+    public void testInvalidStates()
+    {
+        TalendDedup dedup = flow.deduplicate( "k" );
+        assertNull( dedup.getUniques() );
+        try
+        {
+            dedup.update();
+            fail( "update before the start" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        try
+        {
+            dedup.keep( null );
+            fail( "null policy accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        dedup.into( "u", "d" );
+        try
+        {
+            dedup.keep( TalendDedupPolicy.KEEP_LAST );
+            fail( "policy changed after the start" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        try
+        {
+            dedup.into( "u2", null );
+            fail( "started twice" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.deduplicate( "k" ).into( "u", null );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.deduplicate( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        model.getRowFactory().newRow( dedup.getUniques() );
+        try
+        {
+            dedup.update();
+            fail( "uniques modified by someone else" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+}
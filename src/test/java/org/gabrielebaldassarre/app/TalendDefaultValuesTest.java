@@ -0,0 +1,191 @@
+package org.gabrielebaldassarre.app;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for column defaults held by the schema rather than by each row.
+ */
+public class TalendDefaultValuesTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendDefaultValuesTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendDefaultValuesTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "country", TalendType.STRING, "IT" ).addColumn( "amount", TalendType.INTEGER, 7 ).addColumn( "note", TalendType.LONG, null );
+    }
+
+    public void testNewRowsReadDefaults()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        assertEquals( "IT", row.getValue( "country" ) );
+        assertEquals( Integer.valueOf( 7 ), row.getValue( "amount" ) );
+        assertNull( row.getValue( "note" ) );
+        assertEquals( 2, row.countValues() );
+        assertFalse( row.isEmpty() );
+        assertTrue( row.getTalendValue( "country" ).isColumnDefault() );
+    }
+
+    public void testNullOverridesDefault()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "amount", null ).setValue( "note", 5L );
+        assertNull( row.getValue( "amount" ) );
+        assertEquals( Long.valueOf( 5 ), row.getValue( "note" ) );
+        assertEquals( 2, row.countValues() );
+
+        TalendRow clone = row.clone();
+        assertNull( clone.getValue( "amount" ) );
+        assertEquals( "IT", clone.getValue( "country" ) );
+    }
+
+    public void testTruncateRevertsToDefaults()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "country", "FR" ).setValue( "amount", null );
+        row.truncate();
+        assertEquals( "IT", row.getValue( "country" ) );
+        assertEquals( Integer.valueOf( 7 ), row.getValue( "amount" ) );
+    }
+
+    public void testColumnsAddedLaterHaveTheirDefaults()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        flow.addColumn( "added", TalendType.DOUBLE, 1.5 );
+        assertEquals( Double.valueOf( 1.5 ), row.getValue( "added" ) );
+    }
+
+    public void testRemovedColumnsForgetValues()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "country", "FR" );
+        flow.removeColumn( flow.getColumn( "country" ) );
+        try
+        {
+            row.getValue( "country" );
+            fail( "read a removed column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        flow.addColumn( "country", TalendType.STRING, "DE" );
+        assertEquals( "DE", row.getValue( "country" ) );
+    }
+
+    public void testFiltersSeeDefaults()
+    {
+        model.getRowFactory().newRow( flow );
+        model.getRowFactory().newRow( flow ).setValue( "amount", 3 );
+        model.getRowFactory().newRow( flow ).setValue( "amount", null );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "amount", 7 ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.isNull( "amount" ) ).count() );
+        assertEquals( 3, flow.select().where( TalendPredicate.eq( "country", "IT" ) ).count() );
+    }
+
+    public void testTransactionsKeepDefaults()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "t", null, true );
+        transactional.addColumn( "id", TalendType.INTEGER, null, true ).addColumn( "amount", TalendType.INTEGER, 7 );
+        TalendRow row = model.getRowFactory().newRow( transactional );
+        assertFalse( row.isChanged() );
+        row.setValue( "id", 1 ).setValue( "amount", null );
+        assertTrue( row.isChanged() );
+        transactional.commit();
+        assertNull( transactional.getRow( 0 ).getValue( "amount" ) );
+
+        model.getRowFactory().newRow( transactional ).setValue( "id", 2 );
+        transactional.rollback();
+        assertEquals( 1, transactional.countRows() );
+
+        model.getRowFactory().newRow( transactional ).setValue( "id", 1 );
+        try
+        {
+            transactional.commit();
+            fail( "duplicate key committed" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    public void testConcurrentReadsSeeOldOrNewValues()
+        throws InterruptedException
+    {
+        final int columns = 150;
+        for( int round = 0; round < 20; round++ )
+        {
+            TalendFlow wide = model.getFlowFactory().newFlow( "wide" + round, null, false );
+            wide.addColumn( "c0", TalendType.STRING, "d" );
+            final TalendRow row = model.getRowFactory().newRow( wide ).setValue( "c0", "v0" );
+            // columns added after the row saved its first value
+            for( int j = 1; j < columns; j++ )
+            {
+                wide.addColumn( "c" + j, TalendType.STRING, "d" );
+            }
+            final Throwable[] failure = new Throwable[1];
+            Thread writer = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for( int pass = 0; pass < 20; pass++ )
+                        {
+                            for( int j = 0; j < columns; j++ )
+                            {
+                                row.setValue( "c" + j, "v" + j );
+                            }
+                        }
+                    }
+                    catch( Throwable t )
+                    {
+                        failure[0] = t;
+                    }
+                }
+            };
+            writer.start();
+            do
+            {
+                for( int j = 0; j < columns; j++ )
+                {
+                    Object value = row.getValue( "c" + j );
+                    assertTrue( value + " read from c" + j, "d".equals( value ) || ( "v" + j ).equals( value ) );
+                }
+            }
+            while( writer.isAlive() );
+            writer.join();
+            assertNull( failure[0] );
+            assertEquals( "v" + ( columns - 1 ), row.getValue( "c" + ( columns - 1 ) ) );
+        }
+    }
+}
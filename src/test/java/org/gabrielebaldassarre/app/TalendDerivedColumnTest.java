@@ -0,0 +1,260 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowImpl;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for derived columns computed from expressions.
+ */
+public class TalendDerivedColumnTest
+    extends TestCase
+{
+    private static final String[] DERIVED = { "full", "total", "half", "flag", "dec", "c", "r", "chain" };
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendDerivedColumnTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendDerivedColumnTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "name", TalendType.STRING ).addColumn( "surname", TalendType.STRING ).addColumn( "price", TalendType.DOUBLE )
+            .addColumn( "qty", TalendType.INTEGER ).addColumn( "d", TalendType.BIGDECIMAL ).addColumn( "my col", TalendType.LONG );
+        for( int i = 0; i < 3000; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow ).setValue( "name", "n" + i ).setValue( "surname", " s" + i + " " )
+                .setValue( "price", i * 1.5 ).setValue( "d", new BigDecimal( i ) ).setValue( "my col", (long) i );
+            if( i % 7 != 0 )
+            {
+                row.setValue( "qty", i % 20 );
+            }
+        }
+        flow.addDerivedColumn( "full", "upper(trim(surname)) + ' ' + name" )
+            .addDerivedColumn( "total", "if(qty > 10, price * qty * 0.5, price * qty)" )
+            .addDerivedColumn( "half", "qty / (qty % 2)" )
+            .addDerivedColumn( "flag", "isNull(qty) or `my col` >= 2990 and not (qty = 3)" )
+            .addDerivedColumn( "dec", "d * 2 + 1" )
+            .addDerivedColumn( "c", "coalesce(qty, -1) + length(name)" )
+            .addDerivedColumn( "r", "round(price)" )
+            .addDerivedColumn( "chain", "c * 2" );
+    }
+
+    private List<Object[]> values( TalendFlow rows, String... columns )
+    {
+        List<Object[]> values = new ArrayList<Object[]>();
+        for( TalendRow row : rows )
+        {
+            Object[] v = new Object[columns.length];
+            for( int j = 0; j < columns.length; j++ )
+            {
+                v[j] = row.getValue( columns[j] );
+            }
+            values.add( v );
+        }
+        return values;
+    }
+
+    public void testTypesAndValues()
+    {
+        TalendType[] types = { TalendType.STRING, TalendType.DOUBLE, TalendType.LONG, TalendType.BOOLEAN, TalendType.BIGDECIMAL, TalendType.LONG, TalendType.LONG, TalendType.LONG };
+        for( int j = 0; j < DERIVED.length; j++ )
+        {
+            assertEquals( DERIVED[j], types[j], flow.getColumn( DERIVED[j] ).getType() );
+        }
+        TalendRow row = flow.getRow( 11 );
+        assertEquals( "S11 n11", row.getValue( "full" ) );
+        assertEquals( 90.75, (Double) row.getValue( "total" ), 0.0 );
+        assertEquals( Long.valueOf( 11 ), row.getValue( "half" ) );
+        assertEquals( Boolean.FALSE, row.getValue( "flag" ) );
+        assertEquals( new BigDecimal( "23" ), row.getValue( "dec" ) );
+        assertEquals( Long.valueOf( 14 ), row.getValue( "c" ) );
+        assertEquals( Long.valueOf( 17 ), row.getValue( "r" ) );
+        assertEquals( Long.valueOf( 28 ), row.getValue( "chain" ) );
+        // derived columns can be queried like the others
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "full", "S11 n11" ) ).count() );
+    }
+
+    public void testNulls()
+    {
+        TalendRow row = flow.getRow( 0 );
+        // expressions involving null values and integral divisions by zero are null
+        assertNull( row.getValue( "total" ) );
+        assertNull( row.getValue( "half" ) );
+        assertNull( flow.getRow( 2 ).getValue( "half" ) );
+        assertEquals( Long.valueOf( -1 + 2 ), row.getValue( "c" ) );
+        assertEquals( Boolean.TRUE, row.getValue( "flag" ) );
+        // comparisons involving null values are false, like predicates
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "a", TalendType.LONG ).addColumn( "b", TalendType.INTEGER )
+            .addDerivedColumn( "eq", "a = b" ).addDerivedColumn( "any", "a > 1 or b > 1" ).addDerivedColumn( "sum", "a + b" );
+        TalendRow empty = model.getRowFactory().newRow( plain );
+        assertEquals( Boolean.FALSE, empty.getValue( "eq" ) );
+        assertNull( empty.getValue( "sum" ) );
+        empty.setValue( "a", 5L );
+        assertEquals( Boolean.TRUE, empty.getValue( "any" ) );
+    }
+
+    public void testMaterializedValuesAgreeWithLazyOnes()
+    {
+        List<Object[]> lazy = values( flow, DERIVED );
+        for( String column : DERIVED )
+        {
+            flow.materialize( column );
+        }
+        List<Object[]> materialized = values( flow, DERIVED );
+        assertEquals( lazy.size(), materialized.size() );
+        for( int i = 0; i < lazy.size(); i++ )
+        {
+            for( int j = 0; j < DERIVED.length; j++ )
+            {
+                assertEquals( i + " " + DERIVED[j], lazy.get( i )[j], materialized.get( i )[j] );
+            }
+        }
+
+        // stored values are snapshots, until the column is materialized again
+        flow.getRow( 11 ).setValue( "qty", 1 );
+        assertEquals( Long.valueOf( 14 ), flow.getRow( 11 ).getValue( "c" ) );
+        flow.materialize( "c" );
+        assertEquals( Long.valueOf( 4 ), flow.getRow( 11 ).getValue( "c" ) );
+        // rows added later are computed on the fly
+        model.getRowFactory().newRow( flow ).setValue( "name", "x" ).setValue( "qty", 2 );
+        assertEquals( Long.valueOf( 3 ), flow.getRow( 3000 ).getValue( "c" ) );
+    }
+
+    public void testMixedNumericValues()
+    {
+        TalendFlow numbers = model.getFlowFactory().newFlow( "numbers", null, false );
+        numbers.addColumn( "l", TalendType.LONG ).addColumn( "i", TalendType.INTEGER ).addColumn( "b", TalendType.BIGDECIMAL ).addColumn( "s", TalendType.STRING )
+            .addDerivedColumn( "x", "l * 2 + i" ).addDerivedColumn( "y", "b + l" ).addDerivedColumn( "t", "s + l" ).addDerivedColumn( "q", "l / i" );
+        // values of other numeric types than the ones of the columns
+        model.getRowFactory().newRow( numbers ).setValue( "l", 3.0 ).setValue( "i", 2L ).setValue( "b", 4 ).setValue( "s", "a" );
+        model.getRowFactory().newRow( numbers ).setValue( "l", 3L ).setValue( "i", 0 ).setValue( "b", new BigDecimal( "1.5" ) );
+        List<Object[]> lazy = values( numbers, "x", "y", "t", "q" );
+        assertEquals( Long.valueOf( 8 ), lazy.get( 0 )[0] );
+        assertEquals( 0, new BigDecimal( "7" ).compareTo( (BigDecimal) lazy.get( 0 )[1] ) );
+        assertEquals( "a3", lazy.get( 0 )[2] );
+        assertEquals( Long.valueOf( 1 ), lazy.get( 0 )[3] );
+        assertEquals( Long.valueOf( 6 ), lazy.get( 1 )[0] );
+        assertEquals( new BigDecimal( "4.5" ), lazy.get( 1 )[1] );
+        assertNull( lazy.get( 1 )[3] );
+        numbers.materialize( "x" ).materialize( "y" ).materialize( "q" );
+        List<Object[]> materialized = values( numbers, "x", "y", "t", "q" );
+        for( int i = 0; i < 2; i++ )
+        {
+            for( int j = 0; j < 4; j++ )
+            {
+                assertEquals( lazy.get( i )[j], materialized.get( i )[j] );
+            }
+        }
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "transactional", null, true );
+        transactional.addColumn( "v", TalendType.INTEGER ).addDerivedColumn( "w", "v * 10" );
+        model.getRowFactory().newRow( transactional ).setValue( "v", 1 );
+        transactional.commit();
+        transactional.materialize( "w" );
+        // drafts are computed from the committed values of the row
+        TalendRow draft = model.getRowFactory().newRow( transactional ).setValue( "v", 2 );
+        assertNull( draft.getValue( "w" ) );
+        transactional.commit();
+        assertEquals( Long.valueOf( 20 ), draft.getValue( "w" ) );
+        ( (TalendRowImpl) transactional.getRow( 0 ).setValue( "v", 7 ) ).save();
+        assertEquals( Long.valueOf( 10 ), transactional.getRow( 0 ).getValue( "w" ) );
+
+        model.getRowFactory().newRow( transactional ).setValue( "v", 3 );
+        transactional.rollback();
+        assertEquals( 2, transactional.countRows() );
+        transactional.truncate();
+        transactional.commit();
+        transactional.materialize( "w" );
+        model.getRowFactory().newRow( transactional ).setValue( "v", 4 );
+        transactional.commit();
+        assertEquals( Long.valueOf( 40 ), transactional.getRow( 0 ).getValue( "w" ) );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "v", TalendType.INTEGER ).addDerivedColumn( "w", "v + 1" ).materialize( "w" );
+        assertEquals( 0, empty.countRows() );
+        assertEquals( TalendType.LONG, empty.getColumn( "w" ).getType() );
+    }
+
+    public void testInvalidExpressions()
+    {
+        for( String expression : new String[]{ "price +", "name * 2", "foo + 1", "upper(price)", "qty > 'x'", "if(qty, 1, 2)", "zz(1)", "'abc", null } )
+        {
+            try
+            {
+                flow.addDerivedColumn( "bad", expression );
+                fail( "expression " + expression + " accepted" );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+        assertFalse( flow.hasColumn( "bad" ) );
+        try
+        {
+            flow.addDerivedColumn( "total", "1" );
+            fail( "column name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.materialize( "price" );
+            fail( "plain column materialized" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.getRow( 0 ).setValue( "total", 3.0 );
+            fail( "derived value set" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.gabrielebaldassarre.app;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendColumnImpl;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendDictionary;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendValueImpl;
+
+/**
+ * Unit tests for dictionary-encoded STRING columns.
+ */
+public class TalendDictionaryTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendDictionaryTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendDictionaryTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+    }
+
+    private TalendFlow countries( String name, int rows )
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( name, null, false );
+        flow.addColumn( "id", TalendType.INTEGER ).addColumn( "country", TalendType.STRING, null, false, TalendEncoding.DICTIONARY );
+        String[] codes = { "IT", "FR", "DE" };
+        for( int i = 0; i < rows; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "id", i ).setValue( "country", ( i % 4 == 3 ? null : codes[i % 4] ) );
+        }
+        return flow;
+    }
+
+    public void testStringColumnsAreDictionaryEncodedByDefault()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "s", TalendType.STRING ).addColumn( "n", TalendType.INTEGER );
+        assertEquals( TalendEncoding.DICTIONARY, flow.getColumn( "s" ).getEncoding() );
+        assertEquals( TalendEncoding.PLAIN, flow.getColumn( "n" ).getEncoding() );
+        assertEquals( 0, ( (TalendColumnImpl) flow.getColumn( "s" ) ).getDictionary().size() );
+    }
+
+    public void testCodesAreDenseAndValuesShared()
+    {
+        TalendFlow flow = countries( "f", 8 );
+        TalendDictionary dictionary = ( (TalendColumnImpl) flow.getColumn( "country" ) ).getDictionary();
+        assertEquals( 3, dictionary.size() );
+        assertEquals( 0, dictionary.lookup( "IT" ) );
+        assertEquals( 1, dictionary.lookup( "FR" ) );
+        assertEquals( 2, dictionary.lookup( "DE" ) );
+        assertEquals( -1, dictionary.lookup( "ES" ) );
+        assertEquals( -1, dictionary.lookup( null ) );
+        assertEquals( "FR", dictionary.decode( 1 ) );
+
+        TalendRow first = flow.getRow( 1 );
+        TalendRow second = flow.getRow( 5 );
+        assertSame( first.getTalendValue( "country" ), second.getTalendValue( "country" ) );
+        assertEquals( 1, ( (TalendValueImpl) first.getTalendValue( "country" ) ).getCode() );
+        assertNull( flow.getRow( 3 ).getValue( "country" ) );
+    }
+
+    public void testDecodeUnknownCode()
+    {
+        TalendDictionary dictionary = ( (TalendColumnImpl) countries( "f", 3 ).getColumn( "country" ) ).getDictionary();
+        try
+        {
+            dictionary.decode( 3 );
+            fail( "decoded a missing code" );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+
+    public void testDictionaryIsOnlySupportedByStrings()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        try
+        {
+            flow.addColumn( "n", TalendType.INTEGER, null, false, TalendEncoding.DICTIONARY );
+            fail( "dictionary accepted on an integer column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testFiltersAndAggregationsOnCodes()
+    {
+        TalendFlow flow = countries( "f", 400 );
+        assertEquals( 100, flow.select().where( TalendPredicate.eq( "country", "FR" ) ).count() );
+        assertEquals( 0, flow.select().where( TalendPredicate.eq( "country", "ES" ) ).count() );
+        assertEquals( 200, flow.select().where( TalendPredicate.ne( "country", "FR" ) ).count() );
+        assertEquals( 100, flow.select().where( TalendPredicate.isNull( "country" ) ).count() );
+
+        TalendFlow groups = flow.groupBy( "country" ).count( "rows" ).toFlow( "groups" );
+        assertEquals( 4, groups.countRows() );
+        for( TalendRow row : groups )
+        {
+            assertEquals( Long.valueOf( 100 ), row.getValue( "rows" ) );
+        }
+    }
+
+    public void testJoinAcrossDictionaries()
+    {
+        TalendFlow left = countries( "left", 8 );
+        TalendFlow right = model.getFlowFactory().newFlow( "right", null, false );
+        right.addColumn( "code", TalendType.STRING, null, false, TalendEncoding.DICTIONARY ).addColumn( "name", TalendType.STRING );
+        model.getRowFactory().newRow( right ).setValue( "code", "DE" ).setValue( "name", "Germany" );
+        model.getRowFactory().newRow( right ).setValue( "code", "IT" ).setValue( "name", "Italy" );
+
+        // codes differ between the two dictionaries, so values must be matched by content
+        TalendFlow joined = left.join( right, TalendJoinType.INNER ).on( "country", "code" ).toFlow( "joined" );
+        assertEquals( 4, joined.countRows() );
+        for( TalendRow row : joined )
+        {
+            assertEquals( "IT".equals( row.getValue( "country" ) ) ? "Italy" : "Germany", row.getValue( "name" ) );
+        }
+    }
+
+    public void testAutomaticDictionaryStopsGrowing()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "s", TalendType.STRING, null, false, TalendEncoding.AUTO );
+        for( int i = 0; i < 20000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "s", "v" + i );
+        }
+        TalendDictionary dictionary = ( (TalendColumnImpl) flow.getColumn( "s" ) ).getDictionary();
+        assertFalse( dictionary.isOpen() );
+        assertTrue( dictionary.size() < 20000 );
+        assertEquals( "v19999", flow.getRow( 19999 ).getValue( "s" ) );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "s", "v19999" ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "s", "v0" ) ).count() );
+    }
+
+    public void testRolledBackValuesAreNotVisible()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "id", TalendType.INTEGER, null, true ).addColumn( "country", TalendType.STRING, null, false, TalendEncoding.DICTIONARY );
+        model.getRowFactory().newRow( flow ).setValue( "id", 1 ).setValue( "country", "IT" );
+        flow.commit();
+        model.getRowFactory().newRow( flow ).setValue( "id", 2 ).setValue( "country", "FR" );
+        flow.rollback();
+        assertEquals( 1, flow.countRows() );
+        assertEquals( 0, flow.select().where( TalendPredicate.eq( "country", "FR" ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "country", "IT" ) ).count() );
+    }
+
+    public void testTruncateResetsDictionaries()
+    {
+        TalendFlow flow = countries( "f", 8 );
+        TalendDictionary dictionary = ( (TalendColumnImpl) flow.getColumn( "country" ) ).getDictionary();
+        TalendValueImpl stale = (TalendValueImpl) flow.getRow( 1 ).getTalendValue( "country" );
+        for( int batch = 0; batch < 5; batch++ )
+        {
+            flow.truncate();
+            assertEquals( 0, dictionary.size() );
+            for( int i = 0; i < 100; i++ )
+            {
+                model.getRowFactory().newRow( flow ).setValue( "id", i ).setValue( "country", "b" + batch + "_" + ( i % 10 ) );
+            }
+            // only the values of the last batch are held
+            assertEquals( 10, dictionary.size() );
+            assertEquals( 10, flow.select().where( TalendPredicate.eq( "country", "b" + batch + "_3" ) ).count() );
+        }
+        model.getRowFactory().newRow( flow ).setValue( "country", "FR" );
+        TalendValueImpl fresh = (TalendValueImpl) flow.getRow( 100 ).getTalendValue( "country" );
+        // codes are never reused, and values encoded before a reset still equal the new ones
+        assertTrue( fresh.getCode() > stale.getCode() );
+        assertEquals( stale, fresh );
+        assertFalse( stale.equals( flow.getRow( 0 ).getTalendValue( "country" ) ) );
+        try
+        {
+            dictionary.decode( stale.getCode() );
+            fail( "decoded a code given before a reset" );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+
+    public void testTruncateReopensAutomaticDictionaries()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "s", TalendType.STRING, null, false, TalendEncoding.AUTO );
+        for( int i = 0; i < 20000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "s", "v" + i );
+        }
+        flow.commit();
+        TalendDictionary dictionary = ( (TalendColumnImpl) flow.getColumn( "s" ) ).getDictionary();
+        assertFalse( dictionary.isOpen() );
+
+        // the flow is refilled within the same transaction of the truncate
+        flow.truncate();
+        for( int i = 0; i < 20000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "s", "c" + ( i % 3 ) );
+        }
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "s", "v7" ) ).count() );
+        flow.commit();
+        assertTrue( dictionary.isOpen() );
+        assertEquals( 3, dictionary.size() );
+        assertEquals( 0, flow.select().where( TalendPredicate.eq( "s", "v7" ) ).count() );
+        assertEquals( 6667, flow.select().where( TalendPredicate.eq( "s", "c0" ) ).count() );
+        assertEquals( "c2", flow.getRow( 5 ).getValue( "s" ) );
+        assertEquals( 3, flow.groupBy( "s" ).count( "rows" ).toFlow( "groups" ).countRows() );
+        assertEquals( dictionary.lookup( "c1" ), ( (TalendValueImpl) flow.getRow( 1 ).getTalendValue( "s" ) ).getCode() );
+    }
+}
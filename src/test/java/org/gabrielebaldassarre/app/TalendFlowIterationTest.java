@@ -0,0 +1,263 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowBehaviour;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowCursor;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for streaming iteration over the committed rows of a flow.
+ */
+public class TalendFlowIterationTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendFlowIterationTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendFlowIterationTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "k", TalendType.INTEGER, null, true );
+    }
+
+    private void add( int from, int to )
+    {
+        for( int i = from; i < to; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", i );
+        }
+        flow.commit();
+    }
+
+    public void testIteratorReadsRowsInOrder()
+    {
+        add( 0, 5 );
+        int expected = 0;
+        for( TalendRow row : flow )
+        {
+            assertEquals( Integer.valueOf( expected++ ), row.getValue( "k" ) );
+        }
+        assertEquals( 5, expected );
+        assertSame( flow.getRow( 2 ), flow.getRows()[2] );
+    }
+
+    public void testEmptyFlow()
+    {
+        Iterator<TalendRow> rows = flow.iterator();
+        assertFalse( rows.hasNext() );
+        try
+        {
+            rows.next();
+            fail( "read a row from an empty flow" );
+        }
+        catch( NoSuchElementException e )
+        {
+            // expected
+        }
+        TalendRowCursor cursor = flow.cursor();
+        assertFalse( cursor.next() );
+        assertEquals( 0, flow.getRows().length );
+    }
+
+    public void testPendingRowsAreNotVisible()
+    {
+        add( 0, 2 );
+        model.getRowFactory().newRow( flow ).setValue( "k", 2 );
+        int count = 0;
+        for( Iterator<TalendRow> rows = flow.iterator(); rows.hasNext(); rows.next() )
+        {
+            count++;
+        }
+        assertEquals( 2, count );
+        flow.rollback();
+    }
+
+    public void testCommitInvalidatesIterators()
+    {
+        add( 0, 3 );
+        Iterator<TalendRow> rows = flow.iterator();
+        rows.next();
+        add( 3, 4 );
+        try
+        {
+            rows.next();
+            fail( "iterator survived a commit" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testTruncateInvalidatesIterators()
+    {
+        add( 0, 3 );
+        Iterator<TalendRow> rows = flow.iterator();
+        rows.next();
+        flow.truncate();
+        // a pending truncate is not visible until the commit
+        rows.next();
+        add( 10, 11 );
+        try
+        {
+            rows.next();
+            fail( "iterator survived a truncate" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        assertEquals( 1, flow.countRows() );
+    }
+
+    public void testUpdatingSavedValuesIsNotAModification()
+    {
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "v", TalendType.INTEGER );
+        model.getRowFactory().newRow( plain ).setValue( "v", 1 );
+        model.getRowFactory().newRow( plain ).setValue( "v", 2 );
+        int total = 0;
+        for( TalendRow row : plain )
+        {
+            row.setValue( "v", (Integer) row.getValue( "v" ) * 10 );
+            total += (Integer) row.getValue( "v" );
+        }
+        assertEquals( 30, total );
+    }
+
+    public void testForEachVisitsAllRows()
+    {
+        add( 0, 4 );
+        final int[] total = { 0 };
+        flow.forEach( new TalendRowBehaviour()
+        {
+            public void visit( TalendRow row )
+            {
+                total[0] += (Integer) row.getValue( "k" );
+            }
+
+            public Boolean isValid()
+            {
+                return Boolean.TRUE;
+            }
+        } );
+        assertEquals( 6, total[0] );
+    }
+
+    public void testForEachFailsOnModification()
+    {
+        final TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "v", TalendType.INTEGER );
+        model.getRowFactory().newRow( plain ).setValue( "v", 1 );
+        model.getRowFactory().newRow( plain ).setValue( "v", 2 );
+        try
+        {
+            plain.forEach( new TalendRowBehaviour()
+            {
+                public void visit( TalendRow row )
+                {
+                    model.getRowFactory().newRow( plain ).setValue( "v", 3 );
+                }
+
+                public Boolean isValid()
+                {
+                    return Boolean.TRUE;
+                }
+            } );
+            fail( "visit survived a modification" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testCursorPositionsAndReset()
+    {
+        add( 0, 3 );
+        TalendRowCursor cursor = flow.cursor();
+        assertEquals( -1, cursor.getPosition() );
+        try
+        {
+            cursor.getRow();
+            fail( "cursor read before the first row" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        int positions = 0;
+        while( cursor.next() )
+        {
+            assertEquals( positions, cursor.getPosition() );
+            assertEquals( Integer.valueOf( positions++ ), cursor.getRow().getValue( "k" ) );
+        }
+        assertEquals( 3, positions );
+
+        add( 3, 4 );
+        try
+        {
+            cursor.next();
+            fail( "cursor survived a commit" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        cursor.reset();
+        int count = 0;
+        while( cursor.next() )
+        {
+            count++;
+        }
+        assertEquals( 4, count );
+    }
+
+    public void testEvictedRowsAreNotIterated()
+    {
+        TalendFlow bounded = model.getFlowFactory().newFlow( "bounded", 3, false );
+        bounded.addColumn( "v", TalendType.INTEGER );
+        for( int i = 0; i < 10; i++ )
+        {
+            model.getRowFactory().newRow( bounded ).setValue( "v", i );
+        }
+        // the newest rows are kept, in order
+        int expected = 10 - bounded.countRows();
+        for( TalendRow row : bounded )
+        {
+            assertEquals( Integer.valueOf( expected++ ), row.getValue( "v" ) );
+        }
+        assertEquals( 10, expected );
+    }
+}
@@ -0,0 +1,246 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendChunkedList;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for spliterators and streams over flows.
+ */
+public class TalendFlowStreamTest
+    extends TestCase
+{
+    private static final ToLongFunction<TalendRow> VALUE = new ToLongFunction<TalendRow>()
+    {
+        public long applyAsLong( TalendRow row )
+        {
+            return (Long) row.getValue( "v" );
+        }
+    };
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendFlowStreamTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendFlowStreamTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "v", TalendType.LONG, 0L );
+    }
+
+    private void add( long from, long to )
+    {
+        for( long i = from; i < to; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "v", i );
+        }
+    }
+
+    public void testSequentialAndParallelReductionsAgree()
+    {
+        add( 0, 100000 );
+        long expected = 99999L * 100000L / 2;
+        assertEquals( expected, flow.stream().mapToLong( VALUE ).sum() );
+        assertEquals( expected, flow.parallelStream().mapToLong( VALUE ).sum() );
+        assertEquals( 50000, flow.parallelStream().filter( new Predicate<TalendRow>()
+        {
+            public boolean test( TalendRow row )
+            {
+                return (Long) row.getValue( "v" ) % 2 == 0;
+            }
+        } ).count() );
+    }
+
+    public void testEmptyFlow()
+    {
+        assertEquals( 0, flow.stream().count() );
+        assertEquals( 0L, flow.parallelStream().mapToLong( VALUE ).sum() );
+        assertFalse( flow.parallelStream().mapToLong( VALUE ).max().isPresent() );
+        Spliterator<TalendRow> rows = flow.spliterator();
+        assertEquals( 0, rows.estimateSize() );
+        assertNull( rows.trySplit() );
+    }
+
+    public void testSplitsAreBalancedAndSized()
+    {
+        add( 0, 1001 );
+        Spliterator<TalendRow> right = flow.spliterator();
+        assertTrue( right.hasCharacteristics( Spliterator.SIZED ) );
+        assertTrue( right.hasCharacteristics( Spliterator.SUBSIZED ) );
+        assertEquals( 1001, right.getExactSizeIfKnown() );
+
+        Spliterator<TalendRow> left = right.trySplit();
+        assertNotNull( left );
+        assertTrue( Math.abs( left.estimateSize() - right.estimateSize() ) <= 1 );
+        assertEquals( 1001, left.estimateSize() + right.estimateSize() );
+
+        // the prefix goes to the split-off spliterator
+        final long[] first = { -1 };
+        long size = left.estimateSize();
+        assertTrue( left.tryAdvance( new Consumer<TalendRow>()
+        {
+            public void accept( TalendRow row )
+            {
+                first[0] = (Long) row.getValue( "v" );
+            }
+        } ) );
+        assertEquals( 0L, first[0] );
+        assertEquals( size - 1, left.estimateSize() );
+        right.tryAdvance( new Consumer<TalendRow>()
+        {
+            public void accept( TalendRow row )
+            {
+                first[0] = (Long) row.getValue( "v" );
+            }
+        } );
+        assertEquals( size, first[0] );
+    }
+
+    public void testSpliteratorBindsLate()
+    {
+        Stream<TalendRow> rows = flow.parallelStream();
+        add( 0, 10 );
+        assertEquals( 45L, rows.mapToLong( VALUE ).sum() );
+    }
+
+    public void testBoundedFlowsStreamSurvivors()
+    {
+        TalendFlow bounded = model.getFlowFactory().newFlow( "bounded", 3000, false );
+        bounded.addColumn( "v", TalendType.LONG, 0L );
+        for( long i = 0; i < 10000; i++ )
+        {
+            model.getRowFactory().newRow( bounded ).setValue( "v", i );
+        }
+        long oldest = (Long) bounded.getRow( 0 ).getValue( "v" );
+        assertEquals( bounded.countRows(), bounded.parallelStream().count() );
+        assertEquals( oldest, bounded.parallelStream().mapToLong( VALUE ).min().getAsLong() );
+        assertEquals( 9999L, bounded.parallelStream().mapToLong( VALUE ).max().getAsLong() );
+    }
+
+    public void testForEachRemainingFailsOnModification()
+    {
+        add( 0, 5000 );
+        Spliterator<TalendRow> rows = flow.spliterator();
+        try
+        {
+            rows.forEachRemaining( new Consumer<TalendRow>()
+            {
+                public void accept( TalendRow row )
+                {
+                    if( (Long) row.getValue( "v" ) == 10 )
+                    {
+                        add( 5000, 5001 );
+                    }
+                }
+            } );
+            fail( "spliterator survived a modification" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testTruncateDuringForEachRemaining()
+    {
+        final TalendFlow transactional = model.getFlowFactory().newFlow( "t", null, true );
+        transactional.addColumn( "v", TalendType.LONG, 0L );
+        for( long i = 0; i < 3000; i++ )
+        {
+            model.getRowFactory().newRow( transactional ).setValue( "v", i );
+        }
+        transactional.commit();
+        try
+        {
+            transactional.spliterator().forEachRemaining( new Consumer<TalendRow>()
+            {
+                public void accept( TalendRow row )
+                {
+                    if( (Long) row.getValue( "v" ) == 0 )
+                    {
+                        transactional.truncate();
+                        transactional.commit();
+                    }
+                }
+            } );
+            fail( "spliterator survived a truncate" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testChunkedListMatchesArrayList()
+    {
+        List<Integer> chunked = new TalendChunkedList<Integer>();
+        List<Integer> reference = new ArrayList<Integer>();
+        Random random = new Random( 1 );
+        for( int i = 0; i < 50000; i++ )
+        {
+            int op = random.nextInt( 10 );
+            if( op < 6 )
+            {
+                chunked.add( i );
+                reference.add( i );
+            }
+            else if( op < 9 && !reference.isEmpty() )
+            {
+                assertEquals( reference.remove( 0 ), chunked.remove( 0 ) );
+            }
+            else if( !reference.isEmpty() )
+            {
+                int index = random.nextInt( reference.size() );
+                assertEquals( reference.remove( index ), chunked.remove( index ) );
+                chunked.add( index / 2, i );
+                reference.add( index / 2, i );
+            }
+        }
+        assertEquals( reference, chunked );
+        try
+        {
+            chunked.get( chunked.size() );
+            fail( "read past the end of the list" );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package org.gabrielebaldassarre.app;
+
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.isNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinBehaviour;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinStrategy;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for hash joins between flows.
+ */
+public class TalendHashJoinTest
+    extends TestCase
+{
+    private static final int ORDERS = 11000;
+
+    private TalendFlowModel model;
+    private TalendFlow orders;
+    private TalendFlow customers;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendHashJoinTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendHashJoinTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        orders = model.getFlowFactory().newFlow( "orders", null, false );
+        orders.addColumn( "id", TalendType.INTEGER ).addColumn( "cust", TalendType.LONG ).addColumn( "amt", TalendType.DOUBLE, 1.0 );
+        customers = model.getFlowFactory().newFlow( "customers", null, true );
+        customers.addColumn( "id", TalendType.INTEGER, null, true ).addColumn( "name", TalendType.STRING, "anon" );
+        for( int i = 0; i < 1000; i++ )
+        {
+            model.getRowFactory().newRow( customers ).setValue( "id", i ).setValue( "name", "n" + i );
+        }
+        customers.commit();
+        // orders of customers 1000 to 1099 match nothing, and one in each 1100 has no customer
+        for( int i = 0; i < ORDERS; i++ )
+        {
+            model.getRowFactory().newRow( orders ).setValue( "id", i ).setValue( "cust", i % 1100 == 1050 ? null : (long) ( i % 1100 ) ).setValue( "amt", (double) i );
+        }
+    }
+
+    private static class Counter
+        implements TalendJoinBehaviour
+    {
+        int pairs;
+        int unmatched;
+
+        public void visit( TalendRow left, TalendRow right )
+        {
+            pairs++;
+            if( left == null || right == null )
+            {
+                unmatched++;
+            }
+        }
+
+        public Boolean isValid()
+        {
+            return Boolean.TRUE;
+        }
+    }
+
+    public void testJoinTypes()
+    {
+        TalendFlow inner = orders.join( customers, TalendJoinType.INNER ).on( "cust", "id" ).toFlow( "inner" );
+        TalendFlow left = orders.join( customers, TalendJoinType.LEFT_OUTER ).on( "cust", "id" ).toFlow( "left" );
+        TalendFlow anti = orders.join( customers, TalendJoinType.ANTI ).on( "cust", "id" ).toFlow( "anti" );
+        assertEquals( 10000, inner.countRows() );
+        assertEquals( ORDERS, left.countRows() );
+        assertEquals( 1000, anti.countRows() );
+        assertEquals( 1000, left.select().where( isNull( "name" ) ).count() );
+        assertEquals( 3, anti.getColumns().length );
+
+        for( TalendRow row : inner )
+        {
+            assertEquals( "n" + row.getValue( "cust" ), row.getValue( "name" ) );
+            assertEquals( ( (Long) row.getValue( "cust" ) ).intValue(), ( (Integer) row.getValue( "customers_id" ) ).intValue() );
+        }
+        for( TalendRow row : anti )
+        {
+            Long customer = (Long) row.getValue( "cust" );
+            assertTrue( customer == null || customer >= 1000 );
+        }
+    }
+
+    public void testFullOuterJoin()
+    {
+        TalendFlow few = model.getFlowFactory().newFlow( "few", null, false );
+        few.addColumn( "cust", TalendType.LONG );
+        model.getRowFactory().newRow( few ).setValue( "cust", 1L );
+        model.getRowFactory().newRow( few ).setValue( "cust", 5000L );
+        model.getRowFactory().newRow( few );
+        Counter counter = new Counter();
+        few.join( customers, TalendJoinType.FULL_OUTER ).on( "cust", "id" ).forEach( counter );
+        // one match, two unmatched left rows and 999 unmatched customers
+        assertEquals( 1002, counter.pairs );
+        assertEquals( 1001, counter.unmatched );
+    }
+
+    public void testEitherSideAgree()
+    {
+        Counter forward = new Counter();
+        Counter backward = new Counter();
+        orders.join( customers, TalendJoinType.INNER ).on( "cust", "id" ).forEach( forward );
+        customers.join( orders, TalendJoinType.INNER ).on( "id", "cust" ).forEach( backward );
+        assertEquals( forward.pairs, backward.pairs );
+        assertEquals( 0, customers.join( orders, TalendJoinType.ANTI ).on( "id", "cust" ).toFlow( "none" ).countRows() );
+
+        TalendFlow reversed = customers.join( orders, TalendJoinType.INNER ).on( "id", "cust" ).toFlow( "reversed" );
+        assertNotNull( reversed.getColumn( "orders_id" ) );
+    }
+
+    public void testParallelAgreesWithSerial()
+    {
+        Counter serial = new Counter();
+        Counter parallel = new Counter();
+        orders.join( customers, TalendJoinType.LEFT_OUTER ).on( "cust", "id" ).setParallelism( 1 ).forEach( serial );
+        orders.join( customers, TalendJoinType.LEFT_OUTER ).on( "cust", "id" ).setParallelism( 4 ).forEach( parallel );
+        assertEquals( ORDERS, serial.pairs );
+        assertEquals( serial.pairs, parallel.pairs );
+        assertEquals( serial.unmatched, parallel.unmatched );
+    }
+
+    public void testMixedNumericKeys()
+    {
+        TalendFlow prices = model.getFlowFactory().newFlow( "prices", null, false );
+        prices.addColumn( "key", TalendType.DOUBLE );
+        model.getRowFactory().newRow( prices ).setValue( "key", 17.0 );
+        model.getRowFactory().newRow( prices ).setValue( "key", 17.5 );
+        model.getRowFactory().newRow( prices ).setValue( "key", 0.0 );
+        model.getRowFactory().newRow( prices ).setValue( "key", -0.0 );
+        TalendFlow inner = prices.join( customers, TalendJoinType.INNER ).on( "key", "id" ).toFlow( "inner" );
+        assertEquals( 2, inner.countRows() );
+        Map<Double, Integer> matches = new HashMap<Double, Integer>();
+        for( TalendRow row : inner )
+        {
+            matches.put( (Double) row.getValue( "key" ), (Integer) row.getValue( "id" ) );
+        }
+        assertEquals( Integer.valueOf( 17 ), matches.get( 17.0 ) );
+        assertEquals( Integer.valueOf( 0 ), matches.get( 0.0 ) );
+        assertFalse( matches.containsKey( -0.0 ) );
+
+        // the same pairs are found building on the other side, through an index or merging sorted keys
+        assertEquals( 2, customers.join( prices, TalendJoinType.INNER ).on( "id", "key" ).toFlow( "reversed" ).countRows() );
+        assertEquals( 2, prices.join( customers, TalendJoinType.INNER ).on( "key", "id" ).setStrategy( TalendJoinStrategy.SORT_MERGE ).toFlow( "merged" ).countRows() );
+        customers.addIndex( "id" );
+        assertEquals( 2, prices.join( customers, TalendJoinType.INNER ).on( "key", "id" ).toFlow( "indexed" ).countRows() );
+    }
+
+    public void testMultipleColumnsAndIndexes()
+    {
+        TalendFlow x = model.getFlowFactory().newFlow( "x", null, false );
+        x.addColumn( "a", TalendType.STRING ).addColumn( "b", TalendType.INTEGER );
+        TalendFlow y = model.getFlowFactory().newFlow( "y", null, false );
+        y.addColumn( "b", TalendType.INTEGER ).addColumn( "a", TalendType.STRING, null, false, TalendEncoding.UTF8 ).addColumn( "v", TalendType.INTEGER );
+        for( int i = 0; i < 10; i++ )
+        {
+            model.getRowFactory().newRow( x ).setValue( "a", "k" + ( i % 3 ) ).setValue( "b", i % 2 );
+            model.getRowFactory().newRow( y ).setValue( "a", "k" + ( i % 3 ) ).setValue( "b", i % 2 ).setValue( "v", i );
+        }
+        int plain = x.join( y, TalendJoinType.INNER ).on( "a", "a" ).on( "b", "b" ).toFlow( "plain" ).countRows();
+        y.addIndex( "a", "b" );
+        TalendFlow indexed = x.join( y, TalendJoinType.INNER ).on( "a", "a" ).on( "b", "b" ).toFlow( "indexed" );
+        assertEquals( 18, plain );
+        assertEquals( plain, indexed.countRows() );
+        for( TalendRow row : indexed )
+        {
+            assertEquals( row.getValue( "a" ), row.getValue( "y_a" ) );
+            assertEquals( row.getValue( "b" ), row.getValue( "y_b" ) );
+        }
+    }
+
+    public void testEmptyFlows()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "cust", TalendType.LONG );
+        assertEquals( 0, empty.join( customers, TalendJoinType.INNER ).on( "cust", "id" ).toFlow( "a" ).countRows() );
+        assertEquals( 1000, empty.join( customers, TalendJoinType.FULL_OUTER ).on( "cust", "id" ).toFlow( "b" ).countRows() );
+        assertEquals( ORDERS, orders.join( empty, TalendJoinType.ANTI ).on( "cust", "cust" ).toFlow( "c" ).countRows() );
+        assertEquals( ORDERS, orders.join( empty, TalendJoinType.LEFT_OUTER ).on( "cust", "cust" ).toFlow( "d" ).countRows() );
+    }
+
+    public void testInvalidJoins()
+    {
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).toFlow( "none" );
+            fail( "join without columns" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).on( "cust", "name" );
+            fail( "number joined to a string" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).on( "missing", "id" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).setParallelism( 0 );
+            fail( "no threads accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        TalendFlowModel other = TalendFlowController.getInstance().getModel( new TalendContext() );
+        try
+        {
+            orders.join( other.getFlowFactory().newFlow( "foreign", null, false ), TalendJoinType.INNER );
+            fail( "flow of another model joined" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendColumn;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoin;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinBehaviour;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinResult;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinStrategy;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for join results reading the values of the joined flows on demand.
+ */
+public class TalendJoinResultTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow orders;
+    private TalendFlow customers;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendJoinResultTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendJoinResultTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        orders = model.getFlowFactory().newFlow( "orders", null, false );
+        orders.addColumn( "id", TalendType.INTEGER ).addColumn( "customerId", TalendType.INTEGER ).addColumn( "amount", TalendType.DOUBLE );
+        customers = model.getFlowFactory().newFlow( "customers", null, false );
+        customers.addColumn( "id", TalendType.INTEGER ).addColumn( "country", TalendType.STRING );
+        for( int i = 0; i < 20000; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( orders ).setValue( "id", i ).setValue( "amount", (double) i );
+            if( i % 100 != 0 )
+            {
+                row.setValue( "customerId", i % 700 );
+            }
+        }
+        for( int i = 0; i < 500; i++ )
+        {
+            model.getRowFactory().newRow( customers ).setValue( "id", i ).setValue( "country", "C" + ( i % 7 ) );
+        }
+    }
+
+    /**
+     * Describe the pairs of a flow built from a join, ordered as built
+     */
+    private static List<String> rows( TalendFlow flow )
+    {
+        List<String> rows = new ArrayList<String>();
+        for( TalendRow row : flow )
+        {
+            StringBuilder values = new StringBuilder();
+            for( int j = 0; j < flow.getColumns().length; j++ )
+            {
+                values.append( row.getValue( j ) ).append( ',' );
+            }
+            rows.add( values.toString() );
+        }
+        return rows;
+    }
+
+    public void testResultsAgreeWithFlows()
+    {
+        TalendJoinStrategy[] strategies = { TalendJoinStrategy.HASH, TalendJoinStrategy.SORT_MERGE };
+        for( TalendJoinType type : TalendJoinType.values() )
+        {
+            for( TalendJoinStrategy strategy : strategies )
+            {
+                for( int threads : new int[]{ 1, 4 } )
+                {
+                    String name = type + "_" + strategy + "_" + threads;
+                    TalendJoin join = orders.join( customers, type ).on( "customerId", "id" ).setStrategy( strategy ).setParallelism( threads );
+                    if( strategy == TalendJoinStrategy.SORT_MERGE )
+                    {
+                        // sort keys are spilled to disk
+                        join.setMaximumRows( 3000 );
+                    }
+                    TalendFlow copied = join.toFlow( "a" + name );
+                    TalendJoinResult result = join.select();
+                    assertSame( join, result.getJoin() );
+                    assertEquals( name, copied.countRows(), result.size() );
+                    assertEquals( name, rows( copied ), rows( result.toFlow( "b" + name ) ) );
+                }
+            }
+        }
+    }
+
+    public void testValuesAreReadOnDemand()
+    {
+        TalendJoinResult result = orders.join( customers, TalendJoinType.LEFT_OUTER ).on( "customerId", "id" ).select();
+        TalendColumn country = customers.getColumn( "country" );
+        TalendColumn amount = orders.getColumn( "amount" );
+        assertEquals( 20000, result.size() );
+        int missing = 0;
+        for( int i = 0; i < result.size(); i++ )
+        {
+            TalendRow left = result.getLeft( i );
+            assertEquals( left.getValue( "amount" ), result.getValue( i, amount ) );
+            if( result.getRight( i ) == null )
+            {
+                // nulls and customers missing from the right flow
+                assertNull( result.getValue( i, country ) );
+                assertNull( result.getTalendValue( i, country ) );
+                missing++;
+            }
+            else
+            {
+                assertEquals( left.getValue( "customerId" ), result.getRight( i ).getValue( "id" ) );
+                assertEquals( result.getRight( i ).getValue( "country" ), result.getValue( i, country ) );
+            }
+        }
+        // null keys and keys from 500 to 699, but for the multiples of 100
+        assertEquals( 200 + 28 * 200 - 28 * 2, missing );
+
+        // changing a value doesn't change the pairs, which read the new value
+        TalendRow right = result.getRight( 1 );
+        right.setValue( "country", "XX" );
+        assertEquals( "XX", result.getValue( 1, country ) );
+
+        // only the given columns are copied, prefixing the names already used
+        TalendFlow projected = result.toFlow( "projected", country, amount, customers.getColumn( "id" ), orders.getColumn( "id" ) );
+        assertEquals( 4, projected.getColumns().length );
+        assertTrue( projected.hasColumn( "orders_id" ) );
+        assertEquals( TalendType.INTEGER, projected.getColumn( "orders_id" ).getType() );
+        assertEquals( 20000, projected.countRows() );
+        assertEquals( "XX", projected.getRow( 1 ).getValue( "country" ) );
+        assertEquals( result.getValue( 7, amount ), projected.getRow( 7 ).getValue( "amount" ) );
+    }
+
+    public void testSelfJoins()
+    {
+        TalendJoinResult result = customers.join( customers, TalendJoinType.INNER ).on( "id", "id" ).select();
+        assertEquals( 500, result.size() );
+        customers.getRow( 3 ).setValue( "country", "XX" );
+        // columns are read from the left row
+        assertEquals( "XX", result.getValue( 3, customers.getColumn( "country" ) ) );
+        assertSame( result.getLeft( 3 ), result.getRight( 3 ) );
+        TalendFlow flow = result.toFlow( "self" );
+        assertEquals( 4, flow.getColumns().length );
+        assertEquals( "XX", flow.getRow( 3 ).getValue( "customers_country" ) );
+    }
+
+    public void testMixedNumericKeys()
+    {
+        TalendFlow a = model.getFlowFactory().newFlow( "a", null, false );
+        a.addColumn( "k", TalendType.LONG );
+        TalendFlow b = model.getFlowFactory().newFlow( "b", null, false );
+        b.addColumn( "k", TalendType.BIGDECIMAL ).addColumn( "s", TalendType.STRING );
+        for( int i = 0; i < 10; i++ )
+        {
+            // numbers of other types than the one of the column
+            model.getRowFactory().newRow( a ).setValue( "k", i % 2 == 0 ? (Object) (long) i : (Object) (double) i );
+        }
+        for( int i = 5; i < 15; i++ )
+        {
+            model.getRowFactory().newRow( b ).setValue( "k", new BigDecimal( i ).setScale( 1 ) ).setValue( "s", "s" + i );
+        }
+        model.getRowFactory().newRow( b ).setValue( "s", "null" );
+        TalendJoinResult result = a.join( b, TalendJoinType.FULL_OUTER ).on( "k", "k" ).select();
+        assertEquals( 16, result.size() );
+        int matched = 0;
+        for( int i = 0; i < result.size(); i++ )
+        {
+            if( result.getLeft( i ) != null && result.getRight( i ) != null )
+            {
+                assertEquals( 0, new BigDecimal( result.getValue( i, a.getColumn( "k" ) ).toString() ).compareTo( (BigDecimal) result.getValue( i, b.getColumn( "k" ) ) ) );
+                matched++;
+            }
+        }
+        assertEquals( 5, matched );
+    }
+
+    public void testModificationsOfJoinedFlows()
+    {
+        TalendFlow a = model.getFlowFactory().newFlow( "a", null, true );
+        a.addColumn( "id", TalendType.INTEGER );
+        for( int i = 0; i < 10; i++ )
+        {
+            model.getRowFactory().newRow( a ).setValue( "id", i );
+        }
+        a.commit();
+        // pending rows are not joined
+        model.getRowFactory().newRow( a ).setValue( "id", 1 );
+        TalendJoinResult result = a.join( customers, TalendJoinType.INNER ).on( "id", "id" ).select();
+        assertEquals( 10, result.size() );
+        a.rollback();
+        assertEquals( Integer.valueOf( 9 ), result.getValue( 9, customers.getColumn( "id" ) ) );
+
+        model.getRowFactory().newRow( a ).setValue( "id", 10 );
+        a.commit();
+        try
+        {
+            result.getLeft( 0 );
+            fail( "result of a modified flow accessed" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        result = a.join( customers, TalendJoinType.INNER ).on( "id", "id" ).select();
+        assertEquals( 11, result.size() );
+        a.truncate();
+        a.commit();
+        try
+        {
+            result.forEach( new TalendJoinBehaviour()
+            {
+                public void visit( TalendRow left, TalendRow right )
+                {
+                    fail( "pair of a truncated flow visited" );
+                }
+
+                public Boolean isValid()
+                {
+                    return Boolean.TRUE;
+                }
+            } );
+            fail( "result of a truncated flow accessed" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        assertEquals( 0, a.join( customers, TalendJoinType.INNER ).on( "id", "id" ).select().size() );
+        // a modified right flow invalidates the result as well
+        result = orders.join( customers, TalendJoinType.INNER ).on( "customerId", "id" ).select();
+        model.getRowFactory().newRow( customers ).setValue( "id", 600 );
+        try
+        {
+            result.toFlow( "modified" );
+            fail( "result of a modified flow copied" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        assertFalse( model.hasFlow( "modified" ) );
+    }
+
+    public void testEmptyFlows()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER );
+        TalendJoinResult result = empty.join( customers, TalendJoinType.LEFT_OUTER ).on( "k", "id" ).select();
+        assertEquals( 0, result.size() );
+        assertEquals( 0, result.toFlow( "none" ).countRows() );
+        // all the rows of the left flow are missing from the empty one
+        result = customers.join( empty, TalendJoinType.ANTI ).on( "id", "k" ).select();
+        assertEquals( 500, result.size() );
+        assertNull( result.getRight( 0 ) );
+        assertNull( result.getValue( 0, empty.getColumn( "k" ) ) );
+        assertEquals( 2, result.toFlow( "anti" ).getColumns().length );
+    }
+
+    public void testInvalidAccesses()
+    {
+        TalendJoinResult result = orders.join( customers, TalendJoinType.INNER ).on( "customerId", "id" ).select();
+        TalendFlow other = model.getFlowFactory().newFlow( "other", null, false );
+        other.addColumn( "amount", TalendType.DOUBLE );
+        for( int pair : new int[]{ -1, result.size() } )
+        {
+            try
+            {
+                result.getLeft( pair );
+                fail( "pair " + pair + " accessed" );
+            }
+            catch( IndexOutOfBoundsException e )
+            {
+                // expected
+            }
+        }
+        try
+        {
+            result.getValue( 0, other.getColumn( "amount" ) );
+            fail( "column of another flow read" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            result.toFlow( "nothing", new TalendColumn[0] );
+            fail( "no column copied" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            result.toFlow( "other" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).select();
+            fail( "join without columns" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            orders.join( customers, TalendJoinType.INNER ).on( "customerId", "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendListValue;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for typed LIST columns.
+ */
+public class TalendListValueTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendListValueTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendListValueTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addListColumn( "longs", TalendType.LONG )
+            .addListColumn( "doubles", TalendType.DOUBLE )
+            .addListColumn( "strings", TalendType.STRING )
+            .addListColumn( "flags", TalendType.BOOLEAN )
+            .addColumn( "any", TalendType.LIST );
+    }
+
+    private TalendListValue list( TalendRow row, String column )
+    {
+        return (TalendListValue) row.getTalendValue( column );
+    }
+
+    public void testColumnsKnowTheirElementType()
+    {
+        assertEquals( TalendType.LIST, flow.getColumn( "longs" ).getType() );
+        assertEquals( TalendType.LONG, flow.getColumn( "longs" ).getElementType() );
+        assertNull( flow.getColumn( "any" ).getElementType() );
+    }
+
+    public void testMixedNumericElementsAreConverted()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow )
+            .setValue( "longs", Arrays.<Object>asList( 1L, 2, "3" ) )
+            .setValue( "doubles", Arrays.<Object>asList( 1, 2L, 2.5f ) );
+        TalendListValue longs = list( row, "longs" );
+        long total = 0;
+        for( int i = 0; i < longs.size(); i++ )
+        {
+            total += longs.getLong( i );
+        }
+        assertEquals( 6L, total );
+        assertEquals( Arrays.asList( 1L, 2L, 3L ), row.getValue( "longs" ) );
+        assertEquals( Arrays.asList( 1.0, 2.0, 2.5 ), row.getValue( "doubles" ) );
+        assertEquals( 2.5, list( row, "doubles" ).getDouble( 2 ), 0.0 );
+    }
+
+    public void testNullElements()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow )
+            .setValue( "longs", Arrays.<Object>asList( 1, null, 3 ) )
+            .setValue( "strings", Arrays.asList( "a", null ) )
+            .setValue( "flags", Arrays.asList( true, null ) );
+        TalendListValue longs = list( row, "longs" );
+        assertEquals( Arrays.asList( 1L, null, 3L ), row.getValue( "longs" ) );
+        assertFalse( longs.isNull( 0 ) );
+        assertTrue( longs.isNull( 1 ) );
+        assertEquals( 3, longs.getInt( 2 ) );
+        assertTrue( list( row, "flags" ).getBoolean( 0 ) );
+        assertTrue( list( row, "strings" ).isNull( 1 ) );
+        try
+        {
+            longs.getLong( 1 );
+            fail( "read a null element as a primitive" );
+        }
+        catch( NullPointerException e )
+        {
+            // expected
+        }
+    }
+
+    public void testEmptyAndLargeLists()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "longs", new ArrayList<Object>() );
+        assertEquals( 0, list( row, "longs" ).size() );
+        assertTrue( ( (List<?>) row.getValue( "longs" ) ).isEmpty() );
+
+        List<Long> big = new ArrayList<Long>();
+        for( long i = 0; i < 5000; i++ )
+        {
+            big.add( i );
+        }
+        row.setValue( "longs", big );
+        assertEquals( 5000, list( row, "longs" ).size() );
+        assertEquals( 4999.0, list( row, "longs" ).getDouble( 4999 ), 0.0 );
+        assertEquals( big, row.getValue( "longs" ) );
+    }
+
+    public void testListsAreReadOnlyViews()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "longs", Arrays.asList( 1L ) );
+        try
+        {
+            ( (List<?>) row.getValue( "longs" ) ).clear();
+            fail( "list view was modified" );
+        }
+        catch( UnsupportedOperationException e )
+        {
+            // expected
+        }
+        try
+        {
+            list( row, "longs" ).get( 1 );
+            fail( "read past the end of the list" );
+        }
+        catch( IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+
+    public void testEqualityAndClones()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "longs", Arrays.asList( 1L, 2L ) );
+        TalendRow other = model.getRowFactory().newRow( flow ).setValue( "longs", Arrays.<Object>asList( 1, "2" ) );
+        assertEquals( row.getTalendValue( "longs" ), other.getTalendValue( "longs" ) );
+        assertEquals( row.getTalendValue( "longs" ).hashCode(), other.getTalendValue( "longs" ).hashCode() );
+        assertEquals( row.getTalendValue( "longs" ), row.clone().getTalendValue( "longs" ) );
+        assertFalse( row.getTalendValue( "longs" ).equals( model.getRowFactory().newRow( flow ).setValue( "longs", Arrays.asList( 2L, 1L ) ).getTalendValue( "longs" ) ) );
+    }
+
+    public void testInvalidValues()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        try
+        {
+            row.setValue( "longs", Arrays.asList( "x" ) );
+            fail( "unparsable element accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            row.setValue( "longs", "not a list" );
+            fail( "scalar accepted by a list column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addListColumn( "bad", null );
+            fail( "list column without element type" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
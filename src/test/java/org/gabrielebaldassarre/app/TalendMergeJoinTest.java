@@ -0,0 +1,211 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoin;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinBehaviour;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinStrategy;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSpills;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for merge joins over sorted flows.
+ */
+public class TalendMergeJoinTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow left;
+    private TalendFlow right;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendMergeJoinTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendMergeJoinTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        left = model.getFlowFactory().newFlow( "left", null, false );
+        left.addColumn( "id", TalendType.INTEGER ).addColumn( "k", TalendType.INTEGER ).addColumn( "s", TalendType.STRING );
+        right = model.getFlowFactory().newFlow( "right", null, false );
+        right.addColumn( "rid", TalendType.INTEGER ).addColumn( "k", TalendType.LONG ).addColumn( "s", TalendType.STRING, null, false, TalendEncoding.UTF8 );
+        Random random = new Random( 3 );
+        for( int i = 0; i < 6000; i++ )
+        {
+            model.getRowFactory().newRow( left ).setValue( "id", i ).setValue( "k", random.nextInt( 20 ) == 0 ? null : random.nextInt( 1000 ) ).setValue( "s", "s" + random.nextInt( 3 ) );
+        }
+        for( int i = 0; i < 8000; i++ )
+        {
+            model.getRowFactory().newRow( right ).setValue( "rid", i ).setValue( "k", random.nextInt( 20 ) == 0 ? null : (long) random.nextInt( 1200 ) ).setValue( "s", random.nextInt( 9 ) == 0 ? null : "s" + random.nextInt( 3 ) );
+        }
+    }
+
+    private static List<String> pairs( TalendJoin join )
+    {
+        final List<String> pairs = new ArrayList<String>();
+        join.forEach( new TalendJoinBehaviour()
+        {
+            public void visit( TalendRow a, TalendRow b )
+            {
+                pairs.add( ( a == null ? "-" : a.getValue( "id" ) ) + ":" + ( b == null ? "-" : b.getValue( "rid" ) ) );
+            }
+
+            public Boolean isValid()
+            {
+                return Boolean.TRUE;
+            }
+        } );
+        Collections.sort( pairs );
+        return pairs;
+    }
+
+    public void testStrategiesAgree()
+    {
+        int before = TalendSpills.countFiles();
+        TalendFlow sortedLeft = left.sort( "k", "s" ).toFlow( "sortedLeft" );
+        TalendFlow sortedRight = right.sort( "k", "s" ).toFlow( "sortedRight" );
+        for( TalendJoinType type : TalendJoinType.values() )
+        {
+            List<String> hash = pairs( left.join( right, type ).on( "k", "k" ).on( "s", "s" ) );
+            List<String> sortMerge = pairs( left.join( right, type ).on( "k", "k" ).on( "s", "s" ).setStrategy( TalendJoinStrategy.SORT_MERGE ) );
+            List<String> spilled = pairs( left.join( right, type ).on( "k", "k" ).on( "s", "s" ).setStrategy( TalendJoinStrategy.SORT_MERGE ).setMaximumRows( 1500 ) );
+            List<String> merge = pairs( sortedLeft.join( sortedRight, type ).on( "k", "k" ).on( "s", "s" ).setStrategy( TalendJoinStrategy.MERGE ) );
+            assertFalse( hash.isEmpty() );
+            assertEquals( type.toString(), hash, sortMerge );
+            assertEquals( type.toString(), hash, spilled );
+            assertEquals( type.toString(), hash, merge );
+        }
+        assertEquals( before, TalendSpills.countFiles() );
+    }
+
+    public void testDuplicateKeyRuns()
+    {
+        TalendFlow a = model.getFlowFactory().newFlow( "a", null, false );
+        a.addColumn( "id", TalendType.INTEGER ).addColumn( "k", TalendType.INTEGER );
+        TalendFlow b = model.getFlowFactory().newFlow( "b", null, false );
+        b.addColumn( "rid", TalendType.INTEGER ).addColumn( "k", TalendType.DOUBLE );
+        for( int i = 0; i < 30; i++ )
+        {
+            model.getRowFactory().newRow( a ).setValue( "id", i ).setValue( "k", i / 10 );
+            model.getRowFactory().newRow( b ).setValue( "rid", i ).setValue( "k", i / 15 * 1.0 );
+            if( i == 14 )
+            {
+                model.getRowFactory().newRow( b ).setValue( "rid", 30 ).setValue( "k", 0.5 );
+            }
+        }
+        // keys 0 and 1 pair 10 left rows with 15 right rows each
+        List<String> inner = pairs( a.join( b, TalendJoinType.INNER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.MERGE ) );
+        assertEquals( 300, inner.size() );
+        assertEquals( inner, pairs( a.join( b, TalendJoinType.INNER ).on( "k", "k" ) ) );
+        List<String> full = pairs( a.join( b, TalendJoinType.FULL_OUTER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.MERGE ) );
+        assertEquals( 300 + 10 + 1, full.size() );
+        assertTrue( full.contains( "-:30" ) );
+        assertTrue( full.contains( "29:-" ) );
+    }
+
+    public void testOrderOfMergedPairs()
+    {
+        TalendFlow result = left.join( right, TalendJoinType.LEFT_OUTER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.SORT_MERGE ).setMaximumRows( 2000 ).toFlow( "merged" );
+        Integer previous = null;
+        boolean values = false;
+        for( TalendRow row : result )
+        {
+            Integer key = (Integer) row.getValue( "k" );
+            if( key == null )
+            {
+                // null keys match nothing and come first
+                assertFalse( values );
+                assertNull( row.getValue( "rid" ) );
+                continue;
+            }
+            values = true;
+            assertTrue( previous == null || previous <= key );
+            previous = key;
+        }
+    }
+
+    public void testEmptyFlows()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER );
+        assertEquals( 0, pairs( empty.join( right.sort( "k" ).toFlow( "sortedRight" ), TalendJoinType.INNER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.MERGE ) ).size() );
+        assertEquals( 0, pairs( left.join( empty, TalendJoinType.INNER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.SORT_MERGE ) ).size() );
+        assertEquals( 6000, pairs( left.join( empty, TalendJoinType.LEFT_OUTER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.SORT_MERGE ) ).size() );
+        assertEquals( 8000, pairs( empty.join( right, TalendJoinType.FULL_OUTER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.SORT_MERGE ) ).size() );
+    }
+
+    public void testUnsortedFlowsAreRejected()
+    {
+        int before = TalendSpills.countFiles();
+        try
+        {
+            pairs( left.join( right, TalendJoinType.INNER ).on( "k", "k" ).setStrategy( TalendJoinStrategy.MERGE ) );
+            fail( "unsorted flows merged" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        TalendFlow sortedLeft = left.sort( "k" ).toFlow( "sortedLeft" );
+        try
+        {
+            pairs( sortedLeft.join( right.sort( "k" ).setMaximumRows( 1000 ).toFlow( "sortedRight" ), TalendJoinType.INNER ).on( "k", "k" ).on( "s", "s" ).setStrategy( TalendJoinStrategy.MERGE ) );
+            fail( "flows not sorted on the second column merged" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        assertEquals( before, TalendSpills.countFiles() );
+    }
+
+    public void testInvalidSettings()
+    {
+        try
+        {
+            left.join( right, TalendJoinType.INNER ).setStrategy( null );
+            fail( "null strategy accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            left.join( right, TalendJoinType.INNER ).setMaximumRows( 0 );
+            fail( "empty sort budget accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
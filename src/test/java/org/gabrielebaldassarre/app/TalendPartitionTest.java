@@ -0,0 +1,279 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinBehaviour;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendJoinType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for hash partitioning of flows into shards.
+ */
+public class TalendPartitionTest
+    extends TestCase
+{
+    private static final int ROWS = 50000;
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendPartitionTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendPartitionTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "orders", null, false );
+        flow.addColumn( "c", TalendType.INTEGER ).addColumn( "s", TalendType.STRING, null, false, TalendEncoding.UTF8 ).addColumn( "i", TalendType.LONG );
+        for( int i = 0; i < ROWS; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow ).setValue( "i", (long) i ).setValue( "s", "v" + ( i % 97 ) );
+            if( i % 50 != 0 )
+            {
+                row.setValue( "c", i % 1000 );
+            }
+        }
+    }
+
+    /**
+     * Normalize a number so that equal values of different types have the same key
+     */
+    private static Object key( Object value )
+    {
+        if( value instanceof Number )
+        {
+            return new BigDecimal( value.toString() ).stripTrailingZeros();
+        }
+        return value;
+    }
+
+    /**
+     * Check that the rows sharing a key are all in the same shard, and return the shard of each key
+     */
+    private static Map<Object, Integer> assertKeysInOneShard( TalendFlow[] shards, String column, Map<Object, Integer> where )
+    {
+        for( int k = 0; k < shards.length; k++ )
+        {
+            for( TalendRow row : shards[k] )
+            {
+                Integer previous = where.put( key( row.getValue( column ) ), k );
+                assertTrue( previous == null || previous == k );
+            }
+        }
+        return where;
+    }
+
+    public void testShardsHoldAllTheRowsInOrder()
+    {
+        TalendFlow[] shards = flow.partition( new String[]{ "c" }, 8 );
+        assertEquals( 8, shards.length );
+        int total = 0;
+        for( int k = 0; k < shards.length; k++ )
+        {
+            assertEquals( "orders_" + k, shards[k].getName() );
+            assertTrue( model.hasFlow( "orders_" + k ) );
+            assertEquals( TalendEncoding.UTF8, shards[k].getColumn( "s" ).getEncoding() );
+            long last = -1;
+            for( TalendRow row : shards[k] )
+            {
+                long i = (Long) row.getValue( "i" );
+                assertTrue( i > last );
+                last = i;
+                assertEquals( "v" + ( i % 97 ), row.getValue( "s" ) );
+            }
+            total += shards[k].countRows();
+            // keys are spread evenly enough
+            assertTrue( shards[k].countRows() > ROWS / 16 );
+        }
+        assertEquals( ROWS, total );
+        // null values are a key of their own
+        assertKeysInOneShard( shards, "c", new HashMap<Object, Integer>() );
+    }
+
+    public void testNumbersOfAllTypesAreCoPartitioned()
+    {
+        TalendType[] types = { TalendType.SHORT, TalendType.INTEGER, TalendType.LONG, TalendType.DOUBLE, TalendType.BIGDECIMAL };
+        Map<Object, Integer> where = new HashMap<Object, Integer>();
+        for( TalendType type : types )
+        {
+            TalendFlow numbers = model.getFlowFactory().newFlow( "n" + type, null, false );
+            numbers.addColumn( "k", type );
+            for( int i = -50; i < 50; i++ )
+            {
+                Object value;
+                switch( type )
+                {
+                case SHORT:
+                    value = (short) i;
+                    break;
+                case DOUBLE:
+                    value = (double) i;
+                    break;
+                case BIGDECIMAL:
+                    value = new BigDecimal( i ).setScale( 2 );
+                    break;
+                default:
+                    value = i;
+                }
+                model.getRowFactory().newRow( numbers ).setValue( "k", value );
+            }
+            // numbers of other types held by the column are hashed by value too
+            model.getRowFactory().newRow( numbers ).setValue( "k", type == TalendType.DOUBLE ? (Object) 7 : (Object) 7.0 );
+            assertKeysInOneShard( numbers.partition( new String[]{ "k" }, 5 ), "k", where );
+        }
+        assertEquals( 100, where.size() );
+    }
+
+    public void testShardsJoinLikeTheirFlows()
+    {
+        TalendFlow customers = model.getFlowFactory().newFlow( "customers", null, false );
+        customers.addColumn( "id", TalendType.LONG ).addColumn( "s", TalendType.STRING );
+        for( long i = 0; i < 1200; i++ )
+        {
+            model.getRowFactory().newRow( customers ).setValue( "id", i ).setValue( "s", "v" + ( i % 97 ) );
+        }
+        List<String> expected = pairs( flow, customers );
+        TalendFlow[] orders = flow.partition( new String[]{ "c", "s" }, 4 );
+        TalendFlow[] shards = customers.partition( new String[]{ "id", "s" }, 4 );
+        List<String> joined = new ArrayList<String>();
+        for( int k = 0; k < 4; k++ )
+        {
+            joined.addAll( pairs( orders[k], shards[k] ) );
+        }
+        Collections.sort( joined );
+        assertFalse( expected.isEmpty() );
+        assertEquals( expected, joined );
+    }
+
+    private static List<String> pairs( TalendFlow orders, TalendFlow customers )
+    {
+        final List<String> pairs = new ArrayList<String>();
+        orders.join( customers, TalendJoinType.INNER ).on( "c", "id" ).on( "s", "s" ).forEach( new TalendJoinBehaviour()
+        {
+            public void visit( TalendRow a, TalendRow b )
+            {
+                pairs.add( a.getValue( "i" ) + ":" + b.getValue( "id" ) );
+            }
+
+            public Boolean isValid()
+            {
+                return Boolean.TRUE;
+            }
+        } );
+        Collections.sort( pairs );
+        return pairs;
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "t", null, true );
+        transactional.addColumn( "k", TalendType.INTEGER );
+        model.getRowFactory().newRow( transactional ).setValue( "k", 1 );
+        transactional.commit();
+        model.getRowFactory().newRow( transactional ).setValue( "k", 2 );
+        transactional.rollback();
+        model.getRowFactory().newRow( transactional ).setValue( "k", 3 );
+        // pending rows are not split
+        TalendFlow[] shards = transactional.partition( new String[]{ "k" }, 3 );
+        int total = 0;
+        for( TalendFlow shard : shards )
+        {
+            total += shard.countRows();
+        }
+        assertEquals( 1, total );
+
+        TalendFlow truncated = model.getFlowFactory().newFlow( "u", null, true );
+        truncated.addColumn( "k", TalendType.INTEGER );
+        model.getRowFactory().newRow( truncated ).setValue( "k", 1 );
+        truncated.commit();
+        truncated.truncate();
+        truncated.commit();
+        for( TalendFlow shard : truncated.partition( new String[]{ "k" }, 3 ) )
+        {
+            assertEquals( 0, shard.countRows() );
+        }
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER ).addColumn( "s", TalendType.STRING );
+        TalendFlow[] shards = empty.partition( new String[]{ "k", "s" }, 4 );
+        assertEquals( 4, shards.length );
+        assertEquals( 0, shards[3].countRows() );
+        assertEquals( 2, shards[3].getColumns().length );
+    }
+
+    public void testInvalidPartitions()
+    {
+        try
+        {
+            flow.partition( new String[]{ "c" }, 0 );
+            fail( "no shard accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.partition( new String[0], 2 );
+            fail( "no column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.partition( new String[]{ "missing" }, 2 );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        model.getFlowFactory().newFlow( "orders_2", null, false );
+        try
+        {
+            flow.partition( new String[]{ "c" }, 4 );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        // no shard is left behind
+        assertFalse( model.hasFlow( "orders_0" ) );
+    }
+}
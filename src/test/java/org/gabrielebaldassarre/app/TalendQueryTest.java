@@ -0,0 +1,258 @@
+package org.gabrielebaldassarre.app;
+
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.between;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.eq;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.ge;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.gt;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.in;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.isNotNull;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.isNull;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.le;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.lt;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.ne;
+import static org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate.not;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowCursor;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowImpl;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for select/where/limit queries over flows.
+ */
+public class TalendQueryTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendQueryTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendQueryTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "k", TalendType.INTEGER, null, true )
+            .addColumn( "c", TalendType.STRING, "IT" )
+            .addColumn( "n", TalendType.LONG )
+            .addColumn( "d", TalendType.DOUBLE )
+            .addColumn( "u", TalendType.STRING, null, false, TalendEncoding.UTF8 );
+        for( int i = 0; i < 1000; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow ).setValue( "k", i ).setValue( "c", i % 3 == 0 ? "FR" : "IT" ).setValue( "u", "u" + ( i % 10 ) );
+            if( i % 100 != 0 )
+            {
+                row.setValue( "n", (long) i ).setValue( "d", i / 2.0 );
+            }
+        }
+        flow.commit();
+    }
+
+    private int count( TalendPredicate predicate )
+    {
+        return flow.select().where( predicate ).count();
+    }
+
+    public void testComparisons()
+    {
+        assertEquals( 334, count( eq( "c", "FR" ) ) );
+        assertEquals( 666, count( ne( "c", "FR" ) ) );
+        assertEquals( 100, count( eq( "u", "u3" ) ) );
+        assertEquals( 900, count( ne( "u", "u3" ) ) );
+        assertEquals( 10, count( lt( "k", 10 ) ) );
+        assertEquals( 11, count( le( "k", 10 ) ) );
+        assertEquals( 989, count( gt( "k", 10 ) ) );
+        assertEquals( 990, count( ge( "k", 10 ) ) );
+        assertEquals( 8, count( between( "n", 10, 19 ).and( eq( "c", "IT" ) ).or( eq( "k", 999 ) ) ) );
+        assertEquals( 2, count( in( "k", 1, 2, 3000 ) ) );
+        assertEquals( 0, count( in( "k" ) ) );
+        assertEquals( Integer.valueOf( 42 ), flow.select().where( eq( "k", 42 ) ).iterator().next().getValue( "k" ) );
+    }
+
+    public void testMixedNumericTypes()
+    {
+        assertEquals( 1, count( eq( "k", 42L ) ) );
+        assertEquals( 1, count( eq( "n", 42 ) ) );
+        assertEquals( 1, count( eq( "k", 42.0 ) ) );
+        assertEquals( 0, count( eq( "k", 17.5 ) ) );
+        assertEquals( 1000, count( ne( "k", 17.5 ) ) );
+        assertEquals( 18, count( lt( "k", 17.5 ) ) );
+        assertEquals( 18, count( le( "k", 17.5 ) ) );
+        assertEquals( 982, count( gt( "k", 17.5 ) ) );
+        // doubles holding halves, nulls every hundred rows
+        assertEquals( 1, count( eq( "d", 21 ) ) );
+        assertEquals( 1000, count( lt( "k", Long.MAX_VALUE ) ) );
+        assertEquals( 0, count( gt( "k", 1L << 40 ) ) );
+        assertEquals( 1, count( eq( "k", "42" ) ) );
+    }
+
+    public void testNullsNeverSatisfyComparisons()
+    {
+        assertEquals( 10, count( isNull( "n" ) ) );
+        assertEquals( 990, count( isNotNull( "n" ) ) );
+        assertEquals( 990, count( ge( "n", 0 ) ) );
+        assertEquals( 0, count( lt( "n", 0 ) ) );
+        assertEquals( 0, count( not( ge( "n", 0 ) ) ) );
+        assertEquals( 989, count( not( eq( "n", 1 ) ) ) );
+        assertEquals( 990, count( not( isNull( "n" ) ) ) );
+        assertEquals( 1, count( not( lt( "n", 100 ).or( isNotNull( "d" ) ).and( gt( "k", 0 ) ) ) ) );
+        assertEquals( 990, count( not( in( "n", 3000 ) ) ) );
+    }
+
+    public void testLimitsAndPositions()
+    {
+        assertEquals( 5, flow.select().where( between( "n", 10, 19 ).or( isNull( "u" ) ) ).limit( 5 ).count() );
+        assertEquals( 0, flow.select().limit( 0 ).count() );
+        assertTrue( Arrays.equals( new int[]{ 0, 3, 6 }, flow.select().where( eq( "c", "FR" ) ).limit( 3 ).positions() ) );
+        try
+        {
+            flow.select().limit( -1 );
+            fail( "negative limit accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testIndexesAgreeWithScans()
+    {
+        int[] scanned = flow.select().where( eq( "c", "FR" ).and( lt( "n", 300 ) ) ).positions();
+        flow.addIndex( "c" );
+        assertTrue( Arrays.equals( scanned, flow.select().where( eq( "c", "FR" ).and( lt( "n", 300 ) ) ).positions() ) );
+
+        TalendRowCursor cursor = flow.select().where( eq( "c", "FR" ) ).limit( 3 ).cursor();
+        int rows = 0;
+        while( cursor.next() )
+        {
+            assertEquals( rows * 3, cursor.getPosition() );
+            assertEquals( rows++ * 3, cursor.getInt( flow.getColumn( "k" ) ) );
+        }
+        assertEquals( 3, rows );
+
+        // indexes follow saved updates and rollbacks
+        ( (TalendRowImpl) flow.getRow( 1 ).setValue( "c", "FR" ) ).save();
+        assertEquals( 335, count( eq( "c", "FR" ) ) );
+        model.getRowFactory().newRow( flow ).setValue( "k", 1000 ).setValue( "c", "FR" );
+        flow.rollback();
+        assertEquals( 335, count( eq( "c", "FR" ) ) );
+        flow.truncate();
+        flow.commit();
+        assertEquals( 0, count( eq( "c", "FR" ) ) );
+    }
+
+    public void testQueriesOnEmptyFlows()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER );
+        assertEquals( 0, empty.select().where( eq( "k", 1 ) ).count() );
+        assertFalse( empty.select().iterator().hasNext() );
+        assertEquals( 0, empty.select().positions().length );
+        assertEquals( 0, empty.select().toFlow( "copy" ).countRows() );
+    }
+
+    public void testProjectionsToNewFlows()
+    {
+        TalendFlow projected = flow.select( "k", "u" ).where( eq( "c", "FR" ) ).toFlow( "g" );
+        assertEquals( 334, projected.countRows() );
+        assertEquals( 2, projected.getColumns().length );
+        assertEquals( TalendEncoding.UTF8, projected.getColumn( "u" ).getEncoding() );
+        assertEquals( Integer.valueOf( 3 ), projected.getRow( 1 ).getValue( "k" ) );
+        assertEquals( "u3", projected.getRow( 1 ).getValue( "u" ) );
+        try
+        {
+            flow.select().toFlow( "g" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testInvalidQueries()
+    {
+        try
+        {
+            count( eq( "missing", 1 ) );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            count( eq( "c", 1 ) );
+            fail( "number compared to a string column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            count( lt( "k", "abc" ) );
+            fail( "unparsable constant accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            count( eq( "n", null ) );
+            fail( "null constant accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.select( "missing" );
+            fail( "unknown projection accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            not( null );
+            fail( "null predicate negated" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
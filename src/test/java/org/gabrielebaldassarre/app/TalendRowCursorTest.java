@@ -0,0 +1,212 @@
+package org.gabrielebaldassarre.app;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendColumn;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowCursor;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for typed reads through row cursors.
+ */
+public class TalendRowCursorTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendRowCursorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendRowCursorTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "i", TalendType.INTEGER, 1 )
+            .addColumn( "l", TalendType.LONG )
+            .addColumn( "d", TalendType.DOUBLE )
+            .addColumn( "b", TalendType.BOOLEAN )
+            .addColumn( "s", TalendType.STRING );
+    }
+
+    public void testScanWithTypedGetters()
+    {
+        for( int i = 0; i < 100; i++ )
+        {
+            if( i % 2 == 0 )
+            {
+                model.getRowFactory().newRow( flow ).setValue( "i", i ).setValue( "s", "x" + i );
+            }
+            else
+            {
+                model.getRowFactory().newRow( flow );
+            }
+        }
+        TalendColumn i = flow.getColumn( "i" );
+        TalendColumn s = flow.getColumn( "s" );
+        TalendRowCursor cursor = flow.cursor();
+        long total = 0;
+        int nulls = 0;
+        while( cursor.next() )
+        {
+            total += cursor.getLong( i );
+            if( cursor.isNull( s ) )
+            {
+                nulls++;
+            }
+        }
+        // even rows hold their position, odd ones the column default
+        assertEquals( 2450 + 50, total );
+        assertEquals( 50, nulls );
+        assertFalse( cursor.next() );
+    }
+
+    public void testNumericGettersConvertMixedTypes()
+    {
+        model.getRowFactory().newRow( flow ).setValue( "i", 7 ).setValue( "l", 1L << 40 ).setValue( "d", 2.75 ).setValue( "b", true ).setValue( "s", "text" );
+        TalendRowCursor cursor = flow.cursor();
+        assertTrue( cursor.next() );
+        assertEquals( 7.0, cursor.getDouble( flow.getColumn( "i" ) ), 0.0 );
+        assertEquals( 1L << 40, cursor.getLong( flow.getColumn( "l" ) ) );
+        assertEquals( (int) ( 1L << 40 ), cursor.getInt( flow.getColumn( "l" ) ) );
+        assertEquals( 2, cursor.getInt( flow.getColumn( "d" ) ) );
+        assertEquals( 2L, cursor.getLong( flow.getColumn( "d" ) ) );
+        assertTrue( cursor.getBoolean( flow.getColumn( "b" ) ) );
+        assertEquals( "text", cursor.getString( flow.getColumn( "s" ) ) );
+        assertEquals( Integer.valueOf( 7 ), cursor.getValue( flow.getColumn( "i" ) ) );
+        assertEquals( Integer.valueOf( 7 ), cursor.getTalendValue( flow.getColumn( "i" ) ).getValue() );
+    }
+
+    public void testNullValues()
+    {
+        model.getRowFactory().newRow( flow ).setValue( "i", null );
+        TalendRowCursor cursor = flow.cursor();
+        cursor.next();
+        assertTrue( cursor.isNull( flow.getColumn( "i" ) ) );
+        assertTrue( cursor.isNull( flow.getColumn( "l" ) ) );
+        assertNull( cursor.getString( flow.getColumn( "s" ) ) );
+        assertNull( cursor.getValue( flow.getColumn( "d" ) ) );
+        try
+        {
+            cursor.getLong( flow.getColumn( "l" ) );
+            fail( "read a null value as a primitive" );
+        }
+        catch( NullPointerException e )
+        {
+            // expected
+        }
+    }
+
+    public void testWrongTypes()
+    {
+        model.getRowFactory().newRow( flow ).setValue( "s", "text" ).setValue( "b", false );
+        TalendRowCursor cursor = flow.cursor();
+        cursor.next();
+        try
+        {
+            cursor.getLong( flow.getColumn( "s" ) );
+            fail( "read a string as a number" );
+        }
+        catch( ClassCastException e )
+        {
+            // expected
+        }
+        try
+        {
+            cursor.getString( flow.getColumn( "b" ) );
+            fail( "read a boolean as a string" );
+        }
+        catch( ClassCastException e )
+        {
+            // expected
+        }
+    }
+
+    public void testNotPositioned()
+    {
+        TalendRowCursor cursor = flow.cursor();
+        try
+        {
+            cursor.getInt( flow.getColumn( "i" ) );
+            fail( "read before the first row" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        assertFalse( cursor.next() );
+        try
+        {
+            cursor.getInt( flow.getColumn( "i" ) );
+            fail( "read past the last row" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        assertSame( flow, cursor.getFlow() );
+    }
+
+    public void testForeignAndRemovedColumns()
+    {
+        model.getRowFactory().newRow( flow ).setValue( "i", 1 ).setValue( "l", 2L );
+        TalendFlow other = model.getFlowFactory().newFlow( "g", null, false );
+        other.addColumn( "i", TalendType.INTEGER );
+        TalendRowCursor cursor = flow.cursor();
+        cursor.next();
+        try
+        {
+            cursor.getInt( other.getColumn( "i" ) );
+            fail( "read a column of another flow" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        TalendColumn removed = flow.getColumn( "l" );
+        flow.removeColumn( removed );
+        try
+        {
+            cursor.getLong( removed );
+            fail( "read a removed column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        flow.addColumn( "l", TalendType.LONG );
+        try
+        {
+            cursor.getValue( removed );
+            fail( "read a removed column through a new one in its slot" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        assertNull( cursor.getValue( flow.getColumn( "l" ) ) );
+        assertEquals( 1, cursor.getInt( flow.getColumn( "i" ) ) );
+    }
+}
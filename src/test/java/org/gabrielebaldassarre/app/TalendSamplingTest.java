@@ -0,0 +1,236 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSampling;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for reservoir and Bernoulli samples of flows.
+ */
+public class TalendSamplingTest
+    extends TestCase
+{
+    private static final int ROWS = 20000;
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendSamplingTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendSamplingTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "id", TalendType.INTEGER ).addColumn( "g", TalendType.STRING );
+        for( int i = 0; i < ROWS; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "id", i ).setValue( "g", i % 10 == 0 ? null : "g" + ( i % 3 ) );
+        }
+    }
+
+    private static List<Integer> ids( TalendFlow rows )
+    {
+        List<Integer> ids = new ArrayList<Integer>();
+        for( TalendRow row : rows )
+        {
+            ids.add( (Integer) row.getValue( "id" ) );
+        }
+        return ids;
+    }
+
+    public void testReservoirSamplesAreUniform()
+    {
+        int[] deciles = new int[10];
+        for( int run = 0; run < 300; run++ )
+        {
+            TalendFlow sample = flow.sample().reservoir( 100 ).setSeed( (long) run ).toFlow( "s" + run );
+            assertEquals( 100, sample.countRows() );
+            int previous = -1;
+            for( Integer id : ids( sample ) )
+            {
+                // rows keep the order of the flow
+                assertTrue( id > previous );
+                previous = id;
+                deciles[id * 10 / ROWS]++;
+            }
+        }
+        for( int decile : deciles )
+        {
+            assertTrue( Math.abs( decile - 3000 ) < 450 );
+        }
+    }
+
+    public void testStratifiedSamples()
+    {
+        TalendFlow sample = flow.sample().reservoir( 50 ).stratifyBy( "g" ).setSeed( 1L ).toFlow( "sample" );
+        Map<Object, Integer> strata = new HashMap<Object, Integer>();
+        for( TalendRow row : sample )
+        {
+            Object g = row.getValue( "g" );
+            strata.put( g, strata.containsKey( g ) ? strata.get( g ) + 1 : 1 );
+        }
+        // null values make a stratum of their own
+        assertEquals( 4, strata.size() );
+        for( Integer size : strata.values() )
+        {
+            assertEquals( Integer.valueOf( 50 ), size );
+        }
+
+        // strata smaller than the size are selected as a whole
+        assertEquals( ROWS, flow.sample().reservoir( 5 ).stratifyBy( "id" ).toFlow( "ids" ).countRows() );
+        assertEquals( ROWS, flow.sample().reservoir( ROWS * 2 ).toFlow( "all" ).countRows() );
+    }
+
+    public void testMixedNumericStrata()
+    {
+        TalendFlow numbers = model.getFlowFactory().newFlow( "numbers", null, false );
+        numbers.addColumn( "v", TalendType.LONG );
+        for( Object value : new Object[]{ 1, 1L, 1.0, new BigDecimal( "1.00" ), "1", 2 } )
+        {
+            model.getRowFactory().newRow( numbers ).setValue( "v", value );
+        }
+        // numbers of other types holding the same value are in the same stratum
+        assertEquals( 2, numbers.sample().reservoir( 1 ).stratifyBy( "v" ).toFlow( "sample" ).countRows() );
+    }
+
+    public void testSeedsMakeSamplesRepeatable()
+    {
+        assertEquals( ids( flow.sample().reservoir( 20 ).setSeed( 3L ).toFlow( "a" ) ), ids( flow.sample().reservoir( 20 ).setSeed( 3L ).toFlow( "b" ) ) );
+        assertFalse( ids( flow.sample().reservoir( 20 ).setSeed( 3L ).toFlow( "c" ) ).equals( ids( flow.sample().reservoir( 20 ).setSeed( 4L ).toFlow( "d" ) ) ) );
+        assertEquals( ids( flow.sample().reservoir( 20 ).stratifyBy( "g" ).setSeed( 3L ).toFlow( "e" ) ), ids( flow.sample().reservoir( 20 ).stratifyBy( "g" ).setSeed( 3L ).toFlow( "f2" ) ) );
+    }
+
+    public void testBernoulliSamplesDoNotDependOnThreads()
+    {
+        TalendFlow serial = flow.sample().bernoulli( 0.05 ).setSeed( 9L ).setParallelism( 1 ).toFlow( "serial" );
+        TalendFlow parallel = flow.sample().bernoulli( 0.05 ).setSeed( 9L ).setParallelism( 8 ).toFlow( "parallel" );
+        assertEquals( ids( serial ), ids( parallel ) );
+        assertTrue( Math.abs( serial.countRows() - ROWS / 20 ) < 200 );
+        assertEquals( ROWS, flow.sample().bernoulli( 1 ).toFlow( "all" ).countRows() );
+        assertEquals( 0, flow.sample().bernoulli( 0 ).toFlow( "none" ).countRows() );
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "transactional", null, true );
+        transactional.addColumn( "v", TalendType.INTEGER );
+        for( int i = 0; i < 10; i++ )
+        {
+            model.getRowFactory().newRow( transactional ).setValue( "v", i );
+        }
+        // pending rows are not sampled
+        assertEquals( 0, transactional.sample().toFlow( "pending" ).countRows() );
+        transactional.commit();
+        model.getRowFactory().newRow( transactional ).setValue( "v", 10 );
+        transactional.rollback();
+        assertEquals( 10, transactional.sample().bernoulli( 1 ).toFlow( "committed" ).countRows() );
+        transactional.truncate();
+        transactional.commit();
+        assertEquals( 0, transactional.sample().toFlow( "truncated" ).countRows() );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "v", TalendType.INTEGER );
+        assertEquals( 0, empty.sample().toFlow( "reservoir" ).countRows() );
+        assertEquals( 0, empty.sample().reservoir( 3 ).stratifyBy( "v" ).toFlow( "stratified" ).countRows() );
+        TalendFlow bernoulli = empty.sample().bernoulli( 1 ).toFlow( "bernoulli" );
+        assertEquals( 0, bernoulli.countRows() );
+        assertEquals( 1, bernoulli.getColumns().length );
+    }
+
+    public void testInvalidSamplings()
+    {
+        TalendSampling sampling = flow.sample();
+        assertSame( flow, sampling.getFlow() );
+        for( double fraction : new double[]{ -0.1, 1.5, Double.NaN } )
+        {
+            try
+            {
+                sampling.bernoulli( fraction );
+                fail( "fraction " + fraction + " accepted" );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+        try
+        {
+            sampling.reservoir( 0 );
+            fail( "empty reservoir accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            sampling.stratifyBy( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            sampling.setParallelism( 0 );
+            fail( "no threads accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.sample().bernoulli( 0.5 ).stratifyBy( "g" ).toFlow( "stratified" );
+            fail( "stratified Bernoulli sample" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        flow.sample().toFlow( "sample" );
+        try
+        {
+            flow.sample().toFlow( "sample" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
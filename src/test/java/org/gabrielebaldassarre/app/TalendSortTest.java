@@ -0,0 +1,276 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowCursor;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowIterator;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSort;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSortOrder;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSpills;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for in-memory and external sorts of flows.
+ */
+public class TalendSortTest
+    extends TestCase
+{
+    private static final int ROWS = 20000;
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendSortTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendSortTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "id", TalendType.INTEGER )
+            .addColumn( "n", TalendType.LONG )
+            .addColumn( "d", TalendType.DOUBLE )
+            .addColumn( "s", TalendType.STRING, null, false, TalendEncoding.UTF8 )
+            .addColumn( "t", TalendType.DATE );
+        Random random = new Random( 1 );
+        for( int i = 0; i < ROWS; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "id", i )
+                .setValue( "n", random.nextInt( 10 ) == 0 ? null : (long) random.nextInt( 1000 ) - 500 )
+                .setValue( "d", random.nextInt( 10 ) == 0 ? null : random.nextGaussian() * 1e6 )
+                .setValue( "s", "s" + random.nextInt( 100 ) )
+                .setValue( "t", new Date( random.nextInt( 100000 ) ) );
+        }
+    }
+
+    private static List<Integer> ids( Iterable<TalendRow> rows )
+    {
+        List<Integer> ids = new ArrayList<Integer>();
+        for( TalendRow row : rows )
+        {
+            ids.add( (Integer) row.getValue( "id" ) );
+        }
+        return ids;
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private void assertSorted( Iterable<TalendRow> rows, String column, TalendSortOrder order )
+    {
+        TalendRow previous = null;
+        int count = 0;
+        for( TalendRow row : rows )
+        {
+            if( previous != null )
+            {
+                Comparable a = (Comparable) previous.getValue( column );
+                Comparable b = (Comparable) row.getValue( column );
+                int c = ( a == null ? ( b == null ? 0 : -1 ) : ( b == null ? 1 : a.compareTo( b ) ) );
+                if( order == TalendSortOrder.DESCENDING )
+                {
+                    c = -c;
+                }
+                assertTrue( c <= 0 );
+                // the sort is stable
+                if( c == 0 )
+                {
+                    assertTrue( (Integer) previous.getValue( "id" ) < (Integer) row.getValue( "id" ) );
+                }
+            }
+            previous = row;
+            count++;
+        }
+        assertEquals( ROWS, count );
+    }
+
+    public void testTypedColumnsInBothDirections()
+    {
+        for( String column : new String[]{ "n", "d", "t", "s" } )
+        {
+            for( TalendSortOrder order : TalendSortOrder.values() )
+            {
+                assertSorted( flow.sort( new String[]{ column }, new TalendSortOrder[]{ order } ), column, order );
+            }
+        }
+    }
+
+    public void testNullsComeFirstInAscendingOrder()
+    {
+        TalendRow first = flow.sort( "n" ).iterator().next();
+        assertNull( first.getValue( "n" ) );
+        TalendRow last = flow.sort( "n" ).toFlow( "sorted" ).getRow( ROWS - 1 );
+        assertEquals( Long.valueOf( 499 ), last.getValue( "n" ) );
+        TalendRow descending = flow.sort( new String[]{ "n" }, new TalendSortOrder[]{ TalendSortOrder.DESCENDING } ).iterator().next();
+        assertEquals( Long.valueOf( 499 ), descending.getValue( "n" ) );
+    }
+
+    public void testSpillsAgreeWithMemory()
+    {
+        int before = TalendSpills.countFiles();
+        for( String column : new String[]{ "n", "d" } )
+        {
+            for( TalendSortOrder order : TalendSortOrder.values() )
+            {
+                TalendSort memory = flow.sort( new String[]{ column }, new TalendSortOrder[]{ order } );
+                List<Integer> expected = ids( memory );
+                assertEquals( expected, ids( memory.setMaximumRows( 1777 ) ) );
+                assertEquals( expected, ids( memory.setMaximumRows( ROWS ) ) );
+            }
+        }
+        TalendSort mixed = flow.sort( new String[]{ "s", "n" }, new TalendSortOrder[]{ TalendSortOrder.DESCENDING, TalendSortOrder.ASCENDING } );
+        assertEquals( ids( mixed ), ids( mixed.setMaximumRows( 3000 ) ) );
+        assertEquals( before, TalendSpills.countFiles() );
+    }
+
+    public void testSortedCopies()
+    {
+        TalendFlow copy = flow.sort( "d" ).setMaximumRows( 5000 ).toFlow( "copy" );
+        assertEquals( ROWS, copy.countRows() );
+        assertEquals( TalendEncoding.UTF8, copy.getColumn( "s" ).getEncoding() );
+        assertSorted( copy, "d", TalendSortOrder.ASCENDING );
+        try
+        {
+            flow.sort( "d" ).toFlow( "copy" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER );
+        TalendRowIterator rows = empty.sort( "k" ).setMaximumRows( 1 ).iterator();
+        assertFalse( rows.hasNext() );
+        try
+        {
+            rows.next();
+            fail( "read a row from an empty sort" );
+        }
+        catch( NoSuchElementException e )
+        {
+            // expected
+        }
+        rows.close();
+        assertEquals( 0, empty.sort( "k" ).toFlow( "copy" ).countRows() );
+    }
+
+    public void testClosingDeletesSpills()
+    {
+        int before = TalendSpills.countFiles();
+        TalendSort sort = flow.sort( "n" ).setMaximumRows( 1000 );
+        TalendRowIterator rows = sort.iterator();
+        rows.next();
+        assertTrue( TalendSpills.countFiles() > before );
+        rows.close();
+        assertEquals( before, TalendSpills.countFiles() );
+        assertFalse( rows.hasNext() );
+        rows.close();
+
+        TalendRowCursor cursor = sort.cursor();
+        assertTrue( cursor.next() );
+        cursor.close();
+        assertEquals( before, TalendSpills.countFiles() );
+        assertFalse( cursor.next() );
+        cursor.reset();
+        int count = 0;
+        while( cursor.next() )
+        {
+            count++;
+        }
+        assertEquals( ROWS, count );
+        assertEquals( before, TalendSpills.countFiles() );
+    }
+
+    public void testModificationsDuringIteration()
+    {
+        int before = TalendSpills.countFiles();
+        TalendRowIterator rows = flow.sort( "d" ).setMaximumRows( 1000 ).iterator();
+        rows.next();
+        model.getRowFactory().newRow( flow );
+        try
+        {
+            rows.next();
+            fail( "sort survived a modification" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+        assertEquals( before, TalendSpills.countFiles() );
+    }
+
+    public void testInvalidSorts()
+    {
+        try
+        {
+            flow.sort( new String[]{ "n" }, new TalendSortOrder[0] );
+            fail( "missing direction accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.sort( "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.sort( "n" ).setMaximumRows( 0 );
+            fail( "empty run accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        TalendFlow lists = model.getFlowFactory().newFlow( "lists", null, false );
+        lists.addListColumn( "x", TalendType.INTEGER );
+        try
+        {
+            lists.sort( "x" );
+            fail( "list column sorted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.gabrielebaldassarre.app;
+
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendTimeWindow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for tumbling and hopping windows over DATE columns.
+ */
+public class TalendTimeWindowTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendTimeWindowTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendTimeWindowTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, true );
+        flow.addColumn( "t", TalendType.DATE ).addColumn( "v", TalendType.INTEGER );
+    }
+
+    private void add( long time, Integer value )
+    {
+        model.getRowFactory().newRow( flow ).setValue( "t", new Date( time ) ).setValue( "v", value );
+    }
+
+    private static long start( TalendRow row )
+    {
+        return ( (Date) row.getValue( TalendTimeWindow.WINDOW_START ) ).getTime();
+    }
+
+    public void testTumblingWindowsAgreeWithBruteForce()
+    {
+        TalendTimeWindow window = flow.window( "t" ).tumbling( 10, TimeUnit.SECONDS ).allowLateness( 5, TimeUnit.SECONDS )
+            .count( "n" ).sum( "v", "s" ).max( "v", "mx" ).into( "tumbling" );
+        Random random = new Random( 1 );
+        TreeMap<Long, long[]> expected = new TreeMap<Long, long[]>();
+        long now = 0;
+        long eventTime = Long.MIN_VALUE;
+        long late = 0;
+        int open = 0;
+        for( int batch = 0; batch < 100; batch++ )
+        {
+            for( int i = 0; i < 50; i++ )
+            {
+                now += random.nextInt( 200 );
+                long time = now - ( random.nextInt( 10 ) == 0 ? random.nextInt( 20000 ) : 0 );
+                int value = random.nextInt( 10 );
+                add( time, value );
+                eventTime = Math.max( eventTime, time );
+                long start = Math.floorDiv( time, 10000L ) * 10000;
+                // a window is closed once the event time passes its end by the lateness
+                if( start + 15000 <= eventTime )
+                {
+                    late++;
+                    continue;
+                }
+                long[] aggregates = expected.get( start );
+                if( aggregates == null )
+                {
+                    expected.put( start, aggregates = new long[]{ 0, 0, Long.MIN_VALUE } );
+                }
+                aggregates[0]++;
+                aggregates[1] += value;
+                aggregates[2] = Math.max( aggregates[2], value );
+            }
+            flow.commit();
+            window.update();
+            open = Math.max( open, window.countOpenWindows() );
+        }
+        window.flush();
+        assertEquals( 0, window.countOpenWindows() );
+        assertEquals( late, window.countLateRows() );
+        // memory only holds the windows still open
+        assertTrue( open <= 3 );
+
+        TalendFlow output = window.getOutput();
+        assertEquals( expected.size(), output.countRows() );
+        int i = 0;
+        for( Long start : expected.keySet() )
+        {
+            TalendRow row = output.getRow( i++ );
+            long[] aggregates = expected.get( start );
+            assertEquals( start.longValue(), start( row ) );
+            assertEquals( start + 10000, ( (Date) row.getValue( TalendTimeWindow.WINDOW_END ) ).getTime() );
+            assertEquals( Long.valueOf( aggregates[0] ), row.getValue( "n" ) );
+            assertEquals( Long.valueOf( aggregates[1] ), row.getValue( "s" ) );
+            assertEquals( Integer.valueOf( (int) aggregates[2] ), row.getValue( "mx" ) );
+        }
+    }
+
+    public void testHoppingWindowsOverlap()
+    {
+        TalendTimeWindow window = flow.window( "t" ).hopping( 10, 5, TimeUnit.SECONDS ).count( "n" ).countDistinct( "v", "d" ).avg( "v", "a" ).into( "hopping" );
+        add( 1000, 1 );
+        add( 6000, 1 );
+        add( 12000, 3 );
+        flow.commit();
+        // the event time of 12s closes the windows ending at 5s and 10s
+        assertEquals( 2, window.update() );
+        assertEquals( 2, window.flush() );
+        TalendFlow output = window.getOutput();
+        assertEquals( 4, output.countRows() );
+        // windows starting at -5s, 0s, 5s and 10s
+        assertEquals( -5000, start( output.getRow( 0 ) ) );
+        assertEquals( Long.valueOf( 1 ), output.getRow( 0 ).getValue( "n" ) );
+        assertEquals( Long.valueOf( 2 ), output.getRow( 1 ).getValue( "n" ) );
+        assertEquals( Long.valueOf( 1 ), output.getRow( 1 ).getValue( "d" ) );
+        assertEquals( Long.valueOf( 2 ), output.getRow( 2 ).getValue( "d" ) );
+        assertEquals( 2.0, (Double) output.getRow( 2 ).getValue( "a" ), 0.0 );
+        assertEquals( Long.valueOf( 1 ), output.getRow( 3 ).getValue( "n" ) );
+    }
+
+    public void testLateRowsAndNullDates()
+    {
+        TalendTimeWindow window = flow.window( "t" ).tumbling( 10, TimeUnit.SECONDS ).count( "n" ).into( "out" );
+        add( 1000, 1 );
+        add( 25000, 1 );
+        flow.commit();
+        assertEquals( 1, window.update() );
+        add( 2000, 1 );
+        add( 21000, 1 );
+        model.getRowFactory().newRow( flow ).setValue( "v", 1 );
+        flow.commit();
+        window.update();
+        assertEquals( 1, window.countLateRows() );
+        window.flush();
+        assertEquals( Long.valueOf( 2 ), window.getOutput().getRow( 1 ).getValue( "n" ) );
+
+        // rows of flushed windows are late
+        add( 26000, 1 );
+        flow.commit();
+        window.update();
+        assertEquals( 2, window.countLateRows() );
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendTimeWindow window = flow.window( "t" ).tumbling( 1, TimeUnit.SECONDS ).sum( "v", "s" ).into( "out" );
+        add( 100, 1 );
+        flow.commit();
+        window.update();
+        add( 200, 100 );
+        flow.rollback();
+        flow.truncate();
+        flow.commit();
+        add( 300, 2 );
+        flow.commit();
+        window.update();
+        window.flush();
+        assertEquals( 1, window.getOutput().countRows() );
+        assertEquals( Long.valueOf( 3 ), window.getOutput().getRow( 0 ).getValue( "s" ) );
+    }
+
+    public void testHugeLatenessWaitsForFlush()
+    {
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, false );
+        plain.addColumn( "t", TalendType.DATE );
+        TalendTimeWindow millis = plain.window( "t" ).tumbling( 10, TimeUnit.SECONDS ).allowLateness( Long.MAX_VALUE, TimeUnit.MILLISECONDS ).count( "c" ).into( "millis" );
+        TalendTimeWindow days = plain.window( "t" ).tumbling( 10, TimeUnit.SECONDS ).allowLateness( Long.MAX_VALUE, TimeUnit.DAYS ).count( "c" ).into( "days" );
+        for( long time : new long[]{ 0, 5000, 15000, 100000000L, 3000, Long.MAX_VALUE - 5 } )
+        {
+            model.getRowFactory().newRow( plain ).setValue( "t", new Date( time ) );
+        }
+        assertEquals( 0, millis.update() );
+        assertEquals( 0, days.update() );
+        assertEquals( 4, millis.countOpenWindows() );
+        assertEquals( 0, millis.countLateRows() );
+        assertEquals( 4, millis.flush() );
+        assertEquals( Long.valueOf( 3 ), millis.getOutput().getRow( 0 ).getValue( "c" ) );
+        // the last window is cut at the greatest representable instant
+        TalendRow last = millis.getOutput().getRow( 3 );
+        assertEquals( Long.MAX_VALUE, ( (Date) last.getValue( TalendTimeWindow.WINDOW_END ) ).getTime() );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendTimeWindow window = flow.window( "t" ).count( "n" ).into( "out" );
+        assertEquals( 0, window.update() );
+        assertEquals( 0, window.flush() );
+        assertEquals( 0, window.getOutput().countRows() );
+        assertEquals( 3, window.getOutput().getColumns().length );
+    }
+
+    public void testInvalidWindows()
+    {
+        try
+        {
+            flow.window( "v" );
+            fail( "integer column used as event time" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.window( "t" ).hopping( 5, 10, TimeUnit.SECONDS );
+            fail( "advance greater than size" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.window( "t" ).tumbling( 0, TimeUnit.SECONDS );
+            fail( "empty window" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.window( "t" ).allowLateness( -1, TimeUnit.SECONDS );
+            fail( "negative lateness" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.window( "t" ).count( TalendTimeWindow.WINDOW_END ).into( "bad" );
+            fail( "aggregate named like a window bound" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        TalendTimeWindow window = flow.window( "t" );
+        try
+        {
+            window.update();
+            fail( "update before the start" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        window.count( "n" ).into( "out" );
+        try
+        {
+            window.count( "x" );
+            fail( "aggregate added after the start" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        model.getRowFactory().newRow( window.getOutput() );
+        try
+        {
+            window.flush();
+            fail( "output modified by someone else" );
+        }
+        catch( ConcurrentModificationException e )
+        {
+            // expected
+        }
+    }
+}
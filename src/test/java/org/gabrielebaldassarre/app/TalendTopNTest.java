@@ -0,0 +1,290 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendSortOrder;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for top-N selections over flows.
+ */
+public class TalendTopNTest
+    extends TestCase
+{
+    private static final int ROWS = 20000;
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendTopNTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendTopNTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "id", TalendType.INTEGER ).addColumn( "g", TalendType.STRING ).addColumn( "v", TalendType.DOUBLE ).addColumn( "s", TalendType.STRING );
+        Random random = new Random( 7 );
+        for( int i = 0; i < ROWS; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow ).setValue( "id", i )
+                .setValue( "g", random.nextInt( 20 ) == 0 ? null : "g" + random.nextInt( 30 ) )
+                .setValue( "s", "s" + random.nextInt( 100 ) );
+            if( random.nextInt( 30 ) != 0 )
+            {
+                row.setValue( "v", (double) random.nextInt( 500 ) );
+            }
+        }
+    }
+
+    private static List<Integer> ids( TalendFlow rows )
+    {
+        List<Integer> ids = new ArrayList<Integer>();
+        for( TalendRow row : rows )
+        {
+            ids.add( (Integer) row.getValue( "id" ) );
+        }
+        return ids;
+    }
+
+    /**
+     * Sort the whole flow and take the first rows of each group, in the order of the first row of the groups
+     */
+    private List<Integer> bruteForce( int n, String[] columns, TalendSortOrder[] orders, String name )
+    {
+        Map<Object, List<Integer>> groups = new LinkedHashMap<Object, List<Integer>>();
+        for( TalendRow row : flow )
+        {
+            if( !groups.containsKey( row.getValue( "g" ) ) )
+            {
+                groups.put( row.getValue( "g" ), new ArrayList<Integer>() );
+            }
+        }
+        for( TalendRow row : flow.sort( columns, orders ).toFlow( name ) )
+        {
+            List<Integer> group = groups.get( row.getValue( "g" ) );
+            if( group.size() < n )
+            {
+                group.add( (Integer) row.getValue( "id" ) );
+            }
+        }
+        List<Integer> ids = new ArrayList<Integer>();
+        for( List<Integer> group : groups.values() )
+        {
+            ids.addAll( group );
+        }
+        return ids;
+    }
+
+    public void testGroupsAgreeWithFullSorts()
+    {
+        String[][] keys = { { "v" }, { "s", "v" } };
+        int flows = 0;
+        for( String[] columns : keys )
+        {
+            for( TalendSortOrder order : TalendSortOrder.values() )
+            {
+                TalendSortOrder[] orders = new TalendSortOrder[columns.length];
+                Arrays.fill( orders, order );
+                List<Integer> expected = bruteForce( 7, columns, orders, "sorted" + flows++ );
+                // one thread and many threads, whose heaps are merged
+                for( int threads : new int[]{ 1, 8 } )
+                {
+                    TalendFlow top = flow.top( 7, columns, orders ).groupBy( "g" ).setParallelism( threads ).toFlow( "top" + flows++ );
+                    assertEquals( expected, ids( top ) );
+                    assertEquals( 4, top.getColumns().length );
+                }
+            }
+        }
+    }
+
+    public void testUngroupedSelectionKeepsStableOrder()
+    {
+        // null values are the smallest ones, and equal values keep the order of the flow
+        TalendFlow top = flow.top( 10, "v" ).setParallelism( 4 ).toFlow( "top" );
+        assertEquals( 10, top.countRows() );
+        Integer previous = -1;
+        for( TalendRow row : top )
+        {
+            assertNull( row.getValue( "v" ) );
+            assertTrue( (Integer) row.getValue( "id" ) > previous );
+            previous = (Integer) row.getValue( "id" );
+        }
+        TalendFlow highest = flow.top( 3, new String[]{ "v" }, new TalendSortOrder[]{ TalendSortOrder.DESCENDING } ).toFlow( "highest" );
+        assertEquals( Double.valueOf( 499 ), highest.getRow( 2 ).getValue( "v" ) );
+        assertEquals( 3, highest.countRows() );
+        assertSame( flow, flow.top( 3, "v" ).getFlow() );
+        assertEquals( 3, flow.top( 3, "v" ).getLimit() );
+    }
+
+    public void testWhereAndLimitsLargerThanGroups()
+    {
+        TalendFlow top = flow.top( ROWS, "s" ).groupBy( "g" ).where( TalendPredicate.eq( "g", "g1" ) ).where( TalendPredicate.isNotNull( "v" ) ).toFlow( "top" );
+        int expected = 0;
+        for( TalendRow row : flow )
+        {
+            if( "g1".equals( row.getValue( "g" ) ) && row.getValue( "v" ) != null )
+            {
+                expected++;
+            }
+        }
+        assertEquals( expected, top.countRows() );
+        String previous = "";
+        for( TalendRow row : top )
+        {
+            assertTrue( previous.compareTo( (String) row.getValue( "s" ) ) <= 0 );
+            previous = (String) row.getValue( "s" );
+        }
+    }
+
+    public void testMixedNumericValues()
+    {
+        TalendFlow numbers = model.getFlowFactory().newFlow( "numbers", null, false );
+        numbers.addColumn( "v", TalendType.LONG );
+        model.getRowFactory().newRow( numbers ).setValue( "v", 5 );
+        model.getRowFactory().newRow( numbers ).setValue( "v", 3.0 );
+        model.getRowFactory().newRow( numbers ).setValue( "v", "2" );
+        model.getRowFactory().newRow( numbers ).setValue( "v", new BigDecimal( "4" ) );
+        // values are copied as they are, and ordered like the values of the column
+        TalendFlow top = numbers.top( 3, "v" ).toFlow( "top" );
+        assertEquals( Long.valueOf( 2 ), top.getRow( 0 ).getValue( "v" ) );
+        assertEquals( Double.valueOf( 3 ), top.getRow( 1 ).getValue( "v" ) );
+        assertEquals( new BigDecimal( "4" ), top.getRow( 2 ).getValue( "v" ) );
+        TalendFlow sorted = numbers.sort( new String[]{ "v" }, new TalendSortOrder[]{ TalendSortOrder.DESCENDING } ).setMaximumRows( 2 ).toFlow( "sorted" );
+        assertEquals( Integer.valueOf( 5 ), sorted.getRow( 0 ).getValue( "v" ) );
+        assertEquals( Double.valueOf( 3 ), sorted.getRow( 2 ).getValue( "v" ) );
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "transactional", null, true );
+        transactional.addColumn( "v", TalendType.INTEGER );
+        model.getRowFactory().newRow( transactional ).setValue( "v", 5 );
+        transactional.commit();
+        // pending rows are not selected
+        model.getRowFactory().newRow( transactional ).setValue( "v", 1 );
+        assertEquals( 1, transactional.top( 5, "v" ).toFlow( "pending" ).countRows() );
+        transactional.rollback();
+        assertEquals( Integer.valueOf( 5 ), transactional.top( 5, "v" ).toFlow( "rolledBack" ).getRow( 0 ).getValue( "v" ) );
+        transactional.truncate();
+        transactional.commit();
+        assertEquals( 0, transactional.top( 5, "v" ).toFlow( "truncated" ).countRows() );
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow empty = model.getFlowFactory().newFlow( "empty", null, false );
+        empty.addColumn( "k", TalendType.INTEGER ).addColumn( "g", TalendType.STRING );
+        TalendFlow top = empty.top( 3, "k" ).groupBy( "g" ).setParallelism( 4 ).toFlow( "top" );
+        assertEquals( 0, top.countRows() );
+        assertEquals( 2, top.getColumns().length );
+    }
+
+    public void testInvalidSelections()
+    {
+        try
+        {
+            flow.top( 0, "v" );
+            fail( "empty limit accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1 );
+            fail( "no column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1, new String[]{ "v" }, new TalendSortOrder[0] );
+            fail( "missing direction accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1, "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1, "v" ).groupBy( "missing" );
+            fail( "unknown group accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1, "v" ).where( null );
+            fail( "null predicate accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.top( 1, "v" ).setParallelism( 0 );
+            fail( "no threads accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        flow.top( 1, "v" ).toFlow( "top" );
+        try
+        {
+            flow.top( 1, "v" ).toFlow( "top" );
+            fail( "flow name reused" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
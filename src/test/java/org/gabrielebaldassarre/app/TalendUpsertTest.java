@@ -0,0 +1,285 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRowImpl;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for updates and inserts of rows by primary key.
+ */
+public class TalendUpsertTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendUpsertTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendUpsertTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "dim", null, true );
+        flow.addColumn( "id", TalendType.INTEGER, null, true ).addColumn( "name", TalendType.STRING, "none" )
+            .addColumn( "v", TalendType.LONG ).addColumn( "d", TalendType.BIGDECIMAL );
+    }
+
+    private static Map<String, Object> values( Object... pairs )
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for( int i = 0; i < pairs.length; i += 2 )
+        {
+            values.put( (String) pairs[i], pairs[i + 1] );
+        }
+        return values;
+    }
+
+    private TalendRow find( Object id )
+    {
+        List<TalendRow> rows = new ArrayList<TalendRow>();
+        for( TalendRow row : flow.select().where( TalendPredicate.eq( "id", id ) ) )
+        {
+            rows.add( row );
+        }
+        assertEquals( 1, rows.size() );
+        return rows.get( 0 );
+    }
+
+    public void testInsertsAndUpdates()
+    {
+        flow.addIndex( "name" ).collectStatistics( "v" );
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for( int i = 0; i < 20000; i++ )
+        {
+            rows.add( values( "id", i, "name", "n" + ( i % 10 ), "v", (long) i ) );
+        }
+        flow.upsertAll( rows );
+        // new rows are pending until committed
+        assertEquals( 0, flow.countRows() );
+        flow.commit();
+        assertEquals( 20000, flow.countRows() );
+
+        rows.clear();
+        for( int i = 10000; i < 30000; i++ )
+        {
+            rows.add( values( "id", i, "v", (long) -i ) );
+        }
+        flow.upsertAll( rows );
+        assertEquals( Long.valueOf( 15000 ), find( 15000 ).getValue( "v" ) );
+        flow.commit();
+        assertEquals( 30000, flow.countRows() );
+        // missing values are left untouched on existing rows, and set to the defaults on new ones
+        assertEquals( Long.valueOf( -15000 ), find( 15000 ).getValue( "v" ) );
+        assertEquals( "n0", find( 15000 ).getValue( "name" ) );
+        assertEquals( "none", find( 25000 ).getValue( "name" ) );
+        assertEquals( Long.valueOf( -29999 ), flow.getStatistics( "v" ).getMinimum() );
+
+        // the same key merged many times in a transaction
+        flow.upsert( values( "id", -5, "name", "a" ) );
+        flow.upsert( values( "id", -5, "v", 7L ) );
+        flow.commit();
+        assertEquals( 30001, flow.countRows() );
+        assertEquals( "a", find( -5 ).getValue( "name" ) );
+        assertEquals( Long.valueOf( 7 ), find( -5 ).getValue( "v" ) );
+
+        // indexes follow the updated values
+        flow.upsert( values( "id", 1, "name", "zzz" ) );
+        flow.commit();
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "name", "zzz" ) ).count() );
+        assertEquals( 1999, flow.select().where( TalendPredicate.eq( "name", "n1" ) ).count() );
+    }
+
+    public void testMixedNumericValues()
+    {
+        flow.upsert( values( "id", new BigDecimal( "2.00" ), "d", 3, "v", "7" ) );
+        // keys of other types holding the same value find the same row
+        flow.upsert( values( "id", "2", "d", 2.5 ) );
+        flow.upsert( values( "id", 2L, "name", "two" ) );
+        flow.commit();
+        assertEquals( 1, flow.countRows() );
+        TalendRow row = flow.getRow( 0 );
+        // numbers are kept as given, like the values set on rows
+        assertEquals( 2, ( (Number) row.getValue( "id" ) ).intValue() );
+        assertEquals( Long.valueOf( 7 ), row.getValue( "v" ) );
+        assertEquals( 0, new BigDecimal( "2.5" ).compareTo( new BigDecimal( row.getValue( "d" ).toString() ) ) );
+        assertEquals( "two", row.getValue( "name" ) );
+        flow.upsert( values( "id", 2.0, "v", 8 ) );
+        flow.commit();
+        assertEquals( 1, flow.countRows() );
+        assertEquals( 8L, ( (Number) find( 2 ).getValue( "v" ) ).longValue() );
+        try
+        {
+            flow.upsert( values( "id", 2.5 ) );
+            fail( "fractional key accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testRollbackRestoresDrafts()
+    {
+        flow.upsert( values( "id", 1, "name", "a", "v", 1L ) );
+        flow.commit();
+        TalendRow row = flow.getRow( 0 );
+        row.setValue( "name", "draft" ).setValue( "v", 5L );
+        assertSame( row, flow.upsert( values( "id", 1L, "name", "up" ) ) );
+        flow.upsert( values( "id", 2 ) );
+        flow.rollback();
+        assertEquals( 1, flow.countRows() );
+        assertEquals( "a", row.getValue( "name" ) );
+        // changes staged before the upsert are still pending
+        ( (TalendRowImpl) row ).save();
+        assertEquals( "draft", row.getValue( "name" ) );
+        assertEquals( Long.valueOf( 5 ), row.getValue( "v" ) );
+    }
+
+    public void testCommitKeepsOtherDrafts()
+    {
+        flow.upsert( values( "id", 1, "name", "a", "v", 1L ) );
+        flow.commit();
+        TalendRow row = flow.getRow( 0 );
+        row.setValue( "v", 6L );
+        flow.upsert( values( "id", 1, "name", "up" ) );
+        flow.commit();
+        assertEquals( "up", row.getValue( "name" ) );
+        assertEquals( Long.valueOf( 1 ), row.getValue( "v" ) );
+        ( (TalendRowImpl) row ).save();
+        assertEquals( Long.valueOf( 6 ), row.getValue( "v" ) );
+    }
+
+    public void testBoundedFlowsAndTruncate()
+    {
+        TalendFlow bounded = model.getFlowFactory().newFlow( "bounded", 3, true );
+        bounded.addColumn( "id", TalendType.LONG, null, true ).addColumn( "s", TalendType.STRING );
+        for( int i = 0; i < 10; i++ )
+        {
+            bounded.upsert( values( "id", (long) ( i % 5 ), "s", "s" + i ) );
+            bounded.commit();
+        }
+        // evicted keys are added again
+        assertEquals( 4, bounded.countRows() );
+        Set<Object> keys = new HashSet<Object>();
+        for( TalendRow row : bounded )
+        {
+            assertTrue( keys.add( row.getValue( "id" ) ) );
+            assertEquals( "s" + ( (Long) row.getValue( "id" ) + 5 ), row.getValue( "s" ) );
+        }
+
+        flow.upsert( values( "id", 1, "name", "before" ) );
+        flow.commit();
+        flow.upsert( values( "id", 2 ) );
+        flow.truncate();
+        flow.commit();
+        assertEquals( 0, flow.countRows() );
+        flow.upsert( values( "id", 1, "name", "after" ) );
+        flow.commit();
+        assertEquals( 1, flow.countRows() );
+        assertEquals( "after", find( 1 ).getValue( "name" ) );
+    }
+
+    public void testEmptyBatches()
+    {
+        flow.upsertAll( new ArrayList<Map<String, Object>>() );
+        flow.commit();
+        assertEquals( 0, flow.countRows() );
+        // key values alone add rows holding the defaults
+        flow.upsertAll( Arrays.asList( values( "id", 1 ) ) );
+        flow.commit();
+        assertEquals( "none", find( 1 ).getValue( "name" ) );
+        assertNull( find( 1 ).getValue( "v" ) );
+    }
+
+    public void testInvalidUpserts()
+    {
+        for( Map<String, Object> invalid : Arrays.asList( null, values( "name", "x" ), values( "id", null ), values( "id", 3, "missing", "x" ), values( "id", "abc" ) ) )
+        {
+            try
+            {
+                flow.upsert( invalid );
+                fail( invalid + " accepted" );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+        try
+        {
+            flow.upsertAll( null );
+            fail( "no rows accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.upsertAll( Arrays.asList( values( "id", 9 ), values( "v", 1L ) ) );
+            fail( "row without key accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        flow.rollback();
+
+        flow.addDerivedColumn( "w", "v * 2" );
+        try
+        {
+            flow.upsert( values( "id", 3, "w", 1L ) );
+            fail( "derived value set" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        TalendFlow plain = model.getFlowFactory().newFlow( "plain", null, true );
+        plain.addColumn( "a", TalendType.STRING );
+        try
+        {
+            plain.upsert( values( "a", "x" ) );
+            fail( "flow without primary key" );
+        }
+        catch( IllegalStateException e )
+        {
+            // expected
+        }
+        flow.commit();
+        assertEquals( 0, flow.countRows() );
+    }
+}
@@ -0,0 +1,156 @@
+package org.gabrielebaldassarre.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendEncoding;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendUtf8Value;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendValue;
+
+/**
+ * Unit tests for STRING columns stored as UTF-8 bytes.
+ */
+public class TalendUtf8ValueTest
+    extends TestCase
+{
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private TalendFlowModel model;
+    private TalendFlow flow;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendUtf8ValueTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendUtf8ValueTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+        flow = model.getFlowFactory().newFlow( "f", null, false );
+        flow.addColumn( "text", TalendType.STRING, "déf", false, TalendEncoding.UTF8 ).addColumn( "blob", TalendType.BYTE_ARRAY );
+    }
+
+    public void testValuesKeepTheirBytes()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "text", "àé" );
+        assertTrue( row.getTalendValue( "text" ) instanceof TalendUtf8Value );
+        assertEquals( "àé", row.getValue( "text" ) );
+
+        ByteBuffer bytes = row.getByteBuffer( "text" );
+        assertTrue( bytes.isReadOnly() );
+        assertEquals( 4, bytes.remaining() );
+    }
+
+    public void testBytesAndBuffersAreAccepted()
+    {
+        TalendRow fromBytes = model.getRowFactory().newRow( flow ).setValue( "text", "héllo".getBytes( UTF8 ) );
+        TalendRow fromBuffer = model.getRowFactory().newRow( flow ).setValue( "text", ByteBuffer.wrap( "héllo".getBytes( UTF8 ) ) );
+        assertEquals( "héllo", fromBytes.getValue( "text" ) );
+        assertEquals( fromBytes.getTalendValue( "text" ), fromBuffer.getTalendValue( "text" ) );
+    }
+
+    public void testDefaultsAndNulls()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        assertEquals( "déf", row.getValue( "text" ) );
+        assertTrue( row.getTalendValue( "text" ).isColumnDefault() );
+
+        row.setValue( "text", null );
+        assertNull( row.getValue( "text" ) );
+        assertNull( row.getByteBuffer( "text" ) );
+    }
+
+    public void testEqualityIsByteBasedAcrossFlows()
+    {
+        TalendFlow other = model.getFlowFactory().newFlow( "g", null, false );
+        other.addColumn( "text", TalendType.STRING, null, false, TalendEncoding.UTF8 );
+        TalendValue value = model.getRowFactory().newRow( flow ).setValue( "text", "ciao" ).getTalendValue( "text" );
+        TalendValue copy = model.getRowFactory().newRow( other ).setValue( "text", value ).getTalendValue( "text" );
+        TalendValue typed = model.getRowFactory().newRow( other ).setValue( "text", "ciao" ).getTalendValue( "text" );
+
+        assertEquals( value, copy );
+        assertEquals( value, typed );
+        assertEquals( value.hashCode(), typed.hashCode() );
+        assertFalse( value.equals( model.getRowFactory().newRow( other ).setValue( "text", "ciao!" ).getTalendValue( "text" ) ) );
+    }
+
+    public void testCopyToByteArrayColumn()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow ).setValue( "text", "payload" );
+        row.setValue( "blob", ( (TalendUtf8Value) row.getTalendValue( "text" ) ).getBytes() );
+        assertEquals( "payload", new String( (byte[]) row.getValue( "blob" ), UTF8 ) );
+    }
+
+    public void testFiltersCompareBytes()
+    {
+        String[] values = { "àé", "ae", null, "àé" };
+        for( String value : values )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "text", value );
+        }
+        assertEquals( 2, flow.select().where( TalendPredicate.eq( "text", "àé" ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.ne( "text", "àé" ) ).count() );
+        assertEquals( 0, flow.select().where( TalendPredicate.eq( "text", "missing" ) ).count() );
+        assertEquals( 1, flow.select().where( TalendPredicate.isNull( "text" ) ).count() );
+    }
+
+    public void testInvalidValuesAndEncodings()
+    {
+        TalendRow row = model.getRowFactory().newRow( flow );
+        try
+        {
+            row.setValue( "text", Integer.valueOf( 12 ) );
+            fail( "integer accepted by a string column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addColumn( "n", TalendType.INTEGER, null, false, TalendEncoding.UTF8 );
+            fail( "utf-8 encoding accepted by an integer column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void testRollbackDiscardsValues()
+    {
+        TalendFlow transactional = model.getFlowFactory().newFlow( "t", null, true );
+        transactional.addColumn( "id", TalendType.INTEGER, null, true ).addColumn( "text", TalendType.STRING, null, false, TalendEncoding.UTF8 );
+        model.getRowFactory().newRow( transactional ).setValue( "id", 1 ).setValue( "text", "kept" );
+        transactional.commit();
+        model.getRowFactory().newRow( transactional ).setValue( "id", 2 ).setValue( "text", "dropped" );
+        transactional.rollback();
+
+        assertEquals( 1, transactional.countRows() );
+        assertEquals( "kept", transactional.getRow( 0 ).getValue( "text" ) );
+    }
+}
@@ -0,0 +1,285 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendAggregation;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendPredicate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+
+/**
+ * Unit tests for the kernels run by queries and aggregations over vectorized columns.
+ */
+public class TalendVectorizeTest
+    extends TestCase
+{
+    private static final String[] AGGREGATES = { "n", "na", "sa", "sb", "aa", "mina", "maxb", "minb", "maxa" };
+
+    private TalendFlowModel model;
+    private int flows;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendVectorizeTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendVectorizeTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+    }
+
+    private TalendFlow build( Integer maxSize, int rows, boolean vectorized )
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f" + flows++, maxSize, false );
+        flow.addColumn( "a", TalendType.INTEGER ).addColumn( "b", TalendType.DOUBLE ).addColumn( "d", TalendType.DATE ).addColumn( "s", TalendType.STRING );
+        if( vectorized )
+        {
+            flow.vectorize( "a", "b", "d" );
+        }
+        Random random = new Random( 1 );
+        for( int i = 0; i < rows; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow );
+            if( random.nextInt( 10 ) != 0 )
+            {
+                row.setValue( "a", random.nextInt( 1000 ) - 500 );
+            }
+            if( random.nextInt( 10 ) != 0 )
+            {
+                row.setValue( "b", random.nextDouble() * 100 );
+            }
+            row.setValue( "d", new Date( 1000L * i ) ).setValue( "s", "s" + ( i % 5 ) );
+        }
+        return flow;
+    }
+
+    private static List<Object> dates( Iterable<TalendRow> rows )
+    {
+        List<Object> dates = new ArrayList<Object>();
+        for( TalendRow row : rows )
+        {
+            dates.add( row.getValue( "d" ) );
+        }
+        return dates;
+    }
+
+    private List<Object> aggregate( TalendFlow flow, TalendPredicate predicate, int threads )
+    {
+        TalendAggregation aggregation = flow.groupBy();
+        if( predicate != null )
+        {
+            aggregation.where( predicate );
+        }
+        TalendRow row = aggregation.count( "n" ).count( "a", "na" ).sum( "a", "sa" ).sum( "b", "sb" ).avg( "a", "aa" )
+            .min( "a", "mina" ).max( "b", "maxb" ).min( "b", "minb" ).max( "a", "maxa" ).setParallelism( threads ).toFlow( "agg" + flows++ ).getRow( 0 );
+        List<Object> values = new ArrayList<Object>();
+        for( String column : AGGREGATES )
+        {
+            Object value = row.getValue( column );
+            // sums of doubles depend on the order they are added in
+            values.add( value instanceof Double ? (Object) ( Math.round( (Double) value * 1e6 ) / 1e6 ) : value );
+        }
+        return values;
+    }
+
+    private void assertSameResults( TalendFlow plain, TalendFlow vectorized, TalendPredicate predicate )
+    {
+        String message = String.valueOf( predicate );
+        assertEquals( message, plain.select().where( predicate ).count(), vectorized.select().where( predicate ).count() );
+        assertEquals( message, dates( plain.select().where( predicate ).limit( 50 ) ), dates( vectorized.select().where( predicate ).limit( 50 ) ) );
+        assertEquals( message, Math.min( 17, plain.select().where( predicate ).count() ), vectorized.select().where( predicate ).limit( 17 ).count() );
+        assertEquals( message, aggregate( plain, predicate, 1 ), aggregate( vectorized, predicate, 3 ) );
+    }
+
+    public void testKernelsAgreeWithRows()
+    {
+        TalendPredicate[] predicates = {
+            TalendPredicate.lt( "a", 0 ),
+            TalendPredicate.between( "a", -100, 100 ),
+            TalendPredicate.gt( "b", 50.0 ).and( TalendPredicate.le( "b", 60 ) ),
+            TalendPredicate.in( "a", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 ),
+            TalendPredicate.in( "a", 7, 9 ),
+            TalendPredicate.isNull( "a" ),
+            TalendPredicate.not( TalendPredicate.ge( "a", 10 ) ),
+            TalendPredicate.eq( "a", 42 ).or( TalendPredicate.isNull( "b" ) ),
+            TalendPredicate.ge( "a", 0 ).and( TalendPredicate.eq( "s", "s3" ) ),
+            TalendPredicate.between( "d", new Date( 5000 ), new Date( 90000 ) ),
+            TalendPredicate.ne( "b", 3.0 ),
+            TalendPredicate.gt( "a", 10 ).and( TalendPredicate.lt( "a", 5 ) ),
+            TalendPredicate.gt( "a", 2147483647 ) };
+        // flows without evictions, and flows whose first blocks are partly evicted
+        for( Integer maxSize : new Integer[]{ null, 7000 } )
+        {
+            TalendFlow plain = build( maxSize, 10000, false );
+            TalendFlow vectorized = build( maxSize, 10000, true );
+            for( TalendPredicate predicate : predicates )
+            {
+                assertSameResults( plain, vectorized, predicate );
+            }
+            assertEquals( aggregate( plain, null, 1 ), aggregate( vectorized, null, 4 ) );
+        }
+    }
+
+    public void testUpdatesAndTruncate()
+    {
+        TalendFlow plain = build( null, 5000, false );
+        TalendFlow vectorized = build( null, 5000, true );
+        for( TalendFlow flow : new TalendFlow[]{ plain, vectorized } )
+        {
+            for( TalendRow row : flow.select().where( TalendPredicate.lt( "a", 0 ) ) )
+            {
+                row.setValue( "a", 1000 );
+            }
+            flow.getRow( 0 ).setValue( "b", null );
+        }
+        assertEquals( 0, vectorized.select().where( TalendPredicate.lt( "a", 0 ) ).count() );
+        assertSameResults( plain, vectorized, TalendPredicate.eq( "a", 1000 ) );
+        assertSameResults( plain, vectorized, TalendPredicate.isNull( "b" ) );
+
+        vectorized.truncate();
+        assertEquals( 0, vectorized.select().where( TalendPredicate.isNull( "a" ) ).count() );
+        List<Object> empty = aggregate( vectorized, null, 2 );
+        assertEquals( Long.valueOf( 0 ), empty.get( 0 ) );
+        assertNull( empty.get( 2 ) );
+        assertNull( empty.get( 5 ) );
+    }
+
+    public void testRollbackAndTruncate()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "transactional", null, true );
+        flow.addColumn( "k", TalendType.LONG ).vectorize( "k" );
+        for( int i = 0; i < 3000; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "k", (long) i );
+            if( i % 1000 == 999 )
+            {
+                flow.commit();
+            }
+        }
+        assertEquals( 1500, flow.select().where( TalendPredicate.ge( "k", 1500L ) ).count() );
+        model.getRowFactory().newRow( flow ).setValue( "k", 5000L );
+        // pending rows are not selected
+        assertEquals( 0, flow.select().where( TalendPredicate.gt( "k", 4000 ) ).count() );
+        flow.rollback();
+        assertEquals( 0, flow.select().where( TalendPredicate.gt( "k", 4000 ) ).count() );
+        assertEquals( Long.valueOf( 2999 ), flow.groupBy().max( "k", "m" ).toFlow( "max" ).getRow( 0 ).getValue( "m" ) );
+        flow.truncate();
+        flow.commit();
+        assertEquals( 0, flow.select().where( TalendPredicate.ge( "k", 0 ) ).count() );
+        model.getRowFactory().newRow( flow ).setValue( "k", 7L );
+        flow.commit();
+        assertEquals( 1, flow.select().where( TalendPredicate.eq( "k", 7 ) ).count() );
+    }
+
+    public void testMixedNumericAndSpecialValues()
+    {
+        TalendFlow[] flows = new TalendFlow[2];
+        for( int f = 0; f < 2; f++ )
+        {
+            flows[f] = model.getFlowFactory().newFlow( "numbers" + f, null, false );
+            flows[f].addColumn( "l", TalendType.LONG ).addColumn( "d", TalendType.DOUBLE );
+            if( f == 1 )
+            {
+                flows[f].vectorize( "l", "d" );
+            }
+            Object[] longs = { 3, 3.0, new BigDecimal( "4" ), "5", 7L, null, Long.MAX_VALUE, Long.MIN_VALUE };
+            Object[] doubles = { -0.0, 0.0, Double.NaN, 2, 2.5f, new BigDecimal( "1.5" ), Double.NEGATIVE_INFINITY, null };
+            for( int i = 0; i < longs.length; i++ )
+            {
+                model.getRowFactory().newRow( flows[f] ).setValue( "l", longs[i] ).setValue( "d", doubles[i] );
+            }
+        }
+        TalendPredicate[] predicates = {
+            TalendPredicate.eq( "l", 3 ),
+            TalendPredicate.eq( "l", 3.0 ),
+            TalendPredicate.lt( "l", 4.5 ),
+            TalendPredicate.in( "l", 4, 5.0, new BigDecimal( "7" ) ),
+            TalendPredicate.eq( "d", 0.0 ),
+            TalendPredicate.eq( "d", -0.0 ),
+            TalendPredicate.lt( "d", 0.0 ),
+            TalendPredicate.ge( "d", 0 ),
+            TalendPredicate.ne( "d", 2 ),
+            TalendPredicate.gt( "l", 9e18 ),
+            TalendPredicate.lt( "l", Long.MIN_VALUE + 1 ),
+            TalendPredicate.between( "d", Double.NEGATIVE_INFINITY, 2 ),
+            TalendPredicate.eq( "d", Double.NaN ) };
+        for( TalendPredicate predicate : predicates )
+        {
+            assertEquals( predicate.toString(), flows[0].select().where( predicate ).count(), flows[1].select().where( predicate ).count() );
+        }
+        assertEquals( 2, flows[1].select().where( TalendPredicate.eq( "l", 3 ) ).count() );
+        for( TalendFlow flow : flows )
+        {
+            TalendRow row = flow.groupBy().sum( "l", "sl" ).avg( "l", "al" ).min( "d", "mind" ).max( "d", "maxd" ).toFlow( "agg" + flow.getName() ).getRow( 0 );
+            assertEquals( Long.valueOf( 21 ), row.getValue( "sl" ) );
+            // averages of integral columns are exact whatever the magnitude of the values
+            assertEquals( 3.0, (Double) row.getValue( "al" ), 0.0 );
+            assertEquals( Double.NEGATIVE_INFINITY, (Double) row.getValue( "mind" ), 0.0 );
+            assertEquals( 2.5, (Double) row.getValue( "maxd" ), 0.0 );
+        }
+    }
+
+    public void testEmptyFlow()
+    {
+        TalendFlow flow = build( null, 0, true );
+        assertEquals( 0, flow.select().where( TalendPredicate.gt( "a", 0 ) ).count() );
+        List<Object> values = aggregate( flow, TalendPredicate.gt( "b", 0 ), 4 );
+        assertEquals( Long.valueOf( 0 ), values.get( 0 ) );
+        assertNull( values.get( 4 ) );
+    }
+
+    public void testInvalidColumns()
+    {
+        TalendFlow flow = build( null, 10, false );
+        flow.addDerivedColumn( "twice", "a * 2" );
+        for( String column : new String[]{ "missing", "s", "twice" } )
+        {
+            try
+            {
+                flow.vectorize( column );
+                fail( "column " + column + " vectorized" );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // expected
+            }
+        }
+        try
+        {
+            flow.vectorize();
+            fail( "no column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        // columns already vectorized are left untouched
+        flow.vectorize( "a" ).vectorize( "a", "b" );
+        assertEquals( 10, flow.select().where( TalendPredicate.isNotNull( "d" ) ).count() );
+    }
+}
@@ -0,0 +1,290 @@
+package org.gabrielebaldassarre.app;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gabrielebaldassarre.tcomponent.bridge.TalendContext;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowController;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendFlowModel;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendRow;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendType;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendWindowAggregate;
+import org.gabrielebaldassarre.tcomponent.bridge.TalendWindowFunction;
+
+/**
+ * Unit tests for sliding-window aggregates kept up to date by flows.
+ */
+public class TalendWindowAggregateTest
+    extends TestCase
+{
+    private TalendFlowModel model;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TalendWindowAggregateTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TalendWindowAggregateTest.class );
+    }
+
+    protected void setUp()
+    {
+        model = TalendFlowController.getInstance().getModel( new TalendContext() );
+    }
+
+    private TalendWindowAggregate[] all( TalendFlow flow )
+    {
+        return new TalendWindowAggregate[]{
+            flow.addWindowAggregate( TalendWindowFunction.COUNT, null ),
+            flow.addWindowAggregate( TalendWindowFunction.SUM, "v" ),
+            flow.addWindowAggregate( TalendWindowFunction.AVG, "v" ),
+            flow.addWindowAggregate( TalendWindowFunction.MIN, "v" ),
+            flow.addWindowAggregate( TalendWindowFunction.MAX, "v" ) };
+    }
+
+    private void assertWindow( TalendFlow flow, TalendWindowAggregate[] aggregates )
+    {
+        long values = 0;
+        long sum = 0;
+        Integer min = null;
+        Integer max = null;
+        for( TalendRow row : flow )
+        {
+            Integer v = (Integer) row.getValue( "v" );
+            if( v == null )
+            {
+                continue;
+            }
+            values++;
+            sum += v;
+            min = ( min == null || v < min ? v : min );
+            max = ( max == null || v > max ? v : max );
+        }
+        assertEquals( Long.valueOf( flow.countRows() ), aggregates[0].getValue() );
+        assertEquals( values == 0 ? null : Long.valueOf( sum ), aggregates[1].getValue() );
+        assertEquals( values == 0 ? null : Double.valueOf( (double) sum / values ), aggregates[2].getValue() );
+        assertEquals( min, aggregates[3].getValue() );
+        assertEquals( max, aggregates[4].getValue() );
+        assertEquals( values, aggregates[4].countValues() );
+    }
+
+    public void testSlidingWindowsFollowAppendsAndEvictions()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 100, false );
+        flow.addColumn( "v", TalendType.INTEGER );
+        TalendWindowAggregate[] aggregates = all( flow );
+        Random random = new Random( 3 );
+        for( int i = 0; i < 2000; i++ )
+        {
+            TalendRow row = model.getRowFactory().newRow( flow );
+            if( random.nextInt( 8 ) != 0 )
+            {
+                row.setValue( "v", random.nextInt( 100000 ) - 50000 );
+            }
+            if( i % 97 == 0 )
+            {
+                assertWindow( flow, aggregates );
+            }
+        }
+        assertWindow( flow, aggregates );
+    }
+
+    public void testTransactionsRollbackAndTruncate()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 50, true );
+        flow.addColumn( "v", TalendType.INTEGER );
+        TalendWindowAggregate[] aggregates = all( flow );
+        for( int i = 0; i < 80; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "v", i );
+        }
+        // pending rows are not aggregated
+        assertEquals( Long.valueOf( 0 ), aggregates[0].getValue() );
+        flow.commit();
+        assertWindow( flow, aggregates );
+
+        model.getRowFactory().newRow( flow ).setValue( "v", 1000 );
+        flow.rollback();
+        assertWindow( flow, aggregates );
+        assertEquals( Integer.valueOf( 79 ), aggregates[4].getValue() );
+
+        flow.truncate();
+        flow.commit();
+        assertWindow( flow, aggregates );
+        for( int i = 0; i < 5; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "v", -i );
+        }
+        flow.commit();
+        assertWindow( flow, aggregates );
+    }
+
+    public void testUpdatesOfSavedRows()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 20, false );
+        flow.addColumn( "v", TalendType.INTEGER );
+        TalendWindowAggregate[] aggregates = all( flow );
+        for( int i = 0; i < 30; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "v", i );
+        }
+        flow.getRow( 5 ).setValue( "v", 1000 );
+        assertWindow( flow, aggregates );
+        flow.getRow( 5 ).setValue( "v", null );
+        assertWindow( flow, aggregates );
+        flow.getRow( flow.countRows() - 1 ).setValue( "v", -1000 );
+        assertWindow( flow, aggregates );
+    }
+
+    public void testMinAndMaxWithColumnDefaults()
+    {
+        for( Integer fallback : new Integer[]{ null, 1000000, -1000000 } )
+        {
+            TalendFlow flow = model.getFlowFactory().newFlow( "f" + fallback, 30, false );
+            flow.addColumn( "v", TalendType.INTEGER, fallback );
+            TalendWindowAggregate[] aggregates = all( flow );
+            Random random = new Random( 1 );
+            for( int i = 0; i < 3000; i++ )
+            {
+                TalendRow row = model.getRowFactory().newRow( flow );
+                int kind = random.nextInt( 4 );
+                if( kind > 0 )
+                {
+                    row.setValue( "v", random.nextInt( 1000 ) );
+                }
+                // reading between two changes of the newest row
+                if( kind == 2 )
+                {
+                    aggregates[3].getValue();
+                    row.setValue( "v", random.nextInt( 1000 ) );
+                }
+                if( kind == 3 )
+                {
+                    aggregates[4].getValue();
+                    row.setValue( "v", null );
+                }
+                if( i % 101 == 0 )
+                {
+                    assertWindow( flow, aggregates );
+                }
+            }
+            assertWindow( flow, aggregates );
+        }
+    }
+
+    public void testEmptyWindows()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 10, false );
+        flow.addColumn( "v", TalendType.INTEGER );
+        TalendWindowAggregate[] aggregates = all( flow );
+        assertEquals( Long.valueOf( 0 ), aggregates[0].getValue() );
+        assertNull( aggregates[1].getValue() );
+        assertNull( aggregates[3].getValue() );
+        assertTrue( Double.isNaN( aggregates[2].getDouble() ) );
+        assertTrue( Double.isNaN( aggregates[4].getDouble() ) );
+
+        model.getRowFactory().newRow( flow );
+        assertEquals( Long.valueOf( 1 ), aggregates[0].getValue() );
+        assertEquals( 0, aggregates[1].countValues() );
+        assertNull( aggregates[2].getValue() );
+    }
+
+    public void testSumTypes()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 3, false );
+        flow.addColumn( "b", TalendType.BYTE ).addColumn( "d", TalendType.DOUBLE ).addColumn( "m", TalendType.BIGDECIMAL ).addColumn( "s", TalendType.STRING );
+        TalendWindowAggregate bytes = flow.addWindowAggregate( TalendWindowFunction.SUM, "b" );
+        TalendWindowAggregate doubles = flow.addWindowAggregate( TalendWindowFunction.SUM, "d" );
+        TalendWindowAggregate decimals = flow.addWindowAggregate( TalendWindowFunction.SUM, "m" );
+        TalendWindowAggregate strings = flow.addWindowAggregate( TalendWindowFunction.MAX, "s" );
+        for( int i = 0; i < 10; i++ )
+        {
+            model.getRowFactory().newRow( flow ).setValue( "b", (byte) 100 ).setValue( "d", 0.5 ).setValue( "m", new BigDecimal( "0.1" ) ).setValue( "s", "s" + i );
+        }
+        long rows = flow.countRows();
+        assertEquals( Long.valueOf( 100 * rows ), bytes.getValue() );
+        assertEquals( 0.5 * rows, (Double) doubles.getValue(), 1e-9 );
+        assertEquals( 0, new BigDecimal( "0.1" ).multiply( BigDecimal.valueOf( rows ) ).compareTo( (BigDecimal) decimals.getValue() ) );
+        assertEquals( "s9", strings.getValue() );
+        try
+        {
+            strings.getDouble();
+            fail( "string read as a double" );
+        }
+        catch( ClassCastException e )
+        {
+            // expected
+        }
+    }
+
+    public void testRemovedAggregates()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 10, false );
+        flow.addColumn( "v", TalendType.INTEGER ).addColumn( "w", TalendType.INTEGER );
+        TalendWindowAggregate count = flow.addWindowAggregate( TalendWindowFunction.COUNT, null );
+        TalendWindowAggregate sum = flow.addWindowAggregate( TalendWindowFunction.SUM, "w" );
+        model.getRowFactory().newRow( flow ).setValue( "w", 1 );
+        flow.removeWindowAggregate( count );
+        flow.removeColumn( flow.getColumn( "w" ) );
+        model.getRowFactory().newRow( flow ).setValue( "v", 1 );
+        assertEquals( Long.valueOf( 1 ), count.getValue() );
+        assertEquals( Long.valueOf( 1 ), sum.getValue() );
+    }
+
+    public void testInvalidAggregates()
+    {
+        TalendFlow flow = model.getFlowFactory().newFlow( "f", 10, false );
+        flow.addColumn( "v", TalendType.INTEGER ).addColumn( "s", TalendType.STRING );
+        try
+        {
+            flow.addWindowAggregate( TalendWindowFunction.SUM, null );
+            fail( "sum without a column" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addWindowAggregate( TalendWindowFunction.AVG, "s" );
+            fail( "average of strings" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addWindowAggregate( null, "v" );
+            fail( "null function accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+        try
+        {
+            flow.addWindowAggregate( TalendWindowFunction.MIN, "missing" );
+            fail( "unknown column accepted" );
+        }
+        catch( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+	This file is part of Talend Bridge Component API
+
+    Talend Bridge is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Talend Bridge is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Nome-Programma.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gabrielebaldassarre.tcomponent.bridge;
+
+/**
+ * Gives tests access to the spill files of the operators over flows, which are not part of the API.
+ */
+public final class TalendSpills {
+
+	private TalendSpills(){
+	}
+
+	/**
+	 * Get the number of spill files created by this JVM and not deleted yet
+	 * 
+	 * @return the number of files
+	 */
+	public static int countFiles(){
+		return TalendSpill.countFiles();
+	}
+
+}